@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.api;
+
+import java.nio.channels.FileChannel;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+
+/**
+ * Binary that may be stored in a local file. In addition to the normal JCR
+ * {@link Binary} functionality, implementations of this interface give
+ * access to a read-only {@link FileChannel} of the binary stream, so that
+ * it can be sent with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} and read at any position without
+ * reading the preceding bytes.
+ */
+public interface ChannelBinary extends Binary {
+
+    /**
+     * Returns a new read-only channel of the binary stream, or {@code null}
+     * if the binary is not stored in a local file. The caller must close
+     * the returned channel.
+     *
+     * @return a new file channel, or {@code null}
+     * @throws RepositoryException if the channel could not be opened
+     */
+    FileChannel getChannel() throws RepositoryException;
+
+}
@@ -107,4 +107,21 @@ public interface EventListenerMBean {
      */
     CompositeData getEventProducerTime();
 
+    /**
+     * @return  number of events currently queued for delivery to the listener
+     */
+    long getQueuedEvents();
+
+    /**
+     * @return  age (in milliseconds) of the oldest event currently queued for
+     *          the listener, or <code>0</code> if nothing is queued
+     */
+    long getQueueLagMillis();
+
+    /**
+     * @return  number of events that were dropped because the queue of the
+     *          listener overflowed
+     */
+    long getEventsDropped();
+
 }
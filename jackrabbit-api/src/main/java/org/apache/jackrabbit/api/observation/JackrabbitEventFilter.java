@@ -95,6 +95,7 @@ public class JackrabbitEventFilter {  // TODO extends EventFilter once JCR 2.1 i
     private String[] excludedPaths = new String[]{};
     private boolean noExternal;
     private boolean noInternal;
+    private long coalescingWindow;
 
     /**
      * Sets the <code>eventTypes</code> parameter of the filter.
@@ -306,4 +307,39 @@ public class JackrabbitEventFilter {  // TODO extends EventFilter once JCR 2.1 i
         return noInternal;
     }
 
+    /**
+     * Sets the <code>coalescingWindow</code> parameter of the filter.
+     * If left unset, this parameter defaults to <code>0</code>.
+     * <p>
+     * If greater than <code>0</code>, the listener does not receive the
+     * individual events that pass the filter. Instead, the events passing the
+     * filter within the given number of milliseconds are collapsed into a
+     * single event of type {@link javax.jcr.observation.Event#PERSIST}. Its
+     * path is the deepest common ancestor of the parent nodes of the changed
+     * items, and its info map contains the number of collapsed events under
+     * the key <code>eventCount</code> and the union of their event types
+     * under the key <code>eventTypes</code>. This is useful for listeners
+     * that only need to know that something below a path changed.
+     * Implementations may ignore the window for listeners that are notified
+     * synchronously, as a delayed event could not be delivered in the
+     * thread that made the changes.
+     *
+     * @param coalescingWindow the time window in milliseconds, or <code>0</code>
+     *                         to deliver individual events.
+     * @return This EventFilter object with the <code>coalescingWindow</code> parameter set.
+     */
+    public JackrabbitEventFilter setCoalescingWindow(long coalescingWindow) {
+        this.coalescingWindow = coalescingWindow;
+        return this;
+    }
+
+    /**
+     * Returns the <code>coalescingWindow</code> parameter of the filter.
+     *
+     * @return a <code>long</code>.
+     */
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
 }
\ No newline at end of file
@@ -120,7 +120,24 @@ public interface RepositoryStatistics {
          * This is the sum of all observation durations divided by the number
          * of observation events in the respective time period.
          */
-        OBSERVATION_EVENT_AVERAGE(true);
+        OBSERVATION_EVENT_AVERAGE(true),
+
+        /**
+         * Number of binary streams read through the binary cache of the
+         * data store.
+         */
+        BINARY_CACHE_ACCESS_COUNTER(true),
+
+        /**
+         * Number of binary streams that were not found in the binary cache
+         * of the data store.
+         */
+        BINARY_CACHE_MISS_COUNTER(true),
+
+        /**
+         * Number of bytes held by the binary cache of the data store.
+         */
+        BINARY_CACHE_SIZE_COUNTER(false);
 
         private final boolean resetValueEachSecond;
 
@@ -18,5 +18,5 @@
 /**
  * Jackrabbit repository statistics
  */
-@aQute.bnd.annotation.Version("1.2.0")
+@aQute.bnd.annotation.Version("1.3.0")
 package org.apache.jackrabbit.api.stats;
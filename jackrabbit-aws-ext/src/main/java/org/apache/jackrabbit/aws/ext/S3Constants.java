@@ -82,6 +82,17 @@ public final class S3Constants {
      */
     public static final String S3_WRITE_THREADS = "writeThreads";
     
+    /**
+     * Constant to set the size from which files are uploaded in parts
+     * concurrently.
+     */
+    public static final String S3_MULTIPART_UPLOAD_THRESHOLD = "multipartUploadThreshold";
+
+    /**
+     * Constant to set the minimum size of the parts of a concurrent upload.
+     */
+    public static final String S3_MIN_UPLOAD_PART_SIZE = "minimumUploadPartSize";
+
     /**
      * Constant to enable encryption in S3.
      */
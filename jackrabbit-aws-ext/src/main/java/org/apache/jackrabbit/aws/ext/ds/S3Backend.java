@@ -21,11 +21,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -40,10 +43,11 @@ import org.apache.jackrabbit.core.data.AsyncTouchCallback;
 import org.apache.jackrabbit.core.data.AsyncTouchResult;
 import org.apache.jackrabbit.core.data.AsyncUploadCallback;
 import org.apache.jackrabbit.core.data.AsyncUploadResult;
-import org.apache.jackrabbit.core.data.Backend;
+import org.apache.jackrabbit.core.data.BatchTouchBackend;
 import org.apache.jackrabbit.core.data.CachingDataStore;
 import org.apache.jackrabbit.core.data.DataIdentifier;
 import org.apache.jackrabbit.core.data.DataStoreException;
+import org.apache.jackrabbit.core.data.MultipartBackend;
 import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +61,7 @@ import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
@@ -65,13 +70,14 @@ import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.Copy;
 import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
 import com.amazonaws.services.s3.transfer.Upload;
 import com.amazonaws.util.StringUtils;
 
 /**
  * A data store backend that stores data on Amazon S3.
  */
-public class S3Backend implements Backend {
+public class S3Backend implements MultipartBackend, BatchTouchBackend {
 
     /**
      * Logger instance.
@@ -177,6 +183,19 @@ public class S3Backend implements Backend {
             tmx = new TransferManager(s3service,
                 (ThreadPoolExecutor) Executors.newFixedThreadPool(writeThreads,
                     new NamedThreadFactory("s3-transfer-manager-worker")));
+            TransferManagerConfiguration tmxConfig = tmx.getConfiguration();
+            String thresholdStr = prop.getProperty(S3Constants.S3_MULTIPART_UPLOAD_THRESHOLD);
+            if (!StringUtils.isNullOrEmpty(thresholdStr)) {
+                tmxConfig.setMultipartUploadThreshold(Long.parseLong(thresholdStr.trim()));
+            }
+            String partSizeStr = prop.getProperty(S3Constants.S3_MIN_UPLOAD_PART_SIZE);
+            if (!StringUtils.isNullOrEmpty(partSizeStr)) {
+                tmxConfig.setMinimumUploadPartSize(Long.parseLong(partSizeStr.trim()));
+            }
+            tmx.setConfiguration(tmxConfig);
+            LOG.info("Uploading files larger than [{}] bytes in parts of [{}] bytes.",
+                tmxConfig.getMultipartUploadThreshold(),
+                tmxConfig.getMinimumUploadPartSize());
             
             int asyncWritePoolSize = 10;
             String maxConnsStr = prop.getProperty(S3Constants.S3_MAX_CONNS);
@@ -385,6 +404,61 @@ public class S3Backend implements Backend {
         }
     }
 
+    /**
+     * Touches the records of the batch concurrently: the copy requests of
+     * all records that need to be touched are submitted to the transfer
+     * manager first, and then awaited.
+     */
+    @Override
+    public Set<DataIdentifier> touch(Collection<DataIdentifier> identifiers,
+            long minModifiedDate) throws DataStoreException {
+        Set<DataIdentifier> failed = new HashSet<DataIdentifier>();
+        if (minModifiedDate <= 0) {
+            return failed;
+        }
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(
+                getClass().getClassLoader());
+            final long start = System.currentTimeMillis();
+            Map<DataIdentifier, Copy> copies = new LinkedHashMap<DataIdentifier, Copy>();
+            for (DataIdentifier identifier : identifiers) {
+                try {
+                    if (minModifiedDate > getLastModified(identifier)) {
+                        String key = getKeyName(identifier);
+                        CopyObjectRequest copReq = new CopyObjectRequest(bucket,
+                            key, bucket, key);
+                        copReq.setNewObjectMetadata(new ObjectMetadata());
+                        copies.put(identifier,
+                            tmx.copy(s3ReqDecorator.decorate(copReq)));
+                    }
+                } catch (Exception e) {
+                    LOG.debug("Could not touch [" + identifier + "]", e);
+                    failed.add(identifier);
+                }
+            }
+            for (Map.Entry<DataIdentifier, Copy> e : copies.entrySet()) {
+                try {
+                    e.getValue().waitForCompletion();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    failed.add(e.getKey());
+                } catch (Exception ex) {
+                    LOG.debug("Could not touch [" + e.getKey() + "]", ex);
+                    failed.add(e.getKey());
+                }
+            }
+            LOG.debug("[{}] of [{}] records touched. time taken [{}] ms ",
+                new Object[] { copies.size(), identifiers.size(),
+                    (System.currentTimeMillis() - start) });
+            return failed;
+        } finally {
+            if (contextClassLoader != null) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
     @Override
     public InputStream read(DataIdentifier identifier)
             throws DataStoreException {
@@ -408,6 +482,32 @@ public class S3Backend implements Backend {
         }
     }
 
+    @Override
+    public InputStream read(DataIdentifier identifier, long offset, long length)
+            throws DataStoreException {
+        long start = System.currentTimeMillis();
+        String key = getKeyName(identifier);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(
+                getClass().getClassLoader());
+            GetObjectRequest request = new GetObjectRequest(bucket, key);
+            request.setRange(offset, offset + length - 1);
+            S3Object object = s3service.getObject(request);
+            InputStream in = object.getObjectContent();
+            LOG.debug("[{}] read of [{}] bytes at [{}] took [{}]ms",
+                new Object[] { identifier, length, offset,
+                    (System.currentTimeMillis() - start) });
+            return in;
+        } catch (AmazonServiceException e) {
+            throw new DataStoreException("Object not found: " + key, e);
+        } finally {
+            if (contextClassLoader != null) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
     @Override
     public Iterator<DataIdentifier> getAllIdentifiers()
             throws DataStoreException {
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core;
+
+import static org.apache.jackrabbit.core.ItemValidator.CHECK_CHECKED_OUT;
+import static org.apache.jackrabbit.core.ItemValidator.CHECK_CONSTRAINTS;
+import static org.apache.jackrabbit.core.ItemValidator.CHECK_HOLD;
+import static org.apache.jackrabbit.core.ItemValidator.CHECK_LOCK;
+import static org.apache.jackrabbit.core.ItemValidator.CHECK_RETENTION;
+import static org.apache.jackrabbit.core.RepositoryImpl.SYSTEM_ROOT_NODE_ID;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.ObservationManager;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.core.data.BinaryPlacementPolicy;
+import org.apache.jackrabbit.core.data.BinaryPlacementPolicy.Tier;
+import org.apache.jackrabbit.core.data.DataIdentifier;
+import org.apache.jackrabbit.core.data.DataStore;
+import org.apache.jackrabbit.core.data.MultiDataStore;
+import org.apache.jackrabbit.core.security.authorization.Permission;
+import org.apache.jackrabbit.core.value.InternalValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a {@link BinaryPlacementPolicy} to the binary properties of a
+ * workspace. When a binary is created, only its length is known, so it is
+ * stored inline or in the data store depending on the minimum record length
+ * of the data store. This tool traverses the workspace (or a subtree) and
+ * moves each binary to the tier the policy selects based on the path, the
+ * jcr:mimeType and the length of the property:
+ * <ul>
+ * <li>binaries in the data store that should be inline are inlined into
+ * their bundle,</li>
+ * <li>inline binaries that should not be inline are added to the data
+ * store,</li>
+ * <li>if the data store is a {@link MultiDataStore}, records of the archive
+ * tier are moved to the archive data store, and records of the primary tier
+ * that were already archived are copied back to the primary data store.</li>
+ * </ul>
+ * The records are moved after each saved batch of properties. Records that
+ * are referenced by both a primary and an archive binary stay in the primary
+ * data store; a record archived in an earlier batch is copied back when a
+ * later batch references it from the primary tier.
+ * <p>
+ * Binaries of nodes that are checked-in, locked by another session, or
+ * under a hold or retention policy, and protected binary properties are
+ * not modified. Their records are still moved between the primary and the
+ * archive data store, which does not change the content. The events of
+ * the modified properties carry the user data {@link #USER_DATA}, so that
+ * listeners can ignore them. The tool can run in the background, see
+ * {@link #setSleepBetweenNodes(long)}.
+ */
+public class BinaryPlacementMigrator implements Runnable {
+
+    /**
+     * Logger instance.
+     */
+    private static final Logger log =
+        LoggerFactory.getLogger(BinaryPlacementMigrator.class);
+
+    /**
+     * The user data of the events caused by the migration.
+     */
+    public static final String USER_DATA = "binary-placement-migration";
+
+    private final SessionImpl session;
+
+    private final BinaryPlacementPolicy policy;
+
+    private final DataStore store;
+
+    private long sleepBetweenNodes;
+
+    private int batchSize = 100;
+
+    private final Set<DataIdentifier> primary = new HashSet<DataIdentifier>();
+
+    private final Set<DataIdentifier> archive = new HashSet<DataIdentifier>();
+
+    private int pending;
+
+    private long inlined, stored, archived, promoted, skipped;
+
+    /**
+     * Creates a migrator that modifies binary properties using the given
+     * session.
+     *
+     * @param session the session (usually an admin session)
+     * @param policy the placement policy
+     */
+    public BinaryPlacementMigrator(SessionImpl session, BinaryPlacementPolicy policy) {
+        this.session = session;
+        this.policy = policy;
+        this.store = session.context.getDataStore();
+    }
+
+    public void setSleepBetweenNodes(long millis) {
+        this.sleepBetweenNodes = millis;
+    }
+
+    public long getSleepBetweenNodes() {
+        return sleepBetweenNodes;
+    }
+
+    /**
+     * Sets the number of modified binary properties after which the session
+     * is saved (default = 100).
+     *
+     * @param batchSize the batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of binaries moved from the data store into bundles
+     */
+    public long getInlined() {
+        return inlined;
+    }
+
+    /**
+     * @return the number of inline binaries moved to the data store
+     */
+    public long getStored() {
+        return stored;
+    }
+
+    /**
+     * @return the number of records moved to the archive data store
+     */
+    public long getArchived() {
+        return archived;
+    }
+
+    /**
+     * @return the number of records copied back to the primary data store
+     */
+    public long getPromoted() {
+        return promoted;
+    }
+
+    /**
+     * @return the number of binary properties that were not modified because
+     * they are protected, or their node is checked-in, locked, or under a
+     * hold or retention policy
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void run() {
+        try {
+            migrate();
+        } catch (RepositoryException e) {
+            log.warn("Binary placement migration failed", e);
+        }
+    }
+
+    /**
+     * Applies the placement policy to the whole workspace.
+     *
+     * @throws RepositoryException if the migration failed
+     */
+    public void migrate() throws RepositoryException {
+        migrate("/");
+    }
+
+    /**
+     * Applies the placement policy to the given subtree.
+     *
+     * @param absPath the path of the root node of the subtree
+     * @throws RepositoryException if the migration failed
+     */
+    public void migrate(String absPath) throws RepositoryException {
+        if (store == null) {
+            throw new RepositoryException("No DataStore configured.");
+        }
+        primary.clear();
+        archive.clear();
+        pending = 0;
+        ObservationManager obsMgr = session.getWorkspace().getObservationManager();
+        obsMgr.setUserData(USER_DATA);
+        try {
+            recurse(session.getNode(absPath));
+            saveBatch();
+        } finally {
+            obsMgr.setUserData(null);
+        }
+        log.info("Binary placement: {} inlined, {} stored, {} archived, {} promoted, {} skipped",
+                new Object[] { inlined, stored, archived, promoted, skipped });
+    }
+
+    /**
+     * Saves the modified properties and moves the records referenced by the
+     * properties visited since the previous batch.
+     */
+    private void saveBatch() throws RepositoryException {
+        session.save();
+        pending = 0;
+        if (store instanceof MultiDataStore) {
+            MultiDataStore multi = (MultiDataStore) store;
+            for (DataIdentifier identifier : archive) {
+                if (!primary.contains(identifier) && multi.moveToArchive(identifier)) {
+                    archived++;
+                }
+            }
+            for (DataIdentifier identifier : primary) {
+                if (multi.copyToPrimary(identifier)) {
+                    promoted++;
+                }
+            }
+        }
+        primary.clear();
+        archive.clear();
+    }
+
+    private void recurse(Node node) throws RepositoryException {
+        if (sleepBetweenNodes > 0) {
+            try {
+                Thread.sleep(sleepBetweenNodes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RepositoryException("Interrupted", e);
+            }
+        }
+        if (SYSTEM_ROOT_NODE_ID.equals(((NodeImpl) node).getNodeId())) {
+            return;
+        }
+        String mimeType = null;
+        if (node.hasProperty(JcrConstants.JCR_MIMETYPE)) {
+            mimeType = node.getProperty(JcrConstants.JCR_MIMETYPE).getString();
+        }
+        ItemValidator validator = session.context.getItemValidator();
+        Boolean modifiable = null;
+        for (PropertyIterator it = node.getProperties(); it.hasNext();) {
+            Property p = it.nextProperty();
+            if (p.getType() == PropertyType.BINARY) {
+                if (modifiable == null) {
+                    modifiable = validator.canModify((NodeImpl) node,
+                            CHECK_CHECKED_OUT | CHECK_LOCK | CHECK_HOLD | CHECK_RETENTION,
+                            Permission.NONE);
+                }
+                migrate((PropertyImpl) p, mimeType, modifiable
+                        && validator.canModify((PropertyImpl) p, CHECK_CONSTRAINTS, Permission.NONE));
+            }
+        }
+        for (NodeIterator it = node.getNodes(); it.hasNext();) {
+            recurse(it.nextNode());
+        }
+    }
+
+    private void migrate(PropertyImpl property, String mimeType, boolean modifiable)
+            throws RepositoryException {
+        InternalValue[] values;
+        if (property.isMultiple()) {
+            values = property.internalGetValues();
+        } else {
+            values = new InternalValue[] { property.internalGetValue() };
+        }
+        InternalValue[] newValues = new InternalValue[values.length];
+        boolean modified = false;
+        boolean skip = false;
+        String path = property.getPath();
+        for (int i = 0; i < values.length; i++) {
+            InternalValue v = values[i];
+            newValues[i] = v;
+            if (v == null) {
+                continue;
+            }
+            Tier tier = policy.getTier(path, mimeType, v.getLength());
+            if (!modifiable) {
+                skip |= tier == Tier.INLINE ? v.isInDataStore()
+                        : !v.isInDataStore() && v.getLength() >= store.getMinRecordLength();
+            } else if (tier == Tier.INLINE) {
+                if (v.isInDataStore()) {
+                    newValues[i] = InternalValue.create(toByteArray(v));
+                    modified = true;
+                    inlined++;
+                }
+                continue;
+            } else if (!v.isInDataStore() && v.getLength() >= store.getMinRecordLength()) {
+                InputStream in = v.getStream();
+                try {
+                    newValues[i] = InternalValue.create(in, store);
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+                modified = true;
+                stored++;
+            }
+            DataIdentifier identifier = newValues[i].getDataIdentifier();
+            if (identifier != null) {
+                if (tier == Tier.ARCHIVE) {
+                    archive.add(identifier);
+                } else {
+                    primary.add(identifier);
+                }
+            }
+        }
+        if (modified) {
+            property.internalSetValue(newValues, PropertyType.BINARY);
+            pending++;
+        } else if (skip) {
+            log.debug("Binary placement: {} is not modifiable", path);
+            skipped++;
+        }
+        if (pending >= batchSize || primary.size() + archive.size() >= batchSize) {
+            saveBatch();
+        }
+    }
+
+    private static byte[] toByteArray(InternalValue v) throws RepositoryException {
+        InputStream in = v.getStream();
+        try {
+            return IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new RepositoryException("Could not read binary value", e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+}
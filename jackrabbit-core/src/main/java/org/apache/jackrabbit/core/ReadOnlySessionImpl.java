@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core;
+
+import java.security.Principal;
+import java.util.Set;
+
+import javax.jcr.AccessDeniedException;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.lock.LockException;
+import javax.jcr.security.AccessControlException;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.AccessControlPolicy;
+import javax.jcr.security.AccessControlPolicyIterator;
+import javax.jcr.security.Privilege;
+import javax.jcr.version.VersionException;
+import javax.security.auth.Subject;
+
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlManager;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlPolicy;
+import org.apache.jackrabbit.core.config.WorkspaceConfig;
+import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.core.security.AMContext;
+import org.apache.jackrabbit.core.security.AccessManager;
+import org.apache.jackrabbit.core.security.authentication.AuthContext;
+import org.apache.jackrabbit.core.security.authorization.AccessControlProvider;
+import org.apache.jackrabbit.core.security.authorization.Permission;
+import org.apache.jackrabbit.core.security.authorization.WorkspaceAccessManager;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+
+/**
+ * Session that can only read content. It is created by
+ * {@link RepositoryImpl#login(javax.jcr.Credentials, String)} if the
+ * {@link SessionImpl#READ_ONLY} attribute is present with the credentials.
+ * <p>
+ * In contrast to the default {@link XASessionImpl} this session does not
+ * take part in transactions. It therefore uses the non-transactional item
+ * state manager and lock manager of its workspace and shares the version
+ * manager of the repository instead of creating its own transactional
+ * version manager for each session.
+ * <p>
+ * All permissions except for reading content and access control
+ * information are denied, such that any attempt to modify content, to
+ * save, to modify access control policies or to perform a workspace
+ * operation fails with an {@link AccessDeniedException}.
+ */
+public class ReadOnlySessionImpl extends SessionImpl {
+
+    /**
+     * The permissions granted to a read-only session, if granted by the
+     * access control setup.
+     */
+    private static final int READ_PERMISSIONS = Permission.READ | Permission.READ_AC;
+
+    /**
+     * Create a new instance of this class.
+     *
+     * @param repositoryContext repository context
+     * @param loginContext login context containing authenticated subject
+     * @param wspConfig    workspace configuration
+     * @throws AccessDeniedException if the subject of the given login context
+     *                               is not granted access to the specified
+     *                               workspace
+     * @throws RepositoryException   if another error occurs
+     */
+    protected ReadOnlySessionImpl(
+            RepositoryContext repositoryContext, AuthContext loginContext,
+            WorkspaceConfig wspConfig)
+            throws AccessDeniedException, RepositoryException {
+        super(repositoryContext, loginContext, wspConfig);
+    }
+
+    /**
+     * Wraps the access manager of the security manager in order to deny all
+     * modifications.
+     */
+    @Override
+    protected AccessManager createAccessManager(Subject subject)
+            throws AccessDeniedException, RepositoryException {
+        return new ReadOnlyAccessManager(super.createAccessManager(subject));
+    }
+
+    /**
+     * Returns a read-only view of the access control manager of the wrapped
+     * access manager. Policies can be read, but neither set nor removed.
+     */
+    @Override
+    public AccessControlManager getAccessControlManager()
+            throws UnsupportedRepositoryOperationException, RepositoryException {
+        AccessManager accessMgr =
+            ((ReadOnlyAccessManager) context.getAccessManager()).delegate;
+        if (accessMgr instanceof JackrabbitAccessControlManager) {
+            return new ReadOnlyJackrabbitAccessControlManager(
+                    (JackrabbitAccessControlManager) accessMgr);
+        } else if (accessMgr instanceof AccessControlManager) {
+            return new ReadOnlyAccessControlManager((AccessControlManager) accessMgr);
+        } else {
+            throw new UnsupportedRepositoryOperationException(
+                    "Access control discovery is not supported.");
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    /**
+     * Access manager that only grants read permissions and delegates their
+     * evaluation.
+     */
+    private static final class ReadOnlyAccessManager implements AccessManager {
+
+        private final AccessManager delegate;
+
+        private ReadOnlyAccessManager(AccessManager delegate) {
+            this.delegate = delegate;
+        }
+
+        private static boolean isRead(int permissions) {
+            return (permissions & ~READ_PERMISSIONS) == 0;
+        }
+
+        private static AccessDeniedException denied() {
+            return new AccessDeniedException("Session is read-only.");
+        }
+
+        public void init(AMContext context) throws AccessDeniedException, Exception {
+            delegate.init(context);
+        }
+
+        public void init(AMContext context, AccessControlProvider acProvider,
+                         WorkspaceAccessManager wspAccessMgr)
+                throws AccessDeniedException, Exception {
+            delegate.init(context, acProvider, wspAccessMgr);
+        }
+
+        public void close() throws Exception {
+            delegate.close();
+        }
+
+        @SuppressWarnings("deprecation")
+        public void checkPermission(ItemId id, int permissions)
+                throws AccessDeniedException, ItemNotFoundException, RepositoryException {
+            if (permissions != AccessManager.READ) {
+                throw denied();
+            }
+            delegate.checkPermission(id, permissions);
+        }
+
+        public void checkPermission(Path absPath, int permissions)
+                throws AccessDeniedException, RepositoryException {
+            if (!isRead(permissions)) {
+                throw denied();
+            }
+            delegate.checkPermission(absPath, permissions);
+        }
+
+        public void checkRepositoryPermission(int permissions)
+                throws AccessDeniedException, RepositoryException {
+            if (permissions != Permission.NONE) {
+                throw denied();
+            }
+            delegate.checkRepositoryPermission(permissions);
+        }
+
+        @SuppressWarnings("deprecation")
+        public boolean isGranted(ItemId id, int permissions)
+                throws ItemNotFoundException, RepositoryException {
+            return permissions == AccessManager.READ && delegate.isGranted(id, permissions);
+        }
+
+        public boolean isGranted(Path absPath, int permissions)
+                throws RepositoryException {
+            return isRead(permissions) && delegate.isGranted(absPath, permissions);
+        }
+
+        public boolean isGranted(Path parentPath, Name childName, int permissions)
+                throws RepositoryException {
+            return isRead(permissions)
+                    && delegate.isGranted(parentPath, childName, permissions);
+        }
+
+        public boolean canRead(Path itemPath, ItemId itemId)
+                throws RepositoryException {
+            return delegate.canRead(itemPath, itemId);
+        }
+
+        public boolean canAccess(String workspaceName)
+                throws RepositoryException {
+            return delegate.canAccess(workspaceName);
+        }
+    }
+
+    /**
+     * Access control manager that delegates reading policies and privileges
+     * and denies their modification.
+     */
+    private static class ReadOnlyAccessControlManager implements AccessControlManager {
+
+        private final AccessControlManager delegate;
+
+        private ReadOnlyAccessControlManager(AccessControlManager delegate) {
+            this.delegate = delegate;
+        }
+
+        public Privilege[] getSupportedPrivileges(String absPath)
+                throws PathNotFoundException, RepositoryException {
+            return delegate.getSupportedPrivileges(absPath);
+        }
+
+        public Privilege privilegeFromName(String privilegeName)
+                throws AccessControlException, RepositoryException {
+            return delegate.privilegeFromName(privilegeName);
+        }
+
+        public boolean hasPrivileges(String absPath, Privilege[] privileges)
+                throws PathNotFoundException, RepositoryException {
+            return delegate.hasPrivileges(absPath, privileges);
+        }
+
+        public Privilege[] getPrivileges(String absPath)
+                throws PathNotFoundException, RepositoryException {
+            return delegate.getPrivileges(absPath);
+        }
+
+        public AccessControlPolicy[] getPolicies(String absPath)
+                throws PathNotFoundException, AccessDeniedException, RepositoryException {
+            return delegate.getPolicies(absPath);
+        }
+
+        public AccessControlPolicy[] getEffectivePolicies(String absPath)
+                throws PathNotFoundException, AccessDeniedException, RepositoryException {
+            return delegate.getEffectivePolicies(absPath);
+        }
+
+        public AccessControlPolicyIterator getApplicablePolicies(String absPath)
+                throws PathNotFoundException, AccessDeniedException, RepositoryException {
+            return delegate.getApplicablePolicies(absPath);
+        }
+
+        public void setPolicy(String absPath, AccessControlPolicy policy)
+                throws PathNotFoundException, AccessControlException,
+                AccessDeniedException, LockException, VersionException,
+                RepositoryException {
+            throw ReadOnlyAccessManager.denied();
+        }
+
+        public void removePolicy(String absPath, AccessControlPolicy policy)
+                throws PathNotFoundException, AccessControlException,
+                AccessDeniedException, LockException, VersionException,
+                RepositoryException {
+            throw ReadOnlyAccessManager.denied();
+        }
+    }
+
+    /**
+     * Read-only view of a {@link JackrabbitAccessControlManager}.
+     */
+    private static final class ReadOnlyJackrabbitAccessControlManager
+            extends ReadOnlyAccessControlManager
+            implements JackrabbitAccessControlManager {
+
+        private final JackrabbitAccessControlManager delegate;
+
+        private ReadOnlyJackrabbitAccessControlManager(
+                JackrabbitAccessControlManager delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        public JackrabbitAccessControlPolicy[] getApplicablePolicies(Principal principal)
+                throws AccessDeniedException, AccessControlException,
+                UnsupportedRepositoryOperationException, RepositoryException {
+            return delegate.getApplicablePolicies(principal);
+        }
+
+        public JackrabbitAccessControlPolicy[] getPolicies(Principal principal)
+                throws AccessDeniedException, AccessControlException,
+                UnsupportedRepositoryOperationException, RepositoryException {
+            return delegate.getPolicies(principal);
+        }
+
+        public AccessControlPolicy[] getEffectivePolicies(Set<Principal> principals)
+                throws AccessDeniedException, AccessControlException,
+                UnsupportedRepositoryOperationException, RepositoryException {
+            return delegate.getEffectivePolicies(principals);
+        }
+
+        public boolean hasPrivileges(String absPath, Set<Principal> principals,
+                                     Privilege[] privileges)
+                throws PathNotFoundException, AccessDeniedException, RepositoryException {
+            return delegate.hasPrivileges(absPath, principals, privileges);
+        }
+
+        public Privilege[] getPrivileges(String absPath, Set<Principal> principals)
+                throws PathNotFoundException, AccessDeniedException, RepositoryException {
+            return delegate.getPrivileges(absPath, principals);
+        }
+    }
+}
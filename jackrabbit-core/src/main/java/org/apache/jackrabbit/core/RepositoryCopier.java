@@ -30,7 +30,10 @@ import org.apache.jackrabbit.core.config.RepositoryConfig;
 import org.apache.jackrabbit.core.lock.LockManagerImpl;
 import org.apache.jackrabbit.core.nodetype.InvalidNodeTypeDefException;
 import org.apache.jackrabbit.core.nodetype.NodeTypeRegistry;
+import org.apache.jackrabbit.core.persistence.CopyCheckpoint;
+import org.apache.jackrabbit.core.persistence.IterablePersistenceManager;
 import org.apache.jackrabbit.core.persistence.PersistenceCopier;
+import org.apache.jackrabbit.core.persistence.PersistenceManager;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.QNodeTypeDefinition;
 import org.slf4j.Logger;
@@ -48,6 +51,13 @@ import org.slf4j.LoggerFactory;
  * The static copy() methods will remove the target search index folders from
  * their default locations to trigger automatic reindexing when the repository
  * is next started.
+ * <p>
+ * By default the content is copied by recursively traversing the node
+ * hierarchy in a single thread. If {@link #setThreads(int) threads} or a
+ * {@link #setCheckpoint(File) checkpoint} is set, the nodes of iterable
+ * persistence managers are instead copied in batches of node identifiers,
+ * split among the threads, and an interrupted copy resumes after the last
+ * completed batch. See {@link PersistenceCopier#copyAll()}.
  *
  * @since Apache Jackrabbit 1.6
  */
@@ -69,6 +79,26 @@ public class RepositoryCopier {
      */
     private final RepositoryContext target;
 
+    /**
+     * Number of threads that copy nodes concurrently.
+     */
+    private int threads = 1;
+
+    /**
+     * Progress file, or <code>null</code> if the copy can not be resumed.
+     */
+    private File checkpointFile;
+
+    /**
+     * Whether the copied nodes are verified.
+     */
+    private boolean verify;
+
+    /**
+     * Progress of the copy operation, while it is running.
+     */
+    private CopyCheckpoint checkpoint;
+
     /**
      * Copies the contents of the repository in the given source directory
      * to a repository in the given target directory.
@@ -183,6 +213,37 @@ public class RepositoryCopier {
         this.target = target.getRepositoryContext();
     }
 
+    /**
+     * Sets the number of threads that copy nodes concurrently. The default
+     * is 1.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the file in which the progress of the copy operation is
+     * recorded. If the copy operation fails, running it again with the
+     * same file resumes it. The file is deleted once the copy completes.
+     *
+     * @param checkpointFile the progress file
+     */
+    public void setCheckpoint(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Sets whether each copied node is verified by comparing the checksums
+     * of the source and the target node.
+     *
+     * @param verify whether to verify the copied nodes
+     */
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
     /**
      * Copies the full content from the source to the target repository.
      * <p>
@@ -203,13 +264,55 @@ public class RepositoryCopier {
                 source.getRepository().repConfig.getHomeDir(),
                 target.getRepository().repConfig.getHomeDir());
         try {
+            if (checkpointFile != null) {
+                checkpoint = openCheckpoint(checkpointFile);
+            }
             copyNamespaces();
             copyNodeTypes();
             copyVersionStore();
             copyWorkspaces();
+            if (checkpoint != null) {
+                checkpoint.delete();
+            }
         } catch (Exception e) {
             throw new RepositoryException("Failed to copy content", e);
+        } finally {
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * Opens the checkpoint stored in the given file. Tests override this
+     * method to interrupt the copy after a recorded batch.
+     *
+     * @param file the progress file
+     * @return the checkpoint
+     * @throws RepositoryException if the file can not be read
+     */
+    CopyCheckpoint openCheckpoint(File file) throws RepositoryException {
+        return new CopyCheckpoint(file);
+    }
+
+    /**
+     * Returns whether the given persistence manager is copied in batches
+     * of node identifiers instead of recursively.
+     */
+    private boolean isBatchCopy(PersistenceManager pm) {
+        return (threads > 1 || checkpoint != null)
+                && pm instanceof IterablePersistenceManager;
+    }
+
+    private PersistenceCopier createCopier(
+            PersistenceManager sourcePM, PersistenceManager targetPM,
+            String key) {
+        PersistenceCopier copier =
+            new PersistenceCopier(sourcePM, targetPM, target.getDataStore());
+        copier.setThreads(threads);
+        copier.setVerify(verify);
+        if (checkpoint != null) {
+            copier.setCheckpoint(checkpoint, key);
         }
+        return copier;
     }
 
     private void copyNamespaces() throws RepositoryException {
@@ -250,12 +353,19 @@ public class RepositoryCopier {
 
     private void copyVersionStore() throws RepositoryException {
         logger.info("Copying version histories");
-        PersistenceCopier copier = new PersistenceCopier(
-                source.getInternalVersionManager().getPersistenceManager(),
+        PersistenceManager sourcePM =
+            source.getInternalVersionManager().getPersistenceManager();
+        PersistenceCopier copier = createCopier(
+                sourcePM,
                 target.getInternalVersionManager().getPersistenceManager(),
-                target.getDataStore());
-        copier.copy(RepositoryImpl.VERSION_STORAGE_NODE_ID);
-        copier.copy(RepositoryImpl.ACTIVITIES_NODE_ID);
+                "versions");
+        if (isBatchCopy(sourcePM)) {
+            // the version store only contains these two subtrees
+            copier.copyAll();
+        } else {
+            copier.copy(RepositoryImpl.VERSION_STORAGE_NODE_ID);
+            copier.copy(RepositoryImpl.ACTIVITIES_NODE_ID);
+        }
     }
 
     private void copyWorkspaces() throws RepositoryException {
@@ -269,12 +379,18 @@ public class RepositoryCopier {
             }
 
             // Copy all the workspace content
-            PersistenceCopier copier = new PersistenceCopier(
-                    source.getRepository().getWorkspaceInfo(name).getPersistenceManager(),
+            PersistenceManager sourcePM =
+                source.getRepository().getWorkspaceInfo(name).getPersistenceManager();
+            PersistenceCopier copier = createCopier(
+                    sourcePM,
                     target.getRepository().getWorkspaceInfo(name).getPersistenceManager(),
-                    target.getDataStore());
+                    "workspace." + name);
             copier.excludeNode(RepositoryImpl.SYSTEM_ROOT_NODE_ID);
-            copier.copy(RepositoryImpl.ROOT_NODE_ID);
+            if (isBatchCopy(sourcePM)) {
+                copier.copyAll();
+            } else {
+                copier.copy(RepositoryImpl.ROOT_NODE_ID);
+            }
 
             // Copy all the active open-scoped locks
             LockManagerImpl sourceLockManager =
@@ -70,6 +70,8 @@ import org.apache.jackrabbit.core.config.RepositoryConfig;
 import org.apache.jackrabbit.core.config.SecurityManagerConfig;
 import org.apache.jackrabbit.core.config.VersioningConfig;
 import org.apache.jackrabbit.core.config.WorkspaceConfig;
+import org.apache.jackrabbit.core.data.AbstractDataStore;
+import org.apache.jackrabbit.core.data.BinaryCache;
 import org.apache.jackrabbit.core.data.DataStore;
 import org.apache.jackrabbit.core.data.DataStoreException;
 import org.apache.jackrabbit.core.fs.FileSystem;
@@ -281,6 +283,14 @@ public class RepositoryImpl extends AbstractRepository
             DataStore dataStore = repConfig.getDataStore();
             if (dataStore != null) {
                 context.setDataStore(dataStore);
+                if (dataStore instanceof AbstractDataStore) {
+                    BinaryCache binaryCache =
+                        ((AbstractDataStore) dataStore).getBinaryCache();
+                    if (binaryCache != null) {
+                        binaryCache.setRepositoryStatistics(
+                                context.getRepositoryStatistics());
+                    }
+                }
             }
 
             nodeIdFactory = new NodeIdFactory(repConfig.getHomeDir());
@@ -952,8 +962,40 @@ public class RepositoryImpl extends AbstractRepository
                                               String workspaceName)
             throws NoSuchWorkspaceException, AccessDeniedException,
             RepositoryException {
+        return createSession(loginContext, workspaceName, false);
+    }
+
+    /**
+     * Creates a new repository session on the specified workspace for the
+     * <b><i>authenticated</i></b> subject of the given login context and
+     * adds it to the <i>active</i> sessions.
+     * <p>
+     * Calls {@link #createReadOnlySessionInstance(AuthContext, WorkspaceConfig)}
+     * or {@link #createSessionInstance(AuthContext, WorkspaceConfig)} to
+     * create the actual <code>SessionImpl</code> instance.
+     *
+     * @param loginContext  login context with authenticated subject
+     * @param workspaceName workspace name
+     * @param readOnly      whether a read-only session should be created
+     * @return a new session
+     * @throws NoSuchWorkspaceException if the specified workspace does not exist
+     * @throws AccessDeniedException    if the subject of the given login context
+     *                                  is not granted access to the specified
+     *                                  workspace
+     * @throws RepositoryException      if another error occurs
+     */
+    protected final SessionImpl createSession(AuthContext loginContext,
+                                              String workspaceName,
+                                              boolean readOnly)
+            throws NoSuchWorkspaceException, AccessDeniedException,
+            RepositoryException {
         WorkspaceInfo wspInfo = getWorkspaceInfo(workspaceName);
-        SessionImpl ses = createSessionInstance(loginContext, wspInfo.getConfig());
+        SessionImpl ses;
+        if (readOnly) {
+            ses = createReadOnlySessionInstance(loginContext, wspInfo.getConfig());
+        } else {
+            ses = createSessionInstance(loginContext, wspInfo.getConfig());
+        }
         onSessionCreated(ses);
         // reset idle timestamp
         wspInfo.setIdleTimestamp(0);
@@ -1498,7 +1540,8 @@ public class RepositoryImpl extends AbstractRepository
             authCtx.login();
 
             // create session, and add SimpleCredentials attributes (JCR-1932)
-            SessionImpl session = createSession(authCtx, workspaceName);
+            SessionImpl session = createSession(
+                    authCtx, workspaceName, isReadOnlyLogin(credentials));
             if (credentials instanceof SimpleCredentials) {
                 SimpleCredentials sc = (SimpleCredentials) credentials;
                 for (String name : sc.getAttributeNames()) {
@@ -1532,6 +1575,23 @@ public class RepositoryImpl extends AbstractRepository
         }
     }
 
+    /**
+     * Returns <code>true</code> if the {@link SessionImpl#READ_ONLY} attribute
+     * is present with the given credentials.
+     *
+     * @param credentials the login credentials, or <code>null</code>
+     * @return whether a read-only session should be created
+     */
+    private static boolean isReadOnlyLogin(Credentials credentials) {
+        if (credentials instanceof SimpleCredentials) {
+            return ((SimpleCredentials) credentials).getAttribute(SessionImpl.READ_ONLY) != null;
+        } else if (credentials instanceof TokenCredentials) {
+            return ((TokenCredentials) credentials).getAttribute(SessionImpl.READ_ONLY) != null;
+        } else {
+            return false;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1613,6 +1673,24 @@ public class RepositoryImpl extends AbstractRepository
         return new XASessionImpl(context, loginContext, wspConfig);
     }
 
+    /**
+     * Creates a new read-only session instance for the workspace of the
+     * given configuration.
+     *
+     * @param loginContext login context containing authenticated subject
+     * @param wspConfig    workspace configuration
+     * @return a new read-only session
+     * @throws AccessDeniedException if the subject of the given login context
+     *                               is not granted access to the specified
+     *                               workspace
+     * @throws RepositoryException   if another error occurs
+     */
+    protected SessionImpl createReadOnlySessionInstance(AuthContext loginContext,
+                                                        WorkspaceConfig wspConfig)
+            throws AccessDeniedException, RepositoryException {
+        return new ReadOnlySessionImpl(context, loginContext, wspConfig);
+    }
+
     /**
      * Creates an instance of the {@link SessionImpl} class representing a
      * user represented by the <code>subject</code> instance attached
@@ -138,6 +138,17 @@ public class SessionImpl extends AbstractSession
     public static final String AUTO_FIX_CORRUPTIONS =
         "org.apache.jackrabbit.autoFixCorruptions";
 
+    /**
+     * Name of the credentials attribute that requests a read-only session.
+     * If an attribute with this name is present (any non-null value) with
+     * the <code>SimpleCredentials</code> or <code>TokenCredentials</code>
+     * passed to {@link RepositoryImpl#login(javax.jcr.Credentials, String)},
+     * a {@link ReadOnlySessionImpl} is created that does not take part in
+     * transactions and denies all modifications.
+     */
+    public static final String READ_ONLY =
+        "org.apache.jackrabbit.readOnly";
+
     private static Logger log = LoggerFactory.getLogger(SessionImpl.class);
 
     /**
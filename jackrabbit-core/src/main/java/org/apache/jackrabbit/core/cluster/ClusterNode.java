@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.core.cluster;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -114,6 +115,11 @@ public class ClusterNode implements Runnable,
      */
     private Journal journal;
 
+    /**
+     * Index over the change log records of the journal.
+     */
+    private EventJournalIndex eventJournalIndex;
+
     /**
      * Synchronization thread.
      */
@@ -229,6 +235,13 @@ public class ClusterNode implements Runnable,
         try {
             journal = cc.getJournal(clusterContext.getNamespaceResolver());
             instanceRevision = journal.getInstanceRevision();
+            File home = clusterContext.getRepositoryHome();
+            String journalId = journal instanceof AbstractJournal
+                    ? ((AbstractJournal) journal).getStorageId()
+                    : journal.getClass().getName();
+            eventJournalIndex = new EventJournalIndex(
+                    home != null ? new File(home, EventJournalIndex.FILE_NAME) : null,
+                    journalId, instanceRevision.get());
             journal.register(this);
             producer = journal.getProducer(PRODUCER_ID);
         } catch (RepositoryException e) {
@@ -301,6 +314,8 @@ public class ClusterNode implements Runnable,
             }
             try {
                 sync();
+                // write the index outside the journal lock
+                eventJournalIndex.flush();
             } catch (ClusterException e) {
                 String msg = "Periodic sync of journal failed: " + e.getMessage();
                 log.error(msg, e);
@@ -390,6 +405,9 @@ public class ClusterNode implements Runnable,
             if (instanceRevision != null) {
                 instanceRevision.close();
             }
+            if (eventJournalIndex != null) {
+                eventJournalIndex.close();
+            }
         }
     }
 
@@ -422,6 +440,15 @@ public class ClusterNode implements Runnable,
         return journal;
     }
 
+    /**
+     * Return the index over the change log records of the journal.
+     *
+     * @return event journal index
+     */
+    public EventJournalIndex getEventJournalIndex() {
+        return eventJournalIndex;
+    }
+
     //-----------------------------------------------< NamespaceEventListener >
 
     /**
@@ -702,6 +729,8 @@ public class ClusterNode implements Runnable,
                 setRevision(recordRevision);
 
                 long journalUpdateSize = record.update();
+                eventJournalIndex.add(recordRevision, update.getTimestamp(),
+                        workspace, update.getEvents());
 
                 log.debug("Stored record '{}' to Journal ({})", recordRevision, journalUpdateSize);
 
@@ -883,6 +912,8 @@ public class ClusterNode implements Runnable,
      */
     public void process(ChangeLogRecord record) {
         String workspace = record.getWorkspace();
+        eventJournalIndex.add(record.getRevision(), record.getTimestamp(),
+                workspace, record.getEvents());
 
         UpdateEventListener listener = null;
         if (workspace != null) {
@@ -0,0 +1,594 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.observation.EventState;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Secondary index over the change log records of the cluster journal. For
+ * each record the index keeps the revision, the timestamp, the workspace, the
+ * union of the event types and the deepest common ancestor of the parent
+ * paths of the events. It is maintained by the {@link ClusterNode} whenever a
+ * change log record is written or consumed and allows the event journal to
+ * seek to a point in time with a binary search and to skip records without
+ * deserializing them.
+ * <p>
+ * The entries are kept in memory and appended to a file in the repository
+ * home by {@link #flush()}, which the cluster node calls outside the journal
+ * lock. The file starts with the identifier of the journal and the revision
+ * of its first entry and is loaded again on startup. It is discarded if it
+ * belongs to another journal or refers to revisions the cluster node has
+ * not seen yet, e.g. because the journal was reset. Records that were written
+ * before the index existed, or that were dropped from the index to limit its
+ * size, are simply not covered.
+ */
+public class EventJournalIndex {
+
+    /**
+     * Logger instance for this class
+     */
+    private static final Logger log = LoggerFactory.getLogger(EventJournalIndex.class);
+
+    /**
+     * Name of the index file in the repository home.
+     */
+    public static final String FILE_NAME = "eventjournal.idx";
+
+    /**
+     * Marks the start of an index file.
+     */
+    private static final int MAGIC = 0x454a4958;
+
+    /**
+     * Maximum number of entries kept in the index. When exceeded, the oldest
+     * half of the entries is discarded.
+     */
+    private static final int MAX_ENTRIES =
+            Integer.getInteger("jackrabbit.eventJournalIndex.maxEntries", 1000000);
+
+    /**
+     * The index file or <code>null</code> if the index is kept in memory only.
+     */
+    private final File file;
+
+    /**
+     * Identifies the journal the index belongs to.
+     */
+    private final String journalId;
+
+    /**
+     * The entries, ordered by revision.
+     */
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * The entries not yet written to {@link #file}.
+     */
+    private final List<Entry> pending = new ArrayList<Entry>();
+
+    /**
+     * Whether {@link #file} must be rewritten from scratch on the next flush.
+     */
+    private boolean rewrite;
+
+    /**
+     * Serializes the writes to {@link #file}, guards {@link #out}.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Stream to append entries to {@link #file}.
+     */
+    private DataOutputStream out;
+
+    /**
+     * Creates a new index and loads the entries stored in <code>file</code>,
+     * unless they do not belong to the given journal.
+     *
+     * @param file      the index file or <code>null</code> to keep the index
+     *                  in memory only.
+     * @param journalId identifies the journal, see
+     *                  {@link org.apache.jackrabbit.core.journal.AbstractJournal#getStorageId()}.
+     * @param revision  the revision of the cluster node in the journal. An
+     *                  index with entries of later revisions is discarded.
+     */
+    public EventJournalIndex(File file, String journalId, long revision) {
+        this.file = file;
+        this.journalId = journalId;
+        if (file != null) {
+            load(revision);
+        }
+    }
+
+    /**
+     * Adds a change log record to the index. Records with a revision lower
+     * than or equal to the last indexed revision are ignored.
+     *
+     * @param revision  the revision of the record.
+     * @param timestamp the timestamp of the record.
+     * @param workspace the workspace of the record or <code>null</code> for
+     *                  the version storage.
+     * @param events    the events of the record.
+     */
+    public synchronized void add(long revision, long timestamp,
+                                 String workspace, List<EventState> events) {
+        if (!entries.isEmpty()
+                && entries.get(entries.size() - 1).revision >= revision) {
+            return;
+        }
+        int eventTypes = 0;
+        Path path = null;
+        try {
+            for (EventState state : events) {
+                eventTypes |= state.getType();
+                Path parentPath = state.getParentPath();
+                if (state.getType() == Event.PERSIST || parentPath == null) {
+                    continue;
+                }
+                path = path == null ? parentPath : getCommonAncestor(path, parentPath);
+            }
+        } catch (RepositoryException e) {
+            log.warn("Unable to index revision " + revision, e);
+            return;
+        }
+        Entry entry = new Entry(revision, timestamp, workspace, eventTypes, path);
+        if (!entries.isEmpty()) {
+            entry.maxTimestamp = Math.max(entry.timestamp,
+                    entries.get(entries.size() - 1).maxTimestamp);
+        }
+        entries.add(entry);
+        if (entries.size() > MAX_ENTRIES) {
+            entries.subList(0, entries.size() / 2).clear();
+            rewrite = true;
+        }
+        if (file == null) {
+            return;
+        }
+        if (rewrite) {
+            pending.clear();
+        } else {
+            pending.add(entry);
+        }
+    }
+
+    /**
+     * Returns the revision to start reading the journal from in order to get
+     * all records with a timestamp greater than <code>date</code>.
+     *
+     * @param date a point in time.
+     * @return the revision or <code>null</code> if the index does not cover
+     *         that point in time.
+     */
+    public synchronized Long getSkipRevision(long date) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries.get(mid).maxTimestamp <= date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == 0) {
+            // the first indexed record already is newer, but older records
+            // that are not indexed may exist as well
+            return null;
+        }
+        return new Long(entries.get(low - 1).revision);
+    }
+
+    /**
+     * Returns the entry for the record with the given revision.
+     *
+     * @param revision the revision of a record.
+     * @return the entry or <code>null</code> if the record is not indexed.
+     */
+    public synchronized Entry get(long revision) {
+        int low = 0;
+        int high = entries.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long r = entries.get(mid).revision;
+            if (r < revision) {
+                low = mid + 1;
+            } else if (r > revision) {
+                high = mid - 1;
+            } else {
+                return entries.get(mid);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the entries added since the last flush to the index file, or
+     * rewrites the file if entries were dropped. The index remains usable
+     * while the file is written.
+     */
+    public void flush() {
+        if (file == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            List<Entry> write;
+            boolean full;
+            synchronized (this) {
+                full = rewrite;
+                write = new ArrayList<Entry>(full ? entries : pending);
+                rewrite = false;
+                pending.clear();
+            }
+            boolean written;
+            if (full) {
+                written = writeAll(write);
+            } else {
+                written = write.isEmpty() || append(write);
+            }
+            if (!written) {
+                synchronized (this) {
+                    rewrite = true;
+                    pending.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the index file.
+     */
+    public void close() {
+        flush();
+        synchronized (writeLock) {
+            IOUtils.closeQuietly(out);
+            out = null;
+        }
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    /**
+     * Returns the deepest common ancestor of two normalized absolute paths.
+     */
+    private static Path getCommonAncestor(Path a, Path b)
+            throws RepositoryException {
+        int depth = Math.min(a.getDepth(), b.getDepth());
+        Path pa = a.getAncestor(a.getDepth() - depth);
+        Path pb = b.getAncestor(b.getDepth() - depth);
+        while (!pa.equals(pb)) {
+            pa = pa.getAncestor(1);
+            pb = pb.getAncestor(1);
+        }
+        return pa;
+    }
+
+    /**
+     * Appends entries to the index file, starting a new file with a header
+     * if none exists.
+     *
+     * @return <code>false</code> if the entries could not be written.
+     */
+    private boolean append(List<Entry> write) {
+        try {
+            if (out == null) {
+                boolean header = !file.exists() || file.length() == 0;
+                out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(file, true)));
+                if (header) {
+                    writeHeader(out, write.get(0).revision);
+                }
+            }
+            for (Entry entry : write) {
+                entry.write(out);
+            }
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            log.warn("Unable to write event journal index " + file, e);
+            IOUtils.closeQuietly(out);
+            out = null;
+            return false;
+        }
+    }
+
+    private void writeHeader(DataOutputStream out, long firstRevision)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(journalId);
+        out.writeLong(firstRevision);
+    }
+
+    /**
+     * Loads the entries from the index file. An incomplete last entry, as
+     * left behind by a crash, is truncated. The file is discarded if it
+     * belongs to another journal or has entries of later revisions than the
+     * given one.
+     */
+    private void load(long revision) {
+        if (!file.exists()) {
+            return;
+        }
+        long valid = 0;
+        long firstRevision = -1;
+        String mismatch = null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                mismatch = "unknown format";
+                return;
+            }
+            String id = in.readUTF();
+            if (!id.equals(journalId)) {
+                mismatch = "index of journal " + id;
+                return;
+            }
+            firstRevision = in.readLong();
+            valid = 4 + 2 + Entry.utfLength(id) + 8;
+            for (;;) {
+                Entry entry = Entry.read(in);
+                if (entry == null) {
+                    break;
+                }
+                if (!entries.isEmpty()) {
+                    entry.maxTimestamp = Math.max(entry.timestamp,
+                            entries.get(entries.size() - 1).maxTimestamp);
+                }
+                entries.add(entry);
+                valid += entry.size;
+            }
+        } catch (EOFException e) {
+            if (firstRevision == -1) {
+                mismatch = "incomplete header";
+            } else {
+                log.info("Truncating incomplete entry of event journal index {}", file);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read event journal index " + file, e);
+        } catch (IllegalArgumentException e) {
+            log.warn("Corrupt entry in event journal index " + file, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+            if (mismatch == null && !entries.isEmpty()) {
+                if (entries.get(0).revision != firstRevision) {
+                    mismatch = "first revision " + entries.get(0).revision
+                            + " instead of " + firstRevision;
+                } else if (entries.get(entries.size() - 1).revision > revision) {
+                    mismatch = "revisions after " + revision;
+                }
+            }
+            if (mismatch != null) {
+                log.info("Discarding event journal index {}: {}", file, mismatch);
+                entries.clear();
+                if (!file.delete()) {
+                    log.warn("Unable to delete event journal index {}", file);
+                }
+            }
+        }
+        if (mismatch != null) {
+            return;
+        }
+        if (valid < file.length()) {
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(file, "rw");
+                raf.setLength(valid);
+            } catch (IOException e) {
+                log.warn("Unable to truncate event journal index " + file, e);
+            } finally {
+                IOUtils.closeQuietly(raf);
+            }
+        }
+        log.debug("Loaded {} entries from event journal index", entries.size());
+    }
+
+    /**
+     * Writes the given entries to a new index file.
+     *
+     * @return <code>false</code> if the file could not be replaced.
+     */
+    private boolean writeAll(List<Entry> write) {
+        IOUtils.closeQuietly(out);
+        out = null;
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream o = null;
+        try {
+            o = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            if (!write.isEmpty()) {
+                writeHeader(o, write.get(0).revision);
+            }
+            for (Entry entry : write) {
+                entry.write(o);
+            }
+            o.close();
+            o = null;
+            if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+                log.warn("Unable to replace event journal index {}", file);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Unable to rewrite event journal index " + file, e);
+            return false;
+        } finally {
+            IOUtils.closeQuietly(o);
+        }
+    }
+
+    /**
+     * Index entry of a single change log record.
+     */
+    public static final class Entry {
+
+        private final long revision;
+
+        private final long timestamp;
+
+        /**
+         * Maximum timestamp of this and all preceding entries. Timestamps of
+         * records written by different cluster nodes are not necessarily
+         * ordered by revision.
+         */
+        private long maxTimestamp;
+
+        private final String workspace;
+
+        private final int eventTypes;
+
+        private final Path path;
+
+        /**
+         * Number of bytes of the serialized entry.
+         */
+        private int size;
+
+        private Entry(long revision, long timestamp, String workspace,
+                      int eventTypes, Path path) {
+            this.revision = revision;
+            this.timestamp = timestamp;
+            this.maxTimestamp = timestamp;
+            this.workspace = workspace;
+            this.eventTypes = eventTypes;
+            this.path = path;
+        }
+
+        /**
+         * @return the workspace of the record or <code>null</code> for the
+         *         version storage.
+         */
+        public String getWorkspace() {
+            return workspace;
+        }
+
+        /**
+         * Returns <code>true</code> if events of the record may pass a filter
+         * with the given event types and paths.
+         *
+         * @param types  the event types of the filter.
+         * @param paths  the paths of the filter.
+         * @param isDeep whether the filter includes descendants of the paths.
+         * @return <code>false</code> if no event of the record can pass the
+         *         filter.
+         */
+        public boolean matches(long types, Iterable<Path> paths, boolean isDeep) {
+            if ((types & eventTypes & Event.PERSIST) != 0) {
+                // persist events are not filtered by path
+                return true;
+            }
+            if ((types & eventTypes & ~Event.PERSIST) == 0 || path == null) {
+                return false;
+            }
+            try {
+                for (Path p : paths) {
+                    if (path.equals(p) || path.isAncestorOf(p)
+                            || isDeep && p.isAncestorOf(path)) {
+                        return true;
+                    }
+                }
+            } catch (RepositoryException e) {
+                return true;
+            }
+            return false;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            int start = out.size();
+            out.writeLong(revision);
+            out.writeLong(timestamp);
+            out.writeInt(eventTypes);
+            out.writeBoolean(workspace != null);
+            if (workspace != null) {
+                out.writeUTF(workspace);
+            }
+            out.writeBoolean(path != null);
+            if (path != null) {
+                out.writeUTF(path.getString());
+            }
+            size = out.size() - start;
+        }
+
+        /**
+         * Reads an entry.
+         *
+         * @return the entry or <code>null</code> at the end of the stream.
+         * @throws EOFException if the stream ends within the entry.
+         */
+        private static Entry read(DataInputStream in) throws IOException {
+            in.mark(8);
+            if (in.read() == -1) {
+                return null;
+            }
+            in.reset();
+            int size = 8 + 8 + 4 + 1 + 1;
+            long revision = in.readLong();
+            long timestamp = in.readLong();
+            int eventTypes = in.readInt();
+            String workspace = null;
+            if (in.readBoolean()) {
+                workspace = in.readUTF();
+                size += 2 + utfLength(workspace);
+            }
+            Path path = null;
+            if (in.readBoolean()) {
+                String s = in.readUTF();
+                size += 2 + utfLength(s);
+                path = PathFactoryImpl.getInstance().create(s);
+            }
+            Entry entry = new Entry(revision, timestamp, workspace, eventTypes, path);
+            entry.size = size;
+            return entry;
+        }
+
+        private static int utfLength(String s) {
+            int length = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    length++;
+                } else if (c > 0x07FF) {
+                    length += 3;
+                } else {
+                    length += 2;
+                }
+            }
+            return length;
+        }
+    }
+}
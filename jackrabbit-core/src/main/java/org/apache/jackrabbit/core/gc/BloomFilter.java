@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.gc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe bloom filter for strings, used by the garbage collector to
+ * remember the referenced data identifiers. A bloom filter may report that it
+ * contains a string that was never added, which only means that some unused
+ * records are not collected, but never that it does not contain a string that
+ * was added.
+ */
+class BloomFilter {
+
+    /**
+     * The bits, set concurrently.
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Number of bits.
+     */
+    private final long bitCount;
+
+    /**
+     * Number of hash functions.
+     */
+    private final int hashCount;
+
+    /**
+     * Creates a bloom filter sized for the expected number of strings and
+     * false positive probability.
+     *
+     * @param expected    the expected number of strings.
+     * @param probability the false positive probability, between 0 and 1.
+     */
+    BloomFilter(long expected, double probability) {
+        expected = Math.max(expected, 1);
+        long bitCount = (long) Math.ceil(
+                -expected * Math.log(probability) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min((bitCount + 63) / 64, Integer.MAX_VALUE);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round(
+                (double) this.bitCount / expected * Math.log(2)));
+    }
+
+    /**
+     * Adds a string.
+     *
+     * @param s the string.
+     */
+    void add(String s) {
+        long h1 = hash1(s);
+        long h2 = hash2(s);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old = bits.get(word);
+            while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask)) {
+                old = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * Returns <code>false</code> if the string was definitely not added.
+     *
+     * @param s the string.
+     * @return whether the string may have been added.
+     */
+    boolean mightContain(String s) {
+        long h1 = hash1(s);
+        long h2 = hash2(s);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(long hash) {
+        return (hash & Long.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the characters.
+     */
+    private static long hash1(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * The string hash code, spread over 64 bits. Always odd, so that the
+     * probe sequence does not degenerate.
+     */
+    private static long hash2(String s) {
+        long h = s.hashCode() * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 32;
+        return h | 1;
+    }
+}
@@ -20,7 +20,9 @@ import org.apache.jackrabbit.api.management.DataStoreGarbageCollector;
 import org.apache.jackrabbit.api.management.MarkEventListener;
 import org.apache.jackrabbit.core.RepositoryContext;
 import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.data.DataIdentifier;
 import org.apache.jackrabbit.core.data.DataStore;
+import org.apache.jackrabbit.core.data.GarbageCollectionAware;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.id.PropertyId;
 import org.apache.jackrabbit.core.observation.SynchronousEventListener;
@@ -36,10 +38,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.InvalidItemStateException;
 import javax.jcr.Item;
@@ -95,6 +105,29 @@ public class GarbageCollector implements DataStoreGarbageCollector {
      */
     private static final boolean NODE_ID_SCAN = Boolean.getBoolean("org.apache.jackrabbit.garbagecollector.node_id.scan");
 
+    /**
+     * The default number of threads loading nodes in a persistence manager scan.
+     */
+    private static final int SCAN_THREADS = Integer.getInteger("org.apache.jackrabbit.garbagecollector.threads", 1);
+
+    /**
+     * Set this System Property to true to collect the referenced identifiers in
+     * a bloom filter instead of updating the modified date of every record.
+     */
+    private static final boolean IDENTIFIER_SCAN = Boolean.getBoolean("org.apache.jackrabbit.garbagecollector.identifier.scan");
+
+    /**
+     * The expected number of referenced records the bloom filter is sized for.
+     * More records only increase the number of unused records that are kept.
+     */
+    private static final int EXPECTED_RECORDS = Integer.getInteger("org.apache.jackrabbit.garbagecollector.identifier.expected", 10000000);
+
+    /**
+     * The false positive probability of the bloom filter, that is the
+     * probability that an unused record is not deleted.
+     */
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
     private MarkEventListener callback;
 
     private long sleepBetweenNodes;
@@ -117,6 +150,22 @@ public class GarbageCollector implements DataStoreGarbageCollector {
 
     private boolean persistenceManagerScan;
 
+    private int scanThreads = SCAN_THREADS;
+
+    private boolean identifierScan = IDENTIFIER_SCAN;
+
+    /**
+     * The identifiers of the referenced records if an identifier scan is
+     * running, or <code>null</code>.
+     */
+    private BloomFilter marked;
+
+    /**
+     * Loads the nodes in a persistence manager scan, or <code>null</code>
+     * to load them on the calling thread.
+     */
+    private ExecutorService executor;
+
     private volatile RepositoryException observationException;
 
     /**
@@ -176,6 +225,12 @@ public class GarbageCollector implements DataStoreGarbageCollector {
                 scanNodes(s);
             }
         } else {
+            if (identifierScan && store instanceof GarbageCollectionAware && marked == null) {
+                marked = new BloomFilter(EXPECTED_RECORDS, FALSE_POSITIVE_PROBABILITY);
+            }
+            if (scanThreads > 1) {
+                executor = Executors.newFixedThreadPool(scanThreads, new ScanThreadFactory());
+            }
             try {
                 if (!NODE_ID_SCAN) {
                     scanPersistenceManagersByNodeInfos();
@@ -184,6 +239,11 @@ public class GarbageCollector implements DataStoreGarbageCollector {
                 }
             } catch (ItemStateException e) {
                 throw new RepositoryException(e);
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
+                    executor = null;
+                }
             }
         }
     }
@@ -207,11 +267,41 @@ public class GarbageCollector implements DataStoreGarbageCollector {
         return persistenceManagerScan;
     }
 
+    /**
+     * Set the number of threads loading nodes in a persistence manager scan.
+     *
+     * @param threads the number of threads, 1 to load them on the calling thread
+     */
+    public void setScanThreads(int threads) {
+        scanThreads = threads;
+    }
+
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    /**
+     * Enable or disable the identifier scan. If enabled, a persistence manager
+     * scan collects the identifiers of the referenced records instead of
+     * updating their modified date. It is only used if the data store
+     * implements {@link GarbageCollectionAware}.
+     *
+     * @param identifierScan whether to collect the referenced identifiers
+     */
+    public void setIdentifierScan(boolean identifierScan) {
+        this.identifierScan = identifierScan;
+    }
+
+    public boolean isIdentifierScan() {
+        return identifierScan;
+    }
+
     private void scanPersistenceManagersByNodeInfos() throws RepositoryException, ItemStateException {
         int pmCount = 0;
         for (IterablePersistenceManager pm : pmList) {
             pmCount++;
             int count = 0;
+            List<NodeId> withBlobs = new ArrayList<NodeId>();
             Map<NodeId,NodeInfo> batch = pm.getAllNodeInfos(null, NODESATONCE);
             while (!batch.isEmpty()) {
                 NodeId lastId = null;
@@ -225,25 +315,11 @@ public class GarbageCollector implements DataStoreGarbageCollector {
                         callback.beforeScanning(null);
                     }
                     if (info.hasBlobsInDataStore()) {
-                        try {
-                            NodeState state = pm.load(info.getId());
-                            Set<Name> propertyNames = state.getPropertyNames();
-                            for (Name name : propertyNames) {
-                                PropertyId pid = new PropertyId(info.getId(), name);
-                                PropertyState ps = pm.load(pid);
-                                if (ps.getType() == PropertyType.BINARY) {
-                                    for (InternalValue v : ps.getValues()) {
-                                        // getLength will update the last modified date
-                                        // if the persistence manager scan is running
-                                        v.getLength();
-                                    }
-                                }
-                            }
-                        } catch (NoSuchItemStateException ignored) {
-                            // the node may have been deleted in the meantime
-                        }
+                        withBlobs.add(info.getId());
                     }
                 }
+                scanBatch(pm, withBlobs);
+                withBlobs.clear();
                 batch = pm.getAllNodeInfos(lastId, NODESATONCE);
             }
         }
@@ -257,36 +333,97 @@ public class GarbageCollector implements DataStoreGarbageCollector {
             List<NodeId> allNodeIds = pm.getAllNodeIds(null, 0);
             int overAllCount = allNodeIds.size();
             int count = 0;
-            for (NodeId id : allNodeIds) {
-                count++;
-                if (count % 1000 == 0) {
-                    LOG.debug(pm.toString() + " ("+pmCount + "/" + pmList.length + "): analyzed " + count + " nodes [" + overAllCount + "]...");
+            for (int start = 0; start < overAllCount; start += NODESATONCE) {
+                List<NodeId> ids = allNodeIds.subList(
+                        start, Math.min(start + NODESATONCE, overAllCount));
+                for (int i = 0; i < ids.size(); i++) {
+                    count++;
+                    if (count % 1000 == 0) {
+                        LOG.debug(pm.toString() + " ("+pmCount + "/" + pmList.length + "): analyzed " + count + " nodes [" + overAllCount + "]...");
+                    }
+                    if (callback != null) {
+                        callback.beforeScanning(null);
+                    }
                 }
-                if (callback != null) {
-                    callback.beforeScanning(null);
+                scanBatch(pm, ids);
+            }
+        }
+    }
+
+    /**
+     * Marks the binary values of the given nodes, splitting the nodes among
+     * the scan threads if there are several.
+     */
+    private void scanBatch(final IterablePersistenceManager pm, List<NodeId> ids)
+            throws RepositoryException, ItemStateException {
+        if (executor == null || ids.size() < scanThreads) {
+            scanRange(pm, ids);
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        int size = (ids.size() + scanThreads - 1) / scanThreads;
+        for (int start = 0; start < ids.size(); start += size) {
+            final List<NodeId> range =
+                    ids.subList(start, Math.min(start + size, ids.size()));
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    scanRange(pm, range);
+                    return null;
                 }
-                try {
-                    NodeState state = pm.load(id);
-                    Set<Name> propertyNames = state.getPropertyNames();
-                    for (Name name : propertyNames) {
-                        PropertyId pid = new PropertyId(id, name);
-                        PropertyState ps = pm.load(pid);
-                        if (ps.getType() == PropertyType.BINARY) {
-                            for (InternalValue v : ps.getValues()) {
-                                // getLength will update the last modified date
-                                // if the persistence manager scan is running
-                                v.getLength();
-                            }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                throw new RepositoryException("Interrupted while scanning", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RepositoryException) {
+                    throw (RepositoryException) cause;
+                } else if (cause instanceof ItemStateException) {
+                    throw (ItemStateException) cause;
+                }
+                throw new RepositoryException(cause);
+            }
+        }
+    }
+
+    private void scanRange(IterablePersistenceManager pm, List<NodeId> ids)
+            throws RepositoryException, ItemStateException {
+        for (NodeId id : ids) {
+            try {
+                NodeState state = pm.load(id);
+                Set<Name> propertyNames = state.getPropertyNames();
+                for (Name name : propertyNames) {
+                    PropertyId pid = new PropertyId(id, name);
+                    PropertyState ps = pm.load(pid);
+                    if (ps.getType() == PropertyType.BINARY) {
+                        for (InternalValue v : ps.getValues()) {
+                            mark(v);
                         }
                     }
-                } catch (NoSuchItemStateException e) {
-                    // the node may have been deleted or moved in the meantime
-                    // ignore it
                 }
+            } catch (NoSuchItemStateException e) {
+                // the node may have been deleted or moved in the meantime
+                // ignore it
             }
         }
     }
 
+    private void mark(InternalValue v) throws RepositoryException {
+        if (marked != null) {
+            DataIdentifier identifier = v.getDataIdentifier();
+            if (identifier != null) {
+                marked.add(identifier.toString());
+            }
+        } else {
+            // getLength will update the last modified date
+            // if the persistence manager scan is running
+            v.getLength();
+        }
+    }
+
     /**
      * Reset modifiedDateOnAccess to 0 and stop the observation 
      * listener if any are installed.
@@ -310,9 +447,35 @@ public class GarbageCollector implements DataStoreGarbageCollector {
             throw new RepositoryException("scan must be called first");
         }
         stopScan();
+        if (marked != null) {
+            return deleteUnmarked();
+        }
         return store.deleteAllOlderThan(startScanTimestamp);
     }
 
+    /**
+     * Deletes the records that were neither found by the identifier scan nor
+     * modified since the scan started, and that are not in use. The data
+     * store does the checks and the deletion of each record atomically.
+     * Afterwards it deletes the data of the deleted records that is not
+     * part of the records themselves, such as chunks.
+     */
+    private int deleteUnmarked() throws RepositoryException {
+        GarbageCollectionAware gcStore = (GarbageCollectionAware) store;
+        int count = 0;
+        Iterator<DataIdentifier> it = store.getAllIdentifiers();
+        while (it.hasNext()) {
+            DataIdentifier identifier = it.next();
+            if (!marked.mightContain(identifier.toString())
+                    && gcStore.deleteRecordIfOlderThan(identifier, startScanTimestamp)) {
+                count++;
+            }
+        }
+        marked = null;
+        gcStore.deleteUnusedData(startScanTimestamp);
+        return count;
+    }
+
     /**
      * Get the data store if one is used.
      *
@@ -449,6 +612,20 @@ public class GarbageCollector implements DataStoreGarbageCollector {
         super.finalize();
     }
 
+    /**
+     * Creates the daemon threads of a persistence manager scan.
+     */
+    private static class ScanThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "GarbageCollector-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     /**
      * Event listener to detect moved nodes.
      * A SynchronousEventListener is used to make sure this method is called before the main iteration ends.
@@ -395,6 +395,18 @@ public abstract class AbstractJournal implements Journal {
         return id;
     }
 
+    /**
+     * Return a string that identifies the storage of this journal's records.
+     * Data kept outside the journal that refers to its revisions, like the
+     * event journal index of the cluster node, uses it to detect that it
+     * belongs to another journal. This implementation returns the class name.
+     *
+     * @return storage identifier
+     */
+    public String getStorageId() {
+        return getClass().getName();
+    }
+
     /**
      * Return this journal's namespace resolver.
      *
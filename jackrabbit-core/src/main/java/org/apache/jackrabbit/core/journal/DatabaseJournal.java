@@ -624,6 +624,16 @@ public class DatabaseJournal extends AbstractJournal implements DatabaseAware {
             + "set REVISION_ID = ? where JOURNAL_ID = ?";
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getStorageId() {
+        return super.getStorageId() + ":"
+                + (dataSourceName != null ? dataSourceName : url)
+                + ":" + schemaObjectPrefix;
+    }
+
     /**
      * Bean getters
      */
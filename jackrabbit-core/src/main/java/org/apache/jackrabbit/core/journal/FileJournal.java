@@ -37,6 +37,11 @@ import java.io.InputStream;
  * value is {@link #DEFAULT_BASENAME}</li>
  * <li><code>maximumSize</code>: the maximum size of an active journal file
  * before rotating it: the default value is {@link #DEFAULT_MAXSIZE} </li>
+ * <li><code>memoryMapped</code>: whether records are read through memory
+ * mappings of the journal files instead of buffered file streams; the default
+ * value is <code>false</code>. All readers share one mapping per journal
+ * file, which is released before rotating. Note that on some platforms a file
+ * cannot be renamed during rotation while a reader still uses its mapping.</li>
  * </ul>
  */
 public class FileJournal extends AbstractJournal {
@@ -86,6 +91,17 @@ public class FileJournal extends AbstractJournal {
      */
     private int maximumSize;
 
+    /**
+     * Whether records are read through memory mappings of the journal files,
+     * bean property.
+     */
+    private boolean memoryMapped;
+
+    /**
+     * Memory mappings of the journal files, shared by all record iterators.
+     */
+    private final MappedLogFiles mappings = new MappedLogFiles();
+
     /**
      * Journal root directory.
      */
@@ -168,7 +184,8 @@ public class FileJournal extends AbstractJournal {
             }
         }
         return new FileRecordIterator(files, startRevision, stopRevision,
-                getResolver(), getNamePathResolver());
+                getResolver(), getNamePathResolver(),
+                memoryMapped ? mappings : null);
     }
 
     /**
@@ -194,7 +211,8 @@ public class FileJournal extends AbstractJournal {
             }
         }
         return new FileRecordIterator(files, startRevision, stopRevision,
-                getResolver(), getNamePathResolver());
+                getResolver(), getNamePathResolver(),
+                memoryMapped ? mappings : null);
     }
 
     /**
@@ -241,6 +259,7 @@ public class FileJournal extends AbstractJournal {
      * {@inheritDoc}
      */
     public void close() {
+        mappings.clear();
     }
 
     /**
@@ -250,6 +269,15 @@ public class FileJournal extends AbstractJournal {
         return new FileRevision(new File(getRevision()), true);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getStorageId() {
+        return super.getStorageId() + ":"
+                + new File(directory, basename).getAbsolutePath();
+    }
+
     /**
      * Bean getters
      */
@@ -265,6 +293,10 @@ public class FileJournal extends AbstractJournal {
         return maximumSize;
     }
 
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
     /**
      * Bean setters
      */
@@ -280,6 +312,10 @@ public class FileJournal extends AbstractJournal {
         this.maximumSize = maximumSize;
     }
 
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
     /**
      * Move away current journal file (and all other files), incrementing their
      * version counter. A file named <code>journal.N.log</code> gets renamed to
@@ -287,6 +323,7 @@ public class FileJournal extends AbstractJournal {
      * to <code>journal.1.log</code>.
      */
     private void rotateLogs() {
+        mappings.clear();
         RotatingLogFile[] logFiles = RotatingLogFile.listFiles(rootDirectory, basename);
         for (int i = 0; i < logFiles.length; i++) {
             logFiles[i].rotate();
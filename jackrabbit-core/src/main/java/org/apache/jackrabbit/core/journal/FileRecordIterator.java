@@ -54,6 +54,11 @@ public class FileRecordIterator implements RecordIterator {
      */
     private NamePathResolver npResolver;
 
+    /**
+     * Memory mappings to read the log files through, may be <code>null</code>.
+     */
+    private final MappedLogFiles mappings;
+
     /**
      * Current record log, containing file records.
      */
@@ -73,11 +78,27 @@ public class FileRecordIterator implements RecordIterator {
      */
     public FileRecordIterator(File[] logFiles, long startRevision, long stopRevision,
                               NamespaceResolver resolver, NamePathResolver npResolver) {
+        this(logFiles, startRevision, stopRevision, resolver, npResolver, null);
+    }
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param logFiles available log files, sorted ascending by age
+     * @param startRevision start point (exclusive)
+     * @param stopRevision stop point (inclusive)
+     * @param mappings memory mappings to read the log files through, or
+     *                 <code>null</code> to read them through file streams
+     */
+    FileRecordIterator(File[] logFiles, long startRevision, long stopRevision,
+                       NamespaceResolver resolver, NamePathResolver npResolver,
+                       MappedLogFiles mappings) {
         this.logFiles = logFiles;
         this.revision = startRevision;
         this.stopRevision = stopRevision;
         this.resolver = resolver;
         this.npResolver = npResolver;
+        this.mappings = mappings;
     }
 
 
@@ -153,7 +174,7 @@ public class FileRecordIterator implements RecordIterator {
         for (int i = 0; i < logFiles.length; i++) {
             FileRecordLog recordLog = new FileRecordLog(logFiles[i]);
             if (recordLog.contains(revision)) {
-                recordLog.seek(revision);
+                recordLog.seek(revision, mappings);
                 return recordLog;
             }
         }
@@ -17,12 +17,15 @@
 package org.apache.jackrabbit.core.journal;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.data.util.ByteBufferInputStream;
 import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
 import org.apache.jackrabbit.spi.commons.namespace.NamespaceResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -103,9 +106,19 @@ public class FileRecordLog {
     private boolean isNew;
 
     /**
-     * Input stream used when seeking a specific record.
+     * Input used when seeking a specific record.
      */
-    private DataInputStream in;
+    private DataInput in;
+
+    /**
+     * Mappings the {@link #mapping} was acquired from.
+     */
+    private MappedLogFiles mappings;
+
+    /**
+     * Memory mapping records are read from, if any.
+     */
+    private MappedLogFiles.Mapping mapping;
 
     /**
      * Last revision that is not in this log.
@@ -215,24 +228,58 @@ public class FileRecordLog {
      * @throws java.io.IOException if an I/O error occurs
      */
     public void seek(long revision) throws IOException {
+        seek(revision, null);
+    }
+
+    /**
+     * Seek an entry. This is an operation that allows the underlying input stream
+     * to be sequentially scanned and must therefore not be called twice.
+     * <p>
+     * If <code>mappings</code> is not <code>null</code>, records are read
+     * from the shared memory mapping of this log rather than through a
+     * buffered file stream. Since revisions are file offsets, no scanning is
+     * required either way. The mapping is released by {@link #close()}.
+     *
+     * @param revision revision to seek
+     * @param mappings memory mappings of the journal, may be <code>null</code>
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    void seek(long revision, MappedLogFiles mappings) throws IOException {
         if (in != null) {
             String msg = "Stream already open: seek() only allowed once.";
             throw new IllegalStateException(msg);
         }
-        in = new DataInputStream(new BufferedInputStream(
-                new FileInputStream(logFile)));
-        skip(revision - previousRevision + HEADER_SIZE);
+        long offset = revision - previousRevision + HEADER_SIZE;
+        long length = lastRevision - previousRevision + HEADER_SIZE;
+        if (offset > length) {
+            String msg = "Unable to skip remaining bytes.";
+            throw new IOException(msg);
+        }
+        if (mappings != null) {
+            mapping = mappings.acquire(logFile, previousRevision, length);
+            if (mapping != null) {
+                this.mappings = mappings;
+                in = new ByteBufferInputStream(mapping.read(offset));
+            }
+        }
+        if (in == null) {
+            DataInputStream stream = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(logFile)));
+            in = stream;
+            skip(stream, offset);
+        }
         position = revision - previousRevision;
     }
 
     /**
      * Skip exactly <code>n</code> bytes. Throws if less bytes are skipped.
      *
+     * @param in input stream
      * @param n bytes to skip
      * @throws java.io.IOException if an I/O error occurs, or less that <code>n</code> bytes
      *                     were skipped.
      */
-    private void skip(long n) throws IOException {
+    private static void skip(InputStream in, long n) throws IOException {
         long skiplen = n;
         while (skiplen > 0) {
             long skipped = in.skip(skiplen);
@@ -322,9 +369,13 @@ public class FileRecordLog {
      * Close this log.
      */
     public void close() {
+        if (mapping != null) {
+            mappings.release(mapping);
+            mapping = null;
+        }
         try {
-            if (in != null) {
-                in.close();
+            if (in instanceof Closeable) {
+                ((Closeable) in).close();
             }
         } catch (IOException e) {
             String msg = "Error while closing record log: " + e.getMessage();
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The memory mappings of the log files of a {@link FileJournal}. All record
+ * iterators of the journal share one read-only mapping per log file. A
+ * mapping is replaced when a reader needs more of the file than it covers,
+ * or when the file has been replaced by a rotation, which is detected by
+ * the previous revision stored in the log header. Replaced mappings are
+ * released explicitly as soon as the last reader is done with them, rather
+ * than when the garbage collector gets to them.
+ */
+class MappedLogFiles {
+
+    /**
+     * Logger.
+     */
+    private static Logger log = LoggerFactory.getLogger(MappedLogFiles.class);
+
+    /**
+     * The current mapping of every mapped log file.
+     */
+    private final Map<File, Mapping> mappings = new HashMap<File, Mapping>();
+
+    /**
+     * Return a mapping of a log file that covers at least the given number
+     * of bytes. The mapping must be {@link #release released} when it is no
+     * longer used.
+     *
+     * @param file log file
+     * @param previousRevision previous revision found in the log header
+     * @param length number of bytes to cover
+     * @return the mapping, or <code>null</code> if the file is too large
+     *         to be mapped
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized Mapping acquire(File file, long previousRevision, long length)
+            throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            return null;
+        }
+        Mapping mapping = mappings.get(file);
+        if (mapping == null || mapping.previousRevision != previousRevision
+                || mapping.buffer.capacity() < length) {
+            if (mapping != null) {
+                retire(mapping);
+            }
+            mapping = map(file, previousRevision, length);
+            mappings.put(file, mapping);
+        }
+        mapping.references++;
+        return mapping;
+    }
+
+    /**
+     * Release a mapping returned by {@link #acquire}.
+     *
+     * @param mapping mapping
+     */
+    synchronized void release(Mapping mapping) {
+        mapping.references--;
+        if (mapping.references == 0 && mapping.retired) {
+            unmap(mapping.buffer);
+        }
+    }
+
+    /**
+     * Release all mappings, or mark them for release by their last reader.
+     * Called before the log files are rotated and when the journal is
+     * closed.
+     */
+    synchronized void clear() {
+        for (Mapping mapping : mappings.values()) {
+            retire(mapping);
+        }
+        mappings.clear();
+    }
+
+    private void retire(Mapping mapping) {
+        mapping.retired = true;
+        if (mapping.references == 0) {
+            unmap(mapping.buffer);
+        }
+    }
+
+    private static Mapping map(File file, long previousRevision, long length)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // the mapping remains valid after the channel is closed
+            MappedByteBuffer buffer = raf.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, length);
+            return new Mapping(buffer, previousRevision);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Unmap a buffer. There is no public API for this, so the cleaner of the
+     * direct buffer is invoked by reflection. If that is not possible, the
+     * mapping is released once the buffer is garbage collected.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method getCleaner = buffer.getClass().getMethod("cleaner");
+            getCleaner.setAccessible(true);
+            Object cleaner = getCleaner.invoke(buffer);
+            if (cleaner != null) {
+                Method clean = cleaner.getClass().getMethod("clean");
+                clean.setAccessible(true);
+                clean.invoke(cleaner);
+            }
+        } catch (Exception e) {
+            log.debug("Unable to unmap journal log file, leaving it to GC: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * A read-only mapping of a log file, starting at the header.
+     */
+    static final class Mapping {
+
+        private final MappedByteBuffer buffer;
+
+        private final long previousRevision;
+
+        private int references;
+
+        private boolean retired;
+
+        private Mapping(MappedByteBuffer buffer, long previousRevision) {
+            this.buffer = buffer;
+            this.previousRevision = previousRevision;
+        }
+
+        /**
+         * Return a buffer for reading the mapped file from the given offset
+         * on, with its own position.
+         *
+         * @param offset offset in the file
+         * @return buffer
+         */
+        ByteBuffer read(long offset) {
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position((int) offset);
+            return duplicate;
+        }
+    }
+}
@@ -20,7 +20,8 @@ import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
 import org.apache.jackrabbit.spi.commons.namespace.NamespaceResolver;
 import org.apache.jackrabbit.spi.Name;
 
-import java.io.DataInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
 import java.io.IOException;
 
 /**
@@ -46,7 +47,7 @@ public class ReadRecord extends AbstractRecord {
     /**
      * Underlying data input.
      */
-    private final DataInputStream dataIn;
+    private final DataInput dataIn;
 
     /**
      * This record's length.
@@ -62,7 +63,7 @@ public class ReadRecord extends AbstractRecord {
      * Create a new instance of this class.
      */
     public ReadRecord(String journalId, String producerId,
-                      long revision, DataInputStream dataIn, int length,
+                      long revision, DataInput dataIn, int length,
                       NamespaceResolver resolver, NamePathResolver npResolver) {
 
         super(resolver, npResolver);
@@ -208,8 +209,8 @@ public class ReadRecord extends AbstractRecord {
             if (!consumed) {
                 skip(length);
             }
-        } else {
-            dataIn.close();
+        } else if (dataIn instanceof Closeable) {
+            ((Closeable) dataIn).close();
         }
     }
 
@@ -223,7 +224,8 @@ public class ReadRecord extends AbstractRecord {
     private void skip(long n) throws IOException {
         long skiplen = n;
         while (skiplen > 0) {
-            long skipped = dataIn.skip(skiplen);
+            long skipped = dataIn.skipBytes(
+                    (int) Math.min(skiplen, Integer.MAX_VALUE));
             if (skipped <= 0) {
                 break;
             }
@@ -100,6 +100,16 @@ public class DelegatingObservationDispatcher extends EventDispatcher {
                 events.getPathPrefix(), events.getUserData());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Events are dispatched to the listeners of all workspaces, therefore
+     * all events are created.
+     */
+    ListenerInterest getListenerInterest() {
+        return null;
+    }
+
     /**
      * Dispatchers a list of events to all registered dispatchers. A new
      * {@link EventStateCollection} is created for every dispatcher, fille with
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.commons.iterator.EventIteratorAdapter;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.spi.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collapses the events passed to an {@link EventConsumer} within a time
+ * window into a single coalesced event, see
+ * {@link EventState#coalesced(Path, int, long, javax.jcr.Session)}. The
+ * coalesced event refers to the deepest common ancestor of the parent nodes
+ * of the collapsed events and is delivered by a task on the given scheduler
+ * once the window that started with the first collapsed event has elapsed.
+ */
+class EventCoalescer implements Runnable {
+
+    /**
+     * Logger instance for this class
+     */
+    private static final Logger log = LoggerFactory.getLogger(EventCoalescer.class);
+
+    /**
+     * The session of the listener.
+     */
+    private final SessionImpl session;
+
+    /**
+     * The time window in milliseconds.
+     */
+    private final long window;
+
+    /**
+     * Runs the delivery tasks.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The listener the coalesced event is delivered to.
+     */
+    private EventListener target;
+
+    /**
+     * Deepest common ancestor of the parent paths collapsed so far, or
+     * <code>null</code> if no event is pending.
+     */
+    private Path ancestor;
+
+    /**
+     * Union of the types of the pending events.
+     */
+    private int eventTypes;
+
+    /**
+     * Number of pending events.
+     */
+    private long count;
+
+    /**
+     * Creates a new <code>EventCoalescer</code>.
+     *
+     * @param session   the session of the listener.
+     * @param window    the time window in milliseconds.
+     * @param scheduler runs the delivery tasks.
+     */
+    EventCoalescer(SessionImpl session, long window,
+                   ScheduledExecutorService scheduler) {
+        this.session = session;
+        this.window = window;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Collapses the given event into the pending coalesced event and
+     * schedules its delivery if it is the first one of the window.
+     *
+     * @param state  an event that passed the filter of the listener.
+     * @param target the listener to deliver the coalesced event to.
+     * @throws RepositoryException if the common ancestor cannot be computed.
+     */
+    synchronized void add(EventState state, EventListener target)
+            throws RepositoryException {
+        this.target = target;
+        Path parentPath = state.getParentPath();
+        if (parentPath == null) {
+            // persist events do not carry any change
+            return;
+        }
+        if (ancestor == null) {
+            ancestor = parentPath;
+            try {
+                scheduler.schedule(this, window, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("Observation dispatcher shut down, discarding events");
+            }
+        } else {
+            ancestor = getCommonAncestor(ancestor, parentPath);
+        }
+        eventTypes |= state.getType();
+        count++;
+    }
+
+    /**
+     * Delivers the pending coalesced event.
+     */
+    public void run() {
+        EventListener listener;
+        EventState coalesced;
+        synchronized (this) {
+            if (ancestor == null) {
+                return;
+            }
+            listener = target;
+            coalesced = EventState.coalesced(ancestor, eventTypes, count, session);
+            ancestor = null;
+            eventTypes = 0;
+            count = 0;
+        }
+        if (!session.isLive()) {
+            return;
+        }
+        try {
+            EventImpl event = new EventImpl(
+                    session, coalesced, System.currentTimeMillis(), null);
+            listener.onEvent(new EventIteratorAdapter(Collections.singleton(event)));
+        } catch (Throwable t) {
+            log.warn("EventListener " + listener.getClass().getName()
+                    + " threw exception", t);
+        }
+    }
+
+    /**
+     * Returns the deepest common ancestor of two normalized absolute paths.
+     *
+     * @param a a normalized absolute path.
+     * @param b another normalized absolute path.
+     * @return the deepest path that is equal to or an ancestor of both.
+     * @throws RepositoryException if an ancestor cannot be computed.
+     */
+    static Path getCommonAncestor(Path a, Path b) throws RepositoryException {
+        int depth = Math.min(a.getDepth(), b.getDepth());
+        Path pa = a.getAncestor(a.getDepth() - depth);
+        Path pb = b.getAncestor(b.getDepth() - depth);
+        while (!pa.equals(pb)) {
+            pa = pa.getAncestor(1);
+            pb = pb.getAncestor(1);
+        }
+        return pa;
+    }
+}
@@ -29,6 +29,8 @@ import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
 import javax.jcr.observation.EventListener;
 
+import org.apache.jackrabbit.commons.iterator.EventIteratorAdapter;
+import org.apache.jackrabbit.commons.observation.ListenerTracker;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.id.ItemId;
 import org.apache.jackrabbit.core.security.authorization.Permission;
@@ -71,6 +73,18 @@ class EventConsumer {
      */
     private final EventFilter filter;
 
+    /**
+     * Collects delivery statistics of the listener, or <code>null</code> if
+     * none are collected.
+     */
+    private final ListenerTracker tracker;
+
+    /**
+     * Collapses the events into coalesced events, or <code>null</code> if
+     * individual events are delivered.
+     */
+    private final EventCoalescer coalescer;
+
     /**
      * A map of <code>Set</code> objects that hold references to
      * <code>ItemId</code>s of denied <code>ItemState</code>s. The map uses the
@@ -97,6 +111,28 @@ class EventConsumer {
      */
     EventConsumer(SessionImpl session, EventListener listener, EventFilter filter)
             throws NullPointerException {
+        this(session, listener, filter, null, null);
+    }
+
+    /**
+     * Creates an <code>EventConsumer</code> that collects delivery statistics
+     * of the listener with the given <code>tracker</code>.
+     *
+     * @param session  the <code>Session</code> that created this
+     *                 <code>EventConsumer</code>.
+     * @param listener the actual <code>EventListener</code> to call back.
+     * @param filter   only pass an <code>Event</code> to the listener if the
+     *                 <code>EventFilter</code> allows the <code>Event</code>.
+     * @param tracker  the tracker of the listener, or <code>null</code>.
+     * @param coalescer collapses the events that pass the filter into
+     *                 coalesced events, or <code>null</code> to deliver
+     *                 individual events.
+     * @throws NullPointerException if <code>session</code>, <code>listener</code>
+     *                              or <code>filter</code> is<code>null</code>.
+     */
+    EventConsumer(SessionImpl session, EventListener listener, EventFilter filter,
+                  ListenerTracker tracker, EventCoalescer coalescer)
+            throws NullPointerException {
         if (session == null) {
             throw new NullPointerException("session");
         }
@@ -110,6 +146,8 @@ class EventConsumer {
         this.session = session;
         this.listener = listener;
         this.filter = filter;
+        this.tracker = tracker;
+        this.coalescer = coalescer;
     }
 
     /**
@@ -132,6 +170,26 @@ class EventConsumer {
         return listener;
     }
 
+    /**
+     * Returns the <code>EventFilter</code> of this <code>EventConsumer</code>.
+     *
+     * @return the <code>EventFilter</code> of this <code>EventConsumer</code>.
+     */
+    EventFilter getEventFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the <code>ListenerTracker</code> that collects the delivery
+     * statistics of the listener.
+     *
+     * @return the tracker of the listener, or <code>null</code> if none was
+     *         passed to the constructor.
+     */
+    ListenerTracker getListenerTracker() {
+        return tracker;
+    }
+
     /**
      * Checks for what {@link EventState}s this <code>EventConsumer</code> has
      * enough access rights to see the event.
@@ -218,6 +276,19 @@ class EventConsumer {
      *               to dispatch.
      */
     void consumeEvents(EventStateCollection events) throws RepositoryException {
+        consumeEvents(events, listener);
+    }
+
+    /**
+     * Dispatches the events to the given <code>target</code>, which is either
+     * the <code>EventListener</code> of this consumer or a decorator of it.
+     *
+     * @param events a collection of {@link EventState}s
+     *               to dispatch.
+     * @param target the listener to call back.
+     */
+    void consumeEvents(EventStateCollection events, EventListener target)
+            throws RepositoryException {
         // Set of ItemIds of denied ItemStates
         Set<ItemId> denied = accessDenied.remove(events);
         if (denied == null) {
@@ -240,13 +311,23 @@ class EventConsumer {
         if (!session.isLive()) {
             return;
         }
+        if (coalescer != null) {
+            // collapse the events instead of creating an Event for each
+            for (Iterator<EventState> it = events.iterator(); it.hasNext();) {
+                EventState state = it.next();
+                if (!denied.contains(state.getTargetId()) && !filter.blocks(state)) {
+                    coalescer.add(state, target);
+                }
+            }
+            return;
+        }
         // check if filtered iterator has at least one event
         EventIterator it = new FilteredEventIterator(
                 session, events.iterator(), events.getTimestamp(),
                 events.getUserData(), filter, denied, false);
         if (it.hasNext()) {
             long time = System.currentTimeMillis();
-            listener.onEvent(it);
+            target.onEvent(it);
             time = System.currentTimeMillis() - time;
             if (log.isDebugEnabled()) {
                 log.debug("listener {} processed events in {} ms.",
@@ -257,6 +338,25 @@ class EventConsumer {
         }
     }
 
+    /**
+     * Notifies the <code>target</code> listener that <code>count</code> events
+     * were not delivered, using a single {@link Event#PERSIST} event whose
+     * user data is {@link ListenerQueue#EVENTS_DROPPED_PREFIX} followed by the
+     * number of dropped events.
+     *
+     * @param target the listener to call back.
+     * @param count  the number of dropped events.
+     */
+    void consumeEventsDropped(EventListener target, long count) {
+        if (!session.isLive()) {
+            return;
+        }
+        EventImpl marker = new EventImpl(session,
+                EventState.persist(session, false), System.currentTimeMillis(),
+                ListenerQueue.EVENTS_DROPPED_PREFIX + count);
+        target.onEvent(new EventIteratorAdapter(Collections.singleton(marker)));
+    }
+
     /**
      * Returns <code>true</code> if this <code>EventConsumer</code> is equal to
      * some other object, <code>false</code> otherwise.
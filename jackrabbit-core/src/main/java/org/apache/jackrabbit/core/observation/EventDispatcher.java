@@ -47,4 +47,12 @@ abstract class EventDispatcher {
      * @param events the {@link EventState}s to dispatch.
      */
     abstract void dispatchEvents(EventStateCollection events);
+
+    /**
+     * Returns the union of the interests of the registered listeners.
+     *
+     * @return the listener interest, or <code>null</code> if all events
+     *         must be created.
+     */
+    abstract ListenerInterest getListenerInterest();
 }
@@ -131,6 +131,35 @@ public class EventFilter {
         this.nodeTypes = nodeTypes;
     }
 
+    /**
+     * @return the event types this filter allows.
+     */
+    long getEventTypes() {
+        return eventTypes;
+    }
+
+    /**
+     * @return the paths this filter allows.
+     */
+    List<Path> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return whether this filter also allows items below its paths.
+     */
+    boolean isDeep() {
+        return isDeep;
+    }
+
+    /**
+     * @return the node types this filter allows, or <code>null</code> if
+     *         there is no node type restriction.
+     */
+    NodeTypeImpl[] getNodeTypes() {
+        return nodeTypes;
+    }
+
     /**
      * Returns <code>true</code> if this <code>EventFilter</code> does not allow
      * the specified <code>EventState</code>; <code>false</code> otherwise.
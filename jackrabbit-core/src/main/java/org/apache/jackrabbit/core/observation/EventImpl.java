@@ -178,9 +178,12 @@ public final class EventImpl implements JackrabbitEvent, AdditionalEventInfo, Ev
             Path parent = eventState.getParentPath();
             Path child = eventState.getChildRelPath();
 
-            if (parent == null || child == null) {
+            if (parent == null) {
                 // an event without associated path information
                 return null;
+            } else if (child == null) {
+                // a coalesced event, which refers to the parent path
+                return parent;
             }
             else {
                 int index = child.getIndex();
@@ -39,6 +39,7 @@ import org.apache.jackrabbit.core.journal.RecordIterator;
 import org.apache.jackrabbit.core.journal.JournalException;
 import org.apache.jackrabbit.core.journal.Record;
 import org.apache.jackrabbit.core.cluster.ClusterRecordDeserializer;
+import org.apache.jackrabbit.core.cluster.EventJournalIndex;
 import org.apache.jackrabbit.core.cluster.ClusterRecord;
 import org.apache.jackrabbit.core.cluster.ClusterRecordProcessor;
 import org.apache.jackrabbit.core.cluster.ChangeLogRecord;
@@ -92,6 +93,12 @@ public class EventJournalImpl implements EventJournal {
      */
     private final String producerId;
 
+    /**
+     * Index over the change log records of the journal or <code>null</code>
+     * if none is available.
+     */
+    private final EventJournalIndex index;
+
     /**
      * Target session.
      */
@@ -118,9 +125,26 @@ public class EventJournalImpl implements EventJournal {
     public EventJournalImpl(
             EventFilter filter, Journal journal,
             String producerId, SessionImpl session) {
+        this(filter, journal, producerId, null, session);
+    }
+
+    /**
+     * Creates a new event journal that uses <code>index</code> to seek and to
+     * skip records that cannot contain events passing the filter.
+     *
+     * @param filter for filtering the events read from the journal.
+     * @param journal the cluster journal.
+     * @param producerId the producer id of the cluster node.
+     * @param index the index over the journal records or <code>null</code>.
+     * @param session target session
+     */
+    public EventJournalImpl(
+            EventFilter filter, Journal journal, String producerId,
+            EventJournalIndex index, SessionImpl session) {
         this.filter = filter;
         this.journal = journal;
         this.producerId = producerId;
+        this.index = index;
         this.session = session;
     }
 
@@ -142,6 +166,16 @@ public class EventJournalImpl implements EventJournal {
             }
         }
 
+        // seek with the index if it knows a later starting point
+        if (index != null) {
+            Long revision = index.getSkipRevision(date);
+            if (revision != null && (lastRevision == null
+                    || revision.longValue() > lastRevision.longValue())) {
+                eventBundleBuffer.clear();
+                lastRevision = revision;
+            }
+        }
+
         try {
             while (hasNext()) {
                 EventBundle bundle = getCurrentBundle();
@@ -343,6 +377,10 @@ public class EventJournalImpl implements EventJournal {
                 while (processor.getNumEvents() < MIN_BUFFER_SIZE && records.hasNext()) {
                     Record record = records.nextRecord();
                     if (record.getProducerId().equals(producerId)) {
+                        if (isIndexedAsIrrelevant(record.getRevision())) {
+                            lastRevision = new Long(record.getRevision());
+                            continue;
+                        }
                         ClusterRecord cr = deserializer.deserialize(record);
                         if (!session.getWorkspace().getName().equals(cr.getWorkspace())) {
                             continue;
@@ -374,6 +412,26 @@ public class EventJournalImpl implements EventJournal {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the index shows that the record with the
+     * given revision belongs to another workspace or contains no events that
+     * can pass the filter, so that it need not be deserialized.
+     *
+     * @param revision the revision of a record.
+     * @return whether the record can be skipped.
+     */
+    private boolean isIndexedAsIrrelevant(long revision) {
+        if (index == null) {
+            return false;
+        }
+        EventJournalIndex.Entry entry = index.get(revision);
+        if (entry == null) {
+            return false;
+        }
+        return !session.getWorkspace().getName().equals(entry.getWorkspace())
+                || !entry.matches(filter.getEventTypes(), filter.getPaths(), filter.isDeep());
+    }
+
     /**
      * @return the revision skip map for this journal.
      */
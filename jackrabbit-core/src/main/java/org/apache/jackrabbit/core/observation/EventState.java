@@ -86,6 +86,16 @@ public class EventState {
      */
     static final String DEST_CHILD_REL_PATH = "destChildRelPath";
 
+    /**
+     * The key <code>eventCount</code> in the info map of a coalesced event.
+     */
+    static final String EVENT_COUNT = "eventCount";
+
+    /**
+     * The key <code>eventTypes</code> in the info map of a coalesced event.
+     */
+    static final String EVENT_TYPES = "eventTypes";
+
     /**
      * The {@link javax.jcr.observation.Event} of this event.
      */
@@ -608,6 +618,29 @@ public class EventState {
                 null, null, session, external);
     }
 
+    /**
+     * Creates a new {@link javax.jcr.observation.Event} of type
+     * {@link javax.jcr.observation.Event#PERSIST} that stands for a number of
+     * collapsed events below <code>ancestorPath</code>.
+     *
+     * @param ancestorPath the deepest common ancestor of the parent nodes of
+     *                     the collapsed events.
+     * @param eventTypes   the union of the types of the collapsed events.
+     * @param count        the number of collapsed events.
+     * @param session      the session of the listener.
+     * @return an <code>EventState</code> instance.
+     */
+    static EventState coalesced(Path ancestorPath, int eventTypes, long count,
+                                Session session) {
+        EventState es = new EventState(Event.PERSIST, null, ancestorPath, null,
+                null, null, null, session, false);
+        Map<String, InternalValue> info = new HashMap<String, InternalValue>();
+        info.put(EVENT_COUNT, InternalValue.create(count));
+        info.put(EVENT_TYPES, InternalValue.create((long) eventTypes));
+        es.setInfo(info);
+        return es;
+    }
+
     /**
      * {@inheritDoc}
      */
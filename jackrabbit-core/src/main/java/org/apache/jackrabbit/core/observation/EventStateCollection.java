@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.jcr.NamespaceException;
 import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
 import javax.jcr.observation.ObservationManager;
 
 import java.util.ArrayList;
@@ -145,11 +146,50 @@ public final class EventStateCollection {
      *                            states for the item state changes.
      */
     public void createEventStates(NodeId rootNodeId, ChangeLog changes, ItemStateManager stateMgr) throws ItemStateException {
+        createEventStates(rootNodeId, changes, stateMgr, true);
+    }
+
+    /**
+     * Creates {@link EventState} instances from <code>ItemState</code>
+     * <code>changes</code>.
+     * <p>
+     * If <code>complete</code> is <code>false</code>, item additions, removals
+     * and property changes are skipped when no listener registered with the
+     * dispatcher of this collection is interested in the event type, the
+     * path of the parent node or its node types. Changes of an event type
+     * nobody listens to, or only for other node types, are skipped without
+     * resolving the item path.
+     * Event types that a listener receives for the whole workspace are never
+     * skipped. In a workspace with a search index this applies to all item
+     * events, so nothing is skipped there and the listener interest is not
+     * consulted. Moves, reorders and changes of shareable nodes always create
+     * events. Callers that pass the events on to other consumers than the
+     * local listeners, e.g. the cluster journal, must create complete
+     * collections.
+     *
+     * @param rootNodeId   the id of the root node.
+     * @param changes      the changes on <code>ItemState</code>s.
+     * @param stateMgr     an <code>ItemStateManager</code> to provide <code>ItemState</code>
+     *                     of items that are not contained in the <code>changes</code> collection.
+     * @param complete     whether events for all changes must be created.
+     * @throws ItemStateException if an error occurs while creating events
+     *                            states for the item state changes.
+     */
+    public void createEventStates(NodeId rootNodeId, ChangeLog changes,
+                                  ItemStateManager stateMgr, boolean complete)
+            throws ItemStateException {
         // create a hierarchy manager, that is based on the ChangeLog and
         // the ItemStateProvider
         ChangeLogBasedHierarchyMgr hmgr =
             new ChangeLogBasedHierarchyMgr(rootNodeId, stateMgr, changes);
 
+        // null if events for all changes are created
+        ListenerInterest interest = complete ? null : dispatcher.getListenerInterest();
+        if (interest != null && interest.includesAllItemEvents()) {
+            // e.g. the search manager, nothing can be skipped
+            interest = null;
+        }
+
         /**
          * Important:
          * Do NOT change the sequence of events generated unless there's
@@ -346,10 +386,20 @@ public final class EventStateCollection {
                 createShareableNodeEvents(n, changes, hmgr, stateMgr);
             } else {
                 // property changed
-                Path path = getPath(state.getId(), hmgr);
+                if (!isIncluded(interest, Event.PROPERTY_CHANGED)) {
+                    continue;
+                }
                 NodeState parent = (NodeState) stateMgr.getItemState(state.getParentId());
                 NodeTypeImpl nodeType = getNodeType(parent, session);
                 Set<Name> mixins = parent.getMixinTypeNames();
+                if (!isIncluded(interest, Event.PROPERTY_CHANGED, nodeType, mixins)) {
+                    continue;
+                }
+                Path path = getPath(state.getId(), hmgr);
+                if (!isIncluded(interest, Event.PROPERTY_CHANGED,
+                        getParent(path), nodeType, mixins)) {
+                    continue;
+                }
                 events.add(EventState.propertyChanged(state.getParentId(),
                         getParent(path), path.getLastElement(),
                         nodeType.getQName(), mixins, session));
@@ -361,29 +411,47 @@ public final class EventStateCollection {
             if (state.isNode()) {
                 // node deleted
                 NodeState n = (NodeState) state;
-                NodeState parent = (NodeState) stateMgr.getItemState(n.getParentId());
-                NodeTypeImpl nodeType = getNodeType(parent, session);
-                Set<Name> mixins = parent.getMixinTypeNames();
-                Path path = getZombiePath(state.getId(), hmgr);
-                events.add(EventState.childNodeRemoved(n.getParentId(),
-                        getParent(path),
-                        n.getNodeId(),
-                        path.getLastElement(),
-                        nodeType.getQName(),
-                        mixins,
-                        session));
+                if (isIncluded(interest, Event.NODE_REMOVED)) {
+                    NodeState parent = (NodeState) stateMgr.getItemState(n.getParentId());
+                    NodeTypeImpl nodeType = getNodeType(parent, session);
+                    Set<Name> mixins = parent.getMixinTypeNames();
+                    Path path = null;
+                    if (isIncluded(interest, Event.NODE_REMOVED, nodeType, mixins)) {
+                        path = getZombiePath(state.getId(), hmgr);
+                    }
+                    if (path != null && isIncluded(interest, Event.NODE_REMOVED,
+                            getParent(path), nodeType, mixins)) {
+                        events.add(EventState.childNodeRemoved(n.getParentId(),
+                                getParent(path),
+                                n.getNodeId(),
+                                path.getLastElement(),
+                                nodeType.getQName(),
+                                mixins,
+                                session));
+                    }
+                }
 
                 // create events if n is shareable
                 createShareableNodeEvents(n, changes, hmgr, stateMgr);
             } else {
                 // property removed
                 // only create an event if node still exists
+                if (!isIncluded(interest, Event.PROPERTY_REMOVED)) {
+                    continue;
+                }
                 try {
                     NodeState n = (NodeState) changes.get(state.getParentId());
                     // node state exists -> only property removed
                     NodeTypeImpl nodeType = getNodeType(n, session);
                     Set<Name> mixins = n.getMixinTypeNames();
+                    if (!isIncluded(interest, Event.PROPERTY_REMOVED, nodeType, mixins)) {
+                        continue;
+                    }
                     Path path = getZombiePath(state.getId(), hmgr);
+                    if (!isIncluded(interest, Event.PROPERTY_REMOVED,
+                            getParent(path), nodeType, mixins)) {
+                        continue;
+                    }
                     events.add(EventState.propertyRemoved(state.getParentId(),
                             getParent(path),
                             path.getLastElement(),
@@ -409,16 +477,24 @@ public final class EventStateCollection {
                     log.error(msg);
                     throw new ItemStateException(msg);
                 }
-                NodeTypeImpl nodeType = getNodeType(parent, session);
-                Set<Name> mixins = parent.getMixinTypeNames();
-                Path path = getPath(n.getNodeId(), hmgr);
-                events.add(EventState.childNodeAdded(parentId,
-                        getParent(path),
-                        n.getNodeId(),
-                        path.getLastElement(),
-                        nodeType.getQName(),
-                        mixins,
-                        session));
+                if (isIncluded(interest, Event.NODE_ADDED)) {
+                    NodeTypeImpl nodeType = getNodeType(parent, session);
+                    Set<Name> mixins = parent.getMixinTypeNames();
+                    Path path = null;
+                    if (isIncluded(interest, Event.NODE_ADDED, nodeType, mixins)) {
+                        path = getPath(n.getNodeId(), hmgr);
+                    }
+                    if (path != null && isIncluded(interest, Event.NODE_ADDED,
+                            getParent(path), nodeType, mixins)) {
+                        events.add(EventState.childNodeAdded(parentId,
+                                getParent(path),
+                                n.getNodeId(),
+                                path.getLastElement(),
+                                nodeType.getQName(),
+                                mixins,
+                                session));
+                    }
+                }
 
                 // create events if n is shareable
                 createShareableNodeEvents(n, changes, hmgr, stateMgr);
@@ -430,9 +506,19 @@ public final class EventStateCollection {
                     log.error(msg);
                     throw new ItemStateException(msg);
                 }
+                if (!isIncluded(interest, Event.PROPERTY_ADDED)) {
+                    continue;
+                }
                 NodeTypeImpl nodeType = getNodeType(n, session);
                 Set<Name> mixins = n.getMixinTypeNames();
+                if (!isIncluded(interest, Event.PROPERTY_ADDED, nodeType, mixins)) {
+                    continue;
+                }
                 Path path = getPath(state.getId(), hmgr);
+                if (!isIncluded(interest, Event.PROPERTY_ADDED,
+                        getParent(path), nodeType, mixins)) {
+                    continue;
+                }
                 events.add(EventState.propertyAdded(state.getParentId(),
                         getParent(path),
                         path.getLastElement(),
@@ -554,6 +640,56 @@ public final class EventStateCollection {
 
     //----------------------------< internal >----------------------------------
 
+    /**
+     * Returns <code>true</code> if events of the given type must be created.
+     *
+     * @param interest the listener interest, or <code>null</code> if all
+     *                 events must be created.
+     * @param type     the event type.
+     * @return whether events of this type must be created.
+     */
+    private static boolean isIncluded(ListenerInterest interest, int type) {
+        return interest == null || interest.includes(type);
+    }
+
+    /**
+     * Returns <code>true</code> if an event of the given type for an item
+     * whose parent node has the given node types may have to be created.
+     * This check is done before the path of the item is resolved.
+     *
+     * @param interest the listener interest, or <code>null</code> if all
+     *                 events must be created.
+     * @param type     the event type.
+     * @param nodeType the primary type of the parent node.
+     * @param mixins   the mixin types of the parent node.
+     * @return whether the event may have to be created.
+     */
+    private boolean isIncluded(ListenerInterest interest, int type,
+                               NodeTypeImpl nodeType, Set<Name> mixins) {
+        return interest == null || interest.includesAll(type)
+                || interest.includes(type, nodeType, mixins,
+                        session.getNodeTypeManager());
+    }
+
+    /**
+     * Returns <code>true</code> if an event of the given type for an item
+     * with the given parent path and parent node types must be created.
+     *
+     * @param interest   the listener interest, or <code>null</code> if all
+     *                   events must be created.
+     * @param type       the event type.
+     * @param parentPath the path of the parent node of the item.
+     * @param nodeType   the primary type of the parent node.
+     * @param mixins     the mixin types of the parent node.
+     * @return whether the event must be created.
+     */
+    private boolean isIncluded(ListenerInterest interest, int type,
+                               Path parentPath, NodeTypeImpl nodeType,
+                               Set<Name> mixins) {
+        return interest == null || interest.includes(type, parentPath,
+                nodeType, mixins, session.getNodeTypeManager());
+    }
+
     private void createShareableNodeEvents(NodeState n,
                                            ChangeLog changes,
                                            ChangeLogBasedHierarchyMgr hmgr,
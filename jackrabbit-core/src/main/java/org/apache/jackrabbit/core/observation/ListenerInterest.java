@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.jcr.nodetype.NoSuchNodeTypeException;
+import javax.jcr.observation.Event;
+
+import org.apache.jackrabbit.core.nodetype.NodeTypeImpl;
+import org.apache.jackrabbit.core.nodetype.NodeTypeManagerImpl;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.commons.name.PathMap;
+
+/**
+ * The <code>ListenerInterest</code> is the union of the event types, paths
+ * and node types of a set of {@link EventFilter}s. It is used to avoid
+ * creating {@link EventState}s that no registered listener would receive.
+ * <p>
+ * The paths of filters without node type restriction are kept in a
+ * {@link PathMap} whose elements hold the event types of the filters
+ * registered for exactly that path and the event types of the filters
+ * registered deep at that path. The filters with a node type restriction
+ * are kept in a second map, together with the names of their node types.
+ * Identifier restrictions and the local/external flags of the filters are
+ * ignored, so the interest may include events that are later blocked by
+ * every filter, but never excludes an event that a filter would let pass.
+ * <p>
+ * Note that a listener registered deep at the root node without node type
+ * restriction is interested in every event of its types. For these event
+ * types {@link #includesAll(int)} returns <code>true</code> and no further
+ * check is done. The search manager of a workspace with a search index is
+ * such a listener for all item events, and the index is updated from these
+ * events. Events are therefore only skipped in workspaces without search
+ * index; in the others {@link #includesAllItemEvents()} is
+ * <code>true</code> and the interest is not used.
+ * <p>
+ * Instances are immutable once all filters were added.
+ */
+final class ListenerInterest {
+
+    /**
+     * Index of the event types of non-deep registrations in the int arrays
+     * stored in {@link #paths}.
+     */
+    private static final int SHALLOW = 0;
+
+    /**
+     * Index of the event types of deep registrations in the int arrays
+     * stored in {@link #paths}.
+     */
+    private static final int DEEP = 1;
+
+    /**
+     * Event types per registered path of the filters without node type
+     * restriction.
+     */
+    private final PathMap<int[]> paths = new PathMap<int[]>();
+
+    /**
+     * Registrations per path of the filters with node type restriction.
+     */
+    private final PathMap<List<NodeTypeInterest>> restricted =
+            new PathMap<List<NodeTypeInterest>>();
+
+    /**
+     * Union of the event types of all filters.
+     */
+    private int eventTypes;
+
+    /**
+     * Union of the event types of the filters without node type restriction.
+     */
+    private int unrestrictedEventTypes;
+
+    /**
+     * The event types that {@link EventStateCollection} may skip.
+     */
+    private static final int ITEM_EVENTS = Event.NODE_ADDED | Event.NODE_REMOVED
+            | Event.PROPERTY_ADDED | Event.PROPERTY_REMOVED | Event.PROPERTY_CHANGED;
+
+    /**
+     * Union of the event types of the filters that are registered deep at
+     * the root node without node type restriction.
+     */
+    private int allEventTypes;
+
+    /**
+     * The registrations of the filters with node type restriction.
+     */
+    private final List<NodeTypeInterest> nodeTypeInterests =
+            new ArrayList<NodeTypeInterest>();
+
+    /**
+     * Adds the event types, paths and node types of <code>filter</code> to
+     * this interest.
+     *
+     * @param filter the filter of a registered listener.
+     */
+    void add(EventFilter filter) {
+        int types = (int) filter.getEventTypes();
+        if (types == 0) {
+            return;
+        }
+        eventTypes |= types;
+        NodeTypeImpl[] nodeTypes = filter.getNodeTypes();
+        for (Path path : filter.getPaths()) {
+            if (nodeTypes != null) {
+                PathMap.Element<List<NodeTypeInterest>> element = restricted.put(path);
+                List<NodeTypeInterest> registered = element.get();
+                if (registered == null) {
+                    registered = new ArrayList<NodeTypeInterest>();
+                    element.set(registered);
+                }
+                NodeTypeInterest interest =
+                        new NodeTypeInterest(types, filter.isDeep(), nodeTypes);
+                registered.add(interest);
+                nodeTypeInterests.add(interest);
+                continue;
+            }
+            unrestrictedEventTypes |= types;
+            if (filter.isDeep() && path.denotesRoot()) {
+                allEventTypes |= types;
+            }
+            PathMap.Element<int[]> element = paths.put(path);
+            int[] registered = element.get();
+            if (registered == null) {
+                registered = new int[2];
+                element.set(registered);
+            }
+            registered[filter.isDeep() ? DEEP : SHALLOW] |= types;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if any filter allows events of the given type.
+     *
+     * @param type an event type.
+     * @return whether events of this type may be of interest.
+     */
+    boolean includes(int type) {
+        return (eventTypes & type) != 0;
+    }
+
+    /**
+     * Returns <code>true</code> if every event of the given type is of
+     * interest, i.e. a filter without node type restriction allows events
+     * of this type anywhere in the workspace.
+     *
+     * @param type an event type.
+     * @return whether all events of this type are of interest.
+     */
+    boolean includesAll(int type) {
+        return (allEventTypes & type) != 0;
+    }
+
+    /**
+     * Returns <code>true</code> if every item event is of interest, i.e. a
+     * filter without node type restriction allows all node and property
+     * additions, removals and changes anywhere in the workspace. This is
+     * the case in every workspace with a search index. No event can be
+     * skipped then and the interest need not be checked at all.
+     *
+     * @return whether all item events are of interest.
+     */
+    boolean includesAllItemEvents() {
+        return (allEventTypes & ITEM_EVENTS) == ITEM_EVENTS;
+    }
+
+    /**
+     * Returns <code>true</code> if any filter allows events of the given type
+     * for an item whose parent node has the given node types, regardless of
+     * the path of the parent node. This check is done before the path of
+     * the item is resolved.
+     *
+     * @param type     an event type.
+     * @param nodeType the primary type of the parent node.
+     * @param mixins   the mixin types of the parent node.
+     * @param ntMgr    the node type manager to resolve the mixin types.
+     * @return whether the event may be of interest.
+     */
+    boolean includes(int type, NodeTypeImpl nodeType, Set<Name> mixins,
+                     NodeTypeManagerImpl ntMgr) {
+        if ((unrestrictedEventTypes & type) != 0) {
+            return true;
+        }
+        for (NodeTypeInterest interest : nodeTypeInterests) {
+            if ((interest.types & type) != 0
+                    && interest.matches(nodeType, mixins, ntMgr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if any filter allows events of the given type
+     * for an item whose parent node has the given path, regardless of the
+     * node type of the parent node.
+     *
+     * @param type       an event type.
+     * @param parentPath the normalized path of the parent node of the item.
+     * @return whether the event may be of interest.
+     */
+    boolean includes(int type, Path parentPath) {
+        return includesPath(type, parentPath)
+                || includesNodeType(type, parentPath, null, null, null);
+    }
+
+    /**
+     * Returns <code>true</code> if any filter allows events of the given type
+     * for an item whose parent node has the given path and node types.
+     *
+     * @param type       an event type.
+     * @param parentPath the normalized path of the parent node of the item.
+     * @param nodeType   the primary type of the parent node.
+     * @param mixins     the mixin types of the parent node.
+     * @param ntMgr      the node type manager to resolve the mixin types.
+     * @return whether the event may be of interest.
+     */
+    boolean includes(int type, Path parentPath, NodeTypeImpl nodeType,
+                     Set<Name> mixins, NodeTypeManagerImpl ntMgr) {
+        if (includesAll(type)) {
+            return true;
+        }
+        if (!includes(type)) {
+            return false;
+        }
+        return includesPath(type, parentPath)
+                || includesNodeType(type, parentPath, nodeType, mixins, ntMgr);
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    /**
+     * Checks the filters without node type restriction.
+     */
+    private boolean includesPath(int type, Path parentPath) {
+        if (!includes(type)) {
+            return false;
+        }
+        PathMap.Element<int[]> element = paths.map(parentPath, false);
+        if (element.getDepth() == parentPath.getDepth()) {
+            int[] registered = element.get();
+            if (registered != null && (registered[SHALLOW] & type) != 0) {
+                return true;
+            }
+        }
+        while (element != null) {
+            int[] registered = element.get();
+            if (registered != null && (registered[DEEP] & type) != 0) {
+                return true;
+            }
+            element = element.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Checks the filters with node type restriction. If <code>nodeType</code>
+     * is <code>null</code> the node types are not checked.
+     */
+    private boolean includesNodeType(int type, Path parentPath,
+                                     NodeTypeImpl nodeType, Set<Name> mixins,
+                                     NodeTypeManagerImpl ntMgr) {
+        PathMap.Element<List<NodeTypeInterest>> element =
+                restricted.map(parentPath, false);
+        boolean exact = element.getDepth() == parentPath.getDepth();
+        while (element != null) {
+            List<NodeTypeInterest> registered = element.get();
+            if (registered != null) {
+                for (NodeTypeInterest interest : registered) {
+                    if ((interest.types & type) != 0
+                            && (exact || interest.deep)
+                            && (nodeType == null
+                                || interest.matches(nodeType, mixins, ntMgr))) {
+                        return true;
+                    }
+                }
+            }
+            exact = false;
+            element = element.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * The event types and node types of a filter with node type restriction
+     * registered for a path.
+     */
+    private static final class NodeTypeInterest {
+
+        private final int types;
+
+        private final boolean deep;
+
+        private final Name[] nodeTypes;
+
+        NodeTypeInterest(int types, boolean deep, NodeTypeImpl[] nodeTypes) {
+            this.types = types;
+            this.deep = deep;
+            this.nodeTypes = new Name[nodeTypes.length];
+            for (int i = 0; i < nodeTypes.length; i++) {
+                this.nodeTypes[i] = nodeTypes[i].getQName();
+            }
+        }
+
+        /**
+         * Same check as in {@link EventFilter#blocks(EventState)}: one of the
+         * node types of the parent node is or derives from one of the
+         * node types of the filter. Unknown mixin types match.
+         */
+        boolean matches(NodeTypeImpl nodeType, Set<Name> mixins,
+                        NodeTypeManagerImpl ntMgr) {
+            if (isOfType(nodeType)) {
+                return true;
+            }
+            for (Name mixin : mixins) {
+                try {
+                    if (isOfType(ntMgr.getNodeType(mixin))) {
+                        return true;
+                    }
+                } catch (NoSuchNodeTypeException e) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isOfType(NodeTypeImpl nodeType) {
+            for (Name name : nodeTypes) {
+                if (nodeType.getQName().equals(name) || nodeType.isDerivedFrom(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
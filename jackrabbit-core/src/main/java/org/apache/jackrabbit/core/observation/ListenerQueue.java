@@ -0,0 +1,421 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.observation.EventListener;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.jackrabbit.api.jmx.EventListenerMBean;
+import org.apache.jackrabbit.commons.observation.ListenerTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of pending event deliveries for a single asynchronous
+ * {@link EventConsumer}. The queue is drained by tasks submitted to a shared
+ * executor, one delivery per task, so that a slow listener only delays its
+ * own events and listeners are served round robin. At most one task per
+ * queue is active at any time, which preserves the delivery order for each
+ * listener.
+ * <p>
+ * What happens when more than <code>capacity</code> deliveries are pending
+ * is defined by the {@link OverflowPolicy}.
+ */
+class ListenerQueue implements Runnable {
+
+    /**
+     * Logger instance for this class
+     */
+    private static final Logger log = LoggerFactory.getLogger(ListenerQueue.class);
+
+    /**
+     * Prefix of the user data of the {@link javax.jcr.observation.Event#PERSIST}
+     * marker event that is delivered to a listener after events were dropped.
+     * The number of dropped events follows the prefix.
+     */
+    static final String EVENTS_DROPPED_PREFIX = "jackrabbit:eventsDropped:";
+
+    /**
+     * Marks threads that currently deliver events from a listener queue.
+     */
+    private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<Boolean>();
+
+    /**
+     * Makes the names of the listener MBeans unique.
+     */
+    private static final AtomicLong MBEAN_COUNTER = new AtomicLong();
+
+    /**
+     * Defines how a full queue handles additional deliveries.
+     */
+    enum OverflowPolicy {
+
+        /**
+         * Queue the events anyway and delay the writing thread in
+         * {@link ObservationDispatcher#delayIfEventQueueOverloaded()} until
+         * the queue has drained below its capacity again.
+         */
+        BLOCK,
+
+        /**
+         * Append the events to the last pending delivery, so that the listener
+         * receives them with a single {@link EventListener#onEvent} call per
+         * event collection but the number of pending deliveries does not grow.
+         */
+        COALESCE,
+
+        /**
+         * Discard the events. The listener is notified with a
+         * {@link javax.jcr.observation.Event#PERSIST} marker event whose user
+         * data starts with {@link ListenerQueue#EVENTS_DROPPED_PREFIX}.
+         */
+        DROP
+    }
+
+    /**
+     * The consumer this queue delivers to.
+     */
+    private final EventConsumer consumer;
+
+    /**
+     * Collects the statistics of the listener.
+     */
+    private final ListenerTracker tracker;
+
+    /**
+     * The listener decorated by the {@link #tracker}.
+     */
+    private final EventListener trackedListener;
+
+    /**
+     * The name of the MBean of the listener, or <code>null</code>.
+     */
+    private final ObjectName mbeanName;
+
+    /**
+     * Runs the delivery tasks.
+     */
+    private final Executor executor;
+
+    /**
+     * Maximum number of pending deliveries.
+     */
+    private final int capacity;
+
+    /**
+     * What to do when {@link #capacity} is reached.
+     */
+    private final OverflowPolicy policy;
+
+    /**
+     * Number of queued events of all queues of the dispatcher.
+     */
+    private final AtomicInteger totalQueued;
+
+    /**
+     * The pending deliveries, guarded by <code>this</code>.
+     */
+    private final LinkedList<Delivery> deliveries = new LinkedList<Delivery>();
+
+    /**
+     * Number of events in {@link #deliveries}.
+     */
+    private int queued;
+
+    /**
+     * Number of events dropped since the last marker event.
+     */
+    private long dropped;
+
+    /**
+     * Whether a delivery task is currently submitted.
+     */
+    private boolean scheduled;
+
+    /**
+     * Whether this queue has been closed.
+     */
+    private boolean closed;
+
+    ListenerQueue(EventConsumer consumer, Executor executor, int capacity,
+                  OverflowPolicy policy, AtomicInteger totalQueued) {
+        this.consumer = consumer;
+        ListenerTracker tracker = consumer.getListenerTracker();
+        if (tracker == null) {
+            tracker = new ListenerTracker(
+                    consumer.getEventListener(), 0, null, false, null, null, false);
+        }
+        this.tracker = tracker;
+        this.trackedListener = tracker.getTrackedListener();
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.totalQueued = totalQueued;
+        this.mbeanName = registerMBean(tracker);
+    }
+
+    /**
+     * Registers the statistics of the listener with the platform MBean
+     * server.
+     *
+     * @param tracker the tracker of the listener.
+     * @return the name of the registered MBean, or <code>null</code> if the
+     *         MBean could not be registered.
+     */
+    private static ObjectName registerMBean(ListenerTracker tracker) {
+        try {
+            ObjectName name = new ObjectName("org.apache.jackrabbit:type=EventListener"
+                    + ",name=" + ObjectName.quote(tracker.toString())
+                    + ",id=" + MBEAN_COUNTER.incrementAndGet());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(
+                    tracker.getListenerMBean(), EventListenerMBean.class), name);
+            return name;
+        } catch (Exception e) {
+            log.debug("Unable to register event listener MBean", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the name of the MBean of the listener, or <code>null</code> if
+     *         it is not registered.
+     */
+    ObjectName getMBeanName() {
+        return mbeanName;
+    }
+
+    /**
+     * Returns <code>true</code> if the current thread is delivering events
+     * from a listener queue.
+     *
+     * @return whether the current thread is a delivery thread.
+     */
+    static boolean isDeliveryThread() {
+        return DELIVERING.get() != null;
+    }
+
+    /**
+     * @return the statistics of the listener of this queue.
+     */
+    EventListenerMBean getListenerMBean() {
+        return tracker.getListenerMBean();
+    }
+
+    /**
+     * Queues <code>events</code> for delivery to the consumer, applying the
+     * overflow policy if the queue is full. This method never blocks.
+     *
+     * @param events the events to deliver.
+     */
+    void add(EventStateCollection events) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (deliveries.size() >= capacity) {
+                if (policy == OverflowPolicy.DROP) {
+                    dropped += events.size();
+                    tracker.recordEventsDropped(events.size());
+                    return;
+                } else if (policy == OverflowPolicy.COALESCE) {
+                    deliveries.getLast().add(events);
+                    queued(events.size());
+                    return;
+                }
+            }
+            deliveries.add(new Delivery(events));
+            queued(events.size());
+            schedule();
+        }
+    }
+
+    /**
+     * Waits until the queue has drained below its capacity. Does nothing
+     * unless the overflow policy is {@link OverflowPolicy#BLOCK}, or if
+     * called from a delivery thread.
+     *
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    void awaitCapacity() throws InterruptedException {
+        if (policy != OverflowPolicy.BLOCK || isDeliveryThread()) {
+            return;
+        }
+        synchronized (this) {
+            while (!closed && deliveries.size() >= capacity) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the queue currently holds
+     *         <code>capacity</code> or more pending deliveries.
+     */
+    synchronized boolean isFull() {
+        return deliveries.size() >= capacity;
+    }
+
+    /**
+     * Discards all pending deliveries, releases waiting writers and
+     * unregisters the MBean of the listener. Deliveries already in progress
+     * are completed.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            totalQueued.addAndGet(-queued);
+            queued = 0;
+            deliveries.clear();
+            tracker.recordQueueLag(0, 0);
+            notifyAll();
+        }
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (Exception e) {
+                log.debug("Unable to unregister event listener MBean", e);
+            }
+        }
+    }
+
+    /**
+     * Records the statistics of the listener. Called once per second.
+     */
+    void recordOneSecond() {
+        long lag = 0;
+        long length;
+        synchronized (this) {
+            length = queued;
+            if (!deliveries.isEmpty()) {
+                lag = System.currentTimeMillis() - deliveries.getFirst().created;
+            }
+        }
+        tracker.recordQueueLength(length);
+        tracker.recordQueueLag(length, lag);
+        tracker.recordOneSecond();
+    }
+
+    /**
+     * Delivers the first pending delivery and resubmits itself if more
+     * deliveries are pending.
+     */
+    public void run() {
+        Delivery delivery;
+        long markerCount;
+        synchronized (this) {
+            delivery = deliveries.poll();
+            markerCount = dropped;
+            dropped = 0;
+            if (delivery != null) {
+                queued(-delivery.size);
+                notifyAll();
+            }
+        }
+        DELIVERING.set(Boolean.TRUE);
+        try {
+            if (markerCount > 0) {
+                consumer.consumeEventsDropped(trackedListener, markerCount);
+            }
+            if (delivery != null) {
+                for (EventStateCollection events : delivery.events) {
+                    consumer.consumeEvents(events, trackedListener);
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("EventConsumer " +
+                    consumer.getEventListener().getClass().getName() +
+                    " threw exception", t);
+            // move on to the next delivery
+        } finally {
+            DELIVERING.remove();
+            synchronized (this) {
+                scheduled = false;
+                if (!closed && (!deliveries.isEmpty() || dropped > 0)) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return tracker.toString();
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    /**
+     * Submits a delivery task unless one is already pending. Must be called
+     * while holding the monitor of this queue.
+     */
+    private void schedule() {
+        if (!scheduled) {
+            try {
+                executor.execute(this);
+                scheduled = true;
+            } catch (RejectedExecutionException e) {
+                log.debug("Observation dispatcher shut down, discarding events");
+            }
+        }
+    }
+
+    /**
+     * Adjusts the number of queued events. Must be called while holding the
+     * monitor of this queue.
+     */
+    private void queued(int delta) {
+        queued += delta;
+        totalQueued.addAndGet(delta);
+    }
+
+    /**
+     * One or more event collections delivered by a single task.
+     */
+    private static final class Delivery {
+
+        private final long created = System.currentTimeMillis();
+
+        private final List<EventStateCollection> events =
+                new ArrayList<EventStateCollection>(1);
+
+        private int size;
+
+        Delivery(EventStateCollection events) {
+            add(events);
+        }
+
+        void add(EventStateCollection events) {
+            this.events.add(events);
+            size += events.size();
+        }
+    }
+}
@@ -19,18 +19,41 @@ package org.apache.jackrabbit.core.observation;
 import org.apache.commons.collections.Buffer;
 import org.apache.commons.collections.BufferUtils;
 import org.apache.commons.collections.buffer.UnboundedFifoBuffer;
+import org.apache.jackrabbit.core.observation.ListenerQueue.OverflowPolicy;
 import org.apache.jackrabbit.core.state.ChangeLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.jcr.observation.EventListener;
+
 /**
  * Dispatcher for dispatching events to listeners within a single workspace.
+ * <p>
+ * By default asynchronous listeners are notified one after the other by a
+ * single background thread. If the system property
+ * <code>jackrabbit.observation.dispatchMode</code> is set to
+ * <code>parallel</code>, each asynchronous listener gets its own bounded
+ * {@link ListenerQueue} instead, drained by a shared pool of
+ * <code>jackrabbit.observation.threads</code> threads (default 4), so that a
+ * slow listener does not delay the others. The queues hold at most
+ * <code>jackrabbit.observation.listenerQueueSize</code> pending deliveries
+ * (default 1000) and apply the overflow policy given by
+ * <code>jackrabbit.observation.overflowPolicy</code>: <code>block</code>
+ * (default), <code>coalesce</code> or <code>drop</code>.
  */
 public final class ObservationDispatcher extends EventDispatcher
         implements Runnable {
@@ -56,6 +79,32 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     private static final int MAX_QUEUED_EVENTS = Integer.parseInt(System.getProperty("jackrabbit.maxQueuedEvents", "200000"));
 
+    /**
+     * Whether asynchronous listeners are notified through per listener
+     * queues and a thread pool rather than a single notification thread.
+     */
+    private static final boolean PARALLEL_DISPATCH =
+            "parallel".equalsIgnoreCase(System.getProperty("jackrabbit.observation.dispatchMode", "serial"));
+
+    /**
+     * Number of threads notifying listeners in parallel dispatch mode.
+     */
+    private static final int DISPATCH_THREADS = Math.max(1,
+            Integer.parseInt(System.getProperty("jackrabbit.observation.threads", "4")));
+
+    /**
+     * Maximum number of pending deliveries per listener in parallel
+     * dispatch mode.
+     */
+    private static final int LISTENER_QUEUE_SIZE = Math.max(1,
+            Integer.parseInt(System.getProperty("jackrabbit.observation.listenerQueueSize", "1000")));
+
+    /**
+     * What to do if a listener queue is full in parallel dispatch mode.
+     */
+    private static final OverflowPolicy OVERFLOW_POLICY = OverflowPolicy.valueOf(
+            System.getProperty("jackrabbit.observation.overflowPolicy", "block").toUpperCase());
+
     /**
      * Currently active <code>EventConsumer</code>s for notification.
      */
@@ -76,6 +125,24 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     private Set<EventConsumer> synchronousReadOnlyConsumers;
 
+    /**
+     * Union of the interests of all registered consumers, or <code>null</code>
+     * if it needs to be recomputed.
+     */
+    private ListenerInterest interest;
+
+    /**
+     * The queues of the asynchronous <code>EventConsumer</code>s in parallel
+     * dispatch mode.
+     */
+    private Map<EventConsumer, ListenerQueue> listenerQueues =
+            new HashMap<EventConsumer, ListenerQueue>();
+
+    /**
+     * List of listener queues for read only access.
+     */
+    private List<ListenerQueue> readOnlyListenerQueues;
+
     /**
      * synchronization monitor for listener changes
      */
@@ -90,27 +157,72 @@ public final class ObservationDispatcher extends EventDispatcher
     private AtomicInteger eventQueueSize = new AtomicInteger();
 
     /**
-     * The background notification thread
+     * The background notification thread, or <code>null</code> in parallel
+     * dispatch mode.
      */
     private Thread notificationThread;
 
+    /**
+     * The thread pool draining the listener queues, or <code>null</code>
+     * unless in parallel dispatch mode.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Runs delayed tasks such as the delivery of coalesced events in serial
+     * dispatch mode, created on demand.
+     */
+    private ScheduledExecutorService scheduler;
+
     private long lastError;
 
     /**
      * Creates a new <code>ObservationDispatcher</code> instance
-     * and starts the notification thread daemon.
+     * and starts the notification thread daemon, or the notification
+     * thread pool in parallel dispatch mode.
      */
     public ObservationDispatcher() {
-        notificationThread = new Thread(this, "ObservationManager");
-        notificationThread.setDaemon(true);
-        notificationThread.start();
+        if (PARALLEL_DISPATCH) {
+            executor = new ScheduledThreadPoolExecutor(
+                    DISPATCH_THREADS, new NotificationThreadFactory());
+            executor.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    for (ListenerQueue queue : getListenerQueues()) {
+                        queue.recordOneSecond();
+                    }
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+        } else {
+            notificationThread = new Thread(this, "ObservationManager");
+            notificationThread.setDaemon(true);
+            notificationThread.start();
+        }
     }
 
     /**
      * Disposes this <code>ObservationManager</code>. This will
-     * effectively stop the background notification thread.
+     * effectively stop the background notification thread. In parallel
+     * dispatch mode events that are still queued are discarded.
      */
     public void dispose() {
+        synchronized (consumerChange) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        }
+        if (executor != null) {
+            for (ListenerQueue queue : getListenerQueues()) {
+                queue.close();
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while stopping notification of EventListeners", e);
+            }
+            log.info("Notification of EventListeners stopped.");
+            return;
+        }
         // dispatch dummy event to mark end of notification
         eventQueue.add(DISPOSE_MARKER);
         try {
@@ -144,6 +256,82 @@ public final class ObservationDispatcher extends EventDispatcher
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    ListenerInterest getListenerInterest() {
+        synchronized (consumerChange) {
+            if (interest == null) {
+                ListenerInterest union = new ListenerInterest();
+                for (EventConsumer c : synchronousConsumers) {
+                    union.add(c.getEventFilter());
+                }
+                for (EventConsumer c : activeConsumers) {
+                    union.add(c.getEventFilter());
+                }
+                interest = union;
+            }
+            return interest;
+        }
+    }
+
+    /**
+     * Returns the executor for delayed notification tasks. This is the
+     * notification thread pool in parallel dispatch mode, otherwise a single
+     * daemon thread created on first use.
+     *
+     * @return the executor for delayed notification tasks.
+     */
+    ScheduledExecutorService getScheduler() {
+        synchronized (consumerChange) {
+            if (executor != null) {
+                return executor;
+            }
+            if (scheduler == null) {
+                scheduler = new ScheduledThreadPoolExecutor(
+                        1, new NotificationThreadFactory());
+            }
+            return scheduler;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if events are delivered to the given listener
+     * through a listener queue, which is the case for asynchronous listeners
+     * in parallel dispatch mode. Only such listeners are tracked.
+     *
+     * @param listener an event listener.
+     * @return whether the listener gets a listener queue.
+     */
+    boolean isQueued(EventListener listener) {
+        return executor != null && !(listener instanceof SynchronousEventListener);
+    }
+
+    /**
+     * Returns the listener queues of the asynchronous consumers. The returned
+     * list is empty unless in parallel dispatch mode.
+     *
+     * @return unmodifiable list of listener queues.
+     */
+    private List<ListenerQueue> getListenerQueues() {
+        synchronized (consumerChange) {
+            if (readOnlyListenerQueues == null) {
+                readOnlyListenerQueues = Collections.unmodifiableList(
+                        new ArrayList<ListenerQueue>(listenerQueues.values()));
+            }
+            return readOnlyListenerQueues;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the current thread notifies asynchronous
+     * listeners.
+     */
+    private boolean isNotificationThread() {
+        return Thread.currentThread() == notificationThread
+                || ListenerQueue.isDeliveryThread();
+    }
+
     /**
      * Implements the run method of the background notification
      * thread.
@@ -207,7 +395,7 @@ public final class ObservationDispatcher extends EventDispatcher
     void dispatchEvents(EventStateCollection events) {
         // JCR-3426: log warning when changes are done
         // with the notification thread
-        if (Thread.currentThread() == notificationThread) {
+        if (isNotificationThread()) {
             log.warn("Save call with event notification thread detected. This " +
                     "may lead to a growing event queue. Enable debug log to " +
                     "see the stack trace with the class calling save().");
@@ -228,8 +416,14 @@ public final class ObservationDispatcher extends EventDispatcher
                 // move on to next consumer
             }
         }
-        eventQueue.add(new DispatchAction(events, getAsynchronousConsumers()));
-        eventQueueSize.addAndGet(events.size());
+        if (executor != null) {
+            for (ListenerQueue queue : getListenerQueues()) {
+                queue.add(events);
+            }
+        } else {
+            eventQueue.add(new DispatchAction(events, getAsynchronousConsumers()));
+            eventQueueSize.addAndGet(events.size());
+        }
     }
 
     /**
@@ -239,10 +433,27 @@ public final class ObservationDispatcher extends EventDispatcher
      * if the current thread is the observation thread, for example if
      * an observation listener writes to the repository.
      * <p>
+     * In parallel dispatch mode with the <code>block</code> overflow policy
+     * the current thread additionally waits until all listener queues have
+     * drained below their capacity.
+     * <p>
      * This method should only be called outside the scope of internal
      * repository access locks.
      */
     public void delayIfEventQueueOverloaded() {
+        if (executor != null && OVERFLOW_POLICY == OverflowPolicy.BLOCK) {
+            for (ListenerQueue queue : getListenerQueues()) {
+                if (queue.isFull()) {
+                    log.debug("Waiting for event queue of {}", queue);
+                    try {
+                        queue.awaitCapacity();
+                    } catch (InterruptedException e) {
+                        log.warn("Interrupted while rate-limiting writes", e);
+                        return;
+                    }
+                }
+            }
+        }
         if (eventQueueSize.get() > MAX_QUEUED_EVENTS) {
             boolean logWarning = false;
             long now = System.currentTimeMillis();
@@ -252,7 +463,7 @@ public final class ObservationDispatcher extends EventDispatcher
                 log.warn("More than " + MAX_QUEUED_EVENTS + " events in the queue", new Exception("Stack Trace"));
                 lastError = now;
             }
-            if (Thread.currentThread() == notificationThread) {
+            if (isNotificationThread()) {
                 if (logWarning) {
                     log.warn("Recursive notification?");
                 }
@@ -275,6 +486,7 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     void addConsumer(EventConsumer consumer) {
         synchronized (consumerChange) {
+            interest = null;
             if (consumer.getEventListener() instanceof SynchronousEventListener) {
                 // remove existing if any
                 synchronousConsumers.remove(consumer);
@@ -289,6 +501,16 @@ public final class ObservationDispatcher extends EventDispatcher
                 activeConsumers.add(consumer);
                 // reset read only consumer set
                 readOnlyConsumers = null;
+                if (executor != null) {
+                    // replace the queue of an existing registration
+                    ListenerQueue queue = listenerQueues.put(consumer,
+                            new ListenerQueue(consumer, executor,
+                                    LISTENER_QUEUE_SIZE, OVERFLOW_POLICY, eventQueueSize));
+                    if (queue != null) {
+                        queue.close();
+                    }
+                    readOnlyListenerQueues = null;
+                }
             }
         }
     }
@@ -299,6 +521,7 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     void removeConsumer(EventConsumer consumer) {
         synchronized (consumerChange) {
+            interest = null;
             if (consumer.getEventListener() instanceof SynchronousEventListener) {
                 synchronousConsumers.remove(consumer);
                 // reset read only listener set
@@ -307,8 +530,27 @@ public final class ObservationDispatcher extends EventDispatcher
                 activeConsumers.remove(consumer);
                 // reset read only listener set
                 readOnlyConsumers = null;
+                ListenerQueue queue = listenerQueues.remove(consumer);
+                if (queue != null) {
+                    queue.close();
+                    readOnlyListenerQueues = null;
+                }
             }
         }
     }
 
+    /**
+     * Creates the daemon threads of the notification thread pool.
+     */
+    private static final class NotificationThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ObservationManager-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
 }
@@ -31,6 +31,7 @@ import javax.jcr.observation.ObservationManager;
 
 import org.apache.jackrabbit.api.observation.JackrabbitEventFilter;
 import org.apache.jackrabbit.api.observation.JackrabbitObservationManager;
+import org.apache.jackrabbit.commons.observation.ListenerTracker;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.cluster.ClusterNode;
 import org.apache.jackrabbit.core.id.NodeId;
@@ -121,7 +122,12 @@ public class ObservationManagerImpl implements EventStateCollectionFactory,
         EventFilter filter = createEventFilter(eventTypes, Collections.singletonList(absPath),
                 isDeep, uuid, nodeTypeName, noLocal, false, false);
 
-        dispatcher.addConsumer(new EventConsumer(session, listener, filter));
+        ListenerTracker tracker = null;
+        if (dispatcher.isQueued(listener)) {
+            tracker = new ListenerTracker(
+                    listener, eventTypes, absPath, isDeep, uuid, nodeTypeName, noLocal);
+        }
+        dispatcher.addConsumer(new EventConsumer(session, listener, filter, tracker, null));
     }
 
     @Override
@@ -143,7 +149,22 @@ public class ObservationManagerImpl implements EventStateCollectionFactory,
                 filter.getIsDeep(), filter.getIdentifiers(), filter.getNodeTypes(),
                 filter.getNoLocal(), filter.getNoExternal(), filter.getNoInternal());
 
-        dispatcher.addConsumer(new EventConsumer(session, listener, f));
+        ListenerTracker tracker = null;
+        if (dispatcher.isQueued(listener)) {
+            tracker = new ListenerTracker(
+                    listener, filter.getEventTypes(), filter.getAbsPath(), filter.getIsDeep(),
+                    filter.getIdentifiers(), filter.getNodeTypes(), filter.getNoLocal());
+        }
+        EventCoalescer coalescer = null;
+        if (filter.getCoalescingWindow() > 0
+                && listener instanceof SynchronousEventListener) {
+            log.warn("JackrabbitEventFilter coalescingWindow is not supported for synchronous listeners and will be ignored: {}",
+                    listener.getClass().getName());
+        } else if (filter.getCoalescingWindow() > 0) {
+            coalescer = new EventCoalescer(session, filter.getCoalescingWindow(),
+                    dispatcher.getScheduler());
+        }
+        dispatcher.addConsumer(new EventConsumer(session, listener, f, tracker, coalescer));
     }
 
     /**
@@ -290,7 +311,8 @@ public class ObservationManagerImpl implements EventStateCollectionFactory,
         EventFilter filter = createEventFilter(
                 eventTypes, Collections.singletonList(absPath), isDeep, uuid, nodeTypeName, false, false, false);
         return new EventJournalImpl(
-                filter, clusterNode.getJournal(), clusterNode.getId(), session);
+                filter, clusterNode.getJournal(), clusterNode.getId(),
+                clusterNode.getEventJournalIndex(), session);
     }
 
     /**
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.persistence;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The progress of a copy operation, stored in a properties file so that an
+ * interrupted copy can be resumed. Each {@link PersistenceCopier} stores the
+ * identifier of the last node it copied under its own key.
+ *
+ * @see PersistenceCopier#setCheckpoint(CopyCheckpoint, String)
+ */
+public class CopyCheckpoint {
+
+    /**
+     * The value of a key whose copy operation completed.
+     */
+    public static final String DONE = "done";
+
+    private final File file;
+
+    private final Properties properties = new Properties();
+
+    /**
+     * Opens the checkpoint stored in the given file. The file is created
+     * when the first progress is recorded.
+     *
+     * @param file the checkpoint file
+     * @throws RepositoryException if the file can not be read
+     */
+    public CopyCheckpoint(File file) throws RepositoryException {
+        this.file = file;
+        if (file.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                properties.load(in);
+            } catch (IOException e) {
+                throw new RepositoryException(
+                        "Unable to read the checkpoint " + file, e);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    /**
+     * Returns the recorded progress of the given key.
+     *
+     * @param key the key
+     * @return the progress, or <code>null</code> if not started
+     */
+    public synchronized String get(String key) {
+        return properties.getProperty(key);
+    }
+
+    /**
+     * Records the progress of the given key. The file is replaced
+     * atomically, so that it is consistent even if the process is killed.
+     *
+     * @param key the key
+     * @param value the progress
+     * @throws RepositoryException if the file can not be written
+     */
+    public synchronized void set(String key, String value)
+            throws RepositoryException {
+        properties.setProperty(key, value);
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            properties.store(out, "Repository copy progress");
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                FileUtils.deleteQuietly(file);
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Unable to rename " + temp);
+                }
+            }
+        } catch (IOException e) {
+            throw new RepositoryException(
+                    "Unable to write the checkpoint " + file, e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Deletes the checkpoint file.
+     */
+    public synchronized void delete() {
+        properties.clear();
+        FileUtils.deleteQuietly(file);
+    }
+}
@@ -18,23 +18,36 @@ package org.apache.jackrabbit.core.persistence;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 
 import org.apache.jackrabbit.core.data.DataStore;
+import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.id.PropertyId;
 import org.apache.jackrabbit.core.state.ChangeLog;
 import org.apache.jackrabbit.core.state.ChildNodeEntry;
 import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.NoSuchItemStateException;
 import org.apache.jackrabbit.core.state.NodeReferences;
 import org.apache.jackrabbit.core.state.NodeState;
 import org.apache.jackrabbit.core.state.PropertyState;
 import org.apache.jackrabbit.core.value.InternalValue;
 import org.apache.jackrabbit.spi.Name;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Tool for copying item states from one persistence manager to another.
@@ -44,6 +57,18 @@ import org.apache.jackrabbit.spi.Name;
  */
 public class PersistenceCopier {
 
+    /**
+     * Logger instance
+     */
+    private static final Logger logger =
+        LoggerFactory.getLogger(PersistenceCopier.class);
+
+    /**
+     * The number of node identifiers read from the source persistence
+     * manager at once by {@link #copyAll()}.
+     */
+    private static final int NODES_AT_ONCE = 1024;
+
     /**
      * Source persistence manager.
      */
@@ -67,6 +92,26 @@ public class PersistenceCopier {
      */
     private final Set<NodeId> exclude = new HashSet<NodeId>();
 
+    /**
+     * Number of threads used by {@link #copyAll()}.
+     */
+    private int threads = 1;
+
+    /**
+     * Whether {@link #copyAll()} compares the checksums of the copied nodes.
+     */
+    private boolean verify;
+
+    /**
+     * Progress of {@link #copyAll()}, possibly <code>null</code>.
+     */
+    private CopyCheckpoint checkpoint;
+
+    /**
+     * Key of the progress of this copier in the {@link #checkpoint}.
+     */
+    private String checkpointKey;
+
     /**
      * Creates a tool for copying content from one persistence manager
      * to another.
@@ -93,6 +138,252 @@ public class PersistenceCopier {
         exclude.add(id);
     }
 
+    /**
+     * Sets the number of threads that copy nodes concurrently in
+     * {@link #copyAll()}. The default is 1.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether {@link #copyAll()} verifies each copied node by comparing
+     * a checksum of the source and the target states. Binary values are
+     * compared by length, as their content is verified by the data store.
+     *
+     * @param verify whether to verify the copied nodes
+     */
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    /**
+     * Sets the checkpoint in which {@link #copyAll()} records its progress
+     * under the given key, and from which it resumes.
+     *
+     * @param checkpoint the checkpoint
+     * @param key the key of this copier
+     */
+    public void setCheckpoint(CopyCheckpoint checkpoint, String key) {
+        this.checkpoint = checkpoint;
+        this.checkpointKey = key;
+    }
+
+    /**
+     * Copies all nodes of the source persistence manager, except the
+     * explicitly excluded nodes and their descendants. The node identifiers
+     * are read in batches, and each batch is split into ranges that are
+     * copied concurrently, so that only one batch is held in memory. After
+     * each batch the progress is recorded in the checkpoint, if set, and a
+     * later call resumes after the last completed batch.
+     *
+     * @throws RepositoryException if the source persistence manager is not
+     *             iterable, or if the copy operation fails
+     */
+    public void copyAll() throws RepositoryException {
+        if (!(source instanceof IterablePersistenceManager)) {
+            throw new RepositoryException(
+                    "Persistence manager is not iterable: " + source);
+        }
+        IterablePersistenceManager pm = (IterablePersistenceManager) source;
+        NodeId after = null;
+        if (checkpoint != null) {
+            String progress = checkpoint.get(checkpointKey);
+            if (CopyCheckpoint.DONE.equals(progress)) {
+                logger.info("{} already copied", checkpointKey);
+                return;
+            } else if (progress != null) {
+                after = new NodeId(progress);
+                logger.info("Resuming copy of {} after {}", checkpointKey, after);
+            }
+        }
+        Set<NodeId> skip = getExcludedSubtrees();
+        ExecutorService executor = null;
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(
+                    threads, new NamedThreadFactory("jackrabbit-copier"));
+        }
+        try {
+            long count = 0;
+            List<NodeId> batch = pm.getAllNodeIds(after, NODES_AT_ONCE);
+            while (!batch.isEmpty()) {
+                List<NodeId> ids = new ArrayList<NodeId>(batch.size());
+                for (NodeId id : batch) {
+                    if (!skip.contains(id)) {
+                        ids.add(id);
+                    }
+                }
+                copyBatch(executor, ids);
+                count += ids.size();
+                after = batch.get(batch.size() - 1);
+                if (checkpoint != null) {
+                    checkpoint.set(checkpointKey, after.toString());
+                }
+                logger.debug("Copied {} nodes", count);
+                batch = pm.getAllNodeIds(after, NODES_AT_ONCE);
+            }
+            if (checkpoint != null) {
+                checkpoint.set(checkpointKey, CopyCheckpoint.DONE);
+            }
+            logger.info("Copied {} nodes", count);
+        } catch (ItemStateException e) {
+            throw new RepositoryException("Unable to read the node ids", e);
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns the explicitly excluded nodes and all their descendants.
+     */
+    private Set<NodeId> getExcludedSubtrees() throws RepositoryException {
+        Set<NodeId> skip = new HashSet<NodeId>();
+        List<NodeId> pending = new ArrayList<NodeId>(exclude);
+        while (!pending.isEmpty()) {
+            NodeId id = pending.remove(pending.size() - 1);
+            if (skip.add(id)) {
+                try {
+                    for (ChildNodeEntry entry
+                            : source.load(id).getChildNodeEntries()) {
+                        pending.add(entry.getId());
+                    }
+                } catch (NoSuchItemStateException e) {
+                    // virtual node, not stored in the source
+                } catch (ItemStateException e) {
+                    throw new RepositoryException("Unable to load " + id, e);
+                }
+            }
+        }
+        return skip;
+    }
+
+    /**
+     * Copies the given nodes, splitting them into one range per thread.
+     */
+    private void copyBatch(ExecutorService executor, List<NodeId> ids)
+            throws RepositoryException {
+        if (executor == null || ids.size() < threads) {
+            copyRange(ids);
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        int size = (ids.size() + threads - 1) / threads;
+        for (int start = 0; start < ids.size(); start += size) {
+            final List<NodeId> range =
+                    ids.subList(start, Math.min(start + size, ids.size()));
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    copyRange(range);
+                    return null;
+                }
+            }));
+        }
+        RepositoryException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new RepositoryException("Interrupted while copying", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (failure == null) {
+                    if (cause instanceof RepositoryException) {
+                        failure = (RepositoryException) cause;
+                    } else {
+                        failure = new RepositoryException(cause);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Copies the given nodes with a single change log, and verifies them
+     * if enabled.
+     */
+    private void copyRange(List<NodeId> ids) throws RepositoryException {
+        ChangeLog changes = new ChangeLog();
+        for (NodeId id : ids) {
+            try {
+                copy(source.load(id), changes);
+            } catch (ItemStateException e) {
+                throw new RepositoryException("Unable to copy " + id, e);
+            }
+        }
+        try {
+            target.store(changes);
+        } catch (ItemStateException e) {
+            throw new RepositoryException("Unable to store " + ids, e);
+        }
+        if (verify) {
+            for (NodeId id : ids) {
+                if (checksum(source, id) != checksum(target, id)) {
+                    throw new RepositoryException(
+                            "Checksum mismatch after copying " + id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes a checksum of the given node and its properties.
+     */
+    private static long checksum(PersistenceManager pm, NodeId id)
+            throws RepositoryException {
+        try {
+            CRC32 crc = new CRC32();
+            NodeState node = pm.load(id);
+            update(crc, node.getParentId());
+            update(crc, node.getNodeTypeName());
+            Object[] mixins = node.getMixinTypeNames().toArray();
+            Arrays.sort(mixins);
+            for (Object mixin : mixins) {
+                update(crc, mixin);
+            }
+            for (ChildNodeEntry entry : node.getChildNodeEntries()) {
+                update(crc, entry.getName());
+                update(crc, entry.getIndex());
+                update(crc, entry.getId());
+            }
+            Object[] names = node.getPropertyNames().toArray();
+            Arrays.sort(names);
+            for (Object name : names) {
+                PropertyState property =
+                    pm.load(new PropertyId(id, (Name) name));
+                update(crc, name);
+                update(crc, property.getType());
+                update(crc, property.isMultiValued());
+                for (InternalValue value : property.getValues()) {
+                    if (property.getType() == PropertyType.BINARY) {
+                        update(crc, value.getLength());
+                    } else {
+                        update(crc, value.getString());
+                    }
+                }
+            }
+            return crc.getValue();
+        } catch (ItemStateException e) {
+            throw new RepositoryException("Unable to verify " + id, e);
+        }
+    }
+
+    private static void update(CRC32 crc, Object value) {
+        try {
+            crc.update(String.valueOf(value).getBytes("UTF-8"));
+            crc.update(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Recursively copies the identified node and all its descendants.
      * Explicitly excluded nodes and nodes that have already been copied
@@ -126,9 +417,28 @@ public class PersistenceCopier {
      * @throws RepositoryException if the copy operation fails
      */
     private void copy(NodeState sourceNode) throws RepositoryException {
+        ChangeLog changes = new ChangeLog();
+        copy(sourceNode, changes);
         try {
-            ChangeLog changes = new ChangeLog();
+            // Persist the copied states
+            target.store(changes);
+        } catch (ItemStateException e) {
+            throw new RepositoryException("Unable to copy " + sourceNode, e);
+        }
+    }
 
+    /**
+     * Adds the given node state and all associated property states and
+     * references to the given change log of the target persistence
+     * manager. Binary values are added to the target data store.
+     *
+     * @param sourceNode source node state
+     * @param changes change log of the target persistence manager
+     * @throws RepositoryException if the copy operation fails
+     */
+    private void copy(NodeState sourceNode, ChangeLog changes)
+            throws RepositoryException {
+        try {
             // Copy the node state
             NodeState targetNode = target.createNew(sourceNode.getNodeId());
             targetNode.setParentId(sourceNode.getParentId());
@@ -177,9 +487,6 @@ public class PersistenceCopier {
                 references.clearAllReferences();
                 changes.modified(references);
             }
-
-            // Persist the copied states
-            target.store(changes);
         } catch (IOException e) {
             throw new RepositoryException(
                     "Unable to copy binary values of " + sourceNode, e);
@@ -33,6 +33,7 @@ import javax.jcr.security.AccessControlPolicy;
 import javax.jcr.security.AccessControlPolicyIterator;
 import javax.jcr.security.Privilege;
 import java.security.Principal;
+import java.util.BitSet;
 
 /**
  * <code>AbstractAccessControlManager</code>...
@@ -121,6 +122,30 @@ public abstract class AbstractAccessControlManager implements JackrabbitAccessCo
     }
 
 
+    /**
+     * Tests the given privileges for a batch of paths at once. This default
+     * implementation calls {@link #hasPrivileges(String, Privilege[])} for
+     * each path; subclasses may evaluate the batch more efficiently.
+     *
+     * @param absPaths Paths to existing nodes.
+     * @param privileges The privileges to test.
+     * @return A bit set where the bit at index <code>i</code> is set if all
+     * privileges are granted at <code>absPaths[i]</code>.
+     * @throws PathNotFoundException if no node exists at one of the paths or
+     * if the session does not have privilege to retrieve it.
+     * @throws RepositoryException If another error occurs.
+     * @see javax.jcr.security.AccessControlManager#hasPrivileges(String, Privilege[])
+     */
+    public BitSet hasPrivileges(String[] absPaths, Privilege[] privileges) throws PathNotFoundException, RepositoryException {
+        BitSet granted = new BitSet(absPaths.length);
+        for (int i = 0; i < absPaths.length; i++) {
+            if (hasPrivileges(absPaths[i], privileges)) {
+                granted.set(i);
+            }
+        }
+        return granted;
+    }
+
     //-------------------------------------< JackrabbitAccessControlManager >---
     /**
      * @see org.apache.jackrabbit.api.security.JackrabbitAccessControlManager#getApplicablePolicies(java.security.Principal)
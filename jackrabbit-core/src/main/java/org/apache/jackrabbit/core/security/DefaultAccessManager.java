@@ -22,6 +22,7 @@ import org.apache.jackrabbit.commons.iterator.AccessControlPolicyIteratorAdapter
 import org.apache.jackrabbit.core.HierarchyManager;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.core.security.authorization.AbstractCompiledPermissions;
 import org.apache.jackrabbit.core.security.authorization.AccessControlEditor;
 import org.apache.jackrabbit.core.security.authorization.AccessControlProvider;
 import org.apache.jackrabbit.core.security.authorization.CompiledPermissions;
@@ -48,6 +49,7 @@ import javax.security.auth.Subject;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -448,6 +450,38 @@ public class DefaultAccessManager extends AbstractAccessControlManager implement
     }
 
     //---------------------------------------< AbstractAccessControlManager >---
+    /**
+     * Evaluates the batch with a single call to the compiled permissions,
+     * if supported.
+     *
+     * @see AbstractAccessControlManager#hasPrivileges(String[], Privilege[])
+     */
+    @Override
+    public BitSet hasPrivileges(String[] absPaths, Privilege[] privileges) throws PathNotFoundException, RepositoryException {
+        checkInitialized();
+        Path[] paths = new Path[absPaths.length];
+        for (int i = 0; i < absPaths.length; i++) {
+            checkValidNodePath(absPaths[i]);
+            paths[i] = getPath(absPaths[i]);
+        }
+
+        BitSet granted = new BitSet(absPaths.length);
+        if (privileges == null || privileges.length == 0) {
+            // null or empty privilege array -> return true
+            log.debug("No privileges passed -> allowed.");
+            granted.set(0, absPaths.length);
+        } else if (compiledPermissions instanceof AbstractCompiledPermissions) {
+            granted = ((AbstractCompiledPermissions) compiledPermissions).hasPrivileges(paths, privileges);
+        } else {
+            for (int i = 0; i < paths.length; i++) {
+                if (compiledPermissions.hasPrivileges(paths[i], privileges)) {
+                    granted.set(i);
+                }
+            }
+        }
+        return granted;
+    }
+
     /**
      * @see AbstractAccessControlManager#checkInitialized()
      */
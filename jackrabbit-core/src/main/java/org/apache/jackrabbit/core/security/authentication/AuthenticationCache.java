@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.authentication;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.core.security.user.PasswordUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>AuthenticationCache</code> remembers successful password and token
+ * key verifications in order to avoid the iterated hashing done by
+ * {@link PasswordUtility#isSame(String, String)} for repeated logins with the
+ * same credentials.
+ * <p>
+ * An entry is keyed by the stored (salted) hash and only contains a digest
+ * of the verified password, computed with a random value that is created
+ * once per class loader. As the result of the verification only depends on
+ * the stored hash and the given password, entries never need to be
+ * invalidated: changing the password or removing a token changes or removes
+ * the stored hash that is looked up. Failed verifications are never cached.
+ * <p>
+ * The entries are shared by all instances. Each instance only accepts
+ * entries that are younger than its expiration time.
+ */
+public class AuthenticationCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthenticationCache.class);
+
+    /**
+     * The maximum number of verified hashes kept in memory.
+     */
+    private static final int MAX_SIZE = 1000;
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final byte[] SALT = new byte[16];
+    static {
+        new SecureRandom().nextBytes(SALT);
+    }
+
+    private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private final long expiration;
+
+    /**
+     * @param expiration The time in milliseconds a successful verification
+     * is reused.
+     */
+    public AuthenticationCache(long expiration) {
+        this.expiration = expiration;
+    }
+
+    /**
+     * Same as {@link PasswordUtility#isSame(String, String)} but returns the
+     * result of a previous successful verification of the same password if
+     * it has not expired yet.
+     *
+     * @param hashedPassword Password hash.
+     * @param password The password to compare.
+     * @return If the hash of the specified {@code password} equals the given
+     * {@code hashedPassword} string.
+     */
+    public boolean isSame(String hashedPassword, String password) {
+        if (hashedPassword == null || password == null) {
+            return PasswordUtility.isSame(hashedPassword, password);
+        }
+
+        byte[] digest;
+        try {
+            MessageDigest md = MessageDigest.getInstance(ALGORITHM);
+            md.update(SALT);
+            digest = md.digest(password.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            log.warn(e.getMessage());
+            return PasswordUtility.isSame(hashedPassword, password);
+        } catch (UnsupportedEncodingException e) {
+            log.warn(e.getMessage());
+            return PasswordUtility.isSame(hashedPassword, password);
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(hashedPassword);
+        }
+        if (entry != null && now - entry.created < expiration
+                && MessageDigest.isEqual(entry.digest, digest)) {
+            return true;
+        }
+
+        if (PasswordUtility.isSame(hashedPassword, password)) {
+            synchronized (entries) {
+                entries.put(hashedPassword, new Entry(digest, now));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all verified hashes.
+     */
+    public static void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    private static final class Entry {
+
+        private final byte[] digest;
+        private final long created;
+
+        private Entry(byte[] digest, long created) {
+            this.digest = digest;
+            this.created = created;
+        }
+    }
+}
@@ -47,6 +47,11 @@ import org.slf4j.LoggerFactory;
  * In both cases the login is successful if the system contains a non-disabled,
  * valid user that matches the given credentials.
  * <p>
+ * The optional <code>authenticationCacheExpiration</code> parameter enables
+ * reusing successful password and token verifications for the given time in
+ * milliseconds, see {@link AuthenticationCache}. The user is resolved and
+ * checked for being disabled on every login in any case.
+ * <p>
  * Correspondingly impersonation is delegated to the <code>User</code>'s
  * {@link User#getImpersonation() Impersonation} object.
  *
@@ -66,6 +71,12 @@ public class DefaultLoginModule extends AbstractLoginModule {
      */
     private static final String PARAM_TOKEN_EXPIRATION = "tokenExpiration";
 
+    /**
+     * Optional configuration parameter to reuse successful password and
+     * token verifications for the given time in milliseconds.
+     */
+    private static final String PARAM_AUTHENTICATION_CACHE_EXPIRATION = "authenticationCacheExpiration";
+
     /**
      * Flag indicating if Token-based authentication is disabled by the
      * LoginModule configuration.
@@ -77,6 +88,13 @@ public class DefaultLoginModule extends AbstractLoginModule {
      */
     private long tokenExpiration = TokenBasedAuthentication.TOKEN_EXPIRATION;
 
+    /**
+     * The time successful password and token verifications are reused as set
+     * by the LoginModule configuration. The default value <code>0</code>
+     * disables the authentication cache.
+     */
+    private long authenticationCacheExpiration;
+
     /**
      * The user object retrieved during the authentication process.
      */
@@ -159,6 +177,14 @@ public class DefaultLoginModule extends AbstractLoginModule {
                 log.warn("Unabled to parse token expiration: {}", e.getMessage());
             }
         }
+        if (options.containsKey(PARAM_AUTHENTICATION_CACHE_EXPIRATION)) {
+            try {
+                authenticationCacheExpiration = Long.parseLong(options.get(PARAM_AUTHENTICATION_CACHE_EXPIRATION).toString());
+                log.debug("- Authentication cache expiration -> '" + authenticationCacheExpiration + "'");
+            } catch (NumberFormatException e) {
+                log.warn("Unabled to parse authentication cache expiration: {}", e.getMessage());
+            }
+        }
     }
 
     /**
@@ -246,15 +272,18 @@ public class DefaultLoginModule extends AbstractLoginModule {
      */
     @Override
     protected Authentication getAuthentication(Principal principal, Credentials creds) throws RepositoryException {
+        AuthenticationCache cache = (authenticationCacheExpiration > 0)
+                ? new AuthenticationCache(authenticationCacheExpiration)
+                : null;
         if (!disableTokenAuth && tokenCredentials != null) {
-            Authentication authentication = new TokenBasedAuthentication(tokenCredentials.getToken(), tokenExpiration, session);
+            Authentication authentication = new TokenBasedAuthentication(tokenCredentials.getToken(), tokenExpiration, session, cache);
             if (authentication.canHandle(creds)) {
                 return authentication;
             }
         }
 
         if (user != null) {
-            Authentication authentication = new SimpleCredentialsAuthentication(user);
+            Authentication authentication = new SimpleCredentialsAuthentication(user, cache);
             if (authentication.canHandle(creds)) {
                 return authentication;
             }
@@ -331,4 +360,22 @@ public class DefaultLoginModule extends AbstractLoginModule {
     public void setTokenExpiration(long tokenExpiration) {
         this.tokenExpiration = tokenExpiration;
     }
+
+    /**
+     * @return The configured time in milliseconds successful password and
+     * token verifications are reused. <code>0</code> if the authentication
+     * cache is disabled.
+     */
+    public long getAuthenticationCacheExpiration() {
+        return authenticationCacheExpiration;
+    }
+
+    /**
+     * @param authenticationCacheExpiration Sets the time in milliseconds
+     * successful password and token verifications are reused. A value of
+     * <code>0</code> disables the authentication cache.
+     */
+    public void setAuthenticationCacheExpiration(long authenticationCacheExpiration) {
+        this.authenticationCacheExpiration = authenticationCacheExpiration;
+    }
 }
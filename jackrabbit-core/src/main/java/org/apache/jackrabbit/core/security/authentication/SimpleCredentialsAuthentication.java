@@ -41,6 +41,8 @@ class SimpleCredentialsAuthentication implements Authentication {
 
     private final CryptedSimpleCredentials creds;
 
+    private final AuthenticationCache cache;
+
     /**
      * Create a new <code>Authentication</code> instance for the given <code>User</code>.
      *
@@ -48,6 +50,19 @@ class SimpleCredentialsAuthentication implements Authentication {
      * @throws javax.jcr.RepositoryException If an error occurs.
      */
     SimpleCredentialsAuthentication(User user) throws RepositoryException {
+        this(user, null);
+    }
+
+    /**
+     * Create a new <code>Authentication</code> instance for the given
+     * <code>User</code> that reuses previous successful password verifications.
+     *
+     * @param user to create the Authentication.
+     * @param cache The cache of verified passwords or <code>null</code>.
+     * @throws javax.jcr.RepositoryException If an error occurs.
+     */
+    SimpleCredentialsAuthentication(User user, AuthenticationCache cache) throws RepositoryException {
+        this.cache = cache;
         Credentials creds = user.getCredentials();
         if (creds instanceof CryptedSimpleCredentials) {
             this.creds = (CryptedSimpleCredentials) creds;
@@ -98,6 +113,11 @@ class SimpleCredentialsAuthentication implements Authentication {
         if (!(credentials instanceof SimpleCredentials)) {
             throw new RepositoryException("SimpleCredentials expected. Cannot handle " + credentials.getClass().getName());
         }
+        if (creds != null && cache != null) {
+            SimpleCredentials sc = (SimpleCredentials) credentials;
+            return creds.getUserID().equalsIgnoreCase(sc.getUserID())
+                    && cache.isSame(creds.getPassword(), String.valueOf(sc.getPassword()));
+        }
         try {
             if (creds != null && creds.matches((SimpleCredentials) credentials)) {
                 return true;
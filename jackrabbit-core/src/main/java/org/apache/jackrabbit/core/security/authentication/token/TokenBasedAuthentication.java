@@ -29,6 +29,7 @@ import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.security.authentication.Authentication;
+import org.apache.jackrabbit.core.security.authentication.AuthenticationCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,10 +64,27 @@ public class TokenBasedAuthentication implements Authentication {
     private final TokenInfo tokenInfo;
 
     public TokenBasedAuthentication(String token, long tokenExpiration, Session session) throws RepositoryException {
+        this(token, tokenExpiration, session, null);
+    }
+
+    /**
+     * Creates a new token based authentication that reuses previous
+     * successful verifications of the token key. The token node is read in
+     * any case in order to detect expired and removed tokens.
+     *
+     * @param token The login token.
+     * @param tokenExpiration The expiration time of login tokens.
+     * @param session The session used to read the token node.
+     * @param cache The cache of verified token keys or <code>null</code>.
+     * This cache is not used in compatibility mode.
+     * @throws RepositoryException If an error occurs.
+     */
+    public TokenBasedAuthentication(String token, long tokenExpiration, Session session,
+                                    AuthenticationCache cache) throws RepositoryException {
         if (compatMode()) {
             this.tokenInfo = new CompatTokenProvider((SessionImpl) session, tokenExpiration).getTokenInfo(token);
         } else {
-            this.tokenInfo = new TokenProvider((SessionImpl) session, tokenExpiration).getTokenInfo(token);
+            this.tokenInfo = new TokenProvider((SessionImpl) session, tokenExpiration, cache).getTokenInfo(token);
         }
 
     }
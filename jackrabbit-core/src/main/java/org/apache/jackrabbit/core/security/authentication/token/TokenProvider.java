@@ -50,6 +50,7 @@ import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.ProtectedItemModifier;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.security.authentication.AuthenticationCache;
 import org.apache.jackrabbit.core.security.user.PasswordUtility;
 import org.apache.jackrabbit.core.security.user.UserImpl;
 import org.apache.jackrabbit.spi.Name;
@@ -96,11 +97,24 @@ public class TokenProvider extends ProtectedItemModifier {
     private final SessionImpl session;
     private final UserManager userManager;
     private final long tokenExpiration;
+    private final AuthenticationCache cache;
 
     TokenProvider(SessionImpl session, long tokenExpiration) throws RepositoryException {
+        this(session, tokenExpiration, null);
+    }
+
+    /**
+     * @param session The session used to read and write token nodes.
+     * @param tokenExpiration The expiration time of new tokens.
+     * @param cache The cache used to reuse previous successful verifications
+     * of token keys or {@code null}.
+     * @throws RepositoryException If an error occurs.
+     */
+    TokenProvider(SessionImpl session, long tokenExpiration, AuthenticationCache cache) throws RepositoryException {
         this.session = session;
         this.userManager = session.getUserManager();
         this.tokenExpiration = tokenExpiration;
+        this.cache = cache;
     }
 
     /**
@@ -422,7 +436,11 @@ public class TokenProvider extends ProtectedItemModifier {
             if (pos > -1) {
                 tk = tk.substring(pos + 1);
             }
-            if (key == null || !PasswordUtility.isSame(key, getKeyValue(tk, userId))) {
+            if (key == null) {
+                return false;
+            }
+            String keyValue = getKeyValue(tk, userId);
+            if (cache == null ? !PasswordUtility.isSame(key, keyValue) : !cache.isSame(key, keyValue)) {
                 return false;
             }
 
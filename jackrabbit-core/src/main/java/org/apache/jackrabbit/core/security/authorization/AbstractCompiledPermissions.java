@@ -21,6 +21,9 @@ import org.apache.jackrabbit.spi.Path;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.security.Privilege;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -31,6 +34,13 @@ public abstract class AbstractCompiledPermissions implements CompiledPermissions
 
     // cache mapping a Path to a 'Result' containing permissions and privileges.
     private final Map<Path, Result> cache;
+
+    /**
+     * Incremented whenever entries are evicted from the cache, such that
+     * a result evaluated concurrently with the eviction is not cached.
+     */
+    private long generation;
+
     private final Object monitor = new Object();
 
     @SuppressWarnings("unchecked")
@@ -45,15 +55,27 @@ public abstract class AbstractCompiledPermissions implements CompiledPermissions
      * @throws RepositoryException if an error occurs.
      */
     public Result getResult(Path absPath) throws RepositoryException {
+        long gen;
+        synchronized (monitor) {
+            Result cached = cache.get(absPath);
+            if (cached != null) {
+                return cached;
+            }
+            gen = generation;
+        }
+
+        // evaluate without holding the lock, as the instance may be shared
+        // between sessions.
         Result result;
+        if (absPath == null) {
+            result = buildRepositoryResult();
+        } else {
+            result = buildResult(absPath);
+        }
+
         synchronized (monitor) {
-            result = cache.get(absPath);
-            if (result == null) {
-                if (absPath == null) {
-                    result = buildRepositoryResult();
-                } else {
-                    result = buildResult(absPath);
-                }
+            // don't cache a result evaluated before a concurrent eviction.
+            if (gen == generation) {
                 cache.put(absPath, result);
             }
         }
@@ -92,6 +114,38 @@ public abstract class AbstractCompiledPermissions implements CompiledPermissions
     protected void clearCache() {
         synchronized (monitor) {
             cache.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * Removes the entries of the item at <code>absPath</code> and its
+     * descendants from the cache. The result for repository level operations
+     * is kept.
+     *
+     * @param absPath Absolute path of the root of the subtree.
+     */
+    protected void clearCache(Path absPath) {
+        synchronized (monitor) {
+            for (Iterator<Path> it = cache.keySet().iterator(); it.hasNext();) {
+                Path p = it.next();
+                if (p != null && isSameOrAncestor(absPath, p)) {
+                    it.remove();
+                }
+            }
+            generation++;
+        }
+    }
+
+    private static boolean isSameOrAncestor(Path ancestor, Path path) {
+        try {
+            return ancestor.equals(path) || ancestor.isAncestorOf(path);
+        } catch (RepositoryException e) {
+            // not comparable -> evict
+            return true;
+        } catch (IllegalArgumentException e) {
+            // not comparable -> evict
+            return true;
         }
     }
 
@@ -143,6 +197,35 @@ public abstract class AbstractCompiledPermissions implements CompiledPermissions
         return false;
     }
 
+    /**
+     * Batch variant of {@link #hasPrivileges(Path, Privilege...)}. The
+     * privilege bits are resolved once for all paths, and a path contained
+     * multiple times is evaluated only once.
+     *
+     * @param absPaths Absolute paths to nodes.
+     * @param privileges The privileges to test.
+     * @return A bit set where the bit at index <code>i</code> is set if all
+     * privileges are granted at <code>absPaths[i]</code>.
+     * @throws RepositoryException if an error occurs.
+     */
+    public BitSet hasPrivileges(Path[] absPaths, Privilege... privileges) throws RepositoryException {
+        PrivilegeBits bits = getPrivilegeManagerImpl().getBits(privileges);
+
+        BitSet granted = new BitSet(absPaths.length);
+        Map<Path, Boolean> evaluated = new HashMap<Path, Boolean>();
+        for (int i = 0; i < absPaths.length; i++) {
+            Boolean isGranted = evaluated.get(absPaths[i]);
+            if (isGranted == null) {
+                isGranted = getResult(absPaths[i]).allowPrivileges.includes(bits);
+                evaluated.put(absPaths[i], isGranted);
+            }
+            if (isGranted) {
+                granted.set(i);
+            }
+        }
+        return granted;
+    }
+
     //--------------------------------------------------------< inner class >---
     /**
      * Result of permission (and optionally privilege) evaluation for a given path.
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import org.apache.jackrabbit.core.HierarchyManager;
+import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.security.authorization.AccessControlModifications;
+import org.apache.jackrabbit.spi.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <code>ACLModifications</code> extends <code>AccessControlModifications</code>
+ * by the paths of the modified access controlled nodes, which allows the
+ * listeners to only evict those cache entries that are located in the
+ * affected subtrees.
+ * <p>
+ * Whether a given item is located in an affected subtree is evaluated at most
+ * once per notification and the result is shared by all listeners. Instances
+ * are only valid while the listeners are being notified, as the hierarchy
+ * manager belongs to the session used for processing the events.
+ */
+class ACLModifications extends AccessControlModifications<NodeId> {
+
+    /**
+     * logger instance
+     */
+    private static final Logger log = LoggerFactory.getLogger(ACLModifications.class);
+
+    private final Map<NodeId, Path> paths;
+    private final HierarchyManager hierMgr;
+    private final boolean rootModified;
+
+    /**
+     * Items already tested by {@link #isAffected(ItemId)}.
+     */
+    private final Map<ItemId, Boolean> affected = new HashMap<ItemId, Boolean>();
+
+    /**
+     * @param modificationMap Map of access controlled node id to modification type.
+     * @param paths The paths of the access controlled nodes.
+     * @param hierMgr The hierarchy manager used to evaluate if a given item
+     * is located in one of the modified subtrees.
+     * @param rootModified <code>true</code> if the access control content of
+     * the root node has been modified, i.e. all items are affected.
+     */
+    ACLModifications(Map<NodeId, Integer> modificationMap, Map<NodeId, Path> paths,
+                     HierarchyManager hierMgr, boolean rootModified) {
+        super(modificationMap);
+        this.paths = paths;
+        this.hierMgr = hierMgr;
+        this.rootModified = rootModified;
+    }
+
+    /**
+     * @return <code>true</code> if the access control content of the root
+     * node has been modified and all cache entries must be dropped.
+     */
+    boolean isRootModified() {
+        return rootModified;
+    }
+
+    /**
+     * @return The paths of the modified access controlled nodes.
+     */
+    Collection<Path> getPaths() {
+        return paths.values();
+    }
+
+    /**
+     * Returns <code>true</code> if the given item is a modified access
+     * controlled node or one of its descendants. Items that cannot be
+     * resolved anymore are considered to be affected.
+     *
+     * @param id The id of an item.
+     * @return <code>true</code> if the given item is affected by the modifications.
+     */
+    synchronized boolean isAffected(ItemId id) {
+        if (rootModified) {
+            return true;
+        }
+        Boolean result = affected.get(id);
+        if (result == null) {
+            result = Boolean.FALSE;
+            for (NodeId nodeId : paths.keySet()) {
+                try {
+                    if (nodeId.equals(id) || hierMgr.isAncestor(nodeId, id)) {
+                        result = Boolean.TRUE;
+                        break;
+                    }
+                } catch (RepositoryException e) {
+                    log.debug("Unable to resolve item {}", id);
+                    result = Boolean.TRUE;
+                    break;
+                }
+            }
+            affected.put(id, result);
+        }
+        return result;
+    }
+}
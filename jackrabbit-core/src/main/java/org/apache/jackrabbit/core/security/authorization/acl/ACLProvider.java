@@ -49,6 +49,7 @@ import javax.jcr.security.AccessControlPolicy;
 import javax.jcr.security.Privilege;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +89,14 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
      */
     public static final String PARAM_ALLOW_UNKNOWN_PRINCIPALS = "allow-unknown-principals";
 
+    /**
+     * Constant for the name of the configuration option {@code share-compiled-permissions}.
+     * The option is a flag indicating whether sessions with the same set of principals
+     * share their compiled permissions including the permission caches. The default is
+     * {@code true}.
+     */
+    public static final String PARAM_SHARE_COMPILED_PERMISSIONS = "share-compiled-permissions";
+
     /**
      * the default logger
      */
@@ -110,6 +119,18 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
      */
     private boolean allowUnknownPrincipals;
 
+    /**
+     * controls if sessions with the same principals share compiled permissions
+     */
+    private boolean shareCompiledPermissions;
+
+    /**
+     * The compiled permissions shared by the sessions with the same set of
+     * principal names.
+     */
+    private final Map<Set<String>, CompiledPermissionsImpl> sharedPermissions =
+            new HashMap<Set<String>, CompiledPermissionsImpl>();
+
     //----------------------------------------------< AccessControlProvider >---
     /**
      * @see org.apache.jackrabbit.core.security.authorization.AccessControlProvider#init(Session, Map)
@@ -118,6 +139,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
     public void init(Session systemSession, Map configuration) throws RepositoryException {
         super.init(systemSession, configuration);
         allowUnknownPrincipals = "true".equals(configuration.get(PARAM_ALLOW_UNKNOWN_PRINCIPALS));
+        shareCompiledPermissions = !"false".equals(configuration.get(PARAM_SHARE_COMPILED_PERMISSIONS));
 
         // make sure the workspace of the given systemSession has a
         // minimal protection on the root node.
@@ -138,6 +160,9 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
     public void close() {
         super.close();        
         entryCollector.close();
+        synchronized (sharedPermissions) {
+            sharedPermissions.clear();
+        }
     }
 
     /**
@@ -250,8 +275,22 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
             return getAdminPermissions();
         } else if (isReadOnly(principals)) {
             return getReadOnlyPermissions();
-        } else {
+        } else if (!shareCompiledPermissions) {
             return new CompiledPermissionsImpl(principals, session, entryCollector, this, true);
+        } else {
+            // the compiled permissions only depend on the principal names
+            // -> share them between all sessions with the same principals.
+            Set<String> principalNames = CompiledPermissionsImpl.getPrincipalNames(principals);
+            synchronized (sharedPermissions) {
+                CompiledPermissionsImpl cp = sharedPermissions.get(principalNames);
+                if (cp == null) {
+                    cp = new CompiledPermissionsImpl(principals, session, entryCollector, this, true, sharedPermissions);
+                    sharedPermissions.put(principalNames, cp);
+                } else {
+                    cp.acquire();
+                }
+                return cp;
+            }
         }
     }
 
@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.core.security.authorization.acl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -276,10 +278,18 @@ class CachingEntryCollector extends EntryCollector {
             NodeId nodeId = (NodeId) key;
             int type = modifications.getType(nodeId);
             if ((type & POLICY_ADDED) == POLICY_ADDED) {
-                // clear the complete cache since the nextAcNodeId may
-                // have changed due to the added ACL.
-                log.debug("Policy added, clearing the cache");
-                cache.clear();
+                if (modifications instanceof ACLModifications
+                        && !((ACLModifications) modifications).isRootModified()) {
+                    // the nextAcNodeId may only have changed for the entries
+                    // located in the subtree of the new ACL.
+                    log.debug("Policy added, clearing the affected subtrees");
+                    cache.removeAffected((ACLModifications) modifications);
+                } else {
+                    // clear the complete cache since the nextAcNodeId may
+                    // have changed due to the added ACL.
+                    log.debug("Policy added, clearing the cache");
+                    cache.clear();
+                }
                 break; // no need for further processing.
             } else if ((type & POLICY_REMOVED) == POLICY_REMOVED) {
                 // clear the entry and change the entries having a nextID
@@ -427,6 +437,32 @@ class CachingEntryCollector extends EntryCollector {
             }
         }
 
+        /**
+         * Removes the entries of all nodes located in the subtrees affected
+         * by the given modifications. The entries are tested without holding
+         * the lock on the cache. The root entries are never affected as the
+         * modifications of the root node always clear the complete cache.
+         *
+         * @param modifications The access control modifications.
+         */
+        public void removeAffected(ACLModifications modifications) {
+            List<NodeId> ids;
+            synchronized (cache) {
+                ids = new ArrayList<NodeId>(cache.keySet());
+            }
+            List<NodeId> affected = new ArrayList<NodeId>();
+            for (NodeId id : ids) {
+                if (modifications.isAffected(id)) {
+                    affected.add(id);
+                }
+            }
+            synchronized (cache) {
+                for (NodeId id : affected) {
+                    cache.remove(id);
+                }
+            }
+        }
+
         public void remove(NodeId id, boolean adjustNextIds) {
             log.debug("Removing nodeId {} from cache", id);
             Entries result;
@@ -43,6 +43,7 @@ import javax.jcr.ItemNotFoundException;
 import javax.jcr.RepositoryException;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -62,7 +63,7 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
             DEFAULT_MAX_CACHE_SIZE
     );
 
-    private final List<String> principalNames;
+    private final Set<String> principalNames;
     private final SessionImpl session;
     private final EntryCollector entryCollector;
     private final AccessControlUtils util;
@@ -74,19 +75,55 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
     @SuppressWarnings("unchecked")
     private final Map<ItemId, Boolean> readCache = new GrowingLRUMap(1024, MAX_CACHE_SIZE);
 
+    /**
+     * Incremented whenever entries are evicted from the read cache, such that
+     * a result evaluated concurrently with the eviction is not cached.
+     */
+    private long readCacheGeneration;
+
     private final Object monitor = new Object();
 
+    /**
+     * The instances shared between sessions with the same principal names,
+     * or <code>null</code> if this instance is not shared.
+     */
+    private final Map<Set<String>, CompiledPermissionsImpl> shared;
+
+    /**
+     * The number of sessions using this instance, guarded by {@link #shared}.
+     */
+    private int references = 1;
+
     CompiledPermissionsImpl(Set<Principal> principals, SessionImpl session,
                             EntryCollector entryCollector, AccessControlUtils util,
                             boolean listenToEvents) throws RepositoryException {
+        this(principals, session, entryCollector, util, listenToEvents, null);
+    }
+
+    /**
+     * Creates compiled permissions that are shared by all sessions with the
+     * same principal names. The new instance is not added to the given map,
+     * but removed from it once the last session closed it.
+     *
+     * @param principals The principals.
+     * @param session The system session.
+     * @param entryCollector The entry collector.
+     * @param util The access control utilities.
+     * @param listenToEvents <code>true</code> to listen to access control modifications.
+     * @param shared The shared instances keyed by the principal names, or
+     * <code>null</code> if this instance is used by a single session only.
+     * @throws RepositoryException If an error occurs.
+     */
+    CompiledPermissionsImpl(Set<Principal> principals, SessionImpl session,
+                            EntryCollector entryCollector, AccessControlUtils util,
+                            boolean listenToEvents,
+                            Map<Set<String>, CompiledPermissionsImpl> shared) throws RepositoryException {
         this.session = session;
         this.entryCollector = entryCollector;
         this.util = util;
+        this.shared = shared;
 
-        principalNames = new ArrayList<String>(principals.size());
-        for (Principal princ : principals) {
-            principalNames.add(princ.getName());
-        }
+        principalNames = getPrincipalNames(principals);
 
         if (listenToEvents) {
             /*
@@ -99,6 +136,29 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
         LOG.debug("Read permission cache size = {}", MAX_CACHE_SIZE);
     }
 
+    /**
+     * Returns the names of the given principals, which identify the compiled
+     * permissions that may be shared between sessions.
+     *
+     * @param principals The principals.
+     * @return The set of principal names.
+     */
+    static Set<String> getPrincipalNames(Set<Principal> principals) {
+        Set<String> names = new HashSet<String>(principals.size());
+        for (Principal princ : principals) {
+            names.add(princ.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Registers another session using this shared instance. Must be called
+     * while holding the lock on the map of shared instances.
+     */
+    void acquire() {
+        references++;
+    }
+
     private Result buildResult(NodeImpl node, boolean isExistingNode,
                                boolean isAcItem, EntryFilterImpl filter) throws RepositoryException {
         // retrieve all ACEs at path or at the direct ancestor of path that
@@ -222,6 +282,7 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
     protected void clearCache() {
         synchronized (monitor) {
             readCache.clear();
+            readCacheGeneration++;
         }
         super.clearCache();
     }
@@ -232,6 +293,17 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
      */
     @Override
     public void close() {
+        if (shared != null) {
+            synchronized (shared) {
+                if (references == 0 || --references > 0) {
+                    // already closed or still used by other sessions.
+                    return;
+                }
+                if (shared.get(principalNames) == this) {
+                    shared.remove(principalNames);
+                }
+            }
+        }
         entryCollector.removeListener(this);
         // NOTE: do not logout shared session.
         super.close();
@@ -244,42 +316,53 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
         ItemId id = (itemId == null) ? session.getHierarchyManager().resolvePath(path) : itemId;
         // no extra check for existence as method may only be called for existing items.
         boolean isExistingNode = id.denotesNode();
-        boolean canRead = false;
+        long generation;
         synchronized (monitor) {
-            if (readCache.containsKey(id)) {
-                canRead = readCache.get(id);
-            } else {
-                ItemManager itemMgr = session.getItemManager();
-                NodeId nodeId = (isExistingNode) ? (NodeId) id : ((PropertyId) id).getParentId();
-                NodeImpl node = (NodeImpl) itemMgr.getItem(nodeId);
-
-                boolean isAcItem = util.isAcItem(node);
-                EntryFilterImpl filter;
-                if (path == null) {
-                    filter = new EntryFilterImpl(principalNames, id, session);
-                } else {
-                    filter = new EntryFilterImpl(principalNames, path, session);
-                }
+            Boolean cached = readCache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+            generation = readCacheGeneration;
+        }
 
-                if (isAcItem) {
-                    /* item defines ac content -> regular evaluation */
-                    Result result = buildResult(node, isExistingNode, isAcItem, filter);
-                    canRead = result.grants(Permission.READ);
-                } else {
-                    /*
-                     simplified evaluation focusing on READ permission. this allows
-                     to omit evaluation of parent node permissions that are
-                     required when calculating the complete set of permissions
-                     (see special treatment of remove, create or ac-specific
-                      permissions).
-                     */
-                    for (Entry ace : entryCollector.collectEntries(node, filter)) {
-                        if (ace.getPrivilegeBits().includesRead()) {
-                            canRead = ace.isAllow();
-                            break;
-                        }
-                    }
+        // evaluate without holding the lock, as the instance may be shared
+        // between sessions.
+        boolean canRead = false;
+        ItemManager itemMgr = session.getItemManager();
+        NodeId nodeId = (isExistingNode) ? (NodeId) id : ((PropertyId) id).getParentId();
+        NodeImpl node = (NodeImpl) itemMgr.getItem(nodeId);
+
+        boolean isAcItem = util.isAcItem(node);
+        EntryFilterImpl filter;
+        if (path == null) {
+            filter = new EntryFilterImpl(principalNames, id, session);
+        } else {
+            filter = new EntryFilterImpl(principalNames, path, session);
+        }
+
+        if (isAcItem) {
+            /* item defines ac content -> regular evaluation */
+            Result result = buildResult(node, isExistingNode, isAcItem, filter);
+            canRead = result.grants(Permission.READ);
+        } else {
+            /*
+             simplified evaluation focusing on READ permission. this allows
+             to omit evaluation of parent node permissions that are
+             required when calculating the complete set of permissions
+             (see special treatment of remove, create or ac-specific
+              permissions).
+             */
+            for (Entry ace : entryCollector.collectEntries(node, filter)) {
+                if (ace.getPrivilegeBits().includesRead()) {
+                    canRead = ace.isAllow();
+                    break;
                 }
+            }
+        }
+
+        synchronized (monitor) {
+            // don't cache a result evaluated before a concurrent eviction.
+            if (generation == readCacheGeneration) {
                 readCache.put(id, canRead);
             }
         }
@@ -291,7 +374,34 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
      * @see org.apache.jackrabbit.core.security.authorization.AccessControlListener#acModified(org.apache.jackrabbit.core.security.authorization.AccessControlModifications)
      */
     public void acModified(AccessControlModifications modifications) {
-        // ignore the details of the modifications and clear all caches.
-        clearCache();
+        if (!(modifications instanceof ACLModifications)
+                || ((ACLModifications) modifications).isRootModified()) {
+            // no details available or everything affected -> clear all caches.
+            clearCache();
+            return;
+        }
+
+        // only evict the entries located in the modified subtrees.
+        ACLModifications mods = (ACLModifications) modifications;
+        List<ItemId> ids;
+        synchronized (monitor) {
+            ids = new ArrayList<ItemId>(readCache.keySet());
+            readCacheGeneration++;
+        }
+        List<ItemId> affected = new ArrayList<ItemId>();
+        for (ItemId id : ids) {
+            if (mods.isAffected(id)) {
+                affected.add(id);
+            }
+        }
+        synchronized (monitor) {
+            for (ItemId id : affected) {
+                readCache.remove(id);
+            }
+            readCacheGeneration++;
+        }
+        for (Path path : mods.getPaths()) {
+            clearCache(path);
+        }
     }
 }
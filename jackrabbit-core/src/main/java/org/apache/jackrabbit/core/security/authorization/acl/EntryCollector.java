@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.core.security.authorization.acl;
 
+import org.apache.jackrabbit.core.HierarchyManager;
 import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.id.NodeId;
@@ -23,6 +24,7 @@ import org.apache.jackrabbit.core.observation.SynchronousEventListener;
 import org.apache.jackrabbit.core.security.authorization.AccessControlConstants;
 import org.apache.jackrabbit.core.security.authorization.AccessControlModifications;
 import org.apache.jackrabbit.core.security.authorization.AccessControlObserver;
+import org.apache.jackrabbit.spi.Path;
 import org.apache.jackrabbit.spi.commons.conversion.NameResolver;
 import org.apache.jackrabbit.util.Text;
 import org.slf4j.Logger;
@@ -311,12 +313,27 @@ public class EntryCollector extends AccessControlObserver implements AccessContr
 
         /**
          * Returns the access control modifications collected from
-         * related observation events.
+         * related observation events. If the paths of all modified access
+         * controlled nodes can be resolved the returned modifications allow
+         * the listeners to limit cache invalidation to the affected subtrees.
          *
          * @return access control modifications
          */
         private AccessControlModifications<NodeId> getModifications() {
-            return new AccessControlModifications<NodeId>(modMap);
+            HierarchyManager hierMgr = ((SessionImpl) session).getHierarchyManager();
+            Map<NodeId, Path> paths = new HashMap<NodeId, Path>(modMap.size());
+            boolean rootModified = false;
+            for (NodeId nodeId : modMap.keySet()) {
+                try {
+                    Path path = hierMgr.getPath(nodeId);
+                    rootModified |= path.denotesRoot();
+                    paths.put(nodeId, path);
+                } catch (RepositoryException e) {
+                    log.debug("Unable to resolve path of access controlled node {}", nodeId);
+                    return new AccessControlModifications<NodeId>(modMap);
+                }
+            }
+            return new ACLModifications(modMap, paths, hierMgr, rootModified);
         }
 
         private void siftNodeAdded(String identifier) throws RepositoryException {
@@ -60,6 +60,7 @@ import javax.jcr.security.AccessControlPolicy;
 import javax.jcr.security.Privilege;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -312,6 +313,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         private final Set<Principal> principals;
         private final Set<String> acPaths;
         private List<AccessControlEntry> entries;
+        private EntryIndex index;
 
         private boolean canReadAll;
 
@@ -360,6 +362,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
 
             // and retrieve the entries from the entry-collector.
             entries = entriesCache.getEntries(principals);
+            index = new EntryIndex(entries, session);
             
             // in addition: trivial check if read access is denied somewhere
             canReadAll = canRead(session.getQPath("/"));            
@@ -387,10 +390,9 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
             }
 
             boolean isAcItem = isAcItem(absPath);
-            String jcrPath = session.getJCRPath(absPath);
 
             // retrieve principal-based permissions and privileges
-            return buildResult(jcrPath, isAcItem);
+            return buildResult(absPath, isAcItem);
         }
 
         @Override
@@ -409,8 +411,8 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         }
 
         /**
-         * Loop over all entries and evaluate allows/denies for those matching
-         * the given jcrPath.
+         * Evaluate allows/denies of the entries matching the given path. The
+         * matching entries are collected from the entry index.
          * 
          * @param targetPath Path used for the evaluation; pointing to an
          * existing or non-existing item.
@@ -418,7 +420,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
          * @return the result
          * @throws RepositoryException if an error occurs
          */
-        private Result buildResult(String targetPath,
+        private Result buildResult(Path targetPath,
                                    boolean isAcItem) throws RepositoryException {
             int allows = Permission.NONE;
             int denies = Permission.NONE;
@@ -428,16 +430,18 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
             PrivilegeBits parentAllowBits = PrivilegeBits.getInstance();
             PrivilegeBits parentDenyBits = PrivilegeBits.getInstance();
 
-            String parentPath = Text.getRelativeParent(targetPath, 1);
-            for (AccessControlEntry entry : entries) {
-                if (!(entry instanceof ACLTemplate.Entry)) {
-                    log.warn("Unexpected AccessControlEntry instance -> ignore");
-                    continue;
-                }
-                ACLTemplate.Entry entr = (ACLTemplate.Entry) entry;
+            BitSet matches = new BitSet();
+            BitSet parentMatches = new BitSet();
+            index.collect(targetPath, session, matches, parentMatches);
+
+            BitSet candidates = (BitSet) matches.clone();
+            candidates.or(parentMatches);
+            List<ACLTemplate.Entry> indexed = index.getEntries();
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                ACLTemplate.Entry entr = indexed.get(i);
                 PrivilegeBits privs = entr.getPrivilegeBits();
 
-                if (!"".equals(parentPath) && entr.matches(parentPath)) {
+                if (parentMatches.get(i)) {
                     if (entr.isAllow()) {
                         parentAllowBits.addDifference(privs, parentDenyBits);
                     } else {
@@ -445,8 +449,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
                     }
                 }
 
-                boolean matches = entr.matches(targetPath);
-                if (matches) {
+                if (matches.get(i)) {
                     if (entr.isAllow()) {
                         allowBits.addDifference(privs, denyBits);
                         int permissions = PrivilegeRegistry.calculatePermissions(allowBits, parentAllowBits, true, isAcItem);
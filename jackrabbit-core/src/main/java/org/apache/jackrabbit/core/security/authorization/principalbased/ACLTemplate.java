@@ -305,6 +305,11 @@ class ACLTemplate extends AbstractACLTemplate {
          */
         private final String nodePath;
 
+        /**
+         * The glob restriction or <code>null</code>.
+         */
+        private final String glob;
+
         /**
          * Globing pattern
          */
@@ -317,12 +322,9 @@ class ACLTemplate extends AbstractACLTemplate {
 
             Map<Name, Value> rstr = getRestrictions();
             nodePath = rstr.get(P_NODE_PATH).getString();
-            Value glob = rstr.get(P_GLOB);
-            if (glob != null) {
-                pattern = GlobPattern.create(nodePath, glob.getString());
-            } else {
-                pattern = GlobPattern.create(nodePath);
-            }
+            Value globValue = rstr.get(P_GLOB);
+            glob = (globValue == null) ? null : globValue.getString();
+            pattern = GlobPattern.create(nodePath, glob);
         }
 
         private Entry(Principal principal, PrivilegeBits privilegeBits, boolean allow,
@@ -332,12 +334,17 @@ class ACLTemplate extends AbstractACLTemplate {
 
             Map<Name, Value> rstr = getRestrictions();
             nodePath = rstr.get(P_NODE_PATH).getString();
-            Value glob = rstr.get(P_GLOB);
-            if (glob != null) {
-                pattern = GlobPattern.create(nodePath, glob.getString());
-            } else {
-                pattern = GlobPattern.create(nodePath);
-            }
+            Value globValue = rstr.get(P_GLOB);
+            glob = (globValue == null) ? null : globValue.getString();
+            pattern = GlobPattern.create(nodePath, glob);
+        }
+
+        String getNodePath() {
+            return nodePath;
+        }
+
+        String getGlob() {
+            return glob;
         }
 
         boolean matches(String jcrPath) throws RepositoryException {
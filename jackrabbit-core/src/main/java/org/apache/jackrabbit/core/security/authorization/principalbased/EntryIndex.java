@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.authorization.principalbased;
+
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.commons.conversion.PathResolver;
+import org.apache.jackrabbit.util.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.security.AccessControlEntry;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>EntryIndex</code> is a trie built from the paths of the nodes the
+ * entries of principal-based ACLs apply to. It allows to collect the entries
+ * matching a given path (and its parent) with a single walk of the path
+ * elements. Only entries with a wildcard restriction still need to be
+ * matched against the JCR path.
+ */
+class EntryIndex {
+
+    /**
+     * logger instance
+     */
+    private static final Logger log = LoggerFactory.getLogger(EntryIndex.class);
+
+    /**
+     * The entry matches its node and all descendants.
+     */
+    private static final int SUBTREE = 0;
+
+    /**
+     * The entry matches its node only (empty glob restriction).
+     */
+    private static final int EXACT = 1;
+
+    /**
+     * The entry is matched against the JCR path. It can only match its
+     * trie node and descendants.
+     */
+    private static final int GLOB = 2;
+
+    private final List<ACLTemplate.Entry> entries = new ArrayList<ACLTemplate.Entry>();
+
+    private final int[] kinds;
+
+    private final TrieNode root = new TrieNode();
+
+    /**
+     * @param aces The entries in the order they are evaluated.
+     * @param resolver The resolver used to convert the paths of the entries.
+     */
+    EntryIndex(List<AccessControlEntry> aces, PathResolver resolver) {
+        for (AccessControlEntry ace : aces) {
+            if (ace instanceof ACLTemplate.Entry) {
+                entries.add((ACLTemplate.Entry) ace);
+            } else {
+                log.warn("Unexpected AccessControlEntry instance -> ignore");
+            }
+        }
+        kinds = new int[entries.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            ACLTemplate.Entry entry = entries.get(i);
+            String nodePath = entry.getNodePath();
+            String glob = entry.getGlob();
+
+            String anchor;
+            if (glob == null) {
+                kinds[i] = SUBTREE;
+                anchor = nodePath;
+            } else if (glob.length() == 0) {
+                kinds[i] = EXACT;
+                anchor = nodePath;
+            } else if (glob.indexOf('*') < 0) {
+                kinds[i] = SUBTREE;
+                anchor = nodePath + glob;
+            } else {
+                kinds[i] = GLOB;
+                String prefix = nodePath + glob;
+                anchor = getParent(prefix.substring(0, prefix.indexOf('*')));
+            }
+
+            TrieNode node = getNode(anchor, resolver);
+            if (node == null) {
+                // the anchor cannot be represented in the trie: fall back
+                // to matching the JCR path of any item.
+                kinds[i] = GLOB;
+                node = getNode(getParent(anchor), resolver);
+                if (node == null) {
+                    node = root;
+                }
+            }
+            node.add(i);
+        }
+    }
+
+    /**
+     * @return The list of indexed entries in the order they are evaluated.
+     */
+    List<ACLTemplate.Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Collects the indexes of the entries matching the given path and of
+     * those matching its parent path.
+     *
+     * @param absPath The absolute path of the target item.
+     * @param resolver The resolver used to build the JCR path if entries with
+     * wildcard restrictions need to be matched.
+     * @param target Set of the entries matching <code>absPath</code>.
+     * @param parent Set of the entries matching the parent of <code>absPath</code>.
+     * @throws RepositoryException If an error occurs.
+     */
+    void collect(Path absPath, PathResolver resolver, BitSet target, BitSet parent)
+            throws RepositoryException {
+        Path.Element[] elements = absPath.getElements();
+        int depth = elements.length - 1;
+        String jcrPath = null;
+        String parentPath = null;
+
+        TrieNode node = root;
+        for (int d = 0; node != null; d++) {
+            for (int i = 0; i < node.size; i++) {
+                int index = node.entries[i];
+                switch (kinds[index]) {
+                    case SUBTREE:
+                        target.set(index);
+                        if (d < depth) {
+                            parent.set(index);
+                        }
+                        break;
+                    case EXACT:
+                        if (d == depth) {
+                            target.set(index);
+                        } else if (d == depth - 1) {
+                            parent.set(index);
+                        }
+                        break;
+                    default:
+                        if (jcrPath == null) {
+                            jcrPath = resolver.getJCRPath(absPath);
+                            parentPath = Text.getRelativeParent(jcrPath, 1);
+                        }
+                        ACLTemplate.Entry entry = entries.get(index);
+                        if (entry.matches(jcrPath)) {
+                            target.set(index);
+                        }
+                        if (!"".equals(parentPath) && entry.matches(parentPath)) {
+                            parent.set(index);
+                        }
+                }
+            }
+            node = (d < depth) ? node.getChild(elements[d + 1]) : null;
+        }
+    }
+
+    /**
+     * Returns the trie node for the given JCR path, creating it if needed.
+     *
+     * @return The trie node or <code>null</code> if the path cannot be
+     * converted to its normalized element form without changing its
+     * meaning for the string based matching.
+     */
+    private TrieNode getNode(String jcrPath, PathResolver resolver) {
+        if (!jcrPath.startsWith("/")) {
+            return null;
+        }
+        try {
+            Path path = resolver.getQPath(jcrPath);
+            if (!path.isAbsolute() || !path.isNormalized()
+                    || !jcrPath.equals(resolver.getJCRPath(path))) {
+                return null;
+            }
+            TrieNode node = root;
+            Path.Element[] elements = path.getElements();
+            for (int i = 1; i < elements.length; i++) {
+                node = node.getOrAddChild(elements[i]);
+            }
+            return node;
+        } catch (RepositoryException e) {
+            log.debug("Unable to index path {}: {}", jcrPath, e.getMessage());
+            return null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Unable to index path {}: {}", jcrPath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return The path of the last complete segment of the given path prefix.
+     */
+    private static String getParent(String prefix) {
+        int pos = prefix.lastIndexOf('/');
+        return (pos <= 0) ? "/" : prefix.substring(0, pos);
+    }
+
+    //--------------------------------------------------------< inner class >---
+    /**
+     * A node of the trie, holding the indexes of the entries anchored at it.
+     */
+    private static final class TrieNode {
+
+        private Map<Path.Element, TrieNode> children;
+
+        private int[] entries = new int[0];
+
+        private int size;
+
+        TrieNode getChild(Path.Element element) {
+            return (children == null) ? null : children.get(element);
+        }
+
+        TrieNode getOrAddChild(Path.Element element) {
+            if (children == null) {
+                children = new HashMap<Path.Element, TrieNode>();
+            }
+            TrieNode child = children.get(element);
+            if (child == null) {
+                child = new TrieNode();
+                children.put(element, child);
+            }
+            return child;
+        }
+
+        void add(int index) {
+            if (size == entries.length) {
+                int[] newEntries = new int[Math.max(4, size * 2)];
+                System.arraycopy(entries, 0, newEntries, 0, size);
+                entries = newEntries;
+            }
+            entries[size++] = index;
+        }
+    }
+}
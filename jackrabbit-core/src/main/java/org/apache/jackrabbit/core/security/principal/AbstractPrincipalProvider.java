@@ -16,7 +16,7 @@
  */
 package org.apache.jackrabbit.core.security.principal;
 
-import org.apache.commons.collections.map.LRUMap;
+import org.apache.jackrabbit.core.cache.ConcurrentCache;
 
 import java.security.Principal;
 import java.util.Properties;
@@ -27,6 +27,10 @@ import java.util.Properties;
  * {@link Principal}s from their source, the caching of the principals is done
  * by this implementation.
  * <p>
+ * The cache can be read concurrently. Every call to {@link #clearCache()}
+ * starts a new generation of the cache, such that a principal retrieved
+ * while the cache is cleared is not added to the new generation.
+ * <p>
  * The {@link PrincipalProvider} methods that that involve searching like
  * {@link PrincipalProvider#getGroupMembership(Principal)} are not cached.
  */
@@ -37,8 +41,18 @@ public abstract class AbstractPrincipalProvider implements PrincipalProvider {
     /** Option name to enable negative cache entries (see JCR-2672) */
     public static final String NEGATIVE_ENTRY_KEY = "cacheIncludesNegative";
 
+    /**
+     * Cached in place of a principal that does not exist, as the cache does
+     * not accept <code>null</code> values.
+     */
+    private static final Principal NEGATIVE_ENTRY = new Principal() {
+        public String getName() {
+            return null;
+        }
+    };
+
     /** flag indicating if the instance has not been {@link #close() closed} */
-    private boolean initialized;
+    private volatile boolean initialized;
 
     /**
      * flag indicating if the cache should include 'negative' entries.
@@ -47,7 +61,15 @@ public abstract class AbstractPrincipalProvider implements PrincipalProvider {
     private boolean includeNegative;
 
     /** the principal cache */
-    private LRUMap cache;
+    private volatile ConcurrentCache<String, Principal> cache;
+
+    /**
+     * The generation of the cache, incremented whenever the cache is cleared.
+     * Guarded by {@link #generationMonitor}.
+     */
+    private long generation;
+
+    private final Object generationMonitor = new Object();
 
     /**
      * Create a new instance of <code>AbstractPrincipalProvider</code>.
@@ -70,8 +92,11 @@ public abstract class AbstractPrincipalProvider implements PrincipalProvider {
     /**
      * Clear the principal cache.
      */
-    protected synchronized void clearCache() {
-        cache.clear();
+    protected void clearCache() {
+        synchronized (generationMonitor) {
+            generation++;
+            cache.clear();
+        }
     }
 
     /**
@@ -79,8 +104,8 @@ public abstract class AbstractPrincipalProvider implements PrincipalProvider {
      *
      * @param principal to be cached.
      */
-    protected synchronized void addToCache(Principal principal) {
-        cache.put(principal.getName(), principal);
+    protected void addToCache(Principal principal) {
+        cache.put(principal.getName(), principal, 1);
     }
 
     /**
@@ -102,19 +127,29 @@ public abstract class AbstractPrincipalProvider implements PrincipalProvider {
      * is present in the cache.<br>
      * NOTE: If the cache is enabled to contain negative entries (see
      * {@link #NEGATIVE_ENTRY_KEY} configuration option), the cache will also
-     * store negative matches (as <code>null</code> values) in the principal cache.
+     * store negative matches in the principal cache.
      */
-    public synchronized Principal getPrincipal(String principalName) {
+    public Principal getPrincipal(String principalName) {
         checkInitialized();
-        if (cache.containsKey(principalName)) {
-            return (Principal) cache.get(principalName);
-        } else {
-            Principal principal = providePrincipal(principalName);
-            if (principal != null || includeNegative) {
-                cache.put(principalName, principal);
+        ConcurrentCache<String, Principal> cache = this.cache;
+        Principal principal = cache.get(principalName);
+        if (principal != null) {
+            return (principal == NEGATIVE_ENTRY) ? null : principal;
+        }
+
+        long gen;
+        synchronized (generationMonitor) {
+            gen = generation;
+        }
+        principal = providePrincipal(principalName);
+        if (principal != null || includeNegative) {
+            synchronized (generationMonitor) {
+                if (gen == generation) {
+                    cache.put(principalName, (principal == null) ? NEGATIVE_ENTRY : principal, 1);
+                }
             }
-            return principal;
         }
+        return principal;
     }
 
     /**
@@ -126,7 +161,10 @@ public abstract class AbstractPrincipalProvider implements PrincipalProvider {
         }
 
         int maxSize = Integer.parseInt(options.getProperty(MAXSIZE_KEY, "1000"));
-        cache = new LRUMap(maxSize);
+        ConcurrentCache<String, Principal> cache =
+            new ConcurrentCache<String, Principal>(getClass().getSimpleName());
+        cache.setMaxMemorySize(maxSize);
+        this.cache = cache;
         includeNegative = Boolean.parseBoolean(options.getProperty(NEGATIVE_ENTRY_KEY, "false"));
         
         initialized = true;
@@ -138,7 +176,7 @@ public abstract class AbstractPrincipalProvider implements PrincipalProvider {
      */
     public synchronized void close() {
         checkInitialized();
-        cache.clear();
+        clearCache();
         initialized = false;
     }
 }
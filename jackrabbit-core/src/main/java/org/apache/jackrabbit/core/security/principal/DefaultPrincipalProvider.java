@@ -16,12 +16,12 @@
  */
 package org.apache.jackrabbit.core.security.principal;
 
-import org.apache.commons.collections.iterators.IteratorChain;
 import org.apache.jackrabbit.api.security.principal.PrincipalIterator;
 import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.jackrabbit.commons.iterator.LazyIteratorChain;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.observation.SynchronousEventListener;
 import org.apache.jackrabbit.core.security.user.UserManagerImpl;
@@ -159,7 +159,7 @@ public class DefaultPrincipalProvider extends AbstractPrincipalProvider implemen
     /**
      * @see PrincipalProvider#findPrincipals(String, int)
      */
-    public PrincipalIterator findPrincipals(String simpleFilter, int searchType) {
+    public PrincipalIterator findPrincipals(final String simpleFilter, int searchType) {
         checkInitialized();
         switch (searchType) {
             case PrincipalManager.SEARCH_TYPE_GROUP:
@@ -167,11 +167,25 @@ public class DefaultPrincipalProvider extends AbstractPrincipalProvider implemen
             case PrincipalManager.SEARCH_TYPE_NOT_GROUP:
                 return findUserPrincipals(simpleFilter);
             case PrincipalManager.SEARCH_TYPE_ALL:
-                PrincipalIterator[] its = new PrincipalIterator[] {
-                        findUserPrincipals(simpleFilter),
-                        findGroupPrincipals(simpleFilter)
+                // search groups only after all user principals have been consumed
+                Iterator<Iterator<Principal>> its = new Iterator<Iterator<Principal>>() {
+                    private int index;
+                    public boolean hasNext() {
+                        return index < 2;
+                    }
+                    @SuppressWarnings("unchecked")
+                    public Iterator<Principal> next() {
+                        if (index++ == 0) {
+                            return findUserPrincipals(simpleFilter);
+                        } else {
+                            return findGroupPrincipals(simpleFilter);
+                        }
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
                 };
-                return new PrincipalIteratorAdapter(new IteratorChain(its));
+                return new PrincipalIteratorAdapter(LazyIteratorChain.chain(its));
             default:
                 throw new IllegalArgumentException("Invalid searchType");
         }
@@ -77,67 +77,52 @@ public class PrincipalManagerImpl implements PrincipalManager {
     /**
      * {@inheritDoc}
      */
-    public PrincipalIterator findPrincipals(String simpleFilter) {
+    public PrincipalIterator findPrincipals(final String simpleFilter) {
         checkIsValid();
-        List<CheckedIteratorEntry> entries = new ArrayList<CheckedIteratorEntry>(providers.length);
-        for (PrincipalProvider pp : providers) {
-            PrincipalIterator it = pp.findPrincipals(simpleFilter);
-            if (it.hasNext()) {
-                entries.add(new CheckedIteratorEntry(it, pp));
+        return new CheckedPrincipalIterator(new Search() {
+            public PrincipalIterator search(PrincipalProvider provider) {
+                return provider.findPrincipals(simpleFilter);
             }
-        }
-        return new CheckedPrincipalIterator(entries);
+        }, null);
     }
 
     /**
      * {@inheritDoc}
      */
-    public PrincipalIterator findPrincipals(String simpleFilter, int searchType) {
+    public PrincipalIterator findPrincipals(final String simpleFilter, final int searchType) {
         checkIsValid();
-        List<CheckedIteratorEntry> entries = new ArrayList<CheckedIteratorEntry>(providers.length);
-        for (PrincipalProvider pp : providers) {
-            PrincipalIterator it = pp.findPrincipals(simpleFilter, searchType);
-            if (it.hasNext()) {
-                entries.add(new CheckedIteratorEntry(it, pp));
+        return new CheckedPrincipalIterator(new Search() {
+            public PrincipalIterator search(PrincipalProvider provider) {
+                return provider.findPrincipals(simpleFilter, searchType);
             }
-        }
-        return new CheckedPrincipalIterator(entries);
+        }, null);
     }
 
     /**
      * {@inheritDoc}
      * @param searchType
      */
-    public PrincipalIterator getPrincipals(int searchType) {
+    public PrincipalIterator getPrincipals(final int searchType) {
         checkIsValid();
-        List<CheckedIteratorEntry> entries = new ArrayList<CheckedIteratorEntry>(providers.length);
-        for (PrincipalProvider pp : providers) {
-            PrincipalIterator it = pp.getPrincipals(searchType);
-            if (it.hasNext()) {
-                entries.add(new CheckedIteratorEntry(it, pp));
+        return new CheckedPrincipalIterator(new Search() {
+            public PrincipalIterator search(PrincipalProvider provider) {
+                return provider.getPrincipals(searchType);
             }
-        }
-        return new CheckedPrincipalIterator(entries);
+        }, null);
     }
 
     /**
      * {@inheritDoc}
      */
-    public PrincipalIterator getGroupMembership(Principal principal) {
+    public PrincipalIterator getGroupMembership(final Principal principal) {
         checkIsValid();
-        List<CheckedIteratorEntry> entries =  new ArrayList<CheckedIteratorEntry>(providers.length + 1);
-        for (PrincipalProvider pp : providers) {
-            PrincipalIterator groups = pp.getGroupMembership(principal);
-            if (groups.hasNext()) {
-                entries.add(new CheckedIteratorEntry(groups, pp));
-            }
-        }
         // additional entry for the 'everyone' group
-        if (!(principal instanceof EveryonePrincipal)) {
-            Iterator<Principal> it = Collections.singletonList(getEveryone()).iterator();
-            entries.add(new CheckedIteratorEntry(it, null));
-        }
-        return new CheckedPrincipalIterator(entries);
+        Principal everyone = (principal instanceof EveryonePrincipal) ? null : getEveryone();
+        return new CheckedPrincipalIterator(new Search() {
+            public PrincipalIterator search(PrincipalProvider provider) {
+                return provider.getGroupMembership(principal);
+            }
+        }, everyone);
     }
 
     /**
@@ -297,8 +282,23 @@ public class PrincipalManagerImpl implements PrincipalManager {
             next = seekNext();
         }
 
-        private CheckedPrincipalIterator(List<CheckedIteratorEntry> entries) {
-            this.entries = new ArrayList<CheckedIteratorEntry>(entries);
+        /**
+         * Creates an iterator that streams the results of the given search
+         * over all providers. A provider is only searched once the results
+         * of the preceding providers have been consumed.
+         *
+         * @param search The search to execute for each provider.
+         * @param additional A principal to be returned after the results of
+         * all providers or <code>null</code>.
+         */
+        private CheckedPrincipalIterator(Search search, Principal additional) {
+            entries = new ArrayList<CheckedIteratorEntry>(providers.length + 1);
+            for (PrincipalProvider pp : providers) {
+                entries.add(new CheckedIteratorEntry(search, pp));
+            }
+            if (additional != null) {
+                entries.add(new CheckedIteratorEntry(Collections.singletonList(additional).iterator(), null));
+            }
             next = seekNext();
         }
 
@@ -310,7 +310,7 @@ public class PrincipalManagerImpl implements PrincipalManager {
             while (!entries.isEmpty()) {
                 // first test if current iterator has more elements
                 CheckedIteratorEntry current = entries.get(0);
-                Iterator<? extends Principal> iterator = current.iterator;
+                Iterator<? extends Principal> iterator = current.getIterator();
                 while (iterator.hasNext()) {
                     Principal chk = iterator.next();
                     if (current.provider == null ||
@@ -327,16 +327,39 @@ public class PrincipalManagerImpl implements PrincipalManager {
 
     //--------------------------------------------------------------------------
     /**
-     *
+     * A search executed for each of the principal providers.
+     */
+    private interface Search {
+
+        PrincipalIterator search(PrincipalProvider provider);
+    }
+
+    /**
+     * The iterator over the principals of a provider, which is only created
+     * upon first access if the entry has been created for a search.
      */
     private static class CheckedIteratorEntry {
 
         private final PrincipalProvider provider;
-        private final Iterator<? extends Principal> iterator;
+        private final Search search;
+        private Iterator<? extends Principal> iterator;
 
         private CheckedIteratorEntry(Iterator<? extends Principal> iterator, PrincipalProvider provider) {
             this.iterator = iterator;
             this.provider = provider;
+            this.search = null;
+        }
+
+        private CheckedIteratorEntry(Search search, PrincipalProvider provider) {
+            this.search = search;
+            this.provider = provider;
+        }
+
+        private Iterator<? extends Principal> getIterator() {
+            if (iterator == null) {
+                iterator = search.search(provider);
+            }
+            return iterator;
         }
     }
 }
@@ -342,6 +342,27 @@ abstract class AuthorizableImpl implements Authorizable, UserConstants {
         return isGroup() && EveryonePrincipal.NAME.equals(getPrincipalName());
     }
 
+    /**
+     * Returns <code>true</code> if this authorizable is a direct or indirect
+     * member of the group represented by the node with the given identifier.
+     * In contrast to {@link #memberOf()} the group nodes are not loaded.
+     *
+     * @param groupNodeIdentifier The identifier of the group node.
+     * @return <code>true</code> if this authorizable is a member of the group.
+     * @throws RepositoryException If an error occurs.
+     */
+    boolean isMemberOf(String groupNodeIdentifier) throws RepositoryException {
+        MembershipCache cache = userManager.getMembershipCache();
+        String nid = node.getIdentifier();
+        Session session = node.getSession();
+        if (session.hasPendingChanges()) {
+            // see collectMembership: don't use the cache with pending changes.
+            return cache.collectMembership(nid, session).contains(groupNodeIdentifier);
+        } else {
+            return cache.getMemberOf(nid).contains(groupNodeIdentifier);
+        }
+    }
+
     private Iterator<Group> collectMembership(boolean includeIndirect) throws RepositoryException {
         Collection<String> groupNodeIds;
         MembershipCache cache = userManager.getMembershipCache();
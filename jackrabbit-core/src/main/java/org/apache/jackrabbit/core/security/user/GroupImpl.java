@@ -134,14 +134,10 @@ class GroupImpl extends AuthorizableImpl implements Group {
         } else if (isEveryone()) {
             return true;
         } else {
-            String thisID = getID();
+            // lookup the node identifier of this group in the (cached)
+            // membership of the authorizable without loading the groups.
             AuthorizableImpl impl = (AuthorizableImpl) authorizable;
-            for (Iterator<Group> it = impl.memberOf(); it.hasNext(); ) {
-                if (thisID.equals(it.next().getID())) {
-                    return true;
-                }
-            }
-            return false;
+            return impl.isMemberOf(getNode().getIdentifier());
         }
     }
 
@@ -525,14 +521,22 @@ class GroupImpl extends AuthorizableImpl implements Group {
                             : node.addNode(N_MEMBERS, NT_REP_MEMBERS, null));
 
                     try {
-                        PropertySequence properties = getPropertySequence(nMembers, userManager);
                         String propName = Text.escapeIllegalJcrChars(authorizable.getID());
-                        if (properties.hasItem(propName)) {
-                            log.debug("Authorizable {} is already member of {}", authorizable, this);
-                            return false;
+                        Value newMember = getSession().getValueFactory().createValue(authorizable.getNode(), true);
+                        if (HashedMembers.isHashed(nMembers, userManager)) {
+                            HashedMembers members = new HashedMembers(nMembers, userManager.getMemberSplitSize());
+                            if (!members.addMember(propName, newMember)) {
+                                log.debug("Authorizable {} is already member of {}", authorizable, this);
+                                return false;
+                            }
                         } else {
-                            Value newMember = getSession().getValueFactory().createValue(authorizable.getNode(), true);
-                            properties.addProperty(propName, newMember);
+                            PropertySequence properties = getPropertySequence(nMembers, userManager);
+                            if (properties.hasItem(propName)) {
+                                log.debug("Authorizable {} is already member of {}", authorizable, this);
+                                return false;
+                            } else {
+                                properties.addProperty(propName, newMember);
+                            }
                         }
 
                         if (userManager.isAutoSave()) {
@@ -565,16 +569,27 @@ class GroupImpl extends AuthorizableImpl implements Group {
                 public Boolean perform(SessionContext context) throws RepositoryException {
                     NodeImpl nMembers = node.getNode(N_MEMBERS);
                     try {
-                        PropertySequence properties = getPropertySequence(nMembers, userManager);
                         String propName = Text.escapeIllegalJcrChars(authorizable.getID());
-                        if (properties.hasItem(propName)) {
-                            properties.removeProperty(propName);
-                            if (!properties.iterator().hasNext()) {
+                        if (HashedMembers.isHashed(nMembers, userManager)) {
+                            HashedMembers members = new HashedMembers(nMembers, userManager.getMemberSplitSize());
+                            if (!members.removeMember(propName)) {
+                                log.debug("Authorizable {} was not member of {}", authorizable.getID(), getID());
+                                return false;
+                            }
+                            if (members.isEmpty()) {
                                 nMembers.remove();
                             }
                         } else {
-                            log.debug("Authorizable {} was not member of {}", authorizable.getID(), getID());
-                            return false;
+                            PropertySequence properties = getPropertySequence(nMembers, userManager);
+                            if (properties.hasItem(propName)) {
+                                properties.removeProperty(propName);
+                                if (!properties.iterator().hasNext()) {
+                                    nMembers.remove();
+                                }
+                            } else {
+                                log.debug("Authorizable {} was not member of {}", authorizable.getID(), getID());
+                                return false;
+                            }
                         }
 
                         if (userManager.isAutoSave()) {
@@ -595,11 +610,11 @@ class GroupImpl extends AuthorizableImpl implements Group {
          */
         public Iterator<Authorizable> getMembers(boolean includeIndirect, int type) throws RepositoryException {
             if (node.hasNode(N_MEMBERS)) {
-                PropertySequence members = getPropertySequence(node.getNode(N_MEMBERS), userManager);
+                Iterator<Property> members = getMemberProperties(node.getNode(N_MEMBERS));
                 if (includeIndirect) {
-                    return includeIndirect(toAuthorizables(members.iterator(), type), type);
+                    return includeIndirect(toAuthorizables(members, type), type);
                 } else {
-                    return toAuthorizables(members.iterator(), type);
+                    return toAuthorizables(members, type);
                 }
             } else {
                 return Iterators.empty();
@@ -611,13 +626,34 @@ class GroupImpl extends AuthorizableImpl implements Group {
          */
         public boolean hasMember(AuthorizableImpl authorizable) throws RepositoryException {
             if (node.hasNode(N_MEMBERS)) {
-                PropertySequence members = getPropertySequence(node.getNode(N_MEMBERS), userManager);
-                return members.hasItem(authorizable.getID());
+                NodeImpl nMembers = node.getNode(N_MEMBERS);
+                String propName = Text.escapeIllegalJcrChars(authorizable.getID());
+                if (HashedMembers.isHashed(nMembers, userManager)) {
+                    return new HashedMembers(nMembers, userManager.getMemberSplitSize()).hasMember(propName);
+                } else {
+                    return getPropertySequence(nMembers, userManager).hasItem(propName);
+                }
             } else {
                 return false;
             }
         }
 
+        /**
+         * Returns the member properties below the given members node. The
+         * member structure is traversed lazily.
+         *
+         * @param nMembers The {@link UserConstants#N_MEMBERS} node.
+         * @return the member properties.
+         * @throws RepositoryException If an error occurs.
+         */
+        private Iterator<Property> getMemberProperties(NodeImpl nMembers) throws RepositoryException {
+            if (HashedMembers.isHashed(nMembers, userManager)) {
+                return new HashedMembers(nMembers, userManager.getMemberSplitSize()).iterator();
+            } else {
+                return getPropertySequence(nMembers, userManager).iterator();
+            }
+        }
+
     }
 
     // -----------------------------------------------------------< utility >---
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.user;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import org.apache.jackrabbit.commons.flat.TreeTraverser;
+import org.apache.jackrabbit.commons.flat.TreeTraverser.ErrorHandler;
+import org.apache.jackrabbit.commons.flat.TreeTraverser.InclusionPolicy;
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.spi.Name;
+
+/**
+ * Hash based layout of the member references stored below the
+ * {@link UserConstants#N_MEMBERS} node of a group. The member properties are
+ * kept in buckets: a bucket either holds member properties or has child
+ * buckets named <code>rep:0</code> to <code>rep:f</code>, each of which is
+ * selected by the next four bits of the hash of the property name. As soon
+ * as a bucket holds more properties than the configured split size, its
+ * properties are moved to its child buckets.
+ * <p>
+ * In contrast to the B-tree maintained by the
+ * {@link org.apache.jackrabbit.commons.flat.BTreeManager} adding, removing
+ * and looking up a member only accesses the buckets on the path to its hash
+ * and never moves more than one bucket of properties. As the bucket names
+ * contain a colon they cannot be mistaken for the names of the intermediate
+ * nodes created by the B-tree, which allows both layouts to be told apart.
+ */
+class HashedMembers implements UserConstants {
+
+    /**
+     * The maximum depth of buckets below the members node. Buckets at that
+     * depth are never split.
+     */
+    private static final int MAX_DEPTH = 8;
+
+    private static final Name[] BUCKET_NAMES = new Name[16];
+    static {
+        for (int i = 0; i < BUCKET_NAMES.length; i++) {
+            BUCKET_NAMES[i] = NF.create(Name.NS_REP_URI, Integer.toHexString(i));
+        }
+    }
+
+    private static final InclusionPolicy<Property> MEMBER_PROPERTIES = new InclusionPolicy<Property>() {
+        public boolean include(Property property) {
+            try {
+                return property.getType() == PropertyType.WEAKREFERENCE;
+            } catch (RepositoryException e) {
+                return false;
+            }
+        }
+    };
+
+    private final NodeImpl nMembers;
+    private final int splitSize;
+
+    /**
+     * @param nMembers The {@link UserConstants#N_MEMBERS} node of a group.
+     * @param splitSize The maximum number of member properties per bucket.
+     */
+    HashedMembers(NodeImpl nMembers, int splitSize) {
+        this.nMembers = nMembers;
+        this.splitSize = splitSize;
+    }
+
+    /**
+     * Returns <code>true</code> if the member properties below the given
+     * members node are stored in hashed buckets. If the members node does
+     * not have any child nodes both layouts are identical and the configured
+     * layout is used.
+     *
+     * @param nMembers The {@link UserConstants#N_MEMBERS} node of a group.
+     * @param userManager The user manager.
+     * @return <code>true</code> if the hashed layout is used.
+     * @throws RepositoryException If an error occurs.
+     */
+    static boolean isHashed(NodeImpl nMembers, UserManagerImpl userManager) throws RepositoryException {
+        NodeIterator nodes = nMembers.getNodes();
+        if (nodes.hasNext()) {
+            Name name = ((NodeImpl) nodes.nextNode()).getQName();
+            for (Name bucketName : BUCKET_NAMES) {
+                if (bucketName.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        } else {
+            return userManager.hasHashedMembers();
+        }
+    }
+
+    /**
+     * @param propName The escaped id of the member.
+     * @return <code>true</code> if a member property with the given name exists.
+     * @throws RepositoryException If an error occurs.
+     */
+    boolean hasMember(String propName) throws RepositoryException {
+        NodeImpl bucket = getBucket(hash(propName), false);
+        return bucket != null && bucket.hasProperty(propName);
+    }
+
+    /**
+     * Adds the member property to the bucket selected by its name and splits
+     * the bucket if it grows beyond the split size.
+     *
+     * @param propName The escaped id of the member.
+     * @param value The weak reference to the member node.
+     * @return <code>false</code> if the member property already exists.
+     * @throws RepositoryException If an error occurs.
+     */
+    boolean addMember(String propName, Value value) throws RepositoryException {
+        int hash = hash(propName);
+        NodeImpl bucket = getBucket(hash, true);
+        if (bucket.hasProperty(propName)) {
+            return false;
+        }
+        bucket.setProperty(propName, value);
+
+        int depth = bucket.getDepth() - nMembers.getDepth();
+        if (depth < MAX_DEPTH && countMembers(bucket) > splitSize) {
+            split(bucket, depth);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the member property and all buckets that become empty.
+     *
+     * @param propName The escaped id of the member.
+     * @return <code>false</code> if the member property does not exist.
+     * @throws RepositoryException If an error occurs.
+     */
+    boolean removeMember(String propName) throws RepositoryException {
+        NodeImpl bucket = getBucket(hash(propName), false);
+        if (bucket == null || !bucket.hasProperty(propName)) {
+            return false;
+        }
+        bucket.getProperty(propName).remove();
+        while (!bucket.isSame(nMembers) && isEmpty(bucket)) {
+            NodeImpl parent = (NodeImpl) bucket.getParent();
+            bucket.remove();
+            bucket = parent;
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the members node neither holds member
+     * properties nor buckets.
+     * @throws RepositoryException If an error occurs.
+     */
+    boolean isEmpty() throws RepositoryException {
+        return isEmpty(nMembers);
+    }
+
+    /**
+     * Returns the member properties of all buckets. The buckets are traversed
+     * lazily while iterating.
+     *
+     * @return the member properties.
+     */
+    Iterator<Property> iterator() {
+        return TreeTraverser.propertyIterator(TreeTraverser.nodeIterator(nMembers),
+                ErrorHandler.IGNORE, MEMBER_PROPERTIES);
+    }
+
+    //--------------------------------------------------------------------------
+    /**
+     * Returns the bucket for the given hash.
+     *
+     * @param hash The hash of the property name.
+     * @param create If <code>true</code> missing buckets are created.
+     * @return the bucket or <code>null</code> if it does not exist and
+     * <code>create</code> is <code>false</code>.
+     * @throws RepositoryException If an error occurs.
+     */
+    private NodeImpl getBucket(int hash, boolean create) throws RepositoryException {
+        NodeImpl bucket = nMembers;
+        for (int depth = 0; depth < MAX_DEPTH && bucket.hasNodes(); depth++) {
+            Name name = getBucketName(hash, depth);
+            if (bucket.hasNode(name)) {
+                bucket = bucket.getNode(name);
+            } else if (create) {
+                bucket = bucket.addNode(name, NT_REP_MEMBERS, null);
+            } else {
+                return null;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Moves all member properties of the given bucket to its child buckets.
+     */
+    private void split(NodeImpl bucket, int depth) throws RepositoryException {
+        List<Property> members = new ArrayList<Property>();
+        for (PropertyIterator it = bucket.getProperties(); it.hasNext();) {
+            Property p = it.nextProperty();
+            if (MEMBER_PROPERTIES.include(p)) {
+                members.add(p);
+            }
+        }
+        for (Property p : members) {
+            String propName = p.getName();
+            Name name = getBucketName(hash(propName), depth);
+            NodeImpl child = bucket.hasNode(name)
+                    ? bucket.getNode(name)
+                    : bucket.addNode(name, NT_REP_MEMBERS, null);
+            child.setProperty(propName, p.getValue());
+            p.remove();
+        }
+    }
+
+    private static int countMembers(Node bucket) throws RepositoryException {
+        int count = 0;
+        for (PropertyIterator it = bucket.getProperties(); it.hasNext();) {
+            if (MEMBER_PROPERTIES.include(it.nextProperty())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isEmpty(Node bucket) throws RepositoryException {
+        if (bucket.hasNodes()) {
+            return false;
+        }
+        for (PropertyIterator it = bucket.getProperties(); it.hasNext();) {
+            if (MEMBER_PROPERTIES.include(it.nextProperty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Name getBucketName(int hash, int depth) {
+        return BUCKET_NAMES[(hash >>> (depth * 4)) & 0xf];
+    }
+
+    /**
+     * Spreads the bits of the string hash code, such that member ids that
+     * only differ in a few characters end up in different buckets.
+     */
+    private static int hash(String propName) {
+        int h = propName.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
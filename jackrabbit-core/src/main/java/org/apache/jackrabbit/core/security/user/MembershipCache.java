@@ -19,6 +19,7 @@ package org.apache.jackrabbit.core.security.user;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import javax.jcr.AccessDeniedException;
@@ -68,7 +69,28 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
     private final String pMembers;
     private final ConcurrentCache<String, Collection<String>> cache;
 
-    MembershipCache(SessionImpl systemSession, String groupsPath, boolean useMembersNode) throws RepositoryException {
+    /**
+     * Cache of the transitive memberships, computed from the declared
+     * memberships.
+     */
+    private final ConcurrentCache<String, Collection<String>> memberOfCache;
+
+    /**
+     * Index of the authorizable nodes by principal name, shared along with
+     * this cache.
+     */
+    private final PrincipalNameIndex principalNameIndex;
+
+    /**
+     * The generation of the cache, incremented whenever entries are removed,
+     * such that memberships collected concurrently with a modification are
+     * not cached. Guarded by {@link #monitor}.
+     */
+    private long generation;
+
+    private final Object monitor = new Object();
+
+    MembershipCache(SessionImpl systemSession, String usersPath, String groupsPath, boolean useMembersNode) throws RepositoryException {
         this.systemSession = systemSession;
         this.groupsPath = (groupsPath == null) ? UserConstants.GROUPS_PATH : groupsPath;
         this.useMembersNode = useMembersNode;
@@ -76,6 +98,9 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
         pMembers = systemSession.getJCRName(UserManagerImpl.P_MEMBERS);
         cache = new ConcurrentCache<String, Collection<String>>("MembershipCache", 16);
         cache.setMaxMemorySize(MAX_CACHE_SIZE);
+        memberOfCache = new ConcurrentCache<String, Collection<String>>("MembershipCache.memberOf", 16);
+        memberOfCache.setMaxMemorySize(MAX_CACHE_SIZE);
+        principalNameIndex = new PrincipalNameIndex(systemSession, usersPath, this.groupsPath);
 
         String[] ntNames = new String[] {
                 systemSession.getJCRName(UserConstants.NT_REP_GROUP),
@@ -101,32 +126,44 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
      * @see javax.jcr.observation.EventListener#onEvent(javax.jcr.observation.EventIterator)
      */
     public void onEvent(EventIterator eventIterator) {
-        // evaluate if the membership cache needs to be cleared;
+        // evaluate which cache entries are affected by the membership changes.
+        // the weak references to the members serve as persistent reverse
+        // index, therefore only the cached entries need to be updated.
+        Set<String> groupNodeIds = new HashSet<String>();
+        Set<String> memberNodeIds = new HashSet<String>();
         boolean clear = false;
         while (eventIterator.hasNext() && !clear) {
             Event ev = eventIterator.nextEvent();
             try {
+                int type = ev.getType();
                 if (pMembers.equals(Text.getName(ev.getPath()))) {
                     // simple case: a rep:members property that is affected
-                    clear = true;
+                    groupNodeIds.add(ev.getIdentifier());
+                    if (type != Event.PROPERTY_REMOVED) {
+                        collectValues(systemSession.getProperty(ev.getPath()), memberNodeIds);
+                    }
                 } else if (useMembersNode) {
                     // test if it affects a property defined by rep:Members node type.
-                    int type = ev.getType();
                     if (type == Event.PROPERTY_ADDED || type == Event.PROPERTY_CHANGED) {
                         Property p = systemSession.getProperty(ev.getPath());
                         Name declNtName = ((NodeTypeImpl) p.getDefinition().getDeclaringNodeType()).getQName();
-                        clear = NT_REP_MEMBERS.equals(declNtName);
+                        if (NT_REP_MEMBERS.equals(declNtName)) {
+                            groupNodeIds.add(getGroupNodeIdentifier(p.getParent()));
+                            collectValues(p, memberNodeIds);
+                        }
                     } else {
                         // PROPERTY_REMOVED
                         // test if the primary node type of the parent node is rep:Members
                         // this could potentially by some other property as well as the
                         // rep:Members node are not protected and could changed by
                         // adding a mixin type.
-                        // ignoring this and simply clear the cache
+                        // ignoring this and simply update the cache
                         String parentId = ev.getIdentifier();
                         Node n = systemSession.getNodeByIdentifier(parentId);
                         Name ntName = ((NodeTypeImpl) n.getPrimaryNodeType()).getQName();
-                        clear = (UserConstants.NT_REP_MEMBERS.equals(ntName));
+                        if (UserConstants.NT_REP_MEMBERS.equals(ntName)) {
+                            groupNodeIds.add(getGroupNodeIdentifier(n));
+                        }
                     }
                 }
             } catch (RepositoryException e) {
@@ -138,9 +175,89 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
         }
 
         if (clear) {
-            cache.clear();
+            synchronized (monitor) {
+                generation++;
+                cache.clear();
+                memberOfCache.clear();
+            }
             log.debug("Membership cache cleared because of observation event.");
+        } else if (!groupNodeIds.isEmpty()) {
+            invalidate(groupNodeIds, memberNodeIds);
+        }
+    }
+
+    /**
+     * Removes the cache entries affected by modifications of the members of
+     * the given groups.
+     * <ul>
+     * <li>Members removed from a group are no longer declared or indirect
+     * members of it: all entries containing the group are removed.</li>
+     * <li>Members added to a group (a subset of the current members of the
+     * modified groups): their entries and the transitive memberships
+     * containing them are removed.</li>
+     * </ul>
+     *
+     * @param groupNodeIds The identifiers of the modified group nodes.
+     * @param memberNodeIds The identifiers of the potentially added members.
+     */
+    private void invalidate(Set<String> groupNodeIds, Set<String> memberNodeIds) {
+        int removed = 0;
+        synchronized (monitor) {
+            generation++;
+            for (Map.Entry<String, Collection<String>> entry : cache.entries().entrySet()) {
+                String key = entry.getKey();
+                if (memberNodeIds.contains(key) || containsAny(entry.getValue(), groupNodeIds)) {
+                    cache.remove(key);
+                    removed++;
+                }
+            }
+            for (Map.Entry<String, Collection<String>> entry : memberOfCache.entries().entrySet()) {
+                String key = entry.getKey();
+                Collection<String> value = entry.getValue();
+                if (memberNodeIds.contains(key)
+                        || containsAny(value, groupNodeIds) || containsAny(value, memberNodeIds)) {
+                    memberOfCache.remove(key);
+                    removed++;
+                }
+            }
+        }
+        log.debug("Removed {} membership cache entries because of observation event.", removed);
+    }
+
+    private static boolean containsAny(Collection<String> values, Set<String> ids) {
+        if (!ids.isEmpty()) {
+            for (String value : values) {
+                if (ids.contains(value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the string values of the given property to the given set.
+     */
+    private static void collectValues(Property p, Set<String> ids) throws RepositoryException {
+        if (p.isMultiple()) {
+            for (Value v : p.getValues()) {
+                ids.add(v.getString());
+            }
+        } else {
+            ids.add(p.getString());
+        }
+    }
+
+    /**
+     * Returns the identifier of the group node the given node belongs to,
+     * skipping the rep:Members nodes of a group with node based membership.
+     */
+    private static String getGroupNodeIdentifier(Node n) throws RepositoryException {
+        NodeImpl node = (NodeImpl) n;
+        while (node.isNodeType(NT_REP_MEMBERS)) {
+            node = (NodeImpl) node.getParent();
         }
+        return node.getIdentifier();
     }
 
     //----------------------------------------------------< SessionListener >---
@@ -153,6 +270,7 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
         } catch (RepositoryException e) {
             log.error("Unexpected error: Failed to stop event listening of MembershipCache.", e);
         }
+        principalNameIndex.close();
 
     }
 
@@ -183,9 +301,22 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
      * @throws RepositoryException If an error occurs.
      */
     Collection<String> getMemberOf(String authorizableNodeIdentifier) throws RepositoryException {
-        Set<String> groupNodeIds = new HashSet<String>();
-        memberOf(authorizableNodeIdentifier, groupNodeIds);
-        return Collections.unmodifiableCollection(groupNodeIds);
+        Collection<String> groupNodeIds = memberOfCache.get(authorizableNodeIdentifier);
+        if (groupNodeIds == null) {
+            long gen = getGeneration();
+            Set<String> ids = new HashSet<String>();
+            memberOf(authorizableNodeIdentifier, ids);
+            groupNodeIds = Collections.unmodifiableCollection(ids);
+            put(memberOfCache, authorizableNodeIdentifier, groupNodeIds, gen);
+        }
+        return groupNodeIds;
+    }
+
+    /**
+     * @return The index of the authorizable nodes by principal name.
+     */
+    PrincipalNameIndex getPrincipalNameIndex() {
+        return principalNameIndex;
     }
 
     /**
@@ -200,7 +331,11 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
      * For testing purposes only.
      */
     void clear() {
-        cache.clear();
+        synchronized (monitor) {
+            generation++;
+            cache.clear();
+            memberOfCache.clear();
+        }
     }
 
     /**
@@ -279,10 +414,11 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
             wasCached = false;
             // retrieve a new session with system-subject in order to avoid
             // concurrent read operations using the system session of this workspace.
+            long gen = getGeneration();
             Session session = getSession();
             try {
                 groupNodeIds = collectDeclaredMembership(authorizableNodeIdentifier, session);
-                cache.put(authorizableNodeIdentifier, Collections.unmodifiableCollection(groupNodeIds), 1);
+                put(cache, authorizableNodeIdentifier, Collections.unmodifiableCollection(groupNodeIds), gen);
             }
             finally {
                 // release session if it isn't the original system session
@@ -305,6 +441,34 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
         return groupNodeIds;
     }
 
+    /**
+     * @return The current generation, to be passed to {@link #put} after
+     * the memberships have been collected.
+     */
+    private long getGeneration() {
+        synchronized (monitor) {
+            return generation;
+        }
+    }
+
+    /**
+     * Adds an entry to the given cache unless entries have been removed
+     * since the given generation.
+     *
+     * @param c The cache to add the entry to.
+     * @param authorizableNodeIdentifier Identifier of the authorizable node
+     * @param groupNodeIds The collected group node ids.
+     * @param generation The generation the collection started with.
+     */
+    private void put(ConcurrentCache<String, Collection<String>> c, String authorizableNodeIdentifier,
+                     Collection<String> groupNodeIds, long generation) {
+        synchronized (monitor) {
+            if (generation == this.generation) {
+                c.put(authorizableNodeIdentifier, groupNodeIds, 1);
+            }
+        }
+    }
+
     /**
      * Collects the groups where the given authorizable is a member of by recursively fetching the declared memberships
      * via {@link #declaredMemberOf(String)} (cached).
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.user;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.cache.ConcurrentCache;
+import org.apache.jackrabbit.core.observation.SynchronousEventListener;
+import org.apache.jackrabbit.util.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>PrincipalNameIndex</code> maps principal names to the identifiers of
+ * the authorizable nodes they belong to, such that looking up an authorizable
+ * by the name of a principal that differs from its id does not require a
+ * query. The index is filled by the lookups and kept up to date by
+ * observation:
+ * <ul>
+ * <li>Entries referring to a node whose {@link UserConstants#P_PRINCIPAL_NAME}
+ * property is modified or removed, or to a removed node, are removed.</li>
+ * <li>Entries recording that no authorizable exists for a principal name are
+ * removed whenever a principal name is added or modified.</li>
+ * </ul>
+ * Every modification starts a new generation of the index, such that a
+ * lookup executed concurrently with the modification is not added to the
+ * index. As the index is shared between sessions with different access
+ * rights, the users of the index must verify that the node of an indexed
+ * identifier is accessible and still has the expected principal name.
+ */
+class PrincipalNameIndex implements UserConstants, SynchronousEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PrincipalNameIndex.class);
+
+    /**
+     * The maximum size of the index
+     */
+    private static final int MAX_CACHE_SIZE =
+            Integer.getInteger("org.apache.jackrabbit.PrincipalNameIndex", 5000);
+
+    /**
+     * Value indexed for principal names that do not belong to any authorizable.
+     */
+    static final String NONE = "";
+
+    private final SessionImpl systemSession;
+    private final String pPrincipalName;
+    private final ConcurrentCache<String, String> cache;
+
+    /**
+     * The generation of the index, incremented whenever entries are removed.
+     * Guarded by {@link #monitor}.
+     */
+    private long generation;
+
+    private final Object monitor = new Object();
+
+    PrincipalNameIndex(SessionImpl systemSession, String usersPath, String groupsPath) throws RepositoryException {
+        this.systemSession = systemSession;
+
+        pPrincipalName = systemSession.getJCRName(P_PRINCIPAL_NAME);
+        cache = new ConcurrentCache<String, String>("PrincipalNameIndex", 16);
+        cache.setMaxMemorySize(MAX_CACHE_SIZE);
+
+        // listen below the common ancestor of the users and groups paths
+        String path = (usersPath == null) ? USERS_PATH : usersPath;
+        String gPath = (groupsPath == null) ? GROUPS_PATH : groupsPath;
+        while (!Text.isDescendantOrEqual(path, gPath)) {
+            path = Text.getRelativeParent(path, 1);
+        }
+        systemSession.getWorkspace().getObservationManager().addEventListener(this,
+                Event.NODE_REMOVED | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED,
+                path,
+                true,
+                null,
+                null,
+                false);
+        log.debug("Principal name index initialized. Max Size = {}", MAX_CACHE_SIZE);
+    }
+
+    /**
+     * Stops listening to events.
+     */
+    void close() {
+        try {
+            systemSession.getWorkspace().getObservationManager().removeEventListener(this);
+        } catch (RepositoryException e) {
+            log.error("Unexpected error: Failed to stop event listening of PrincipalNameIndex.", e);
+        }
+    }
+
+    /**
+     * @return The current generation, to be passed to {@link #put} after
+     * the principal name has been looked up in the repository.
+     */
+    long getGeneration() {
+        synchronized (monitor) {
+            return generation;
+        }
+    }
+
+    /**
+     * @param principalName A principal name.
+     * @return The identifier of the authorizable node, {@link #NONE} if no
+     * authorizable exists for the given principal name or <code>null</code>
+     * if the principal name is not indexed.
+     */
+    String get(String principalName) {
+        return cache.get(principalName);
+    }
+
+    /**
+     * Adds an entry to the index unless the index has been modified since
+     * the given generation.
+     *
+     * @param principalName The principal name.
+     * @param identifier The identifier of the authorizable node or
+     * {@link #NONE} if no authorizable exists for the given principal name.
+     * @param generation The generation the lookup started with.
+     */
+    void put(String principalName, String identifier, long generation) {
+        synchronized (monitor) {
+            if (generation == this.generation) {
+                cache.put(principalName, identifier, 1);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry for the given principal name.
+     *
+     * @param principalName The principal name.
+     */
+    void remove(String principalName) {
+        synchronized (monitor) {
+            generation++;
+            cache.remove(principalName);
+        }
+    }
+
+    /**
+     * For testing purposes only.
+     */
+    int getSize() {
+        return (int) cache.getElementCount();
+    }
+
+    //------------------------------------------------------< EventListener >---
+    /**
+     * @see javax.jcr.observation.EventListener#onEvent(javax.jcr.observation.EventIterator)
+     */
+    public void onEvent(EventIterator eventIterator) {
+        Set<String> identifiers = new HashSet<String>();
+        boolean added = false;
+        boolean clear = false;
+        while (eventIterator.hasNext() && !clear) {
+            Event ev = eventIterator.nextEvent();
+            try {
+                int type = ev.getType();
+                if (type == Event.NODE_REMOVED) {
+                    identifiers.add(ev.getIdentifier());
+                } else if (pPrincipalName.equals(Text.getName(ev.getPath()))) {
+                    // the identifier of a property event is the one of its parent
+                    identifiers.add(ev.getIdentifier());
+                    added |= (type != Event.PROPERTY_REMOVED);
+                }
+            } catch (RepositoryException e) {
+                log.warn(e.getMessage());
+                // exception while processing the event -> clear the index to
+                // be sure it isn't outdated.
+                clear = true;
+            }
+        }
+
+        if (clear) {
+            synchronized (monitor) {
+                generation++;
+                cache.clear();
+            }
+            log.debug("Principal name index cleared because of observation event.");
+        } else if (!identifiers.isEmpty()) {
+            invalidate(identifiers, added);
+        }
+    }
+
+    /**
+     * Removes the entries referring to the given identifiers and, if a
+     * principal name has been added, all entries for unknown principal names.
+     */
+    private void invalidate(Set<String> identifiers, boolean added) {
+        int removed = 0;
+        synchronized (monitor) {
+            generation++;
+            for (Map.Entry<String, String> entry : cache.entries().entrySet()) {
+                String identifier = entry.getValue();
+                if (identifiers.contains(identifier) || (added && NONE.equals(identifier))) {
+                    cache.remove(entry.getKey());
+                    removed++;
+                }
+            }
+        }
+        log.debug("Removed {} principal name index entries because of observation event.", removed);
+    }
+}
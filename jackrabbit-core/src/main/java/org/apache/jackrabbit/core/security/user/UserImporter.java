@@ -449,18 +449,26 @@ public class UserImporter implements ProtectedPropertyImporter, ProtectedNodeImp
 
                                     // Create N_MEMBERS node structure for holding member references
                                     for (Membership.Member member : nonExisting) {
-                                        PropertySequence properties = GroupImpl.getPropertySequence(nMembers, userManager);
                                         String propName = member.name;
                                         if (propName == null) {
                                             log.debug("Ignoring unnamed user with id {}", member.id);
                                             continue;
                                         }
-                                        if (properties.hasItem(propName)) {
-                                            log.debug("Overwriting authorizable {} which is already member of {}.", propName, gr);
-                                            properties.removeProperty(propName);
-                                        }
                                         Value newMember = session.getValueFactory().createValue(member.id.toString(), PropertyType.WEAKREFERENCE);
-                                        properties.addProperty(propName, newMember);
+                                        if (HashedMembers.isHashed(nMembers, userManager)) {
+                                            HashedMembers members = new HashedMembers(nMembers, userManager.getMemberSplitSize());
+                                            if (members.removeMember(propName)) {
+                                                log.debug("Overwriting authorizable {} which is already member of {}.", propName, gr);
+                                            }
+                                            members.addMember(propName, newMember);
+                                        } else {
+                                            PropertySequence properties = GroupImpl.getPropertySequence(nMembers, userManager);
+                                            if (properties.hasItem(propName)) {
+                                                log.debug("Overwriting authorizable {} which is already member of {}.", propName, gr);
+                                                properties.removeProperty(propName);
+                                            }
+                                            properties.addProperty(propName, newMember);
+                                        }
                                     }
                                     return null;
                                 }
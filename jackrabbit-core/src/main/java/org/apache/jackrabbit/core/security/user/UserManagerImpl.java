@@ -156,6 +156,12 @@ import java.util.UUID;
  * instead of the default multi valued property {@link UserConstants#P_MEMBERS}.
  * Its value determines the maximum number of member properties until additional
  * intermediate nodes are inserted. Valid parameter values are integers &gt; 4.</li>
+ * <li>{@link #PARAM_GROUP_MEMBERSHIP_HASHED}: If this parameter is present and
+ * its value is <code>true</code> the member properties below
+ * {@link UserConstants#N_MEMBERS} are distributed over hashed buckets instead
+ * of a B-tree once their number exceeds the
+ * {@link #PARAM_GROUP_MEMBERSHIP_SPLIT_SIZE split size}. Existing member
+ * structures keep their layout. By default this option is disabled.</li>
  * <li>{@link #PARAM_PASSWORD_HASH_ALGORITHM}: Optional parameter to configure
  * the algorithm used for password hash generation. The default value is
  * {@link PasswordUtility#DEFAULT_ALGORITHM}.</li>
@@ -249,6 +255,18 @@ public class UserManagerImpl extends ProtectedItemModifier
      */
     public static final String PARAM_GROUP_MEMBERSHIP_SPLIT_SIZE = "groupMembershipSplitSize";
 
+    /**
+     * If this parameter is present and its value is <code>true</code> the
+     * member properties below {@link UserConstants#N_MEMBERS} are distributed
+     * over buckets selected by the hash of the member id instead of being
+     * kept in a B-tree. Adding or removing a member then only modifies the
+     * bucket of that member. This parameter only takes effect if
+     * {@link #PARAM_GROUP_MEMBERSHIP_SPLIT_SIZE} is present and only applies
+     * to member structures that have not been split yet.
+     * <br>By default this option is disabled.
+     */
+    public static final String PARAM_GROUP_MEMBERSHIP_HASHED = "groupMembershipHashed";
+
     /**
      * Configuration parameter to change the default algorithm used to generate
      * password hashes. The default value is {@link PasswordUtility#DEFAULT_ALGORITHM}.
@@ -308,6 +326,7 @@ public class UserManagerImpl extends ProtectedItemModifier
      * <li>{@link #PARAM_AUTO_EXPAND_SIZE}. The default value is 1000.</li>
      * <li>{@link #PARAM_GROUP_MEMBERSHIP_SPLIT_SIZE}. The default is 0 which means use
      * {@link UserConstants#P_MEMBERS}.</li>
+     * <li>{@link #PARAM_GROUP_MEMBERSHIP_HASHED}. By default this option is disabled.</li>
      * </ul>
      *
      * See the overall {@link UserManagerImpl introduction} for details.
@@ -344,7 +363,7 @@ public class UserManagerImpl extends ProtectedItemModifier
         if (mCache != null) {
             membershipCache = mCache;
         } else {
-            membershipCache = new MembershipCache(session, groupsPath, hasMemberSplitSize());
+            membershipCache = new MembershipCache(session, usersPath, groupsPath, hasMemberSplitSize());
         }
 
         NodeResolver nr;
@@ -416,6 +435,18 @@ public class UserManagerImpl extends ProtectedItemModifier
         return getMemberSplitSize() >= 4;
     }
 
+    /**
+     * Returns <code>true</code> if new group membership structures below
+     * {@link UserConstants#N_MEMBERS} are split into hashed buckets instead
+     * of a B-tree.
+     *
+     * @return true if the {@link #PARAM_GROUP_MEMBERSHIP_HASHED} parameter
+     * is enabled.
+     */
+    public boolean hasHashedMembers() {
+        return config.getConfigValue(PARAM_GROUP_MEMBERSHIP_HASHED, false);
+    }
+
     /**
      * Set the authorizable actions that will be invoked upon authorizable
      * creation and removal.
@@ -500,7 +531,7 @@ public class UserManagerImpl extends ProtectedItemModifier
                 // ignore and execute the query.
             }
             // authorizable whose ID matched the principal name -> search.
-            n = (NodeImpl) authResolver.findNode(P_PRINCIPAL_NAME, name, NT_REP_AUTHORIZABLE);
+            n = findNodeByPrincipalName(name);
         }
         // build the corresponding authorizable object
         return getAuthorizable(n);
@@ -928,6 +959,45 @@ public class UserManagerImpl extends ProtectedItemModifier
         return getAuthorizable(n);
     }
 
+    /**
+     * Looks up the authorizable node with the given principal name in the
+     * {@link PrincipalNameIndex} and executes a query if it is not indexed.
+     *
+     * @param principalName The principal name.
+     * @return The authorizable node or <code>null</code>.
+     * @throws RepositoryException If an error occurs.
+     */
+    private NodeImpl findNodeByPrincipalName(String principalName) throws RepositoryException {
+        PrincipalNameIndex index = membershipCache.getPrincipalNameIndex();
+        long generation = index.getGeneration();
+        String identifier = index.get(principalName);
+        if (PrincipalNameIndex.NONE.equals(identifier)) {
+            return null;
+        } else if (identifier != null) {
+            // the index is shared: verify the node is accessible and unchanged.
+            try {
+                NodeImpl n = session.getNodeById(NodeId.valueOf(identifier));
+                if (n.isNodeType(NT_REP_AUTHORIZABLE) && n.hasProperty(P_PRINCIPAL_NAME)
+                        && principalName.equals(n.getProperty(P_PRINCIPAL_NAME).getString())) {
+                    return n;
+                }
+                index.remove(principalName);
+            } catch (ItemNotFoundException e) {
+                // removed or not accessible to this session -> search.
+            }
+        }
+
+        NodeImpl n = (NodeImpl) authResolver.findNode(P_PRINCIPAL_NAME, principalName, NT_REP_AUTHORIZABLE);
+        if (n != null) {
+            index.put(principalName, n.getIdentifier(), generation);
+        } else if (session.isSystem() || session.isAdmin()) {
+            // only a session that can read all authorizables can tell that
+            // the principal name is unknown.
+            index.put(principalName, PrincipalNameIndex.NONE, generation);
+        }
+        return n;
+    }
+
     private Value getValue(String strValue) {
         return session.getValueFactory().createValue(strValue);
     }
@@ -746,8 +746,9 @@ public class SharedItemStateManager
 
                 checkAddedChildNodes();
 
-                /* create event states */
-                events.createEventStates(rootNodeId, local, SharedItemStateManager.this);
+                /* create event states, all of them if the cluster needs them */
+                events.createEventStates(rootNodeId, local, SharedItemStateManager.this,
+                        !(eventChannel instanceof DummyUpdateEventChannel));
 
                 // let listener know about change
                 try {
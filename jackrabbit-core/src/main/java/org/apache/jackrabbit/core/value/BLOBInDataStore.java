@@ -16,22 +16,29 @@
  */
 package org.apache.jackrabbit.core.value;
 
+import org.apache.jackrabbit.api.ChannelBinary;
 import org.apache.jackrabbit.api.ReferenceBinary;
+import org.apache.jackrabbit.core.data.AbstractDataStore;
+import org.apache.jackrabbit.core.data.BinaryCache;
 import org.apache.jackrabbit.core.data.DataIdentifier;
 import org.apache.jackrabbit.core.data.DataRecord;
 import org.apache.jackrabbit.core.data.DataStore;
 import org.apache.jackrabbit.core.data.DataStoreException;
+import org.apache.jackrabbit.core.data.FileDataRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import javax.jcr.RepositoryException;
 
 /**
  * Represents binary data which is stored in the data store.
  */
-class BLOBInDataStore extends BLOBFileValue implements ReferenceBinary {
+class BLOBInDataStore extends BLOBFileValue implements ReferenceBinary, ChannelBinary {
 
     private final DataStore store;
     private final DataIdentifier identifier;
@@ -100,10 +107,43 @@ class BLOBInDataStore extends BLOBFileValue implements ReferenceBinary {
         }
     }
 
+    /**
+     * Returns a stream of the binary. Small binaries are served from the
+     * binary cache of the data store, if enabled, without accessing the
+     * data record.
+     */
     public InputStream getStream() throws RepositoryException {
+        if (store instanceof AbstractDataStore) {
+            BinaryCache cache = ((AbstractDataStore) store).getBinaryCache();
+            if (cache != null) {
+                InputStream in = cache.getStreamIfCached(identifier);
+                if (in == null) {
+                    in = cache.load(identifier, getDataRecord());
+                }
+                return in;
+            }
+        }
         return getDataRecord().getStream();
     }
 
+    /**
+     * Opens a channel of the record file if the data store keeps the record
+     * in a local file.
+     *
+     * @return a new channel, or null if the record is not a local file
+     */
+    public FileChannel getChannel() throws RepositoryException {
+        DataRecord record = getDataRecord();
+        if (!(record instanceof FileDataRecord)) {
+            return null;
+        }
+        try {
+            return new FileInputStream(((FileDataRecord) record).getFile()).getChannel();
+        } catch (IOException e) {
+            throw new DataStoreException("Unable to open " + identifier, e);
+        }
+    }
+
     @Override
     public String getReference() {
         try {
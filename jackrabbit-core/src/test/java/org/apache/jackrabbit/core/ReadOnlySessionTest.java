@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core;
+
+import java.util.Arrays;
+
+import javax.jcr.AccessDeniedException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.lock.Lock;
+import javax.jcr.lock.LockManager;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.AccessControlPolicy;
+import javax.jcr.security.AccessControlPolicyIterator;
+
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlManager;
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * Tests sessions created with the {@link SessionImpl#READ_ONLY} attribute.
+ */
+public class ReadOnlySessionTest extends AbstractJCRTest {
+
+    private Session readOnly;
+
+    private SimpleCredentials roCreds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        testRootNode.addNode(nodeName1).setProperty(propertyName1, "value");
+        superuser.save();
+
+        SimpleCredentials creds = (SimpleCredentials) getHelper().getSuperuserCredentials();
+        roCreds = new SimpleCredentials(creds.getUserID(), creds.getPassword());
+        roCreds.setAttribute(SessionImpl.READ_ONLY, Boolean.TRUE);
+        readOnly = getHelper().getRepository().login(roCreds, workspaceName);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (readOnly != null) {
+            readOnly.logout();
+            readOnly = null;
+        }
+        super.tearDown();
+    }
+
+    public void testRead() throws Exception {
+        assertTrue(readOnly instanceof ReadOnlySessionImpl);
+        assertEquals(superuser.getUserID(), readOnly.getUserID());
+        assertNotNull(readOnly.getAttribute(SessionImpl.READ_ONLY));
+
+        Node n = readOnly.getNode(testRoot + "/" + nodeName1);
+        assertEquals("value", n.getProperty(propertyName1).getString());
+        assertTrue(readOnly.hasPermission(n.getPath(), Session.ACTION_READ));
+        assertFalse(readOnly.hasPermission(n.getPath(), Session.ACTION_SET_PROPERTY));
+        assertFalse(readOnly.hasPermission(n.getPath(), Session.ACTION_ADD_NODE));
+        assertFalse(readOnly.hasPermission(n.getPath(), Session.ACTION_REMOVE));
+
+        // changes made by other sessions are visible
+        testRootNode.getNode(nodeName1).setProperty(propertyName1, "changed");
+        superuser.save();
+        assertEquals("changed", n.getProperty(propertyName1).getString());
+    }
+
+    public void testModify() throws Exception {
+        Node n = readOnly.getNode(testRoot + "/" + nodeName1);
+        try {
+            n.setProperty(propertyName1, "modified");
+            readOnly.save();
+            fail("A read-only session must not modify content.");
+        } catch (AccessDeniedException e) {
+            // expected
+        }
+        readOnly.refresh(false);
+        try {
+            n.addNode(nodeName2);
+            readOnly.save();
+            fail("A read-only session must not add nodes.");
+        } catch (AccessDeniedException e) {
+            // expected
+        }
+        readOnly.refresh(false);
+        try {
+            readOnly.getWorkspace().copy(n.getPath(), testRoot + "/" + nodeName3);
+            fail("A read-only session must not copy nodes.");
+        } catch (AccessDeniedException e) {
+            // expected
+        }
+        assertEquals("value", testRootNode.getNode(nodeName1).getProperty(propertyName1).getString());
+        assertFalse(testRootNode.hasNode(nodeName3));
+    }
+
+    public void testAccessControlManager() throws Exception {
+        AccessControlManager acMgr = readOnly.getAccessControlManager();
+        assertTrue(acMgr instanceof JackrabbitAccessControlManager);
+        assertTrue(acMgr.getPrivileges(testRoot).length > 0);
+
+        AccessControlPolicy[] policies = acMgr.getPolicies(testRoot);
+        AccessControlPolicy policy = null;
+        AccessControlPolicyIterator it = acMgr.getApplicablePolicies(testRoot);
+        if (it.hasNext()) {
+            policy = it.nextAccessControlPolicy();
+        } else if (policies.length > 0) {
+            policy = policies[0];
+        }
+        assertNotNull("No policy to set at " + testRoot, policy);
+        try {
+            acMgr.setPolicy(testRoot, policy);
+            fail("A read-only session must not set policies.");
+        } catch (AccessDeniedException e) {
+            // expected
+        }
+        for (AccessControlPolicy p : policies) {
+            try {
+                acMgr.removePolicy(testRoot, p);
+                fail("A read-only session must not remove policies.");
+            } catch (AccessDeniedException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testLogout() throws Exception {
+        assertTrue(readOnly.isLive());
+        readOnly.logout();
+        assertFalse(readOnly.isLive());
+        try {
+            readOnly.getNode(testRoot + "/" + nodeName1);
+            fail("A logged out session must not be usable.");
+        } catch (RepositoryException e) {
+            // expected
+        }
+    }
+
+    public void testStaleSession() throws Exception {
+        Session previous = readOnly;
+        previous.logout();
+        readOnly = getHelper().getRepository().login(roCreds, workspaceName);
+        assertNotSame(previous, readOnly);
+        assertTrue(readOnly.isLive());
+        assertFalse(previous.isLive());
+
+        try {
+            previous.getNode(testRoot + "/" + nodeName1);
+            fail("A stale session must not be usable after the next login.");
+        } catch (RepositoryException e) {
+            // expected
+        }
+        // a second logout of the stale session does not affect the new one
+        previous.logout();
+        assertTrue(readOnly.isLive());
+        assertEquals("value", readOnly.getNode(testRoot + "/" + nodeName1)
+                .getProperty(propertyName1).getString());
+    }
+
+    public void testPerLoginState() throws Exception {
+        Node n = testRootNode.getNode(nodeName1);
+        n.addMixin(mixLockable);
+        superuser.save();
+        LockManager lockMgr = superuser.getWorkspace().getLockManager();
+        Lock lock = lockMgr.lock(n.getPath(), false, false, Long.MAX_VALUE, null);
+        String token = lock.getLockToken();
+        lockMgr.removeLockToken(token);
+        try {
+            readOnly.logout();
+            SimpleCredentials creds = new SimpleCredentials(
+                    roCreds.getUserID(), roCreds.getPassword());
+            creds.setAttribute(SessionImpl.READ_ONLY, Boolean.TRUE);
+            creds.setAttribute("test", "first");
+            readOnly = getHelper().getRepository().login(creds, workspaceName);
+            assertEquals("first", readOnly.getAttribute("test"));
+            readOnly.getWorkspace().getLockManager().addLockToken(token);
+            assertTrue(Arrays.asList(readOnly.getLockTokens()).contains(token));
+
+            readOnly.logout();
+            readOnly = getHelper().getRepository().login(roCreds, workspaceName);
+            assertNull("Attributes must not carry over",
+                    readOnly.getAttribute("test"));
+            assertEquals("Lock tokens must not carry over",
+                    0, readOnly.getLockTokens().length);
+        } finally {
+            lockMgr.addLockToken(token);
+            lockMgr.unlock(n.getPath());
+        }
+    }
+}
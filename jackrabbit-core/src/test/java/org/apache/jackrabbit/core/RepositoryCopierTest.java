@@ -20,14 +20,21 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import javax.jcr.Binary;
 import javax.jcr.Credentials;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.Node;
 import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.SimpleCredentials;
 import javax.jcr.Value;
@@ -39,6 +46,7 @@ import junit.framework.TestCase;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.apache.jackrabbit.core.persistence.CopyCheckpoint;
 
 public class RepositoryCopierTest extends TestCase {
 
@@ -55,6 +63,11 @@ public class RepositoryCopierTest extends TestCase {
 
     private static final byte[] BINARY = new byte[64 * 1024];
 
+    /**
+     * More nodes than are copied in one batch.
+     */
+    private static final int CHILD_NODES = 1500;
+
     static {
         new Random().nextBytes(BINARY);
     }
@@ -75,6 +88,144 @@ public class RepositoryCopierTest extends TestCase {
         verifyTargetRepository();
     }
 
+    public void testParallelRepositoryCopy() throws Exception {
+        createSourceRepository();
+        File checkpoint = new File(BASE, "copy.properties");
+        RepositoryImpl source =
+            RepositoryImpl.create(RepositoryConfig.create(SOURCE));
+        try {
+            RepositoryImpl target =
+                RepositoryImpl.create(RepositoryConfig.install(TARGET));
+            try {
+                RepositoryCopier copier = new RepositoryCopier(source, target);
+                copier.setThreads(4);
+                copier.setCheckpoint(checkpoint);
+                copier.setVerify(true);
+                copier.copy();
+            } finally {
+                target.shutdown();
+            }
+        } finally {
+            source.shutdown();
+        }
+        assertFalse(checkpoint.exists());
+        verifyTargetRepository();
+    }
+
+    /**
+     * Interrupts a copy after the first recorded batch of the default
+     * workspace, and checks that a second run with the same checkpoint
+     * resumes after that batch and copies all remaining nodes.
+     */
+    public void testResumedRepositoryCopy() throws Exception {
+        createSourceRepository();
+        addChildNodes("many", CHILD_NODES);
+        File checkpoint = new File(BASE, "copy.properties");
+
+        RepositoryImpl source =
+            RepositoryImpl.create(RepositoryConfig.create(SOURCE));
+        InterruptingCopier first;
+        try {
+            RepositoryImpl target =
+                RepositoryImpl.create(RepositoryConfig.install(TARGET));
+            try {
+                first = new InterruptingCopier(
+                        source, target, "workspace.default");
+                first.setCheckpoint(checkpoint);
+                try {
+                    first.copy();
+                    fail("The copy must be interrupted");
+                } catch (RepositoryException e) {
+                    // expected
+                }
+            } finally {
+                target.shutdown();
+            }
+        } finally {
+            source.shutdown();
+        }
+        assertTrue(checkpoint.exists());
+        List<String> interrupted = first.getProgress("workspace.default");
+        assertEquals(1, interrupted.size());
+        String last = interrupted.get(0);
+
+        source = RepositoryImpl.create(RepositoryConfig.create(SOURCE));
+        InterruptingCopier second;
+        try {
+            RepositoryImpl target =
+                RepositoryImpl.create(RepositoryConfig.create(TARGET));
+            try {
+                second = new InterruptingCopier(source, target, null);
+                second.setCheckpoint(checkpoint);
+                second.copy();
+            } finally {
+                target.shutdown();
+            }
+        } finally {
+            source.shutdown();
+        }
+        assertFalse(checkpoint.exists());
+
+        // persistence managers completed in the first run are not copied again
+        for (String key : first.getKeys()) {
+            if (first.getProgress(key).contains(CopyCheckpoint.DONE)) {
+                assertTrue("Copied again: " + key,
+                        second.getProgress(key).isEmpty());
+            }
+        }
+        // the default workspace resumes after the recorded batch
+        List<String> resumed = second.getProgress("workspace.default");
+        assertTrue(resumed.size() > 1);
+        assertEquals(CopyCheckpoint.DONE, resumed.get(resumed.size() - 1));
+        assertFalse("Copied again: " + last, resumed.contains(last));
+        assertEquals(resumed.size(), new HashSet<String>(resumed).size());
+
+        verifyTargetRepository();
+        verifyChildNodes("many", CHILD_NODES);
+    }
+
+    private void addChildNodes(String name, int count) throws Exception {
+        RepositoryImpl repository =
+            RepositoryImpl.create(RepositoryConfig.create(SOURCE));
+        try {
+            Session session = repository.login(CREDENTIALS);
+            try {
+                Node parent = session.getRootNode().addNode(name);
+                for (int i = 0; i < count; i++) {
+                    parent.addNode("node" + i).setProperty("index", i);
+                    if (i % 500 == 499) {
+                        session.save();
+                    }
+                }
+                session.save();
+            } finally {
+                session.logout();
+            }
+        } finally {
+            repository.shutdown();
+        }
+    }
+
+    private void verifyChildNodes(String name, int count) throws Exception {
+        RepositoryImpl repository =
+            RepositoryImpl.create(RepositoryConfig.create(TARGET));
+        try {
+            Session session = repository.login(CREDENTIALS);
+            try {
+                Node parent = session.getNode("/" + name);
+                assertEquals(count, parent.getNodes().getSize());
+                for (int i = 0; i < count; i++) {
+                    assertEquals(i, parent.getNode("node" + i)
+                            .getProperty("index").getLong());
+                }
+            } finally {
+                session.logout();
+            }
+        } finally {
+            repository.shutdown();
+        }
+    }
+
     private void createSourceRepository() throws Exception {
         RepositoryImpl repository = RepositoryImpl.create(
                 RepositoryConfig.install(SOURCE));
@@ -234,4 +385,56 @@ public class RepositoryCopierTest extends TestCase {
         }
     }
 
+    /**
+     * Records the progress written to the checkpoint, and fails the copy
+     * after the first batch recorded for the given key.
+     */
+    private static class InterruptingCopier extends RepositoryCopier {
+
+        private final String interruptKey;
+
+        private final Map<String, List<String>> progress =
+            new HashMap<String, List<String>>();
+
+        InterruptingCopier(
+                RepositoryImpl source, RepositoryImpl target,
+                String interruptKey) {
+            super(source, target);
+            this.interruptKey = interruptKey;
+        }
+
+        Set<String> getKeys() {
+            return progress.keySet();
+        }
+
+        List<String> getProgress(String key) {
+            List<String> values = progress.get(key);
+            if (values == null) {
+                values = new ArrayList<String>();
+            }
+            return values;
+        }
+
+        @Override
+        CopyCheckpoint openCheckpoint(File file) throws RepositoryException {
+            return new CopyCheckpoint(file) {
+                @Override
+                public synchronized void set(String key, String value)
+                        throws RepositoryException {
+                    super.set(key, value);
+                    List<String> values = progress.get(key);
+                    if (values == null) {
+                        values = new ArrayList<String>();
+                        progress.put(key, values);
+                    }
+                    values.add(value);
+                    if (key.equals(interruptKey) && !DONE.equals(value)) {
+                        throw new RepositoryException(
+                                "Interrupted after " + value);
+                    }
+                }
+            };
+        }
+    }
+
 }
@@ -45,6 +45,7 @@ public class TestAll extends TestCase {
         suite.addTestSuite(RetentionRegistryImplTest.class);
         suite.addTestSuite(InvalidDateTest.class);
         suite.addTestSuite(SessionGarbageCollectedTest.class);
+        suite.addTestSuite(ReadOnlySessionTest.class);
         suite.addTestSuite(ReferencesTest.class);
         suite.addTestSuite(ReplaceTest.class);
 
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.cluster;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.observation.Event;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.observation.EventState;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.test.JUnitTest;
+
+/**
+ * Tests the {@link EventJournalIndex}.
+ */
+public class EventJournalIndexTest extends JUnitTest {
+
+    private static final String JOURNAL = "journal";
+
+    private File file;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("eventjournal", ".idx");
+        file.delete();
+    }
+
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testSkipRevision() throws Exception {
+        EventJournalIndex index = new EventJournalIndex(null, JOURNAL, 0);
+        assertNull(index.getSkipRevision(100));
+        index.add(10, 100, "default", events("/a"));
+        index.add(20, 200, "default", events("/a"));
+        index.add(30, 150, "default", events("/a"));
+        index.add(40, 300, "default", events("/a"));
+
+        assertNull(index.getSkipRevision(99));
+        assertEquals(new Long(10), index.getSkipRevision(100));
+        assertEquals(new Long(10), index.getSkipRevision(199));
+        // the record at revision 30 is older but follows a newer one
+        assertEquals(new Long(30), index.getSkipRevision(200));
+        assertEquals(new Long(40), index.getSkipRevision(300));
+    }
+
+    public void testMatches() throws Exception {
+        EventJournalIndex index = new EventJournalIndex(null, JOURNAL, 0);
+        index.add(10, 100, "default", events("/a/b/c", "/a/b/d"));
+        EventJournalIndex.Entry entry = index.get(10);
+        assertNotNull(entry);
+        assertNull(index.get(11));
+        assertEquals("default", entry.getWorkspace());
+
+        long types = Event.PROPERTY_CHANGED;
+        assertTrue(entry.matches(types, paths("/a/b/c"), false));
+        assertTrue(entry.matches(types, paths("/a"), true));
+        assertFalse(entry.matches(types, paths("/a"), false));
+        assertFalse(entry.matches(types, paths("/x"), true));
+        assertFalse(entry.matches(Event.NODE_ADDED, paths("/a"), true));
+    }
+
+    public void testPersistence() throws Exception {
+        EventJournalIndex index = new EventJournalIndex(file, JOURNAL, 0);
+        index.add(10, 100, "default", events("/a"));
+        index.add(20, 200, null, events("/b"));
+        assertFalse("Entries must only be written by flush()", file.exists());
+        index.flush();
+        assertTrue(file.exists());
+        index.close();
+
+        // simulate an incomplete entry at the end of the file
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[] {0, 0, 0});
+        out.close();
+
+        index = new EventJournalIndex(file, JOURNAL, 20);
+        assertEquals("default", index.get(10).getWorkspace());
+        assertNull(index.get(20).getWorkspace());
+        index.add(30, 300, "default", events("/c"));
+        index.close();
+
+        index = new EventJournalIndex(file, JOURNAL, 30);
+        assertTrue(index.get(30).matches(
+                Event.PROPERTY_CHANGED, paths("/c"), false));
+        assertEquals(new Long(20), index.getSkipRevision(250));
+        index.close();
+    }
+
+    public void testOtherJournal() throws Exception {
+        EventJournalIndex index = new EventJournalIndex(file, JOURNAL, 0);
+        index.add(10, 100, "default", events("/a"));
+        index.close();
+
+        index = new EventJournalIndex(file, "other", 10);
+        assertNull("Index of another journal must be discarded", index.get(10));
+        assertFalse(file.exists());
+        index.add(5, 50, "default", events("/a"));
+        index.close();
+
+        index = new EventJournalIndex(file, "other", 10);
+        assertNotNull(index.get(5));
+        index.close();
+    }
+
+    public void testLaterRevisions() throws Exception {
+        EventJournalIndex index = new EventJournalIndex(file, JOURNAL, 0);
+        index.add(10, 100, "default", events("/a"));
+        index.add(20, 200, "default", events("/a"));
+        index.close();
+
+        // e.g. the journal was reset
+        index = new EventJournalIndex(file, JOURNAL, 15);
+        assertNull(index.get(10));
+        assertNull(index.getSkipRevision(300));
+        assertFalse(file.exists());
+        index.close();
+    }
+
+    private static List<EventState> events(String... parentPaths) throws Exception {
+        List<EventState> events = new ArrayList<EventState>();
+        for (String parentPath : parentPaths) {
+            events.add(EventState.propertyChanged(
+                    new NodeId(), path(parentPath),
+                    PathFactoryImpl.getInstance().create(NameConstants.JCR_DATA),
+                    NameConstants.NT_UNSTRUCTURED,
+                    Collections.<Name>emptySet(), null));
+        }
+        return events;
+    }
+
+    private static List<Path> paths(String path) throws Exception {
+        return Collections.singletonList(path(path));
+    }
+
+    private static Path path(String path) throws Exception {
+        Path p = PathFactoryImpl.getInstance().getRootPath();
+        for (String element : path.substring(1).split("/")) {
+            p = PathFactoryImpl.getInstance().create(
+                    p, NameFactoryImpl.getInstance().create("", element), true);
+        }
+        return p;
+    }
+}
@@ -42,6 +42,7 @@ public class TestAll extends TestCase {
         suite.addTestSuite(DbClusterTest.class);
         suite.addTestSuite(DbClusterTestJCR3162.class);
         suite.addTestSuite(FailUpdateOnJournalExceptionTest.class);
+        suite.addTestSuite(EventJournalIndexTest.class);
 
         return suite;
     }
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.jcr.Node;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.core.BinaryPlacementMigrator;
+import org.apache.jackrabbit.core.PropertyImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * Tests moving binaries between tiers with the {@link BinaryPlacementMigrator}.
+ */
+public class BinaryPlacementMigratorTest extends AbstractJCRTest {
+
+    public void testInlineByMimeType() throws Exception {
+        byte[] data = new byte[1000];
+        new Random(1).nextBytes(data);
+        Node thumbnail = addResource("thumbnail", "image/png", data);
+        Node pdf = addResource("pdf", "application/pdf", data);
+        superuser.save();
+        if (!isInDataStore(thumbnail)) {
+            // no data store configured, or the binary is stored inline
+            return;
+        }
+
+        DefaultBinaryPlacementPolicy policy = new DefaultBinaryPlacementPolicy();
+        policy.setMaxInlineSize(4096);
+        policy.setInlineMimeTypes("image/");
+        BinaryPlacementMigrator migrator =
+            new BinaryPlacementMigrator((SessionImpl) superuser, policy);
+        migrator.migrate(testRoot);
+        assertEquals(1, migrator.getInlined());
+        assertFalse(isInDataStore(thumbnail));
+        assertTrue(isInDataStore(pdf));
+        assertContent(data, thumbnail);
+        assertContent(data, pdf);
+
+        // and back to the data store
+        policy.setMaxInlineSize(0);
+        migrator = new BinaryPlacementMigrator((SessionImpl) superuser, policy);
+        migrator.migrate(testRoot);
+        assertEquals(1, migrator.getStored());
+        assertTrue(isInDataStore(thumbnail));
+        assertContent(data, thumbnail);
+    }
+
+    public void testSkipCheckedIn() throws Exception {
+        byte[] data = new byte[1000];
+        new Random(2).nextBytes(data);
+        Node thumbnail = addResource("thumbnail", "image/png", data);
+        thumbnail.addMixin(mixVersionable);
+        superuser.save();
+        if (!isInDataStore(thumbnail)) {
+            // no data store configured, or the binary is stored inline
+            return;
+        }
+        thumbnail.checkin();
+
+        DefaultBinaryPlacementPolicy policy = new DefaultBinaryPlacementPolicy();
+        policy.setMaxInlineSize(4096);
+        policy.setInlineMimeTypes("image/");
+        BinaryPlacementMigrator migrator =
+            new BinaryPlacementMigrator((SessionImpl) superuser, policy);
+        migrator.migrate(testRoot);
+        assertEquals(0, migrator.getInlined());
+        assertEquals(1, migrator.getSkipped());
+        assertTrue(isInDataStore(thumbnail));
+        assertFalse(superuser.hasPendingChanges());
+    }
+
+    private Node addResource(String name, String mimeType, byte[] data)
+            throws Exception {
+        Node n = testRootNode.addNode(name);
+        n.setProperty(JcrConstants.JCR_MIMETYPE, mimeType);
+        n.setProperty(JcrConstants.JCR_DATA, superuser.getValueFactory()
+                .createBinary(new ByteArrayInputStream(data)));
+        return n;
+    }
+
+    private static boolean isInDataStore(Node n) throws Exception {
+        PropertyImpl p = (PropertyImpl) n.getProperty(JcrConstants.JCR_DATA);
+        return p.internalGetValue().isInDataStore();
+    }
+
+    private static void assertContent(byte[] expected, Node n) throws Exception {
+        InputStream in = n.getProperty(JcrConstants.JCR_DATA).getBinary().getStream();
+        try {
+            assertTrue(Arrays.equals(expected, IOUtils.toByteArray(in)));
+        } finally {
+            in.close();
+        }
+    }
+}
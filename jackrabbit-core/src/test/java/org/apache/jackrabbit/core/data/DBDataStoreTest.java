@@ -19,6 +19,7 @@ package org.apache.jackrabbit.core.data;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.util.Iterator;
 import java.util.Random;
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.core.data.db.DbDataStore;
@@ -83,6 +84,18 @@ public class DBDataStoreTest extends JUnitTest {
         }
     }
 
+    public void testAddExistingRecord() throws Exception {
+        DataRecord record = store.addRecord(new ByteArrayInputStream(data));
+        assertEquals(identifier, record.getIdentifier());
+        assertEquals(data.length, record.getLength());
+
+        int count = 0;
+        for (Iterator<DataIdentifier> it = store.getAllIdentifiers(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(1, count);
+    }
+
     public void testDbInputStreamReset() throws Exception {
         DataRecord record = store.getRecord(identifier);
         InputStream in = record.getStream();
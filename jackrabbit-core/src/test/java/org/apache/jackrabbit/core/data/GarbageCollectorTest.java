@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.core.data;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.api.management.DataStoreGarbageCollector;
 import org.apache.jackrabbit.api.management.MarkEventListener;
 import org.apache.jackrabbit.core.SessionImpl;
@@ -25,9 +26,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import EDU.oswego.cs.dl.util.concurrent.SynchronousChannel;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import javax.jcr.Binary;
 import javax.jcr.Credentials;
 import javax.jcr.Node;
@@ -185,6 +189,54 @@ public class GarbageCollectorTest extends AbstractJCRTest implements ScanEventLi
         gc.close();
     }
     
+    public void testIdentifierScan() throws Exception {
+        Node root = testRootNode;
+        Session session = root.getSession();
+
+        deleteMyNodes();
+
+        ValueFactory vf = session.getValueFactory();
+        Node n = root.addNode("node1");
+        n.setProperty("test", vf.createBinary(new RandomInputStream(21, 1000)));
+        session.save();
+        n = root.addNode("node2");
+        n.setProperty("test", vf.createBinary(new RandomInputStream(12, 1000)));
+        session.save();
+        n.remove();
+        session.save();
+
+        GarbageCollector gc = ((SessionImpl) session).createDataStoreGarbageCollector();
+        if (!gc.isPersistenceManagerScan()) {
+            gc.close();
+            return;
+        }
+        gc.getDataStore().clearInUse();
+        gc.setIdentifierScan(true);
+        gc.setScanThreads(2);
+
+        // not referenced by any node, but in use as long as it is reachable
+        DataRecord inUse = gc.getDataStore().addRecord(new RandomInputStream(13, 1000));
+
+        if (gc.getDataStore() instanceof FileDataStore) {
+            // make sure the file is old (access time resolution is 2 seconds)
+            Thread.sleep(2000);
+        }
+
+        gc.mark();
+        int count = listIdentifiers(gc);
+        assertTrue(gc.sweep() > 0);
+        assertTrue(listIdentifiers(gc) < count);
+        assertNotNull("A record in use must not be deleted",
+                gc.getDataStore().getRecordIfStored(inUse.getIdentifier()));
+
+        InputStream in = root.getNode("node1").getProperty("test").getBinary().getStream();
+        verifyInputStream(in, new RandomInputStream(21, 1000));
+
+        deleteMyNodes();
+
+        gc.close();
+    }
+
     /**
      *  Test to validate that two  GC cannot run simulatenously. one 
      *  exits throwing exception  
@@ -232,6 +284,69 @@ public class GarbageCollectorTest extends AbstractJCRTest implements ScanEventLi
         gc.close();
     }
 
+    public void testIdentifierScanDeletesChunks() throws Exception {
+        Node root = testRootNode;
+        Session session = root.getSession();
+
+        deleteMyNodes();
+
+        GarbageCollector gc = ((SessionImpl) session).createDataStoreGarbageCollector();
+        if (!gc.isPersistenceManagerScan()
+                || !(gc.getDataStore() instanceof FileDataStore)) {
+            gc.close();
+            return;
+        }
+        FileDataStore store = (FileDataStore) gc.getDataStore();
+        File chunkDir = new File(store.getPath(), "chunks");
+        int chunkSize = store.getChunkSize();
+        store.setChunkSize(4096);
+        try {
+            ValueFactory vf = session.getValueFactory();
+            Node n = root.addNode("node1");
+            n.setProperty("test", vf.createBinary(new RandomInputStream(31, 64 * 1024)));
+            session.save();
+            Set<File> kept = listChunks(chunkDir);
+            assertFalse(kept.isEmpty());
+            n = root.addNode("node2");
+            n.setProperty("test", vf.createBinary(new RandomInputStream(32, 64 * 1024)));
+            session.save();
+            Set<File> removed = listChunks(chunkDir);
+            removed.removeAll(kept);
+            assertFalse(removed.isEmpty());
+            n.remove();
+            session.save();
+
+            store.clearInUse();
+            gc.setIdentifierScan(true);
+            // make sure the files are old (access time resolution is 2 seconds)
+            Thread.sleep(2000);
+
+            gc.mark();
+            assertTrue(gc.sweep() > 0);
+            for (File chunk : removed) {
+                assertFalse("Unused chunk must be deleted: " + chunk, chunk.exists());
+            }
+            for (File chunk : kept) {
+                assertTrue("Used chunk must be kept: " + chunk, chunk.exists());
+            }
+
+            InputStream in = root.getNode("node1").getProperty("test").getBinary().getStream();
+            verifyInputStream(in, new RandomInputStream(31, 64 * 1024));
+        } finally {
+            store.setChunkSize(chunkSize);
+            deleteMyNodes();
+            gc.close();
+        }
+    }
+
+    private static Set<File> listChunks(File chunkDir) {
+        Set<File> chunks = new HashSet<File>();
+        if (chunkDir.isDirectory()) {
+            chunks.addAll(FileUtils.listFiles(chunkDir, null, true));
+        }
+        return chunks;
+    }
+
     private static int listIdentifiers(GarbageCollector gc) throws DataStoreException {
         LOG.debug("identifiers:");
         int count = 0;
@@ -35,6 +35,7 @@ public class TestAll extends TestCase {
     public static Test suite() {
         TestSuite suite = new ConcurrentTestSuite("Data tests");
 
+        suite.addTestSuite(BinaryPlacementMigratorTest.class);
         suite.addTestSuite(ConcurrentGcTest.class);
         suite.addTestSuite(CopyValueTest.class);
         suite.addTestSuite(DataStoreAPITest.class);
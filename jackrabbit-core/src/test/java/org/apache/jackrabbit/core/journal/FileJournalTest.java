@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.core.journal;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 
 import javax.jcr.RepositoryException;
@@ -173,4 +174,92 @@ public class FileJournalTest extends JUnitTest {
 
         clusterNode.stop();
     }
+
+    /**
+     * Append records to a journal with a small maximum size, so that it gets
+     * rotated, and verify that they can be read back through memory mappings,
+     * starting at any revision.
+     *
+     * @throws Exception
+     */
+    public void testMemoryMappedRead() throws Exception {
+        FileJournal journal = new FileJournal();
+        journal.setDirectory(journalDirectory.getPath());
+        journal.setRepositoryHome(repositoryHome);
+        journal.setMaximumSize(256);
+        journal.setMemoryMapped(true);
+        journal.init(CLUSTER_NODE_ID, new SimpleClusterContext(
+                new ClusterConfig(CLUSTER_NODE_ID, SYNC_DELAY, null),
+                repositoryHome).getNamespaceResolver());
+
+        int count = 50;
+        long[] revisions = new long[count];
+        RecordProducer producer = journal.getProducer("test");
+        for (int i = 0; i < count; i++) {
+            Record record = producer.append();
+            record.writeString("record-" + i);
+            record.update();
+            revisions[i] = record.getRevision();
+        }
+        assertTrue(RotatingLogFile.listFiles(journalDirectory, "journal").length > 1);
+
+        RecordIterator records = journal.getRecords();
+        try {
+            for (int i = 0; i < count; i++) {
+                assertTrue(records.hasNext());
+                Record record = records.nextRecord();
+                assertEquals(revisions[i], record.getRevision());
+                assertEquals("record-" + i, record.readString());
+            }
+            assertFalse(records.hasNext());
+        } finally {
+            records.close();
+        }
+
+        records = journal.getRecords(revisions[count / 2]);
+        try {
+            Record record = records.nextRecord();
+            // skip a record without reading it
+            record = records.nextRecord();
+            assertEquals("record-" + (count / 2 + 2), record.readString());
+        } finally {
+            records.close();
+        }
+        journal.close();
+    }
+
+    /**
+     * Verify that readers share the mapping of a log file, and that the
+     * mapping is replaced when the file has grown or been rotated.
+     *
+     * @throws Exception
+     */
+    public void testSharedMappings() throws Exception {
+        journalDirectory.mkdirs();
+        File file = new File(journalDirectory, "journal.log");
+        FileRecordLog log = new FileRecordLog(file);
+        log.init(0);
+        log.append(CLUSTER_NODE_ID, "test", new ByteArrayInputStream(new byte[10]), 10);
+        long length = file.length();
+
+        MappedLogFiles mappings = new MappedLogFiles();
+        MappedLogFiles.Mapping first = mappings.acquire(file, 0, length);
+        MappedLogFiles.Mapping second = mappings.acquire(file, 0, length);
+        assertSame(first, second);
+
+        log.append(CLUSTER_NODE_ID, "test", new ByteArrayInputStream(new byte[10]), 10);
+        MappedLogFiles.Mapping grown = mappings.acquire(file, 0, file.length());
+        assertNotSame(first, grown);
+        assertSame(grown, mappings.acquire(file, 0, length));
+
+        MappedLogFiles.Mapping rotated = mappings.acquire(file, 100, length);
+        assertNotSame(grown, rotated);
+
+        mappings.release(first);
+        mappings.release(second);
+        mappings.release(grown);
+        mappings.release(grown);
+        mappings.release(rotated);
+        mappings.clear();
+    }
 }
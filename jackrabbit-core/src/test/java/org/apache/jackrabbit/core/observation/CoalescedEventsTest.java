@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.api.observation.JackrabbitEventFilter;
+import org.apache.jackrabbit.api.observation.JackrabbitObservationManager;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.test.api.observation.AbstractObservationTest;
+
+/**
+ * <code>CoalescedEventsTest</code> checks that a listener registered with a
+ * coalescing window receives collapsed events.
+ */
+public class CoalescedEventsTest extends AbstractObservationTest {
+
+    public void testCoalescedEvents() throws Exception {
+        final CountDownLatch collapsed = new CountDownLatch(3);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onEvent(EventIterator events) {
+                long before = getEventCount();
+                super.onEvent(events);
+                for (long i = getEventCount() - before; i > 0; i--) {
+                    collapsed.countDown();
+                }
+            }
+        };
+        JackrabbitEventFilter filter = new JackrabbitEventFilter()
+                .setEventTypes(Event.NODE_ADDED)
+                .setAbsPath(testRoot)
+                .setIsDeep(true)
+                .setCoalescingWindow(200);
+        ((JackrabbitObservationManager) obsMgr).addEventListener(listener, filter);
+        try {
+            Node n = testRootNode.addNode(nodeName1, testNodeType);
+            n.addNode(nodeName2, testNodeType);
+            n.addNode(nodeName3, testNodeType);
+            testRootNode.getSession().save();
+
+            assertTrue("Expected three collapsed events",
+                    collapsed.await(DEFAULT_WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+            for (Event event : listener.getEvents()) {
+                assertEquals(Event.PERSIST, event.getType());
+                assertTrue(event.getPath().startsWith(testRoot));
+                long types = Long.parseLong((String) event.getInfo().get("eventTypes"));
+                assertEquals(Event.NODE_ADDED, types);
+            }
+        } finally {
+            obsMgr.removeEventListener(listener);
+        }
+    }
+
+    /**
+     * Runs the delivery of the coalescer explicitly, the window is long
+     * enough to never elapse during the test.
+     */
+    public void testSingleWindow() throws Exception {
+        SessionImpl session = (SessionImpl) superuser;
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        try {
+            EventCoalescer coalescer = new EventCoalescer(
+                    session, TimeUnit.HOURS.toMillis(1), scheduler);
+            RecordingListener listener = new RecordingListener();
+
+            coalescer.add(propertyAdded(session.getQPath("/a/b")), listener);
+            coalescer.add(propertyAdded(session.getQPath("/a/c/d")), listener);
+            coalescer.add(nodeAdded(session.getQPath("/a/c")), listener);
+            assertEquals("Only one delivery per window must be scheduled",
+                    1, scheduler.getQueue().size());
+            assertTrue(listener.getEvents().isEmpty());
+
+            coalescer.run();
+            assertEquals(1, listener.getEvents().size());
+            Event event = listener.getEvents().get(0);
+            assertEquals(Event.PERSIST, event.getType());
+            assertEquals("/a", event.getPath());
+            assertEquals(3, listener.getEventCount());
+            long types = Long.parseLong((String) event.getInfo().get("eventTypes"));
+            assertEquals(Event.PROPERTY_ADDED | Event.NODE_ADDED, types);
+
+            // nothing pending
+            coalescer.run();
+            assertEquals(1, listener.getEvents().size());
+
+            // the next event starts a new window
+            coalescer.add(propertyAdded(session.getQPath("/a/b")), listener);
+            assertEquals(2, scheduler.getQueue().size());
+            coalescer.run();
+            assertEquals(2, listener.getEvents().size());
+            assertEquals("/a/b", listener.getEvents().get(1).getPath());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void testSynchronousListener() throws Exception {
+        RecordingListener listener = new SynchronousRecordingListener();
+        JackrabbitEventFilter filter = new JackrabbitEventFilter()
+                .setEventTypes(Event.NODE_ADDED)
+                .setAbsPath(testRoot)
+                .setIsDeep(true)
+                .setCoalescingWindow(200);
+        ((JackrabbitObservationManager) obsMgr).addEventListener(listener, filter);
+        try {
+            testRootNode.addNode(nodeName1, testNodeType);
+            testRootNode.getSession().save();
+
+            // delivered individually before save() returns
+            assertEquals(1, listener.getEvents().size());
+            Event event = listener.getEvents().get(0);
+            assertEquals(Event.NODE_ADDED, event.getType());
+            assertEquals(testRoot + "/" + nodeName1, event.getPath());
+        } finally {
+            obsMgr.removeEventListener(listener);
+        }
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    private EventState propertyAdded(Path parentPath) {
+        return EventState.propertyAdded(null, parentPath,
+                PathFactoryImpl.getInstance().create(NameConstants.JCR_DATA),
+                NameConstants.NT_UNSTRUCTURED, Collections.<Name>emptySet(),
+                superuser);
+    }
+
+    private EventState nodeAdded(Path parentPath) {
+        return EventState.childNodeAdded(null, parentPath,
+                new NodeId(),
+                PathFactoryImpl.getInstance().create(
+                        NameFactoryImpl.getInstance().create("", "child")),
+                NameConstants.NT_UNSTRUCTURED, Collections.<Name>emptySet(),
+                superuser);
+    }
+
+    /**
+     * Records the events and the sum of their <code>eventCount</code>.
+     */
+    private static class RecordingListener implements EventListener {
+
+        private final List<Event> events = new ArrayList<Event>();
+
+        private long eventCount;
+
+        public synchronized void onEvent(EventIterator it) {
+            while (it.hasNext()) {
+                Event event = it.nextEvent();
+                events.add(event);
+                try {
+                    String count = (String) event.getInfo().get("eventCount");
+                    if (count != null) {
+                        eventCount += Long.parseLong(count);
+                    }
+                } catch (RepositoryException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        synchronized List<Event> getEvents() {
+            return new ArrayList<Event>(events);
+        }
+
+        synchronized long getEventCount() {
+            return eventCount;
+        }
+    }
+
+    private static class SynchronousRecordingListener
+            extends RecordingListener implements SynchronousEventListener {
+    }
+}
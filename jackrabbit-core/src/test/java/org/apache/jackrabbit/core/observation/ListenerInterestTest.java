@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.util.Collections;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+
+/**
+ * <code>ListenerInterestTest</code> checks the union of event types and
+ * paths computed from event filters.
+ */
+public class ListenerInterestTest extends TestCase {
+
+    private static final PathFactory PATH_FACTORY = PathFactoryImpl.getInstance();
+
+    public void testEmpty() throws Exception {
+        ListenerInterest interest = new ListenerInterest();
+        assertFalse(interest.includes(Event.NODE_ADDED));
+        assertFalse(interest.includes(Event.NODE_ADDED, path()));
+    }
+
+    public void testEventTypes() throws Exception {
+        ListenerInterest interest = new ListenerInterest();
+        interest.add(filter(Event.NODE_ADDED | Event.NODE_REMOVED, true, path()));
+        assertTrue(interest.includes(Event.NODE_ADDED));
+        assertTrue(interest.includes(Event.NODE_REMOVED));
+        assertFalse(interest.includes(Event.PROPERTY_CHANGED));
+        assertTrue(interest.includes(Event.NODE_ADDED, path("var", "import")));
+        assertFalse(interest.includes(Event.PROPERTY_CHANGED, path("var", "import")));
+    }
+
+    public void testDeepPath() throws Exception {
+        ListenerInterest interest = new ListenerInterest();
+        interest.add(filter(Event.NODE_ADDED, true, path("content")));
+        assertTrue(interest.includes(Event.NODE_ADDED, path("content")));
+        assertTrue(interest.includes(Event.NODE_ADDED, path("content", "a", "b")));
+        assertFalse(interest.includes(Event.NODE_ADDED, path()));
+        assertFalse(interest.includes(Event.NODE_ADDED, path("var", "content")));
+    }
+
+    public void testShallowPath() throws Exception {
+        ListenerInterest interest = new ListenerInterest();
+        interest.add(filter(Event.PROPERTY_CHANGED, false, path("content", "a")));
+        assertTrue(interest.includes(Event.PROPERTY_CHANGED, path("content", "a")));
+        assertFalse(interest.includes(Event.PROPERTY_CHANGED, path("content")));
+        assertFalse(interest.includes(Event.PROPERTY_CHANGED, path("content", "a", "b")));
+    }
+
+    public void testUnion() throws Exception {
+        ListenerInterest interest = new ListenerInterest();
+        interest.add(filter(Event.NODE_ADDED, true, path("content")));
+        interest.add(filter(Event.PROPERTY_CHANGED, false, path("content", "a")));
+        interest.add(EventFilter.BLOCK_ALL);
+        assertTrue(interest.includes(Event.NODE_ADDED, path("content", "a")));
+        assertTrue(interest.includes(Event.PROPERTY_CHANGED, path("content", "a")));
+        assertFalse(interest.includes(Event.PROPERTY_CHANGED, path("content", "b")));
+        assertFalse(interest.includes(Event.NODE_REMOVED, path("content", "a")));
+    }
+
+    public void testAllItemEvents() throws Exception {
+        int itemEvents = Event.NODE_ADDED | Event.NODE_REMOVED
+                | Event.PROPERTY_ADDED | Event.PROPERTY_REMOVED
+                | Event.PROPERTY_CHANGED;
+        ListenerInterest interest = new ListenerInterest();
+        interest.add(filter(itemEvents, true, path("content")));
+        interest.add(filter(itemEvents, false, path()));
+        assertFalse(interest.includesAllItemEvents());
+        // registration of the search manager
+        interest.add(filter(itemEvents, true, path()));
+        assertTrue(interest.includesAllItemEvents());
+        assertTrue(interest.includesAll(Event.PROPERTY_CHANGED));
+        assertFalse(interest.includesAll(Event.NODE_MOVED));
+    }
+
+    private static EventFilter filter(int eventTypes, boolean isDeep, Path path) {
+        return new EventFilter(null, eventTypes, Collections.singletonList(path),
+                isDeep, null, null, false, false, false);
+    }
+
+    private static Path path(String... names) throws RepositoryException {
+        Path path = PATH_FACTORY.getRootPath();
+        for (String name : names) {
+            Name n = NameFactoryImpl.getInstance().create(Name.NS_DEFAULT_URI, name);
+            path = PATH_FACTORY.create(path, n, true);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.observation.ListenerQueue.OverflowPolicy;
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * <code>ListenerQueueTest</code> checks the per listener queues used in
+ * parallel dispatch mode: delivery order, the overflow policies and that a
+ * slow listener does not delay the other listeners.
+ */
+public class ListenerQueueTest extends AbstractJCRTest {
+
+    private final ManualExecutor executor = new ManualExecutor();
+
+    private final AtomicInteger totalQueued = new AtomicInteger();
+
+    public void testDeliveryOrder() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ListenerQueue queue = createQueue(listener, executor, 10, OverflowPolicy.BLOCK);
+        queue.add(events("1"));
+        queue.add(events("2"));
+        queue.add(events("3"));
+        assertEquals(3, totalQueued.get());
+        assertEquals("Only one task per queue must be scheduled", 1, executor.size());
+
+        executor.runAll();
+        assertEquals(list("1", "2", "3"), listener.userData);
+        assertEquals(0, totalQueued.get());
+    }
+
+    public void testBlock() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ListenerQueue queue = createQueue(listener, executor, 2, OverflowPolicy.BLOCK);
+        queue.add(events("1"));
+        queue.add(events("2"));
+        queue.add(events("3"));
+        assertTrue(queue.isFull());
+
+        executor.runAll();
+        assertFalse(queue.isFull());
+        // must return immediately as the queue has drained
+        queue.awaitCapacity();
+        assertEquals("No events must be lost", list("1", "2", "3"), listener.userData);
+    }
+
+    public void testCoalesce() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ListenerQueue queue = createQueue(listener, executor, 1, OverflowPolicy.COALESCE);
+        queue.add(events("1"));
+        queue.add(events("2"));
+        queue.add(events("3"));
+        assertTrue(queue.isFull());
+
+        assertEquals(1, executor.runAll());
+        assertEquals("No events must be lost", list("1", "2", "3"), listener.userData);
+    }
+
+    public void testDrop() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ListenerQueue queue = createQueue(listener, executor, 1, OverflowPolicy.DROP);
+        queue.add(events("1"));
+        queue.add(events("2"));
+        queue.add(events("3"));
+
+        executor.runAll();
+        assertEquals(2, listener.userData.size());
+        assertEquals(ListenerQueue.EVENTS_DROPPED_PREFIX + 2, listener.userData.get(0));
+        assertEquals("1", listener.userData.get(1));
+
+        Event marker = listener.events.get(0);
+        assertEquals(Event.PERSIST, marker.getType());
+        assertEquals(superuser.getUserID(), marker.getUserID());
+    }
+
+    public void testStatistics() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ListenerQueue queue = createQueue(listener, executor, 1, OverflowPolicy.DROP);
+        ObjectName name = queue.getMBeanName();
+        assertNotNull("Listener MBean must be registered", name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            queue.add(events("1"));
+            queue.add(events("2"));
+            queue.add(events("3"));
+            queue.recordOneSecond();
+            assertEquals(1L, queue.getListenerMBean().getQueuedEvents());
+            assertTrue(queue.getListenerMBean().getQueueLagMillis() >= 0);
+            assertEquals(2L, server.getAttribute(name, "EventsDropped"));
+
+            executor.runAll();
+            queue.recordOneSecond();
+            assertEquals(0L, server.getAttribute(name, "QueuedEvents"));
+            assertEquals(0L, server.getAttribute(name, "QueueLagMillis"));
+        } finally {
+            queue.close();
+        }
+        assertFalse("Listener MBean must be unregistered on close",
+                server.isRegistered(name));
+    }
+
+    public void testClose() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ListenerQueue queue = createQueue(listener, executor, 10, OverflowPolicy.BLOCK);
+        queue.add(events("1"));
+        queue.close();
+        queue.add(events("2"));
+        assertEquals(0, totalQueued.get());
+
+        executor.runAll();
+        assertTrue(listener.userData.isEmpty());
+    }
+
+    public void testSlowListener() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch slowCalled = new CountDownLatch(1);
+        RecordingListener slow = new RecordingListener() {
+            @Override
+            public void onEvent(EventIterator events) {
+                slowCalled.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onEvent(events);
+            }
+        };
+        final CountDownLatch fastCalled = new CountDownLatch(2);
+        RecordingListener fast = new RecordingListener() {
+            @Override
+            public void onEvent(EventIterator events) {
+                super.onEvent(events);
+                fastCalled.countDown();
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            ListenerQueue slowQueue = createQueue(slow, pool, 10, OverflowPolicy.BLOCK);
+            ListenerQueue fastQueue = createQueue(fast, pool, 10, OverflowPolicy.BLOCK);
+            slowQueue.add(events("1"));
+            assertTrue(slowCalled.await(10, TimeUnit.SECONDS));
+            slowQueue.add(events("2"));
+            fastQueue.add(events("1"));
+            fastQueue.add(events("2"));
+
+            assertTrue("Slow listener must not delay other listeners",
+                    fastCalled.await(10, TimeUnit.SECONDS));
+            assertEquals(list("1", "2"), fast.userData);
+            assertTrue(slow.userData.isEmpty());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(list("1", "2"), slow.userData);
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    private ListenerQueue createQueue(EventListener listener, Executor executor,
+                                      int capacity, OverflowPolicy policy)
+            throws RepositoryException {
+        EventFilter filter = new EventFilter((SessionImpl) superuser,
+                Event.PERSIST, Collections.singletonList(
+                        ((SessionImpl) superuser).getQPath("/")),
+                true, null, null, false, false, false);
+        EventConsumer consumer = new EventConsumer(
+                (SessionImpl) superuser, listener, filter);
+        return new ListenerQueue(consumer, executor, capacity, policy, totalQueued);
+    }
+
+    private EventStateCollection events(String userData) throws RepositoryException {
+        superuser.getWorkspace().getObservationManager().setUserData(userData);
+        try {
+            EventStateCollection events = new EventStateCollection(
+                    null, (SessionImpl) superuser, null);
+            events.addAll(Collections.singletonList(
+                    EventState.persist(superuser, false)));
+            return events;
+        } finally {
+            superuser.getWorkspace().getObservationManager().setUserData(null);
+        }
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<String>();
+        Collections.addAll(list, values);
+        return list;
+    }
+
+    /**
+     * Records the user data and the events it is called with.
+     */
+    private static class RecordingListener implements EventListener {
+
+        final List<String> userData =
+                Collections.synchronizedList(new ArrayList<String>());
+
+        final List<Event> events =
+                Collections.synchronizedList(new ArrayList<Event>());
+
+        public void onEvent(EventIterator it) {
+            while (it.hasNext()) {
+                Event event = it.nextEvent();
+                events.add(event);
+                try {
+                    userData.add(event.getUserData());
+                } catch (RepositoryException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the submitted tasks when asked to, in the calling thread.
+     */
+    private static class ManualExecutor implements Executor {
+
+        private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+        public synchronized void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        synchronized int size() {
+            return tasks.size();
+        }
+
+        /**
+         * @return the number of tasks run.
+         */
+        int runAll() {
+            int count = 0;
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+                count++;
+            }
+            return count;
+        }
+
+        private synchronized Runnable poll() {
+            return tasks.poll();
+        }
+    }
+}
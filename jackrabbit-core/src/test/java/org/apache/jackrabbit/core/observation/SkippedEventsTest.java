@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.ObservationManager;
+import javax.jcr.query.Query;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.apache.jackrabbit.spi.Path;
+
+/**
+ * <code>SkippedEventsTest</code> checks that no {@link EventState}s are
+ * created for changes that no registered listener is interested in. The
+ * repository has no search index, whose listener would be interested in
+ * every change, except in {@link #testNothingSkippedWithSearchIndex()}.
+ */
+public class SkippedEventsTest extends TestCase {
+
+    private static final File REPO_HOME =
+            new File(new File("target"), "skipped-events-test");
+
+    private RepositoryImpl repo;
+
+    private SessionImpl session;
+
+    /**
+     * Receives all created events, but does not add to the listener interest
+     * of the dispatcher.
+     */
+    private final RecordingListener allEvents = new RecordingListener();
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        FileUtils.deleteQuietly(REPO_HOME);
+        InputStream in = getClass().getResourceAsStream("repository-without-search.xml");
+        try {
+            start(RepositoryConfig.create(in, REPO_HOME.getPath()));
+        } finally {
+            in.close();
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        stop();
+        FileUtils.deleteQuietly(REPO_HOME);
+        super.tearDown();
+    }
+
+    private void start(RepositoryConfig config) throws Exception {
+        repo = RepositoryImpl.create(config);
+        session = (SessionImpl) repo.login(
+                new SimpleCredentials("admin", "admin".toCharArray()));
+
+        EventFilter filter = new EventFilter(session, 0,
+                Collections.<Path>emptyList(), true, null, null, false, false, false) {
+            @Override
+            boolean blocks(EventState eventState) {
+                return false;
+            }
+        };
+        ObservationDispatcher dispatcher = repo.getRepositoryContext()
+                .getWorkspaceManager().getObservationDispatcher("default");
+        dispatcher.addConsumer(new EventConsumer(session, allEvents, filter));
+    }
+
+    private void stop() {
+        if (session != null) {
+            session.logout();
+            session = null;
+        }
+        if (repo != null) {
+            repo.shutdown();
+            repo = null;
+        }
+    }
+
+    public void testSkipByPath() throws Exception {
+        Node a = session.getRootNode().addNode("a");
+        Node b = session.getRootNode().addNode("b");
+        session.save();
+
+        ObservationManager obsMgr = session.getWorkspace().getObservationManager();
+        RecordingListener listener = new RecordingListener();
+        obsMgr.addEventListener(listener, Event.PROPERTY_ADDED, "/a", true, null, null, false);
+        try {
+            allEvents.paths.clear();
+            a.setProperty("p", "value");
+            b.setProperty("p", "value");
+            session.save();
+
+            assertTrue(allEvents.paths.contains("/a/p"));
+            assertFalse("Event for /b/p must not be created",
+                    allEvents.paths.contains("/b/p"));
+        } finally {
+            obsMgr.removeEventListener(listener);
+        }
+
+        // without listener no property event is created
+        allEvents.paths.clear();
+        a.setProperty("q", "value");
+        session.save();
+        assertFalse(allEvents.paths.contains("/a/q"));
+    }
+
+    public void testSkipByNodeType() throws Exception {
+        Node a = session.getRootNode().addNode("a", "nt:unstructured");
+        Node b = session.getRootNode().addNode("b", "nt:unstructured");
+        b.addMixin("mix:referenceable");
+        session.save();
+
+        ObservationManager obsMgr = session.getWorkspace().getObservationManager();
+        RecordingListener listener = new RecordingListener();
+        obsMgr.addEventListener(listener, Event.PROPERTY_CHANGED, "/", true, null,
+                new String[] {"mix:referenceable"}, false);
+        try {
+            a.setProperty("p", "value");
+            b.setProperty("p", "value");
+            session.save();
+
+            allEvents.paths.clear();
+            a.setProperty("p", "changed");
+            b.setProperty("p", "changed");
+            session.save();
+
+            assertTrue(allEvents.paths.contains("/b/p"));
+            assertFalse("Event for /a/p must not be created",
+                    allEvents.paths.contains("/a/p"));
+        } finally {
+            obsMgr.removeEventListener(listener);
+        }
+    }
+
+    /**
+     * The search manager of a workspace with a search index is registered
+     * deep at the root node for all item events. No event is skipped then,
+     * and the changes are indexed as before.
+     */
+    public void testNothingSkippedWithSearchIndex() throws Exception {
+        stop();
+        FileUtils.deleteQuietly(REPO_HOME);
+        start(RepositoryConfig.install(REPO_HOME));
+
+        ObservationDispatcher dispatcher = repo.getRepositoryContext()
+                .getWorkspaceManager().getObservationDispatcher("default");
+        assertTrue(dispatcher.getListenerInterest().includesAllItemEvents());
+
+        Node a = session.getRootNode().addNode("a");
+        Node b = session.getRootNode().addNode("b");
+        session.save();
+
+        ObservationManager obsMgr = session.getWorkspace().getObservationManager();
+        RecordingListener listener = new RecordingListener();
+        obsMgr.addEventListener(listener, Event.PROPERTY_ADDED, "/a", true, null, null, false);
+        try {
+            allEvents.paths.clear();
+            a.setProperty("p", "value");
+            b.setProperty("p", "skipped");
+            session.save();
+
+            assertTrue(allEvents.paths.contains("/a/p"));
+            assertTrue(allEvents.paths.contains("/b/p"));
+        } finally {
+            obsMgr.removeEventListener(listener);
+        }
+
+        Query query = session.getWorkspace().getQueryManager().createQuery(
+                "//*[@p = 'skipped']", Query.XPATH);
+        NodeIterator nodes = query.execute().getNodes();
+        assertTrue(nodes.hasNext());
+        assertEquals("/b", nodes.nextNode().getPath());
+    }
+
+    /**
+     * Records the paths of the events it receives, in the thread that
+     * saves the changes.
+     */
+    private static class RecordingListener implements SynchronousEventListener {
+
+        final List<String> paths = new ArrayList<String>();
+
+        public void onEvent(EventIterator events) {
+            while (events.hasNext()) {
+                try {
+                    paths.add(events.nextEvent().getPath());
+                } catch (RepositoryException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+}
@@ -42,6 +42,10 @@ public class TestAll extends TestCase {
         suite.addTestSuite(MoveInPlaceTest.class);
         suite.addTestSuite(ShareableNodesTest.class);
         suite.addTestSuite(WarningOnSaveWithNotificationThreadTest.class);
+        suite.addTestSuite(ListenerInterestTest.class);
+        suite.addTestSuite(SkippedEventsTest.class);
+        suite.addTestSuite(CoalescedEventsTest.class);
+        suite.addTestSuite(ListenerQueueTest.class);
 
         return suite;
     }
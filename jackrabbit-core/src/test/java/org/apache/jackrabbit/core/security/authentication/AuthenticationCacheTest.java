@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.authentication;
+
+import junit.framework.TestCase;
+import org.apache.jackrabbit.core.security.user.PasswordUtility;
+
+/**
+ * <code>AuthenticationCacheTest</code>...
+ */
+public class AuthenticationCacheTest extends TestCase {
+
+    private final String pw = "somePw";
+
+    private String hash;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        hash = PasswordUtility.buildPasswordHash(pw);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AuthenticationCache.clear();
+        super.tearDown();
+    }
+
+    public void testIsSame() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache(60 * 1000);
+        assertTrue(cache.isSame(hash, pw));
+        // verified password is reused
+        assertTrue(cache.isSame(hash, pw));
+        assertFalse(cache.isSame(hash, "otherPw"));
+        assertFalse(cache.isSame(hash, ""));
+        assertTrue(cache.isSame(hash, pw));
+    }
+
+    public void testOtherHash() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache(60 * 1000);
+        assertTrue(cache.isSame(hash, pw));
+
+        // a changed password results in a different hash
+        String otherHash = PasswordUtility.buildPasswordHash("otherPw");
+        assertFalse(cache.isSame(otherHash, pw));
+        assertTrue(cache.isSame(otherHash, "otherPw"));
+        assertFalse(cache.isSame(hash, "otherPw"));
+    }
+
+    public void testExpiration() throws Exception {
+        assertTrue(new AuthenticationCache(60 * 1000).isSame(hash, pw));
+
+        // entries are only reused within the expiration time of the cache
+        AuthenticationCache cache = new AuthenticationCache(0);
+        assertTrue(cache.isSame(hash, pw));
+        assertFalse(cache.isSame(hash, "otherPw"));
+    }
+
+    public void testPlainTextPassword() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache(60 * 1000);
+        assertFalse(cache.isSame(pw, pw));
+        assertFalse(cache.isSame(null, pw));
+    }
+}
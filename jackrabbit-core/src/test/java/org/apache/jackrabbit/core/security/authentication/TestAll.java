@@ -32,6 +32,7 @@ public class TestAll extends TestCase {
         suite.addTestSuite(CryptedSimpleCredentialsTest.class);
         suite.addTestSuite(LoginModuleTest.class);
         suite.addTestSuite(DefaultLoginModuleTest.class);
+        suite.addTestSuite(AuthenticationCacheTest.class);
 
         return suite;
     }
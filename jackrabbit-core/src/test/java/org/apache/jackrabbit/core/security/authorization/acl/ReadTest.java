@@ -484,6 +484,59 @@ public class ReadTest extends AbstractEvaluationTest {
         }
     }
 
+    public void testModifyPolicyInSubtree() throws Exception {
+        Node sibling = testRootNode.addNode(nodeName3, testNodeType);
+        superuser.save();
+        String siblingPath = sibling.getPath();
+        Privilege[] privileges = privilegesFromName(Privilege.JCR_READ);
+
+        Session testSession = getTestSession();
+        // populate the caches
+        assertTrue(testSession.nodeExists(path));
+        assertTrue(testSession.nodeExists(childNPath));
+        assertTrue(testSession.nodeExists(siblingPath));
+        assertTrue(testSession.hasPermission(childNPath, Session.ACTION_READ));
+        assertTrue(testSession.hasPermission(siblingPath, Session.ACTION_READ));
+
+        /* deny READ privilege for testUser at 'path' */
+        withdrawPrivileges(path, privileges, getRestrictions(superuser, path));
+        assertFalse(testSession.nodeExists(path));
+        assertFalse(testSession.nodeExists(childNPath));
+        assertFalse(testSession.hasPermission(childNPath, Session.ACTION_READ));
+        assertTrue(testSession.nodeExists(siblingPath));
+        assertTrue(testSession.hasPermission(siblingPath, Session.ACTION_READ));
+
+        /* allow READ privilege for testUser at 'childNPath' */
+        givePrivileges(childNPath, privileges, getRestrictions(superuser, childNPath));
+        assertFalse(testSession.nodeExists(path));
+        assertTrue(testSession.nodeExists(childNPath));
+        assertTrue(testSession.hasPermission(childNPath, Session.ACTION_READ));
+        assertTrue(testSession.nodeExists(siblingPath));
+    }
+
+    public void testSessionsWithSamePrincipals() throws Exception {
+        Privilege[] privileges = privilegesFromName(Privilege.JCR_READ);
+
+        Session testSession = getTestSession();
+        Session otherSession = getHelper().getRepository().login(creds);
+        try {
+            assertTrue(testSession.nodeExists(path));
+            assertTrue(otherSession.nodeExists(path));
+
+            /* deny READ privilege for testUser at 'path' */
+            withdrawPrivileges(path, privileges, getRestrictions(superuser, path));
+            assertFalse(testSession.nodeExists(path));
+            assertFalse(otherSession.nodeExists(path));
+        } finally {
+            otherSession.logout();
+        }
+
+        // the remaining session is not affected by the logout
+        assertFalse(testSession.nodeExists(path));
+        givePrivileges(path, privileges, getRestrictions(superuser, path));
+        assertTrue(testSession.nodeExists(path));
+    }
+
     public void testRemoveMixin() throws Exception {
         Node n = superuser.getNode(path);
         
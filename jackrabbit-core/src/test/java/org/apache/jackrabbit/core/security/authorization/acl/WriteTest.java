@@ -20,6 +20,7 @@ import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
 import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.security.AbstractAccessControlManager;
 import org.apache.jackrabbit.core.security.authorization.AbstractWriteTest;
 import org.apache.jackrabbit.core.security.authorization.AccessControlConstants;
 import org.apache.jackrabbit.core.security.authorization.PrivilegeRegistry;
@@ -39,6 +40,7 @@ import javax.jcr.security.AccessControlPolicyIterator;
 import javax.jcr.security.Privilege;
 import javax.jcr.security.AccessControlEntry;
 import java.security.Principal;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Map;
 import java.util.UUID;
@@ -553,4 +555,33 @@ public class WriteTest extends AbstractWriteTest {
         n.orderBefore("rep:policy", Text.getName(childNPath2));
         testSession.save();
     }
-}
\ No newline at end of file
+
+    public void testBatchHasPrivileges() throws RepositoryException, NotExecutableException {
+        /*
+         precondition:
+         testuser must have READ-only permission on test-node and below
+        */
+        checkReadOnly(path);
+
+        Privilege[] privileges = privilegesFromName(Privilege.JCR_WRITE);
+        givePrivileges(childNPath, privileges, getRestrictions(superuser, childNPath));
+
+        AccessControlManager testAcMgr = getTestACManager();
+        if (!(testAcMgr instanceof AbstractAccessControlManager)) {
+            throw new NotExecutableException();
+        }
+        String[] paths = new String[] {
+                childNPath2, childNPath, path, siblingPath, childNPath, testRoot
+        };
+        BitSet granted = ((AbstractAccessControlManager) testAcMgr).hasPrivileges(paths, privileges);
+        for (int i = 0; i < paths.length; i++) {
+            assertEquals(paths[i], testAcMgr.hasPrivileges(paths[i], privileges), granted.get(i));
+        }
+        assertEquals(2, granted.cardinality());
+        assertTrue(granted.get(1));
+        assertTrue(granted.get(4));
+
+        granted = ((AbstractAccessControlManager) testAcMgr).hasPrivileges(paths, privilegesFromName(Privilege.JCR_READ));
+        assertEquals(paths.length, granted.cardinality());
+    }
+}
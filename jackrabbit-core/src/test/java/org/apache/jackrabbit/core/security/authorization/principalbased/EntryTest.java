@@ -21,16 +21,19 @@ import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.security.authorization.AbstractEntryTest;
 import org.apache.jackrabbit.spi.commons.conversion.NameResolver;
 import org.apache.jackrabbit.test.NotExecutableException;
+import org.apache.jackrabbit.util.Text;
 import org.apache.jackrabbit.value.BooleanValue;
 import org.apache.jackrabbit.value.StringValue;
 
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
+import javax.jcr.security.AccessControlEntry;
 import javax.jcr.security.AccessControlException;
 import javax.jcr.security.Privilege;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -208,4 +211,47 @@ public class EntryTest extends AbstractEntryTest {
             assertEquals("Path to match : " + str, toMatch.get(str).booleanValue(), ace.matches(str));
         }
     }
-}
\ No newline at end of file
+
+    public void testEntryIndex() throws RepositoryException {
+        Privilege[] privs = new Privilege[] {acMgr.privilegeFromName(Privilege.JCR_ALL)};
+        String[][] patterns = new String[][] {
+                {"/", null},
+                {"/a/b", null},
+                {"/a/b", ""},
+                {"/a/b", "/c"},
+                {"/a/b", "c"},
+                {"/a/b", "*"},
+                {"/a/b", "/*cat"},
+                {"/a/b", "*/cat"},
+        };
+        List<AccessControlEntry> entries = new ArrayList<AccessControlEntry>();
+        for (String[] pattern : patterns) {
+            Map<String, Value> restr = new HashMap<String, Value>();
+            restr.put(nodePath, superuser.getValueFactory().createValue(pattern[0], PropertyType.PATH));
+            if (pattern[1] != null) {
+                restr.put(glob, superuser.getValueFactory().createValue(pattern[1]));
+            }
+            entries.add(createEntry(testPrincipal, privs, true, restr));
+        }
+
+        SessionImpl s = (SessionImpl) superuser;
+        EntryIndex index = new EntryIndex(entries, s);
+        String[] paths = new String[] {
+                "/", "/a", "/a/b", "/a/bc", "/a/b/c", "/a/b/c/d", "/a/b/cat",
+                "/a/b/x/cat", "/a/bcat", "/x/b"
+        };
+        for (String path : paths) {
+            BitSet target = new BitSet();
+            BitSet parent = new BitSet();
+            index.collect(s.getQPath(path), s, target, parent);
+
+            String parentPath = Text.getRelativeParent(path, 1);
+            for (int i = 0; i < entries.size(); i++) {
+                ACLTemplate.Entry entry = (ACLTemplate.Entry) entries.get(i);
+                assertEquals(entry + " at " + path, entry.matches(path), target.get(i));
+                assertEquals(entry + " at parent of " + path,
+                        !"".equals(parentPath) && entry.matches(parentPath), parent.get(i));
+            }
+        }
+    }
+}
@@ -60,6 +60,28 @@ public class AbstractPrincipalProviderTest extends TestCase {
         }
     }
 
+    public void testClearCache() {
+        final int[] provided = new int[1];
+        AbstractPrincipalProvider provider = new DummyProvider() {
+            @Override
+            protected Principal providePrincipal(String principalName) {
+                provided[0]++;
+                return new PrincipalImpl(principalName);
+            }
+        };
+        provider.init(new Properties());
+
+        Principal p = provider.getPrincipal("aPrincipal");
+        assertSame(p, provider.getPrincipal("aPrincipal"));
+        assertEquals(1, provided[0]);
+
+        provider.clearCache();
+        Principal p2 = provider.getPrincipal("aPrincipal");
+        assertNotSame(p, p2);
+        assertEquals(p, p2);
+        assertEquals(2, provided[0]);
+    }
+
     private class DummyProvider extends AbstractPrincipalProvider {
 
         private boolean first = true;
@@ -20,6 +20,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.security.Principal;
 import java.security.acl.Group;
+import java.util.Collections;
 import java.util.Properties;
 
 import org.apache.jackrabbit.api.security.principal.JackrabbitPrincipal;
@@ -77,4 +78,42 @@ public class PrincipalManagerTest extends AbstractJCRTest {
         Principal principalFromManager = principalManager.getPrincipal(TESTGROUP_NAME);
         assertTrue(principalFromManager instanceof JackrabbitPrincipal);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test if the providers are only searched once the results of the
+     * preceding providers have been consumed.
+     *
+     * @throws RepositoryException
+     */
+    public void testFindPrincipalsIsLazy() throws RepositoryException {
+        CountingPrincipalProvider first = new CountingPrincipalProvider();
+        first.init(new Properties());
+        CountingPrincipalProvider second = new CountingPrincipalProvider();
+        second.init(new Properties());
+
+        PrincipalManagerImpl principalManager = new PrincipalManagerImpl(superuser, new PrincipalProvider[] { first, second });
+        PrincipalIterator it = principalManager.findPrincipals(TESTGROUP_NAME);
+        assertTrue(it.hasNext());
+        assertEquals(1, first.searches);
+        assertEquals(0, second.searches);
+
+        int size = 0;
+        while (it.hasNext()) {
+            assertEquals(TESTGROUP_NAME, it.nextPrincipal().getName());
+            size++;
+        }
+        assertEquals(2, size);
+        assertEquals(1, second.searches);
+    }
+
+    private static class CountingPrincipalProvider extends CustomPrincipalProvider {
+
+        private int searches;
+
+        @Override
+        public PrincipalIterator findPrincipals(String simpleFilter) {
+            searches++;
+            return new PrincipalIteratorAdapter(Collections.singleton(TESTGROUP));
+        }
+    }
+}
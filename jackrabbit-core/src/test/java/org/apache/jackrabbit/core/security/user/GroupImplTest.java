@@ -22,6 +22,7 @@ import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.api.security.user.AbstractUserTest;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.core.security.principal.EveryonePrincipal;
 import org.apache.jackrabbit.test.NotExecutableException;
 
@@ -126,4 +127,42 @@ public class GroupImplTest extends AbstractUserTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    public void testMembershipChanges() throws RepositoryException, NotExecutableException {
+        User u = null;
+        Group g1 = null;
+        Group g2 = null;
+        try {
+            u = userMgr.createUser(getTestPrincipal().getName(), "pw");
+            g1 = userMgr.createGroup(getTestPrincipal());
+            g2 = userMgr.createGroup(getTestPrincipal());
+            g2.addMember(u);
+            g1.addMember(g2);
+            save(superuser);
+
+            // populate the membership cache
+            assertTrue(g1.isMember(u));
+            assertTrue(g2.isMember(u));
+            assertFalse(g1.isDeclaredMember(u));
+
+            g2.removeMember(u);
+            save(superuser);
+            assertFalse(g1.isMember(u));
+            assertFalse(g2.isMember(u));
+            assertTrue(g1.isMember(g2));
+
+            g1.addMember(u);
+            save(superuser);
+            assertTrue(g1.isMember(u));
+            assertTrue(g1.isDeclaredMember(u));
+            assertFalse(g2.isMember(u));
+        } finally {
+            for (Authorizable a : new Authorizable[] {u, g1, g2}) {
+                if (a != null) {
+                    a.remove();
+                }
+            }
+            save(superuser);
+        }
+    }
+}
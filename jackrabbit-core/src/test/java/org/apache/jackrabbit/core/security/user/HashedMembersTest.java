@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.user;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.jcr.NodeIterator;
+
+import org.apache.jackrabbit.api.security.user.AbstractUserTest;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.spi.Name;
+
+/**
+ * <code>HashedMembersTest</code> tests group members stored in hashed buckets
+ * below the rep:members node.
+ */
+public class HashedMembersTest extends AbstractUserTest {
+
+    private static final int SPLIT_SIZE = 4;
+
+    private SessionImpl s;
+    private UserManagerImpl uMgr;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        String workspaceName = ((RepositoryImpl) superuser.getRepository()).getConfig().getSecurityConfig().getSecurityManagerConfig().getWorkspaceName();
+        s = (SessionImpl) ((SessionImpl) superuser).createSession(workspaceName);
+
+        Properties props = new Properties();
+        props.put(UserManagerImpl.PARAM_GROUPS_PATH, ((UserManagerImpl) userMgr).getGroupsPath());
+        props.put(UserManagerImpl.PARAM_USERS_PATH, ((UserManagerImpl) userMgr).getUsersPath());
+        props.put(UserManagerImpl.PARAM_GROUP_MEMBERSHIP_SPLIT_SIZE, SPLIT_SIZE);
+        props.put(UserManagerImpl.PARAM_GROUP_MEMBERSHIP_HASHED, true);
+        uMgr = new UserManagerImpl(s, "admin", props);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            s.logout();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testAddRemoveMembers() throws Exception {
+        Group gr = uMgr.createGroup(getTestPrincipal());
+        List<User> users = new ArrayList<User>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                User u = uMgr.createUser("hashedMember" + i, "pw");
+                users.add(u);
+                assertTrue(gr.addMember(u));
+            }
+            save(s);
+
+            assertFalse(gr.addMember(users.get(0)));
+            for (User u : users) {
+                assertTrue(gr.isDeclaredMember(u));
+            }
+
+            NodeImpl nMembers = ((GroupImpl) gr).getNode().getNode(UserConstants.N_MEMBERS);
+            assertTrue(HashedMembers.isHashed(nMembers, uMgr));
+            assertBuckets(nMembers);
+
+            Set<String> ids = new HashSet<String>();
+            for (Iterator<Authorizable> it = gr.getDeclaredMembers(); it.hasNext();) {
+                assertTrue(ids.add(it.next().getID()));
+            }
+            assertEquals(users.size(), ids.size());
+
+            for (User u : users) {
+                assertTrue(gr.removeMember(u));
+                assertFalse(gr.isDeclaredMember(u));
+            }
+            save(s);
+
+            assertFalse(gr.getDeclaredMembers().hasNext());
+            assertFalse(((GroupImpl) gr).getNode().hasNode(UserConstants.N_MEMBERS));
+        } finally {
+            for (User u : users) {
+                u.remove();
+            }
+            gr.remove();
+            save(s);
+        }
+    }
+
+    /**
+     * Asserts that buckets are either split or hold at most
+     * {@link #SPLIT_SIZE} members.
+     */
+    private static void assertBuckets(NodeImpl bucket) throws Exception {
+        NodeIterator it = bucket.getNodes();
+        if (it.hasNext()) {
+            while (it.hasNext()) {
+                NodeImpl child = (NodeImpl) it.nextNode();
+                assertEquals(Name.NS_REP_URI, child.getQName().getNamespaceURI());
+                assertBuckets(child);
+            }
+        } else {
+            // the members and the jcr:primaryType property
+            assertTrue(bucket.getProperties().getSize() <= SPLIT_SIZE + 1);
+        }
+    }
+}
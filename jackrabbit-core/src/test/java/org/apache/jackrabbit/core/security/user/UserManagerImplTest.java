@@ -140,6 +140,37 @@ public class UserManagerImplTest extends AbstractUserTest {
         }
     }
 
+    public void testGetAuthorizableByIndexedPrincipalName() throws RepositoryException, NotExecutableException {
+        Principal p = getTestPrincipal();
+        String uid = getTestUserId(p);
+        // a principal implementation that doesn't allow to shortcut the lookup
+        Principal plain = new TestPrincipal(p.getName());
+        PrincipalNameIndex index = ((UserManagerImpl) userMgr).getMembershipCache().getPrincipalNameIndex();
+
+        assertNull(userMgr.getAuthorizable(plain));
+        assertEquals(PrincipalNameIndex.NONE, index.get(p.getName()));
+
+        User u = userMgr.createUser(uid, buildPassword(uid), p, null);
+        save(superuser);
+        try {
+            // adding a principal name removes the negative entries
+            assertNull(index.get(p.getName()));
+
+            Authorizable a = userMgr.getAuthorizable(plain);
+            assertNotNull(a);
+            assertEquals(uid, a.getID());
+            assertNotNull(index.get(p.getName()));
+
+            // served from the index
+            assertEquals(uid, userMgr.getAuthorizable(plain).getID());
+        } finally {
+            u.remove();
+            save(superuser);
+        }
+        assertNull(index.get(p.getName()));
+        assertNull(userMgr.getAuthorizable(plain));
+    }
+
     public void testCreateGroupWithInvalidIdOrPrincipal() throws RepositoryException, NotExecutableException {
         Principal p = getTestPrincipal();
         String uid = p.getName();
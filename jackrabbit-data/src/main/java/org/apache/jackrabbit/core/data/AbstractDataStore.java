@@ -36,6 +36,28 @@ public abstract class AbstractDataStore implements DataStore {
      */
     private byte[] referenceKey = null;
 
+    /**
+     * The maximum number of bytes held by the binary cache, 0 to disable it.
+     */
+    private long binaryCacheSize;
+
+    /**
+     * The maximum length of a record held by the binary cache.
+     */
+    private int binaryCacheMaxEntrySize = 64 * 1024;
+
+    /**
+     * The maximum length of a record the binary cache keeps on the heap.
+     */
+    private int binaryCacheMaxMemoryEntrySize = 4 * 1024;
+
+    /**
+     * The binary cache, created when first accessed.
+     */
+    private volatile BinaryCache binaryCache;
+
+    private final Object binaryCacheLock = new Object();
+
     //---------------------------------------------------------< DataStore >--
 
     public DataRecord getRecord(DataIdentifier identifier)
@@ -64,6 +86,71 @@ public abstract class AbstractDataStore implements DataStore {
         return null;
     }
 
+    //-----------------------------------------------------< binary cache >--
+
+    /**
+     * Returns the cache of the content of small records, which is shared by
+     * all readers of this data store.
+     *
+     * @return the binary cache, or null if it is disabled
+     */
+    public BinaryCache getBinaryCache() {
+        BinaryCache cache = binaryCache;
+        if (cache == null && binaryCacheSize > 0) {
+            synchronized (binaryCacheLock) {
+                cache = binaryCache;
+                if (cache == null) {
+                    cache = new BinaryCache(binaryCacheSize,
+                            binaryCacheMaxEntrySize, binaryCacheMaxMemoryEntrySize);
+                    binaryCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public long getBinaryCacheSize() {
+        return binaryCacheSize;
+    }
+
+    /**
+     * Set the maximum number of bytes held by the binary cache. The default
+     * is 0, which disables the cache.
+     *
+     * @param binaryCacheSize the size in bytes
+     */
+    public void setBinaryCacheSize(long binaryCacheSize) {
+        this.binaryCacheSize = binaryCacheSize;
+    }
+
+    public int getBinaryCacheMaxEntrySize() {
+        return binaryCacheMaxEntrySize;
+    }
+
+    /**
+     * Set the maximum length of a record held by the binary cache. The
+     * default is 65536.
+     *
+     * @param binaryCacheMaxEntrySize the length in bytes
+     */
+    public void setBinaryCacheMaxEntrySize(int binaryCacheMaxEntrySize) {
+        this.binaryCacheMaxEntrySize = binaryCacheMaxEntrySize;
+    }
+
+    public int getBinaryCacheMaxMemoryEntrySize() {
+        return binaryCacheMaxMemoryEntrySize;
+    }
+
+    /**
+     * Set the maximum length of a record the binary cache keeps on the heap.
+     * Longer records are kept in direct buffers. The default is 4096.
+     *
+     * @param binaryCacheMaxMemoryEntrySize the length in bytes
+     */
+    public void setBinaryCacheMaxMemoryEntrySize(int binaryCacheMaxMemoryEntrySize) {
+        this.binaryCacheMaxMemoryEntrySize = binaryCacheMaxMemoryEntrySize;
+    }
+
     //---------------------------------------------------------< protected >--
 
     /**
@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Download of a record from a {@link Backend} into the {@link LocalCache},
+ * that can be read while it is still in progress. Readers only wait for the
+ * bytes at their current position, so the first bytes of a large record are
+ * available as soon as they arrive. If the backend is a
+ * {@link MultipartBackend}, the record is fetched in parts of the given size
+ * concurrently, otherwise in a single part.
+ */
+class BackendDownload {
+
+    /**
+     * Logger instance.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(BackendDownload.class);
+
+    private final Backend backend;
+
+    private final DataIdentifier identifier;
+
+    private final LocalCache cache;
+
+    private final String fileName;
+
+    private final long partSize;
+
+    /**
+     * The file the record is written to. It is replaced by the cached file
+     * once the download is complete.
+     */
+    private File file;
+
+    /**
+     * The length of the record, or -1 until it is known.
+     */
+    private long length = -1;
+
+    /**
+     * The length of all parts except the last one.
+     */
+    private long partLength;
+
+    /**
+     * The number of bytes written per part.
+     */
+    private long[] written;
+
+    /**
+     * The number of parts not completed yet.
+     */
+    private int remaining;
+
+    /**
+     * The cause of a failed download, or <code>null</code>.
+     */
+    private Throwable failure;
+
+    /**
+     * Creates a download of a record.
+     *
+     * @param backend the backend to read from.
+     * @param identifier identifier of the record.
+     * @param cache the cache to store the record in once complete.
+     * @param fileName the name of the record in the cache.
+     * @param file the (temporary) file to write to.
+     * @param partSize size of the parts fetched concurrently from a
+     *            {@link MultipartBackend}, or 0 to fetch a single part.
+     */
+    BackendDownload(Backend backend, DataIdentifier identifier,
+            LocalCache cache, String fileName, File file, long partSize) {
+        this.backend = backend;
+        this.identifier = identifier;
+        this.cache = cache;
+        this.fileName = fileName;
+        this.file = file;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Starts the download. The parts are fetched by the given executor, and
+     * the given callback is run once all parts are written or the download
+     * failed.
+     *
+     * @param executor the executor that fetches the parts.
+     * @param onCompletion run after the download is complete.
+     */
+    void start(Executor executor, final Runnable onCompletion) {
+        long len;
+        try {
+            len = backend.getLength(identifier);
+            RandomAccessFile out = new RandomAccessFile(file, "rw");
+            try {
+                out.setLength(len);
+            } finally {
+                out.close();
+            }
+        } catch (Exception e) {
+            fail(e);
+            synchronized (this) {
+                length = 0;
+                notifyAll();
+            }
+            onCompletion.run();
+            return;
+        }
+        int parts = 1;
+        long size = len;
+        if (backend instanceof MultipartBackend && partSize > 0 && len > partSize) {
+            parts = (int) ((len + partSize - 1) / partSize);
+            size = partSize;
+        }
+        synchronized (this) {
+            partLength = size;
+            written = new long[parts];
+            remaining = parts;
+            length = len;
+            notifyAll();
+        }
+        LOG.debug("download [{}] of length [{}] in [{}] parts started.",
+            new Object[] { identifier, len, parts });
+        for (int i = 0; i < parts; i++) {
+            final int part = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fetch(part);
+                    if (completePart()) {
+                        complete();
+                        onCompletion.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns a new stream of the record, which blocks until the bytes it
+     * reads have been downloaded.
+     *
+     * @return the stream.
+     * @throws IOException if the download failed to start.
+     */
+    synchronized InputStream newInputStream() throws IOException {
+        awaitLength();
+        if (failure != null) {
+            throw newException();
+        }
+        return new DownloadInputStream(new RandomAccessFile(file, "r"));
+    }
+
+    private void fetch(int part) {
+        long offset = part * partLength;
+        long count = Math.min(partLength, length - offset);
+        InputStream in = null;
+        RandomAccessFile out = null;
+        try {
+            if (written.length > 1) {
+                in = ((MultipartBackend) backend).read(identifier, offset, count);
+            } else {
+                in = backend.read(identifier);
+            }
+            out = new RandomAccessFile(file, "rw");
+            out.seek(offset);
+            byte[] buffer = new byte[64 * 1024];
+            long total = 0;
+            while (total < count) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, count - total));
+                if (n < 0) {
+                    throw new EOFException("Unexpected end of record "
+                        + identifier + " at " + (offset + total));
+                }
+                out.write(buffer, 0, n);
+                total += n;
+                synchronized (this) {
+                    written[part] = total;
+                    notifyAll();
+                }
+            }
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            IOUtils.closeQuietly(in);
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignore) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        LOG.warn("download of [" + identifier + "] failed.", e);
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    private synchronized boolean completePart() {
+        remaining--;
+        return remaining == 0;
+    }
+
+    /**
+     * Moves the complete file to the cache, or deletes it if the download
+     * failed. Readers that are still open keep reading the same file.
+     */
+    private synchronized void complete() {
+        if (failure == null) {
+            File cached = cache.store(fileName, file);
+            if (cached != null) {
+                file = cached;
+            }
+            LOG.debug("download [{}] completed.", identifier);
+        } else {
+            file.delete();
+        }
+        notifyAll();
+    }
+
+    private synchronized void awaitLength() throws IOException {
+        try {
+            while (length < 0) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for " + identifier);
+        }
+    }
+
+    /**
+     * Waits until the byte at the given position is written.
+     *
+     * @param position the position in the record.
+     * @return the number of bytes available from the position on.
+     */
+    private synchronized long await(long position) throws IOException {
+        int part = (int) (position / partLength);
+        long offset = position - part * partLength;
+        try {
+            while (written[part] <= offset) {
+                if (failure != null) {
+                    throw newException();
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for " + identifier);
+        }
+        return written[part] - offset;
+    }
+
+    private IOException newException() {
+        IOException e = new IOException("Download of " + identifier + " failed");
+        e.initCause(failure);
+        return e;
+    }
+
+    /**
+     * Stream that reads the downloaded bytes of the record.
+     */
+    private class DownloadInputStream extends InputStream {
+
+        private final RandomAccessFile in;
+
+        private long position;
+
+        DownloadInputStream(RandomAccessFile in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= length) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            long available = await(position);
+            in.seek(position);
+            int n = in.read(b, off, (int) Math.min(len, available));
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes need not be downloaded yet
+            long skipped = Math.max(0, Math.min(n, length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
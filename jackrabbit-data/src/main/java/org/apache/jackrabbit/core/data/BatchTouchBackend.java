@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A {@link Backend} that can update the lastModified of many records in one
+ * batch, so that {@link CachingDataStore} can coalesce the touches of
+ * records read while the garbage collector is running.
+ */
+public interface BatchTouchBackend extends Backend {
+
+    /**
+     * Update the lastModified of all records whose lastModified &lt;
+     * minModifiedDate.
+     * 
+     * @param identifiers
+     *            identifiers of the records.
+     * @param minModifiedDate
+     *            the minimum modified date.
+     * @return the identifiers of the records that could not be touched.
+     * @throws DataStoreException
+     *             if the batch could not be processed at all.
+     */
+    Set<DataIdentifier> touch(Collection<DataIdentifier> identifiers,
+            long minModifiedDate) throws DataStoreException;
+}
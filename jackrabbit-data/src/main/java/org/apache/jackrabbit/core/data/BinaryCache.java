@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.api.stats.RepositoryStatistics;
+import org.apache.jackrabbit.core.data.util.ByteBufferInputStream;
+import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
+
+/**
+ * A bounded cache of the content of small data records, keyed by data
+ * identifier. As the identifier is derived from the content, an entry never
+ * needs to be invalidated, and the cache is shared by all workspaces and
+ * persistence managers that use the data store. Records up to
+ * <code>maxMemoryEntrySize</code> bytes are kept on the heap, larger records
+ * up to <code>maxEntrySize</code> bytes in direct (off-heap) buffers. The
+ * least recently used entries are evicted once the cache holds more than
+ * <code>size</code> bytes.
+ */
+public class BinaryCache {
+
+    private final long size;
+
+    private final int maxEntrySize;
+
+    private final int maxMemoryEntrySize;
+
+    private final LinkedHashMap<DataIdentifier, Object> map =
+        new LinkedHashMap<DataIdentifier, Object>(16, 0.75f, true);
+
+    private long used;
+
+    private AtomicLong accessCounter = new AtomicLong();
+
+    private AtomicLong missCounter = new AtomicLong();
+
+    private AtomicLong sizeCounter = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param size the maximum number of bytes held by the cache
+     * @param maxEntrySize the maximum length of a cached record
+     * @param maxMemoryEntrySize the maximum length of a record that is
+     *            kept on the heap
+     */
+    public BinaryCache(long size, int maxEntrySize, int maxMemoryEntrySize) {
+        this.size = size;
+        this.maxEntrySize = maxEntrySize;
+        this.maxMemoryEntrySize = maxMemoryEntrySize;
+    }
+
+    /**
+     * Report the accesses, misses and size of this cache to the given
+     * repository statistics.
+     *
+     * @param stats the repository statistics
+     */
+    public void setRepositoryStatistics(RepositoryStatisticsImpl stats) {
+        accessCounter = stats.getCounter(
+                RepositoryStatistics.Type.BINARY_CACHE_ACCESS_COUNTER);
+        missCounter = stats.getCounter(
+                RepositoryStatistics.Type.BINARY_CACHE_MISS_COUNTER);
+        sizeCounter = stats.getCounter(
+                RepositoryStatistics.Type.BINARY_CACHE_SIZE_COUNTER);
+    }
+
+    /**
+     * Read a record that is not cached, and cache it if it is small enough.
+     *
+     * @param identifier the data identifier
+     * @param record the data record
+     * @return a stream of the content of the record
+     * @throws DataStoreException if the record could not be read
+     */
+    public InputStream load(DataIdentifier identifier, DataRecord record)
+            throws DataStoreException {
+        missCounter.incrementAndGet();
+        long length = record.getLength();
+        if (length > maxEntrySize || length > size) {
+            // an entry larger than the cache would evict all other entries,
+            // and then itself
+            return record.getStream();
+        }
+        byte[] data;
+        InputStream stream = record.getStream();
+        try {
+            data = IOUtils.toByteArray(stream);
+        } catch (IOException e) {
+            throw new DataStoreException("Unable to read " + identifier, e);
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+        put(identifier, data);
+        return new ByteArrayInputStream(data);
+    }
+
+    /**
+     * Return a stream of the content of a record if it is cached.
+     *
+     * @param identifier the data identifier
+     * @return the stream, or null if the record is not cached
+     */
+    public InputStream getStreamIfCached(DataIdentifier identifier) {
+        accessCounter.incrementAndGet();
+        Object value;
+        synchronized (map) {
+            value = map.get(identifier);
+        }
+        if (value == null) {
+            return null;
+        } else if (value instanceof byte[]) {
+            return new ByteArrayInputStream((byte[]) value);
+        }
+        return new ByteBufferInputStream(((ByteBuffer) value).duplicate());
+    }
+
+    /**
+     * Return the number of bytes held by this cache.
+     *
+     * @return the number of bytes
+     */
+    public long getUsed() {
+        synchronized (map) {
+            return used;
+        }
+    }
+
+    private void put(DataIdentifier identifier, byte[] data) {
+        Object value;
+        if (data.length <= maxMemoryEntrySize) {
+            value = data;
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+            buffer.put(data);
+            buffer.flip();
+            value = buffer.asReadOnlyBuffer();
+        }
+        synchronized (map) {
+            if (map.put(identifier, value) == null) {
+                used += data.length;
+            }
+            Iterator<Object> it = map.values().iterator();
+            while (used > size && it.hasNext()) {
+                used -= length(it.next());
+                it.remove();
+            }
+            sizeCounter.set(used);
+        }
+    }
+
+    private static int length(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        return ((ByteBuffer) value).capacity();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+/**
+ * Decides per binary property where its value is stored: inline in the
+ * bundle of its node, in the (primary) data store, or in the archive data
+ * store of a {@link MultiDataStore}.
+ */
+public interface BinaryPlacementPolicy {
+
+    /**
+     * The storage tiers of a binary value.
+     */
+    enum Tier {
+
+        /**
+         * Stored inline, together with the node.
+         */
+        INLINE,
+
+        /**
+         * Stored in the data store, or in the primary data store of a
+         * {@link MultiDataStore}.
+         */
+        PRIMARY,
+
+        /**
+         * Stored in the archive data store of a {@link MultiDataStore}, or
+         * in the data store if there is no archive data store.
+         */
+        ARCHIVE
+    }
+
+    /**
+     * Returns the tier a binary value should be stored in.
+     *
+     * @param path the path of the property
+     * @param mimeType the jcr:mimeType of the node of the property, or
+     *            <code>null</code> if not set
+     * @param length the length of the binary value
+     * @return the tier
+     */
+    Tier getTier(String path, String mimeType, long length);
+
+}
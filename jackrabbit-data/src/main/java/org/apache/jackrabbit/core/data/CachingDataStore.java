@@ -39,6 +39,7 @@ import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -49,6 +50,7 @@ import javax.jcr.RepositoryException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
+import org.apache.jackrabbit.util.TransientFileFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,12 +79,18 @@ import org.slf4j.LoggerFactory;
  *     &lt;param name="{@link #setAsyncUploadLimit(int) asyncUploadLimit}" value="100"/>
  *     &lt;param name="{@link #setUploadRetries(int) uploadRetries}" value="3"/>
  *     &lt;param name="{@link #setTouchAsync(boolean) touchAsync}" value="false"/>
+ *     &lt;param name="{@link #setTouchBatchInterval(long) touchBatchInterval}" value="0"/>
+ *     &lt;param name="{@link #setTouchBatchSize(int) touchBatchSize}" value="1000"/>
  *     &lt;param name="{@link #setProactiveCaching(boolean) proactiveCaching}" value="true"/>
  *     &lt;param name="{@link #setRecLengthCacheSize(int) recLengthCacheSize}" value="200"/>
+ *     &lt;param name="{@link #setStreamingCacheFill(boolean) streamingCacheFill}" value="false"/>
+ *     &lt;param name="{@link #setDownloadPartSize(long) downloadPartSize}" value="8388608"/>
+ *     &lt;param name="{@link #setDownloadThreads(int) downloadThreads}" value="10"/>
  * &lt/DataStore>
  */
 public abstract class CachingDataStore extends AbstractDataStore implements
-        MultiDataStoreAware, AsyncUploadCallback, AsyncTouchCallback {
+        MultiDataStoreAware, GarbageCollectionAware, AsyncUploadCallback,
+        AsyncTouchCallback {
 
     /**
      * Logger instance.
@@ -118,8 +126,11 @@ public abstract class CachingDataStore extends AbstractDataStore implements
     protected final Map<DataIdentifier, Integer> uploadRetryMap = new ConcurrentHashMap<DataIdentifier, Integer>(5);
     
     /**
-     * In memory map to hold in-progress asynchronous touch. Once touch is
-     * successful corresponding entry is flushed from the map.
+     * In memory map to hold in-progress asynchronous touch, and touches
+     * waiting for the next batch if {@link #touchBatchInterval} is set. Once
+     * touch is successful corresponding entry is flushed from the map.
+     * Records in this map are not deleted by
+     * {@link #deleteAllOlderThan(long)}.
      */
     protected final Map<DataIdentifier, Long> asyncTouchCache = new ConcurrentHashMap<DataIdentifier, Long>(5);
 
@@ -155,6 +166,29 @@ public abstract class CachingDataStore extends AbstractDataStore implements
      */
     private boolean touchAsync = false;
 
+    /**
+     * If greater than 0, records accessed while the garbage collector is
+     * running are not touched one by one, but collected in
+     * {@link #asyncTouchCache} and touched in batches by a background thread
+     * every touchBatchInterval milliseconds.
+     */
+    private long touchBatchInterval;
+
+    /**
+     * The maximum number of records touched in one batch.
+     */
+    private int touchBatchSize = 1000;
+
+    /**
+     * Flushes the batched touches, if {@link #touchBatchInterval} is set.
+     */
+    private ScheduledExecutorService touchExecService;
+
+    /**
+     * Lock held while touches are flushed to the {@link Backend}.
+     */
+    private final Object touchFlushLock = new Object();
+
     /**
      * Flag to indicate that binary content will be cached proactively and
      * asynchronously when binary metadata is retrieved from {@link Backend}.
@@ -210,6 +244,38 @@ public abstract class CachingDataStore extends AbstractDataStore implements
      */
     private ExecutorService downloadExecService;
 
+    /**
+     * If true, records that are not in the {@link LocalCache} are streamed
+     * to the reader while they are downloaded to the cache, instead of
+     * being downloaded completely before the first byte is returned.
+     */
+    private boolean streamingCacheFill;
+
+    /**
+     * Size of the parts a record is downloaded in concurrently, if
+     * {@link #streamingCacheFill} is set and the {@link Backend} is a
+     * {@link MultipartBackend}.
+     */
+    private long downloadPartSize = 8L * 1024 * 1024;
+
+    /**
+     * Number of threads that download parts of records concurrently, if
+     * {@link #streamingCacheFill} is set.
+     */
+    private int downloadThreads = 10;
+
+    /**
+     * {@link ExecutorService} to download parts of records.
+     */
+    private ExecutorService partDownloadExecService;
+
+    /**
+     * In memory map of the downloads in progress, if
+     * {@link #streamingCacheFill} is set.
+     */
+    private final ConcurrentHashMap<String, BackendDownload> downloads =
+            new ConcurrentHashMap<String, BackendDownload>();
+
     protected abstract Backend createBackend();
 
     protected abstract String getMarkerFile();
@@ -358,6 +424,24 @@ public abstract class CachingDataStore extends AbstractDataStore implements
             }
             downloadExecService = Executors.newFixedThreadPool(5,
                 new NamedThreadFactory("backend-file-download-worker"));
+            if (streamingCacheFill) {
+                partDownloadExecService = Executors.newFixedThreadPool(
+                    downloadThreads, new NamedThreadFactory("backend-part-download-worker"));
+            }
+            if (touchBatchInterval > 0) {
+                touchExecService = Executors.newSingleThreadScheduledExecutor(
+                    new NamedThreadFactory("backend-touch-worker"));
+                touchExecService.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            flushTouches();
+                        } catch (RuntimeException e) {
+                            LOG.warn("Could not flush batched touches", e);
+                        }
+                    }
+                }, touchBatchInterval, touchBatchInterval, TimeUnit.MILLISECONDS);
+            }
             cache = new LocalCache(path, tmpDir.getAbsolutePath(), cacheSize,
                 cachePurgeTrigFactor, cachePurgeResizeFactor, asyncWriteCache);
             /*
@@ -573,9 +657,35 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         }
     }
 
+    /**
+     * Deletes the record from {@link Backend} and {@link LocalCache} if
+     * {@link #confirmDelete(DataIdentifier)} allows it and the last modified
+     * date in the backend is older than <code>min</code>. Records with
+     * pending uploads or touches are kept.
+     */
+    public synchronized boolean deleteRecordIfOlderThan(
+            DataIdentifier identifier, long min) throws DataStoreException {
+        if (!confirmDelete(identifier)) {
+            return false;
+        }
+        if (!backend.exists(identifier)
+                || backend.getLastModified(identifier) >= min) {
+            return false;
+        }
+        deleteRecord(identifier);
+        return true;
+    }
+
+    public void deleteUnusedData(long min) {
+        // records are stored as a whole, nothing else to delete
+    }
+
     @Override
     public synchronized int deleteAllOlderThan(long min)
             throws DataStoreException {
+        // make sure the backend sees all records accessed so far; records
+        // accessed from now on are protected by confirmDelete
+        flushTouches();
         Set<DataIdentifier> diSet = backend.deleteAllOlderThan(min);
         
         // remove entries from local cache
@@ -600,7 +710,8 @@ public abstract class CachingDataStore extends AbstractDataStore implements
      * Get stream of record from {@link LocalCache}. If record is not available
      * in {@link LocalCache}, this method fetches record from {@link Backend}
      * and stores it to {@link LocalCache}. Stream is then returned from cached
-     * record.
+     * record. If {@link #streamingCacheFill} is set, the stream is returned
+     * while the record is still being downloaded.
      */
     InputStream getStream(DataIdentifier identifier) throws DataStoreException {
         InputStream in = null;
@@ -610,6 +721,9 @@ public abstract class CachingDataStore extends AbstractDataStore implements
             if (cached != null) {
                 return cached;
             }
+            if (streamingCacheFill && cacheSize != 0) {
+                return getDownload(identifier, fileName).newInputStream();
+            }
             in = backend.read(identifier);
             return cache.store(fileName, in);
         } catch (IOException e) {
@@ -619,6 +733,34 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         }
     }
 
+    /**
+     * Return the download in progress of the given record, or start a new
+     * one. Concurrent readers of the same record share the download.
+     */
+    private BackendDownload getDownload(final DataIdentifier identifier,
+            final String fileName) throws IOException {
+        BackendDownload download = downloads.get(fileName);
+        if (download != null) {
+            return download;
+        }
+        File file = TransientFileFactory.getInstance().createTransientFile(
+            "download-", "tmp", tmpDir);
+        download = new BackendDownload(backend, identifier, cache, fileName,
+            file, downloadPartSize);
+        BackendDownload existing = downloads.putIfAbsent(fileName, download);
+        if (existing != null) {
+            file.delete();
+            return existing;
+        }
+        download.start(partDownloadExecService, new Runnable() {
+            @Override
+            public void run() {
+                downloads.remove(fileName);
+            }
+        });
+        return download;
+    }
+
     /**
      * Return lastModified of record from {@link Backend} assuming
      * {@link Backend} as a single source of truth.
@@ -860,7 +1002,13 @@ public abstract class CachingDataStore extends AbstractDataStore implements
     private void touchInternal(DataIdentifier identifier)
             throws DataStoreException {
 
-        if (touchAsync) {
+        if (touchBatchInterval > 0) {
+            if (minModifiedDate > 0) {
+                if (asyncTouchCache.put(identifier, System.currentTimeMillis()) == null) {
+                    LOG.trace("Batching touch of [{}]", identifier);
+                }
+            }
+        } else if (touchAsync) {
             Long lastModified = asyncTouchCache.put(identifier,
                 System.currentTimeMillis());
 
@@ -876,6 +1024,71 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         }
     }
     
+    /**
+     * Touch all records collected in {@link #asyncTouchCache} in batches of
+     * {@link #touchBatchSize}. Records that could not be touched stay in the
+     * map and are retried with the next flush, so they are not deleted in
+     * the meantime. Does nothing unless {@link #touchBatchInterval} is set.
+     */
+    void flushTouches() {
+        if (touchBatchInterval <= 0) {
+            return;
+        }
+        synchronized (touchFlushLock) {
+            long min = minModifiedDate;
+            List<DataIdentifier> pending = new ArrayList<DataIdentifier>(
+                asyncTouchCache.keySet());
+            if (min <= 0) {
+                // garbage collection finished, touching is no longer needed
+                for (DataIdentifier identifier : pending) {
+                    asyncTouchCache.remove(identifier);
+                }
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int touched = 0;
+            for (int i = 0; i < pending.size(); i += touchBatchSize) {
+                List<DataIdentifier> batch = pending.subList(i,
+                    Math.min(pending.size(), i + touchBatchSize));
+                Set<DataIdentifier> failed;
+                try {
+                    failed = touchBatch(batch, min);
+                } catch (DataStoreException e) {
+                    LOG.warn("Could not touch batch of [" + batch.size()
+                        + "] records, will retry", e);
+                    continue;
+                }
+                for (DataIdentifier identifier : batch) {
+                    if (!failed.contains(identifier)) {
+                        asyncTouchCache.remove(identifier);
+                        touched++;
+                    }
+                }
+            }
+            if (!pending.isEmpty()) {
+                LOG.debug("Touched [{}] of [{}] records in [{}] ms", new Object[] {
+                    touched, pending.size(), System.currentTimeMillis() - start });
+            }
+        }
+    }
+
+    private Set<DataIdentifier> touchBatch(List<DataIdentifier> batch, long min)
+            throws DataStoreException {
+        if (backend instanceof BatchTouchBackend) {
+            return ((BatchTouchBackend) backend).touch(batch, min);
+        }
+        Set<DataIdentifier> failed = new HashSet<DataIdentifier>();
+        for (DataIdentifier identifier : batch) {
+            try {
+                backend.touch(identifier, min);
+            } catch (DataStoreException e) {
+                LOG.debug("Could not touch [" + identifier + "]", e);
+                failed.add(identifier);
+            }
+        }
+        return failed;
+    }
+
     /**
      * Invoke {@link #getStream(DataIdentifier)} asynchronously to cache binary
      * asynchronously.
@@ -920,6 +1133,7 @@ public abstract class CachingDataStore extends AbstractDataStore implements
     private void uploadFilesFromCache() throws RepositoryException {
         ArrayList<File> files = new ArrayList<File>();
         listRecursive(files, directory);
+        files.remove(new File(directory, LocalCache.METADATA_FILE));
         long totalSize = 0;
         for (File f : files) {
             totalSize += f.length();
@@ -1056,9 +1270,16 @@ public abstract class CachingDataStore extends AbstractDataStore implements
 
     @Override
     public void close() throws DataStoreException {
+        if (touchExecService != null) {
+            touchExecService.shutdown();
+            flushTouches();
+        }
         cache.close();
         backend.close();
         downloadExecService.shutdown();
+        if (partDownloadExecService != null) {
+            partDownloadExecService.shutdown();
+        }
     }
 
     /**
@@ -1213,6 +1434,32 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         this.touchAsync = touchAsync;
     }
 
+    public long getTouchBatchInterval() {
+        return touchBatchInterval;
+    }
+
+    /**
+     * Set the interval in milliseconds in which records accessed while the
+     * garbage collector is running are touched in batches. 0 (the default)
+     * touches each record when it is accessed, see
+     * {@link #setTouchAsync(boolean)}.
+     */
+    public void setTouchBatchInterval(long touchBatchInterval) {
+        this.touchBatchInterval = touchBatchInterval;
+    }
+
+    public int getTouchBatchSize() {
+        return touchBatchSize;
+    }
+
+    /**
+     * Set the maximum number of records touched in one batch. The default
+     * is 1000.
+     */
+    public void setTouchBatchSize(int touchBatchSize) {
+        this.touchBatchSize = touchBatchSize;
+    }
+
     public void setProactiveCaching(boolean proactiveCaching) {
         this.proactiveCaching = proactiveCaching;
     }
@@ -1221,6 +1468,39 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         this.recLengthCacheSize = recLengthCacheSize;
     }
 
+    public boolean isStreamingCacheFill() {
+        return streamingCacheFill;
+    }
+
+    /**
+     * Set whether records that are not in the {@link LocalCache} are
+     * returned while they are downloaded. The default is false.
+     */
+    public void setStreamingCacheFill(boolean streamingCacheFill) {
+        this.streamingCacheFill = streamingCacheFill;
+    }
+
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    /**
+     * Set the size of the parts a record is downloaded in concurrently from
+     * a {@link MultipartBackend} with {@link #setStreamingCacheFill(boolean)}.
+     * 0 downloads each record in a single part.
+     */
+    public void setDownloadPartSize(long downloadPartSize) {
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    public int getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    public void setDownloadThreads(int downloadThreads) {
+        this.downloadThreads = downloadThreads;
+    }
+
     public Backend getBackend() {
         return backend;
     }
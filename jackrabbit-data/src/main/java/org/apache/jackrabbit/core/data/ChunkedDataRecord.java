@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Data record of the {@link FileDataStore} whose binary stream is split into
+ * chunks. The record file is a manifest that lists the digests and lengths
+ * of the chunks, which are stored as separate files. The manifest has the
+ * following layout:
+ * <pre>
+ * int  magic
+ * long length of the binary stream
+ * int  number of chunks
+ * for each chunk:
+ *   int    length of the chunk
+ *   byte[] SHA-1 digest of the chunk (20 bytes)
+ * </pre>
+ * The stream of the record supports skipping whole chunks without reading
+ * them, so that reads at an offset only access the chunks they need.
+ */
+public class ChunkedDataRecord extends AbstractDataRecord {
+
+    /**
+     * Magic number at the start of a manifest.
+     */
+    private static final int MAGIC = 0x4a52434d;
+
+    /**
+     * Length of a chunk digest.
+     */
+    private static final int DIGEST_LENGTH = 20;
+
+    /**
+     * The data store of the record.
+     */
+    private final FileDataStore store;
+
+    /**
+     * The manifest file.
+     */
+    private final File manifest;
+
+    /**
+     * The length of the binary stream, or -1 if not read yet.
+     */
+    private long length = -1;
+
+    /**
+     * Creates a data record based on the given manifest file.
+     *
+     * @param store the data store
+     * @param identifier data identifier
+     * @param manifest the manifest file
+     */
+    public ChunkedDataRecord(
+            FileDataStore store, DataIdentifier identifier, File manifest) {
+        super(store, identifier);
+        this.store = store;
+        this.manifest = manifest;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLength() throws DataStoreException {
+        if (length < 0) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new FileInputStream(manifest));
+                length = readHeader(in);
+            } catch (IOException e) {
+                throw new DataStoreException(
+                        "Error reading manifest " + manifest.getAbsolutePath(), e);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getStream() throws DataStoreException {
+        int[][] lengths = new int[1][];
+        File[] chunks = readChunks(lengths);
+        return new ChunkedInputStream(chunks, lengths[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLastModified() {
+        return manifest.lastModified();
+    }
+
+    /**
+     * @return the manifest file
+     */
+    File getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Reads the chunk files listed in the manifest.
+     *
+     * @return the chunk files
+     * @throws DataStoreException if the manifest cannot be read
+     */
+    File[] readChunks() throws DataStoreException {
+        return readChunks(null);
+    }
+
+    /**
+     * Reads the chunk files listed in the manifest and optionally their
+     * lengths.
+     *
+     * @param lengths if not <code>null</code>, its first element is replaced
+     *                with an array of the chunk lengths
+     * @return the chunk files
+     * @throws DataStoreException if the manifest cannot be read
+     */
+    private File[] readChunks(int[][] lengths) throws DataStoreException {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(manifest)));
+            length = readHeader(in);
+            File[] chunks = new File[in.readInt()];
+            int[] chunkLengths = new int[chunks.length];
+            byte[] digest = new byte[DIGEST_LENGTH];
+            for (int i = 0; i < chunks.length; i++) {
+                chunkLengths[i] = in.readInt();
+                in.readFully(digest);
+                chunks[i] = store.getChunkFile(
+                        AbstractDataStore.encodeHexString(digest));
+            }
+            if (lengths != null) {
+                lengths[0] = chunkLengths;
+            }
+            return chunks;
+        } catch (IOException e) {
+            throw new DataStoreException(
+                    "Error reading manifest " + manifest.getAbsolutePath(), e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes a manifest.
+     *
+     * @param file the manifest file to write
+     * @param length the length of the binary stream
+     * @param digests the digests of the chunks
+     * @param lengths the lengths of the chunks
+     * @throws IOException if writing fails
+     */
+    static void writeManifest(File file, long length,
+                              List<byte[]> digests, List<Integer> lengths)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(length);
+            out.writeInt(digests.size());
+            for (int i = 0; i < digests.size(); i++) {
+                out.writeInt(lengths.get(i));
+                out.write(digests.get(i));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private long readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a manifest: " + manifest.getAbsolutePath());
+        }
+        return in.readLong();
+    }
+
+    /**
+     * Reads the chunk files one after the other.
+     */
+    private static class ChunkedInputStream extends InputStream {
+
+        private final File[] chunks;
+
+        private final int[] lengths;
+
+        /**
+         * Index of the current chunk.
+         */
+        private int index;
+
+        /**
+         * Stream of the current chunk, or <code>null</code> if not opened.
+         */
+        private InputStream current;
+
+        /**
+         * Bytes of the current chunk already read or skipped.
+         */
+        private long position;
+
+        ChunkedInputStream(File[] chunks, int[] lengths) {
+            this.chunks = chunks;
+            this.lengths = lengths;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (index < chunks.length) {
+                if (current == null) {
+                    current = new FileInputStream(chunks[index]);
+                    IOUtils.skipFully(current, position);
+                }
+                int n = current.read(b, off, len);
+                if (n > 0) {
+                    position += n;
+                    return n;
+                }
+                nextChunk();
+            }
+            return -1;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (n > 0 && index < chunks.length) {
+                long remaining = lengths[index] - position;
+                if (n < remaining) {
+                    if (current != null) {
+                        IOUtils.skipFully(current, n);
+                    }
+                    position += n;
+                    skipped += n;
+                    break;
+                }
+                // skip the rest of the chunk without reading it
+                n -= remaining;
+                skipped += remaining;
+                nextChunk();
+            }
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOUtils.closeQuietly(current);
+            current = null;
+            index = chunks.length;
+        }
+
+        private void nextChunk() {
+            IOUtils.closeQuietly(current);
+            current = null;
+            position = 0;
+            index++;
+        }
+    }
+}
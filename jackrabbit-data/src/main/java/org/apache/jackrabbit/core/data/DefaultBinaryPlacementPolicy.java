@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BinaryPlacementPolicy} based on the size, MIME type and path of
+ * binary properties.
+ * <ul>
+ * <li><code>maxInlineSize</code>: binaries up to this length are stored
+ * inline if their MIME type starts with one of the
+ * <code>inlineMimeTypes</code> (default = <code>0</code>, which means that
+ * only binaries shorter than the minimum record length of the data store are
+ * stored inline)</li>
+ * <li><code>inlineMimeTypes</code>: comma separated list of MIME type
+ * prefixes, for example <code>image/</code>. If empty, binaries of any MIME
+ * type up to <code>maxInlineSize</code> are stored inline (default =
+ * empty)</li>
+ * <li><code>archivePaths</code>: comma separated list of paths. Binaries
+ * below these paths are stored in the archive data store (default =
+ * empty)</li>
+ * <li><code>archiveMimeTypes</code>: comma separated list of MIME type
+ * prefixes of binaries that are stored in the archive data store (default =
+ * empty)</li>
+ * <li><code>minArchiveSize</code>: binaries shorter than this length are
+ * never stored in the archive data store (default = <code>0</code>)</li>
+ * </ul>
+ * All other binaries are stored in the primary data store.
+ */
+public class DefaultBinaryPlacementPolicy implements BinaryPlacementPolicy {
+
+    private long maxInlineSize;
+
+    private String[] inlineMimeTypes = new String[0];
+
+    private String[] archivePaths = new String[0];
+
+    private String[] archiveMimeTypes = new String[0];
+
+    private long minArchiveSize;
+
+    /**
+     * {@inheritDoc}
+     */
+    public Tier getTier(String path, String mimeType, long length) {
+        if (length <= maxInlineSize
+                && (inlineMimeTypes.length == 0 || matchesMimeType(inlineMimeTypes, mimeType))) {
+            return Tier.INLINE;
+        }
+        if (length >= minArchiveSize
+                && (matchesPath(archivePaths, path) || matchesMimeType(archiveMimeTypes, mimeType))) {
+            return Tier.ARCHIVE;
+        }
+        return Tier.PRIMARY;
+    }
+
+    public long getMaxInlineSize() {
+        return maxInlineSize;
+    }
+
+    public void setMaxInlineSize(long maxInlineSize) {
+        this.maxInlineSize = maxInlineSize;
+    }
+
+    public String getInlineMimeTypes() {
+        return join(inlineMimeTypes);
+    }
+
+    public void setInlineMimeTypes(String inlineMimeTypes) {
+        this.inlineMimeTypes = split(inlineMimeTypes);
+    }
+
+    public String getArchivePaths() {
+        return join(archivePaths);
+    }
+
+    public void setArchivePaths(String archivePaths) {
+        this.archivePaths = split(archivePaths);
+    }
+
+    public String getArchiveMimeTypes() {
+        return join(archiveMimeTypes);
+    }
+
+    public void setArchiveMimeTypes(String archiveMimeTypes) {
+        this.archiveMimeTypes = split(archiveMimeTypes);
+    }
+
+    public long getMinArchiveSize() {
+        return minArchiveSize;
+    }
+
+    public void setMinArchiveSize(long minArchiveSize) {
+        this.minArchiveSize = minArchiveSize;
+    }
+
+    private static boolean matchesMimeType(String[] prefixes, String mimeType) {
+        if (mimeType != null) {
+            for (String prefix : prefixes) {
+                if (mimeType.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesPath(String[] paths, String path) {
+        for (String p : paths) {
+            if (path.equals(p) || path.startsWith(p.endsWith("/") ? p : p + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] split(String list) {
+        List<String> result = new ArrayList<String>();
+        if (list != null) {
+            for (String s : list.split(",")) {
+                s = s.trim();
+                if (s.length() > 0) {
+                    result.add(s);
+                }
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static String join(String[] list) {
+        StringBuilder buff = new StringBuilder();
+        for (String s : list) {
+            if (buff.length() > 0) {
+                buff.append(',');
+            }
+            buff.append(s);
+        }
+        return buff.toString();
+    }
+}
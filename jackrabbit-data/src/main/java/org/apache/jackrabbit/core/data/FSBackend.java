@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -37,11 +38,12 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FSBackend implements Backend {
+public class FSBackend implements MultipartBackend, BatchTouchBackend {
 
     private Properties properties;
 
@@ -134,6 +136,22 @@ public class FSBackend implements Backend {
         }
     }
 
+    @Override
+    public InputStream read(DataIdentifier identifier, long offset, long length)
+                    throws DataStoreException {
+        File file = getFile(identifier);
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            IOUtils.skipFully(in, offset);
+            return new BoundedInputStream(in, length);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            throw new DataStoreException("Error opening input stream of "
+                + file.getAbsolutePath(), e);
+        }
+    }
+
     @Override
     public long getLength(DataIdentifier identifier) throws DataStoreException {
         File file = getFile(identifier);
@@ -255,6 +273,21 @@ public class FSBackend implements Backend {
         }
     }
 
+    @Override
+    public Set<DataIdentifier> touch(Collection<DataIdentifier> identifiers,
+            long minModifiedDate) throws DataStoreException {
+        Set<DataIdentifier> failed = new HashSet<DataIdentifier>();
+        for (DataIdentifier identifier : identifiers) {
+            try {
+                touch(identifier, minModifiedDate);
+            } catch (DataStoreException e) {
+                LOG.debug("Could not touch [" + identifier + "]", e);
+                failed.add(identifier);
+            }
+        }
+        return failed;
+    }
+
     @Override
     public void touchAsync(final DataIdentifier identifier,
                     final long minModifiedDate,
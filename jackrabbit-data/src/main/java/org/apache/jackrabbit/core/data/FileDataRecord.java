@@ -68,4 +68,15 @@ public class FileDataRecord extends AbstractDataRecord {
     public long getLastModified() {
         return file.lastModified();
     }
+
+    /**
+     * Returns the file that contains the binary stream. It must only be
+     * read, and may be deleted by the garbage collection once the record is
+     * no longer referenced.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
 }
@@ -29,9 +29,12 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.WeakHashMap;
 
 import org.apache.commons.io.FileUtils;
@@ -48,9 +51,20 @@ import org.slf4j.LoggerFactory;
  * &lt;DataStore class="org.apache.jackrabbit.core.data.FileDataStore">
  *     &lt;param name="{@link #setPath(String) path}" value="/data/datastore"/>
  *     &lt;param name="{@link #setMinRecordLength(int) minRecordLength}" value="1024"/>
+ *     &lt;param name="{@link #setChunkSize(int) chunkSize}" value="1048576"/>
  * &lt/DataStore>
  * </pre>
  * <p>
+ * If the chunk size is set, binary streams are split into chunks of about
+ * that size using content-defined chunking, so that binaries that differ
+ * only in parts share the chunks of the unchanged parts. Each distinct chunk
+ * is stored once in the <code>chunks</code> directory, and the record of a
+ * binary that consists of more than one chunk is a manifest, see
+ * {@link ChunkedDataRecord}. The identifier of a record is the digest of the
+ * whole binary stream in both cases. Chunks are deleted by
+ * {@link #deleteAllOlderThan(long)} once no manifest that was accessed
+ * during the garbage collection refers to them.
+ * <p>
  * If the directory is not set, the directory &lt;repository home&gt;/repository/datastore is used.
  * <p>
  * A three level directory structure is used to avoid placing too many
@@ -61,7 +75,7 @@ import org.slf4j.LoggerFactory;
  * atomic O(1) move operations with {@link File#renameTo(File)}.
  */
 public class FileDataStore extends AbstractDataStore
-        implements MultiDataStoreAware {
+        implements MultiDataStoreAware, GarbageCollectionAware {
 
     /**
      * Logger instance
@@ -89,6 +103,30 @@ public class FileDataStore extends AbstractDataStore
      */
     private static final String TMP = "tmp";
 
+    /**
+     * Name of the directory used for chunks.
+     * Must be at least 3 characters.
+     */
+    private static final String CHUNKS = "chunks";
+
+    /**
+     * Suffix of the file name of a manifest record.
+     */
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    /**
+     * Random values per byte value for the rolling hash that finds the chunk
+     * boundaries. A fixed seed is used, so that the boundaries never change.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x4a52434dL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
     /**
      * The minimum modified date. If a file is accessed (read or write) with a modified date
      * older than this value, the modified date is updated to the current time.
@@ -112,6 +150,11 @@ public class FileDataStore extends AbstractDataStore
      */
     private int minRecordLength = DEFAULT_MIN_RECORD_LENGTH;
 
+    /**
+     * The average chunk size, or 0 to store each binary as a single file.
+     */
+    private int chunkSize;
+
     /**
      * All data identifiers that are currently in use are in this set until they are garbage collected.
      */
@@ -142,7 +185,21 @@ public class FileDataStore extends AbstractDataStore
     public DataRecord getRecordIfStored(DataIdentifier identifier) throws DataStoreException {
         File file = getFile(identifier);
         if (!file.exists()) {
-            return null;
+            file = getManifestFile(identifier);
+            if (!file.exists()) {
+                return null;
+            }
+            ChunkedDataRecord record = new ChunkedDataRecord(this, identifier, file);
+            if (minModifiedDate != 0) {
+                // only check when running garbage collection
+                synchronized (this) {
+                    if (getLastModified(file) < minModifiedDate) {
+                        touchManifest(record);
+                    }
+                }
+            }
+            usesIdentifier(identifier);
+            return record;
         }
         if (minModifiedDate != 0) {
             // only check when running garbage collection
@@ -173,6 +230,9 @@ public class FileDataStore extends AbstractDataStore
      * @throws DataStoreException if the record could not be created
      */
     public DataRecord addRecord(InputStream input) throws DataStoreException {
+        if (chunkSize > 0) {
+            return addChunkedRecord(input);
+        }
         File temporary = null;
         try {
             temporary = newTemporaryFile();
@@ -198,23 +258,18 @@ public class FileDataStore extends AbstractDataStore
                 // move the temporary file in place if needed
                 usesIdentifier(identifier);
                 file = getFile(identifier);
-                if (!file.exists()) {
-                    File parent = file.getParentFile();
-                    parent.mkdirs();
-                    if (temporary.renameTo(file)) {
-                        // no longer need to delete the temporary file
-                        temporary = null;
-                    } else {
-                        throw new IOException(
-                                "Can not rename " + temporary.getAbsolutePath()
-                                + " to " + file.getAbsolutePath()
-                                + " (media read only?)");
-                    }
-                } else {
-                    long now = System.currentTimeMillis();
-                    if (getLastModified(file) < now + ACCESS_TIME_RESOLUTION) {
-                        setLastModified(file, now + ACCESS_TIME_RESOLUTION);
-                    }
+                File manifest = getManifestFile(identifier);
+                if (!file.exists() && manifest.exists()) {
+                    // stored as chunks while chunking was enabled
+                    ChunkedDataRecord record =
+                            new ChunkedDataRecord(this, identifier, manifest);
+                    touchManifest(record);
+                    inUse.remove(tempId);
+                    return record;
+                }
+                if (moveOrTouch(temporary, file)) {
+                    // no longer need to delete the temporary file
+                    temporary = null;
                 }
                 if (file.length() != length) {
                     // Sanity checks on the record file. These should never fail,
@@ -240,6 +295,229 @@ public class FileDataStore extends AbstractDataStore
         }
     }
 
+    /**
+     * Creates a new data record from a stream that is split into chunks.
+     * The chunk boundaries are found with a rolling hash over the last 64
+     * bytes, so that they only depend on the content near them. Chunks are
+     * at least a quarter and at most four times the chunk size long. A
+     * stream that consists of a single chunk is stored as a normal record.
+     *
+     * @param input binary stream
+     * @return data record that contains the given stream
+     * @throws DataStoreException if the record could not be created
+     */
+    private DataRecord addChunkedRecord(InputStream input) throws DataStoreException {
+        List<File> temporaries = new ArrayList<File>();
+        List<DataIdentifier> tempIds = new ArrayList<DataIdentifier>();
+        // keeps the stored chunks in use until the manifest is written
+        List<DataIdentifier> chunkIds = new ArrayList<DataIdentifier>();
+        OutputStream output = null;
+        try {
+            int bits = Math.max(1, 31 - Integer.numberOfLeadingZeros(chunkSize));
+            int minLength = Math.max(1, chunkSize / 4);
+            int maxLength = chunkSize * 4;
+            MessageDigest digest = MessageDigest.getInstance(DIGEST);
+            MessageDigest chunkDigest = MessageDigest.getInstance(DIGEST);
+            List<byte[]> digests = new ArrayList<byte[]>();
+            List<Integer> lengths = new ArrayList<Integer>();
+            // the first chunk is only stored once a second one is found
+            File first = null;
+            File temporary = newTemporaryFile(temporaries, tempIds);
+            output = new FileOutputStream(temporary);
+            long length = 0;
+            int chunkLength = 0;
+            long hash = 0;
+            byte[] buffer = new byte[64 * 1024];
+            for (int n = input.read(buffer); n >= 0; n = input.read(buffer)) {
+                digest.update(buffer, 0, n);
+                length += n;
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                    chunkLength++;
+                    if (chunkLength >= maxLength || chunkLength >= minLength
+                            && (hash >>> (64 - bits)) == 0) {
+                        output.write(buffer, start, i + 1 - start);
+                        chunkDigest.update(buffer, start, i + 1 - start);
+                        output.close();
+                        digests.add(chunkDigest.digest());
+                        lengths.add(chunkLength);
+                        if (digests.size() == 1) {
+                            first = temporary;
+                        } else {
+                            if (first != null) {
+                                storeChunk(first, digests.get(0), chunkIds);
+                                first = null;
+                            }
+                            storeChunk(temporary, digests.get(digests.size() - 1), chunkIds);
+                        }
+                        temporary = newTemporaryFile(temporaries, tempIds);
+                        output = new FileOutputStream(temporary);
+                        start = i + 1;
+                        chunkLength = 0;
+                        hash = 0;
+                    }
+                }
+                output.write(buffer, start, n - start);
+                chunkDigest.update(buffer, start, n - start);
+            }
+            output.close();
+            if (chunkLength > 0 || digests.isEmpty()) {
+                digests.add(chunkDigest.digest());
+                lengths.add(chunkLength);
+                if (digests.size() == 1) {
+                    first = temporary;
+                } else {
+                    if (first != null) {
+                        storeChunk(first, digests.get(0), chunkIds);
+                        first = null;
+                    }
+                    storeChunk(temporary, digests.get(digests.size() - 1), chunkIds);
+                }
+            }
+
+            DataIdentifier identifier =
+                    new DataIdentifier(encodeHexString(digest.digest()));
+            DataRecord record;
+            synchronized (this) {
+                usesIdentifier(identifier);
+                File file = getFile(identifier);
+                File manifest = getManifestFile(identifier);
+                if (!file.exists() && manifest.exists()) {
+                    record = new ChunkedDataRecord(this, identifier, manifest);
+                    touchManifest((ChunkedDataRecord) record);
+                } else if (first != null || file.exists()) {
+                    moveOrTouch(first, file);
+                    if (file.length() != length) {
+                        throw new IOException(DIGEST + " collision: " + file);
+                    }
+                    record = new FileDataRecord(this, identifier, file);
+                } else {
+                    File temp = newTemporaryFile(temporaries, tempIds);
+                    ChunkedDataRecord.writeManifest(temp, length, digests, lengths);
+                    moveOrTouch(temp, manifest);
+                    record = new ChunkedDataRecord(this, identifier, manifest);
+                }
+            }
+            return record;
+        } catch (NoSuchAlgorithmException e) {
+            throw new DataStoreException(DIGEST + " not available", e);
+        } catch (IOException e) {
+            throw new DataStoreException("Could not add record", e);
+        } finally {
+            IOUtils.closeQuietly(output);
+            for (File temporary : temporaries) {
+                if (temporary.exists()) {
+                    temporary.delete();
+                }
+            }
+            // this will also make sure that the temporary files
+            // are not garbage collected until here
+            for (DataIdentifier tempId : tempIds) {
+                inUse.remove(tempId);
+            }
+        }
+    }
+
+    /**
+     * Moves a chunk file in place, or updates the modified date of the chunk
+     * if it already exists. The chunk is marked in use, so that the garbage
+     * collection keeps it while the record is being added.
+     *
+     * @param temporary the temporary file with the chunk
+     * @param digest the digest of the chunk
+     * @param chunkIds the list to add the identifier of the chunk to
+     * @throws IOException if the file cannot be moved
+     * @throws DataStoreException if the modified date cannot be set
+     */
+    private void storeChunk(File temporary, byte[] digest, List<DataIdentifier> chunkIds)
+            throws IOException, DataStoreException {
+        String name = encodeHexString(digest);
+        DataIdentifier chunkId = new DataIdentifier(name);
+        chunkIds.add(chunkId);
+        File file = getChunkFile(name);
+        synchronized (this) {
+            usesIdentifier(chunkId);
+            moveOrTouch(temporary, file);
+        }
+    }
+
+    /**
+     * Moves a temporary file in place if the target does not exist yet, or
+     * updates the modified date of the target otherwise. Must be called while
+     * holding the lock of this data store.
+     *
+     * @param temporary the temporary file, or <code>null</code> if the
+     *                  target is known to exist
+     * @param file the target file
+     * @return <code>true</code> if the temporary file was moved
+     * @throws IOException if the file cannot be moved
+     * @throws DataStoreException if the modified date cannot be set
+     */
+    private boolean moveOrTouch(File temporary, File file)
+            throws IOException, DataStoreException {
+        if (!file.exists() && temporary != null) {
+            File parent = file.getParentFile();
+            parent.mkdirs();
+            if (temporary.renameTo(file)) {
+                return true;
+            }
+            throw new IOException(
+                    "Can not rename " + temporary.getAbsolutePath()
+                    + " to " + file.getAbsolutePath()
+                    + " (media read only?)");
+        }
+        long now = System.currentTimeMillis();
+        if (getLastModified(file) < now + ACCESS_TIME_RESOLUTION) {
+            setLastModified(file, now + ACCESS_TIME_RESOLUTION);
+        }
+        return false;
+    }
+
+    /**
+     * Updates the modified date of a manifest and of all its chunks, so that
+     * the garbage collection keeps them. Must be called while holding the
+     * lock of this data store.
+     *
+     * @param record the chunked record
+     * @throws DataStoreException if the manifest cannot be read
+     */
+    private void touchManifest(ChunkedDataRecord record) throws DataStoreException {
+        long time = System.currentTimeMillis() + ACCESS_TIME_RESOLUTION;
+        for (File chunk : record.readChunks()) {
+            if (chunk.exists()) {
+                setLastModified(chunk, time);
+            }
+        }
+        setLastModified(record.getManifest(), time);
+    }
+
+    /**
+     * Returns the manifest file of a chunked record.
+     *
+     * @param identifier data identifier
+     * @return manifest file
+     */
+    private File getManifestFile(DataIdentifier identifier) {
+        File file = getFile(identifier);
+        return new File(file.getParentFile(), file.getName() + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * Returns the file of a chunk, using the same directory structure as
+     * for the records below the <code>chunks</code> directory.
+     *
+     * @param digest the hex encoded digest of the chunk
+     * @return chunk file
+     */
+    File getChunkFile(String digest) {
+        File file = new File(directory, CHUNKS);
+        file = new File(file, digest.substring(0, 2));
+        file = new File(file, digest.substring(2, 4));
+        file = new File(file, digest.substring(4, 6));
+        return new File(file, digest);
+    }
+
     /**
      * Returns the identified file. This method implements the pattern
      * used to avoid problems with too many files in a single directory.
@@ -271,6 +549,25 @@ public class FileDataStore extends AbstractDataStore
         return File.createTempFile(TMP, null, directory);
     }
 
+    /**
+     * Returns a new temporary file that is protected from the garbage
+     * collection until its identifier is removed from the in-use set.
+     *
+     * @param temporaries the list to add the file to
+     * @param tempIds the list to add the identifier of the file to
+     * @return temporary file
+     * @throws IOException
+     */
+    private File newTemporaryFile(List<File> temporaries, List<DataIdentifier> tempIds)
+            throws IOException {
+        File temporary = newTemporaryFile();
+        temporaries.add(temporary);
+        DataIdentifier tempId = new DataIdentifier(temporary.getName());
+        tempIds.add(tempId);
+        usesIdentifier(tempId);
+        return temporary;
+    }
+
     public void updateModifiedDateOnAccess(long before) {
         minModifiedDate = before;
     }
@@ -279,6 +576,11 @@ public class FileDataStore extends AbstractDataStore
 			throws DataStoreException {
         File file = getFile(identifier);
         synchronized (this) {
+            if (!file.exists()) {
+                // the chunks are deleted by deleteAllOlderThan or
+                // deleteUnusedData
+                file = getManifestFile(identifier);
+            }
             if (file.exists()) {
                 if (file.delete()) {
                     deleteEmptyParentDirs(file);
@@ -289,6 +591,31 @@ public class FileDataStore extends AbstractDataStore
         }
     }
 
+    public boolean deleteRecordIfOlderThan(DataIdentifier identifier, long min)
+            throws DataStoreException {
+        File file = getFile(identifier);
+        synchronized (this) {
+            if (inUse.containsKey(identifier)) {
+                return false;
+            }
+            if (!file.exists()) {
+                file = getManifestFile(identifier);
+                if (!file.exists()) {
+                    return false;
+                }
+            }
+            if (getLastModified(file) >= min) {
+                return false;
+            }
+            if (!file.delete()) {
+                log.warn("Failed to delete old file " + file.getAbsolutePath());
+                return false;
+            }
+            deleteEmptyParentDirs(file);
+            return true;
+        }
+    }
+
     private void deleteEmptyParentDirs(File file) {
         File parent = file.getParentFile();
         try {
@@ -315,15 +642,86 @@ public class FileDataStore extends AbstractDataStore
 
     public int deleteAllOlderThan(long min) {
         int count = 0;
+        File chunks = null;
         for (File file : directory.listFiles()) {
-            if (file.isDirectory()) { // skip top-level files
+            if (file.getName().equals(CHUNKS)) {
+                chunks = file;
+            } else if (file.isDirectory()) { // skip top-level files
                 count += deleteOlderRecursive(file, min);
             }
         }
+        if (chunks != null) {
+            deleteUnusedChunks(chunks, min);
+        }
         return count;
     }
 
+    public void deleteUnusedData(long min) {
+        File chunks = new File(directory, CHUNKS);
+        if (chunks.isDirectory()) {
+            deleteUnusedChunks(chunks, min);
+        }
+    }
+
+    /**
+     * Deletes the chunks that are not listed in any manifest and were last
+     * modified before the given time. The manifests that were not deleted
+     * are in use, were modified or accessed since min, or are being added;
+     * the chunks of the latter are touched and in use.
+     *
+     * @param chunks the chunk directory
+     * @param min the minimum last modified date of the chunks to keep
+     */
+    private void deleteUnusedChunks(File chunks, long min) {
+        Set<String> used = new HashSet<String>();
+        if (listUsedChunks(directory, used)) {
+            deleteOlderRecursive(chunks, min, used);
+        }
+    }
+
+    /**
+     * Adds the names of the chunks of all manifests below the given
+     * directory to a set.
+     *
+     * @param file the directory
+     * @param used the set of chunk names
+     * @return false if a manifest could not be read
+     */
+    private boolean listUsedChunks(File file, Set<String> used) {
+        File[] list = file.listFiles();
+        if (list == null) {
+            return true;
+        }
+        for (File f : list) {
+            if (f.isDirectory()) {
+                if (!f.getName().equals(CHUNKS) && !listUsedChunks(f, used)) {
+                    return false;
+                }
+            } else if (f.getName().endsWith(MANIFEST_SUFFIX)) {
+                try {
+                    ChunkedDataRecord record = new ChunkedDataRecord(
+                            this, new DataIdentifier(getIdentifierName(f)), f);
+                    for (File chunk : record.readChunks()) {
+                        used.add(chunk.getName());
+                    }
+                } catch (DataStoreException e) {
+                    if (f.exists()) {
+                        log.warn("Failed to read manifest " + f.getAbsolutePath()
+                                + "; chunks not deleted", e);
+                        return false;
+                    }
+                    // deleted concurrently
+                }
+            }
+        }
+        return true;
+    }
+
     private int deleteOlderRecursive(File file, long min) {
+        return deleteOlderRecursive(file, min, null);
+    }
+
+    private int deleteOlderRecursive(File file, long min, Set<String> keep) {
         int count = 0;
         if (file.isFile() && file.exists() && file.canWrite()) {
             synchronized (this) {
@@ -335,8 +733,9 @@ public class FileDataStore extends AbstractDataStore
                     // don't delete the file, since the lastModified date is uncertain
                     lastModified = min;
                 }
-                if (lastModified < min) {
-                    DataIdentifier id = new DataIdentifier(file.getName());
+                if (lastModified < min
+                        && (keep == null || !keep.contains(file.getName()))) {
+                    DataIdentifier id = new DataIdentifier(getIdentifierName(file));
                     if (!inUse.containsKey(id)) {
                         if (log.isInfoEnabled()) {
                             log.info("Deleting old file " + file.getAbsolutePath() +
@@ -354,7 +753,7 @@ public class FileDataStore extends AbstractDataStore
             File[] list = file.listFiles();
             if (list != null) {
                 for (File f: list) {
-                    count += deleteOlderRecursive(f, min);
+                    count += deleteOlderRecursive(f, min, keep);
                 }
             }
 
@@ -386,24 +785,39 @@ public class FileDataStore extends AbstractDataStore
     public Iterator<DataIdentifier> getAllIdentifiers() {
         ArrayList<File> files = new ArrayList<File>();
         for (File file : directory.listFiles()) {
-            if (file.isDirectory()) { // skip top-level files
+            // skip top-level files and chunks
+            if (file.isDirectory() && !file.getName().equals(CHUNKS)) {
                 listRecursive(files, file);
             }
         }
 
         ArrayList<DataIdentifier> identifiers = new ArrayList<DataIdentifier>();
         for (File f: files) {
-            String name = f.getName();
-            identifiers.add(new DataIdentifier(name));
+            identifiers.add(new DataIdentifier(getIdentifierName(f)));
         }
         log.debug("Found " + identifiers.size() + " identifiers.");
         return identifiers.iterator();
     }
 
+    /**
+     * Returns the name of the identifier of a record file.
+     */
+    private static String getIdentifierName(File file) {
+        String name = file.getName();
+        if (name.endsWith(MANIFEST_SUFFIX)) {
+            name = name.substring(0, name.length() - MANIFEST_SUFFIX.length());
+        }
+        return name;
+    }
+
     public void clearInUse() {
         inUse.clear();
     }
 
+    public boolean isInUse(DataIdentifier identifier) {
+        return inUse.containsKey(identifier);
+    }
+
     /**
      * Get the name of the directory where this data store keeps the files.
      *
@@ -435,6 +849,21 @@ public class FileDataStore extends AbstractDataStore
         this.minRecordLength = minRecordLength;
     }
 
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the average chunk size. Binary streams are split into chunks of
+     * about this size if it is greater than zero. The default is 0, which
+     * stores each binary stream as a single file.
+     *
+     * @param chunkSize the average chunk size in bytes
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
     public void close() {
         // nothing to do
     }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+/**
+ * A DataStore that implements this interface can be swept record by record
+ * by the data store garbage collector, for example after a scan that only
+ * collected the referenced identifiers. The garbage collector uses it
+ * instead of {@link DataStore#deleteAllOlderThan(long)}.
+ */
+public interface GarbageCollectionAware {
+
+    /**
+     * Returns whether the record has been used since the in-use set was last
+     * cleared, or is being added. Such records are kept by
+     * {@link DataStore#deleteAllOlderThan(long)} and
+     * {@link #deleteRecordIfOlderThan(DataIdentifier, long)}.
+     *
+     * @param identifier
+     *            data identifier
+     * @return true if the record is in use
+     */
+    boolean isInUse(DataIdentifier identifier);
+
+    /**
+     * Deletes a single DataRecord if it is not in use and was last modified
+     * before the given time. The checks and the deletion are atomic with
+     * respect to adding, accessing and deleting records of this data store,
+     * so a record that is added again or accessed concurrently is kept.
+     * Reading the last modified date does not update it.
+     *
+     * @param identifier
+     *            data identifier
+     * @param min
+     *            the minimum last modified date of the records to keep
+     * @return true if the record has been deleted
+     * @throws DataStoreException
+     *             if the data store could not be accessed
+     */
+    boolean deleteRecordIfOlderThan(DataIdentifier identifier, long min)
+            throws DataStoreException;
+
+    /**
+     * Deletes the data that no longer belongs to any record and was last
+     * modified before the given time, for example the chunks of deleted
+     * records. Called once after the records were swept with
+     * {@link #deleteRecordIfOlderThan(DataIdentifier, long)}.
+     *
+     * @param min
+     *            the minimum last modified date of the data to keep
+     * @throws DataStoreException
+     *             if the data store could not be accessed
+     */
+    void deleteUnusedData(long min) throws DataStoreException;
+
+}
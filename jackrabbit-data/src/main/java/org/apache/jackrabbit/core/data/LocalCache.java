@@ -17,16 +17,23 @@
 
 package org.apache.jackrabbit.core.data;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -38,10 +45,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class implements a LRU cache used by {@link CachingDataStore}. If cache
- * size exceeds limit, this cache goes in purge mode. In purge mode any
- * operation to cache is no-op. After purge cache size would be less than
- * cachePurgeResizeFactor * maximum size.
+ * This class implements a size and frequency aware cache used by
+ * {@link CachingDataStore}. Entries are kept in two segments: new entries are
+ * admitted to the probation segment and are promoted to the protected segment
+ * when they are accessed again. If the cache size exceeds
+ * cachePurgeTrigFactor * maximum size, entries are evicted incrementally by
+ * the threads storing into the cache until the size is less than
+ * cachePurgeResizeFactor * maximum size. Victims are taken from the least
+ * recently used entries of the probation segment first, preferring large
+ * entries that were rarely accessed. The cache stays available while entries
+ * are evicted.
+ * <p>
+ * The cache entries are written to {@link #METADATA_FILE} in the cache
+ * directory when the cache is closed, and read back on startup instead of
+ * scanning the cache directory.
  */
 public class LocalCache {
 
@@ -50,15 +67,42 @@ public class LocalCache {
      */
     static final Logger LOG = LoggerFactory.getLogger(LocalCache.class);
 
+    /**
+     * Name of the file in the cache directory the cache entries are
+     * persisted to.
+     */
+    static final String METADATA_FILE = "localcache.index";
+
+    /**
+     * Magic number at the start of the {@link #METADATA_FILE}.
+     */
+    private static final int METADATA_MAGIC = 0x4a524c43;
+
+    /**
+     * Number of least recently used entries of a segment that are considered
+     * when selecting the next entry to evict.
+     */
+    static final int EVICTION_SAMPLE_SIZE = 8;
+
+    /**
+     * Maximum number of entries evicted by a single store operation.
+     */
+    static final int EVICTION_BATCH_SIZE = 16;
+
+    /**
+     * Share of the maximum cache size used by the protected segment.
+     */
+    static final double PROTECTED_FACTOR = 0.8;
+
     /**
      * The file names of the files that need to be deleted.
      */
     final Set<String> toBeDeleted = new HashSet<String>();
 
     /**
-     * The filename Vs file size LRU cache.
+     * The filename Vs file size cache.
      */
-    LRUCache cache;
+    SegmentedCache cache;
 
     /**
      * The directory where the files are created.
@@ -71,29 +115,31 @@ public class LocalCache {
     private final File tmp;
 
     /**
-     * If true cache is in purgeMode and not available. All operation would be
-     * no-op.
+     * If true, the cache size exceeded cachePurgeTrigSize and entries are
+     * evicted on every store until the size is below cachePurgeResize.
      */
     private volatile boolean purgeMode;
-    
+
     private AsyncUploadCache asyncUploadCache;
-    
+
     private AtomicLong cacheMissCounter = new AtomicLong();
-    
+
     private AtomicLong cacheMissDuration = new AtomicLong();
-    
+
 
     /**
-     * Build LRU cache of files located at 'path'. It uses lastModified property
-     * of file to build LRU cache. If cache size exceeds limit size, this cache
-     * goes in purge mode. In purge mode any operation to cache is no-op.
-     * 
+     * Build cache of files located at 'path'. The cache is built from the
+     * {@link #METADATA_FILE} written when the cache was last closed, or by
+     * scanning 'path' using the lastModified property of the files if the
+     * metadata is not available. If cache size exceeds limit size, entries
+     * are evicted incrementally.
+     *
      * @param path file system path
      * @param tmpPath temporary directory used by cache.
      * @param maxSizeInBytes maximum size of cache.
      * @param cachePurgeTrigFactor factor which triggers cache to purge mode.
      * That is if current size exceed (cachePurgeTrigFactor * maxSizeInBytes), the
-     * cache will go in auto-purge mode.
+     * cache will start evicting entries.
      * @param cachePurgeResizeFactor after cache purge size of cache will be
      * just less (cachePurgeResizeFactor * maxSizeInBytes).
      * @param asyncUploadCache {@link AsyncUploadCache}
@@ -106,20 +152,20 @@ public class LocalCache {
             "cachePurgeTrigFactor =[{}], cachePurgeResizeFactor =[{}],  " +
             "cachePurgeTrigFactorSize =[{}], cachePurgeResizeFactorSize =[{}]",
             new Object[] { cachePurgeTrigFactor, cachePurgeResizeFactor,
-                (cachePurgeTrigFactor * maxSizeInBytes), 
+                (cachePurgeTrigFactor * maxSizeInBytes),
                 (cachePurgeResizeFactor * maxSizeInBytes) });
-        cache = new LRUCache(maxSizeInBytes, cachePurgeTrigFactor, cachePurgeResizeFactor);
+        cache = new SegmentedCache(maxSizeInBytes, cachePurgeTrigFactor, cachePurgeResizeFactor);
         this.asyncUploadCache = asyncUploadCache;
         new Thread(new CacheBuildJob()).start();
     }
 
     /**
-     * Store an item in the cache and return the input stream. If cache is in
-     * purgeMode or file doesn't exists, inputstream from a
+     * Store an item in the cache and return the input stream. If file doesn't
+     * exists and cannot be admitted to the cache, inputstream from a
      * {@link TransientFileFactory#createTransientFile(String, String, File)} is
      * returned. Otherwise inputStream from cached file is returned. This method
      * doesn't close the incoming inputstream.
-     * 
+     *
      * @param fileName the key of cache.
      * @param in {@link InputStream}
      * @return the (new) input stream.
@@ -129,7 +175,7 @@ public class LocalCache {
         fileName = fileName.replace("\\", "/");
         File f = getFile(fileName);
         long length = 0;
-        if (!f.exists() || isInPurgeMode()) {
+        if (!f.exists()) {
             OutputStream out = null;
             File transFile = null;
             try {
@@ -166,7 +212,7 @@ public class LocalCache {
                 fileName);
             cache.put(fileName, f.length());
         }
-        tryPurge();
+        tryPurge(fileName);
         return new LazyFileInputStream(f);
     }
 
@@ -174,7 +220,7 @@ public class LocalCache {
      * Store an item along with file in cache. Cache size is increased by
      * {@link File#length()} If file already exists in cache,
      * {@link File#setLastModified(long)} is updated with current time.
-     * 
+     *
      * @param fileName the key of cache.
      * @param src file to be added to cache.
      */
@@ -226,7 +272,7 @@ public class LocalCache {
                 "file [{}]  exists= [{}] added to local cache, isLastModified [{}]",
                 new Object[] { dest.getAbsolutePath(), dest.exists(),
                     destExists });
-            
+
             cache.put(fileName, dest.length());
             result.setFile(dest);
             if (tryForAsyncUpload) {
@@ -236,12 +282,12 @@ public class LocalCache {
             LOG.info("file [{}] exists= [{}] not added to local cache.",
                 fileName, destExists);
         }
-        tryPurge();
+        tryPurge(fileName);
         return result;
     }
     /**
      * Return the inputstream from from cache, or null if not in the cache.
-     * 
+     *
      * @param fileName name of file.
      * @return  stream or null.
      */
@@ -260,17 +306,18 @@ public class LocalCache {
                 cacheMissCounter.getAndSet(0), diff });
             cacheMissDuration.set(System.currentTimeMillis());
         }
-        
-        // return file in purge mode = true and file present in asyncUploadCache
-        // as asyncUploadCache's files will be not be deleted in cache purge.
-        if (!f.exists() || (isInPurgeMode() && !asyncUploadCache.hasEntry(fileName, false))) {
-            LOG.debug(
-                "getFileIfStored returned: purgeMode=[{}], file=[{}] exists=[{}]",
-                new Object[] { isInPurgeMode(), f.getAbsolutePath(), f.exists() });
+
+        if (!f.exists()) {
+            LOG.debug("getFileIfStored returned: file=[{}] exists=[{}]",
+                f.getAbsolutePath(), f.exists());
+            if (cache.getLength(fileName) != null) {
+                // drop stale entry, for example one read from the metadata file
+                cache.remove(fileName);
+            }
             cacheMissCounter.incrementAndGet();
             return null;
         } else {
-            // touch entry in LRU caches
+            // touch entry in caches
             f.setLastModified(System.currentTimeMillis());
             cache.get(fileName);
             return f;
@@ -280,14 +327,10 @@ public class LocalCache {
     /**
      * Delete file from cache. Size of cache is reduced by file length. The
      * method is no-op if file doesn't exist in cache.
-     * 
+     *
      * @param fileName file name that need to be removed from cache.
      */
     public void delete(String fileName) {
-        if (isInPurgeMode()) {
-            LOG.debug("purgeMode true :delete returned");
-            return;
-        }
         fileName = fileName.replace("\\", "/");
         cache.remove(fileName);
     }
@@ -299,7 +342,7 @@ public class LocalCache {
     public Long getFileLength(String fileName) {
         Long length = null;
         try {
-            length = cache.get(fileName);
+            length = cache.getLength(fileName.replace("\\", "/"));
             if( length == null ) {
                 File f = getFileIfStored(fileName);
                 if (f != null) {
@@ -315,11 +358,13 @@ public class LocalCache {
     /**
      * Close the cache. Cache maintain set of files which it was not able to
      * delete successfully. This method will an attempt to delete all
-     * unsuccessful delete files.
+     * unsuccessful delete files. The cache entries are then persisted to the
+     * {@link #METADATA_FILE}.
      */
     public void close() {
         LOG.debug("close");
         deleteOldFiles();
+        saveMetadata();
     }
 
     /**
@@ -328,8 +373,7 @@ public class LocalCache {
      * @return true if yes else return false.
      */
     private boolean canAdmitFile(final long length) {
-      //order is important here
-        boolean value = !isInPurgeMode() && (cache.canAdmitFile(length));
+        boolean value = cache.canAdmitFile(length);
         if (!value) {
             LOG.debug("cannot admit file of length=[{}] and currentSizeInBytes=[{}] ",
                 length, cache.currentSizeInBytes);
@@ -338,19 +382,20 @@ public class LocalCache {
     }
 
     /**
-     * Return true if cache is in purge mode else return false.
+     * Return true if entries are being evicted because the cache size
+     * exceeded cachePurgeTrigSize.
      */
-    synchronized boolean isInPurgeMode() {
+    boolean isInPurgeMode() {
         return purgeMode;
     }
 
     /**
-     * Set purge mode. If set to true all cache operation will be no-op. If set
-     * to false, all operations to cache are available.
-     * 
+     * Set purge mode. If set to true, every store evicts entries until the
+     * cache size is less than cachePurgeResize.
+     *
      * @param purgeMode purge mode
      */
-    synchronized void setPurgeMode(final boolean purgeMode) {
+    void setPurgeMode(final boolean purgeMode) {
         this.purgeMode = purgeMode;
     }
 
@@ -373,7 +418,7 @@ public class LocalCache {
     /**
      * This method tries to delete a file. If it is not able to delete file due
      * to any reason, it add it toBeDeleted list.
-     * 
+     *
      * @param fileName name of the file which will be deleted.
      * @return true if this method deletes file successfuly else return false.
      */
@@ -408,13 +453,17 @@ public class LocalCache {
         count = Math.min(64 * 1024, count);
         return count;
     }
-    
+
     /**
-     * This method tries purging of local cache. It checks if local cache
-     * has exceeded the defined limit then it triggers purge cache job in a
-     * seperate thread.
+     * This method evicts entries if the local cache has exceeded the defined
+     * limit. At most {@link #EVICTION_BATCH_SIZE} entries are evicted per
+     * call, so that the eviction is spread over the threads storing into the
+     * cache instead of running as one burst.
+     *
+     * @param pinned the file just stored, which is not evicted, or
+     *            <code>null</code>
      */
-    synchronized void tryPurge() {
+    void tryPurge(String pinned) {
         if (!isInPurgeMode()
             && cache.currentSizeInBytes > cache.cachePurgeTrigSize) {
             setPurgeMode(true);
@@ -422,49 +471,186 @@ public class LocalCache {
                 "cache.entries = [{}], currentSizeInBytes=[{}]  exceeds cachePurgeTrigSize=[{}]",
                 new Object[] { cache.size(), cache.currentSizeInBytes,
                     cache.cachePurgeTrigSize });
-            new Thread(new PurgeJob()).start();
-        } else {
-            LOG.debug(
-                "currentSizeInBytes=[{}],cachePurgeTrigSize=[{}], isInPurgeMode =[{}]",
-                new Object[] { cache.currentSizeInBytes,
-                    cache.cachePurgeTrigSize, isInPurgeMode() });
+        }
+        if (!isInPurgeMode()) {
+            return;
+        }
+        synchronized (cache) {
+            Set<String> skip = new HashSet<String>();
+            if (pinned != null) {
+                skip.add(pinned);
+            }
+            int count = 0;
+            while (cache.currentSizeInBytes > cache.cachePurgeResize
+                && count < EVICTION_BATCH_SIZE) {
+                String victim = cache.selectVictim(skip);
+                if (victim == null) {
+                    break;
+                }
+                if (cache.remove(victim) != null) {
+                    count++;
+                } else {
+                    skip.add(victim);
+                }
+            }
+            LOG.debug("evicted [{}] files, currentSizeInBytes = [{}]", count,
+                cache.currentSizeInBytes);
+            if (cache.currentSizeInBytes <= cache.cachePurgeResize
+                || count == 0) {
+                setPurgeMode(false);
+            }
+        }
+    }
+
+    /**
+     * Writes the cache entries to the {@link #METADATA_FILE}. The file is
+     * written to the tmp directory first and then renamed.
+     */
+    private void saveMetadata() {
+        File file = new File(directory, METADATA_FILE);
+        File temp = null;
+        DataOutputStream out = null;
+        try {
+            temp = File.createTempFile("localcache", null, tmp);
+            out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)));
+            synchronized (cache) {
+                out.writeInt(METADATA_MAGIC);
+                out.writeInt(cache.size());
+                cache.writeSegment(out, cache.probation, false);
+                cache.writeSegment(out, cache.protectedSegment, true);
+            }
+            out.close();
+            out = null;
+            if ((file.exists() && !file.delete()) || !temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+            temp = null;
+            LOG.info("saved [{}] cache entries to [{}]", cache.size(),
+                file.getAbsolutePath());
+        } catch (IOException e) {
+            LOG.warn("Could not save cache metadata to " + file.getAbsolutePath(), e);
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the cache entries from the {@link #METADATA_FILE}. The file is
+     * deleted afterwards, so that the entries are only used once after the
+     * cache was closed.
+     *
+     * @return true if the entries were read, false if the cache directory
+     *         needs to be scanned
+     */
+    private boolean loadMetadata() {
+        File file = new File(directory, METADATA_FILE);
+        if (!file.exists()) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+            if (in.readInt() != METADATA_MAGIC) {
+                throw new IOException("Not a cache metadata file");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long length = in.readLong();
+                int frequency = in.readInt();
+                boolean isProtected = in.readBoolean();
+                cache.load(name, length, frequency, isProtected);
+            }
+            LOG.info("loaded [{}] cache entries from [{}]", count,
+                file.getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Could not load cache metadata from "
+                + file.getAbsolutePath() + ", scanning cache directory", e);
+            return false;
+        } finally {
+            IOUtils.closeQuietly(in);
+            if (!file.delete()) {
+                LOG.warn("Could not delete [{}]", file.getAbsolutePath());
+            }
         }
     }
 
     /**
-     * A LRU based extension {@link LinkedHashMap}. The key is file name and
-     * value is length of file.
+     * A cache entry.
      */
-    private class LRUCache extends LinkedHashMap<String, Long> {
-        private static final long serialVersionUID = 1L;
+    private static class Entry {
+
+        final long length;
+
+        /**
+         * Number of accesses, halved when the entry is demoted from the
+         * protected segment.
+         */
+        int frequency;
+
+        Entry(long length, int frequency) {
+            this.length = length;
+            this.frequency = frequency;
+        }
+    }
+
+    /**
+     * A segmented cache of file name vs length of file. Both segments are
+     * ordered from the least to the most recently used entry.
+     */
+    class SegmentedCache {
+
+        /**
+         * Entries accessed once since they were admitted or demoted.
+         */
+        final LinkedHashMap<String, Entry> probation;
+
+        /**
+         * Entries accessed more than once.
+         */
+        final LinkedHashMap<String, Entry> protectedSegment;
 
         volatile long currentSizeInBytes;
 
+        long protectedSizeInBytes;
+
         final long maxSizeInBytes;
 
+        final long maxProtectedSizeInBytes;
+
         final long cachePurgeResize;
-        
+
         final long cachePurgeTrigSize;
 
-        LRUCache(final long maxSizeInBytes,
+        SegmentedCache(final long maxSizeInBytes,
                 final double cachePurgeTrigFactor,
                 final double cachePurgeResizeFactor) {
-            super(maxSizeElements(maxSizeInBytes), (float) 0.75, true);
+            int initialCapacity = maxSizeElements(maxSizeInBytes);
+            probation = new LinkedHashMap<String, Entry>(initialCapacity);
+            protectedSegment = new LinkedHashMap<String, Entry>(initialCapacity);
             this.maxSizeInBytes = maxSizeInBytes;
+            this.maxProtectedSizeInBytes = (long) (PROTECTED_FACTOR * maxSizeInBytes);
             this.cachePurgeTrigSize = new Double(cachePurgeTrigFactor
                 * maxSizeInBytes).longValue();
             this.cachePurgeResize = new Double(cachePurgeResizeFactor
                 * maxSizeInBytes).longValue();
         }
 
+        synchronized int size() {
+            return probation.size() + protectedSegment.size();
+        }
+
         /**
-         * Overridden {@link Map#remove(Object)} to delete corresponding file
-         * from file system.
+         * Removes the entry and deletes corresponding file from file system.
+         * Entries with an in progress async upload are not removed.
          */
-        @Override
-        public synchronized Long remove(final Object key) {
-            String fileName = (String) key;
-            fileName = fileName.replace("\\", "/");
+        synchronized Long remove(final String fileName) {
             try {
                 // not removing file from local cache, if there is in progress
                 // async upload on it.
@@ -480,130 +666,192 @@ public class LocalCache {
             }
             Long flength = null;
             if (tryDelete(fileName)) {
-                flength = super.remove(key);
+                flength = removeEntry(fileName);
                 if (flength != null) {
                     LOG.debug("cache entry [{}], with size [{}] removed.",
                         fileName, flength);
-                    currentSizeInBytes -= flength.longValue();
                 }
             } else if (!getFile(fileName).exists()) {
                 // second attempt. remove from cache if file doesn't exists
-                flength = super.remove(key);
+                flength = removeEntry(fileName);
                 if (flength != null) {
                     LOG.debug(
                         "file not exists. cache entry [{}], with size [{}] removed.",
                         fileName, flength);
-                    currentSizeInBytes -= flength.longValue();
                 }
             } else {
-                LOG.info("not able to remove cache entry [{}], size [{}]", key,
-                    super.get(key));
+                LOG.info("not able to remove cache entry [{}], size [{}]",
+                    fileName, getLength(fileName));
             }
             return flength;
         }
 
-        @Override
-        public Long put(final String fileName, final Long value) {
-            if( isInPurgeMode()) {
-                LOG.debug("cache is purge mode: put is no-op");
+        /**
+         * Adds an entry to the probation segment, or records an access if
+         * the entry exists.
+         */
+        synchronized Long put(final String fileName, final long length) {
+            Long oldValue = get(fileName);
+            if (oldValue == null) {
+                probation.put(fileName, new Entry(length, 1));
+                currentSizeInBytes += length;
                 return null;
             }
-            synchronized (this) {
-                Long oldValue = cache.get(fileName);
-                if (oldValue == null) {
-                    long flength = value.longValue();
-                    currentSizeInBytes += flength;
-                    return super.put(fileName.replace("\\", "/"), value);
+            toBeDeleted.remove(fileName);
+            return oldValue;
+        }
+
+        /**
+         * Records an access to the entry. An entry of the probation segment
+         * is promoted to the protected segment.
+         *
+         * @return the length of the file, or <code>null</code>
+         */
+        synchronized Long get(final String fileName) {
+            Entry entry = protectedSegment.remove(fileName);
+            if (entry == null) {
+                entry = probation.remove(fileName);
+                if (entry == null) {
+                    return null;
                 }
-                toBeDeleted.remove(fileName);
-                return oldValue;
+                if (entry.length > maxProtectedSizeInBytes / 2) {
+                    // do not let a large file displace the protected segment
+                    entry.frequency++;
+                    probation.put(fileName, entry);
+                    return entry.length;
+                }
+                protectedSizeInBytes += entry.length;
+            }
+            entry.frequency++;
+            protectedSegment.put(fileName, entry);
+            // demote least recently used entries to the probation segment
+            Iterator<Map.Entry<String, Entry>> it = protectedSegment.entrySet().iterator();
+            while (protectedSizeInBytes > maxProtectedSizeInBytes
+                && protectedSegment.size() > 1) {
+                Map.Entry<String, Entry> e = it.next();
+                it.remove();
+                e.getValue().frequency = Math.max(1, e.getValue().frequency / 2);
+                protectedSizeInBytes -= e.getValue().length;
+                probation.put(e.getKey(), e.getValue());
             }
+            return entry.length;
         }
-        
-        @Override
-        public Long get(Object key) {
-            if( isInPurgeMode()) {
-                LOG.debug("cache is purge mode: get is no-op");
-                return null;
+
+        /**
+         * Returns the length of the file without recording an access.
+         */
+        synchronized Long getLength(final String fileName) {
+            Entry entry = protectedSegment.get(fileName);
+            if (entry == null) {
+                entry = probation.get(fileName);
             }
-            synchronized (this) {
-                return super.get(key);
+            return entry == null ? null : entry.length;
+        }
+
+        /**
+         * Adds an entry read from the metadata file or found by scanning the
+         * cache directory. Existing entries are not changed.
+         */
+        synchronized void load(final String fileName, final long length,
+                final int frequency, final boolean isProtected) {
+            if (getLength(fileName) != null) {
+                return;
+            }
+            Entry entry = new Entry(length, frequency);
+            if (isProtected) {
+                protectedSegment.put(fileName, entry);
+                protectedSizeInBytes += length;
+            } else {
+                probation.put(fileName, entry);
+            }
+            currentSizeInBytes += length;
+        }
+
+        /**
+         * Selects the entry to evict next. The least recently used entries
+         * of the probation segment, or of the protected segment if there are
+         * none, are considered, and the one with the largest size per access
+         * is selected.
+         *
+         * @param skip the file names not to select
+         * @return the file name, or <code>null</code> if there is none
+         */
+        synchronized String selectVictim(final Set<String> skip) {
+            String victim = selectVictim(probation, skip);
+            return victim != null ? victim : selectVictim(protectedSegment, skip);
+        }
+
+        private String selectVictim(final LinkedHashMap<String, Entry> segment,
+                final Set<String> skip) {
+            String victim = null;
+            double maxScore = -1;
+            int count = 0;
+            for (Map.Entry<String, Entry> e : segment.entrySet()) {
+                if (skip.contains(e.getKey())) {
+                    continue;
+                }
+                double score = (double) e.getValue().length / e.getValue().frequency;
+                if (score > maxScore) {
+                    victim = e.getKey();
+                    maxScore = score;
+                }
+                if (++count == EVICTION_SAMPLE_SIZE) {
+                    break;
+                }
             }
+            return victim;
         }
-        
+
         /**
-         * This method check if cache can admit file of given length. 
+         * This method check if cache can admit file of given length.
          * @param length length of file.
          * @return true if cache size + length is less than maxSize.
          */
         synchronized boolean canAdmitFile(final long length) {
-            return cache.currentSizeInBytes + length < cache.maxSizeInBytes;
+            return currentSizeInBytes + length < maxSizeInBytes;
         }
-    }
 
-    /**
-     * This class performs purging of local cache. It implements
-     * {@link Runnable} and should be invoked in a separate thread.
-     */
-    private class PurgeJob implements Runnable {
-        public PurgeJob() {
-            // TODO Auto-generated constructor stub
+        void writeSegment(final DataOutputStream out,
+                final LinkedHashMap<String, Entry> segment,
+                final boolean isProtected) throws IOException {
+            for (Map.Entry<String, Entry> e : segment.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().length);
+                out.writeInt(e.getValue().frequency);
+                out.writeBoolean(isProtected);
+            }
         }
 
-        /**
-         * This method purges local cache till its size is less than
-         * cacheResizefactor * maxSize
-         */
-        @Override
-        public void run() {
-            try {
-                synchronized (cache) {
-                    // first try to delete toBeDeleted files
-                    int initialSize = cache.size();
-                    LOG.info(" cache purge job started. initial cache entries = [{}]", initialSize);
-                    for (String fileName : new ArrayList<String>(toBeDeleted)) {
-                        cache.remove(fileName);
-                    }
-                    int skipCount = 0;
-                    Iterator<Map.Entry<String, Long>> itr = cache.entrySet().iterator();
-                    while (itr.hasNext()) {
-                        Map.Entry<String, Long> entry = itr.next();
-                        if (entry.getKey() != null) {
-                            if (cache.currentSizeInBytes > cache.cachePurgeResize) {
-                                if (cache.remove(entry.getKey()) != null) {
-                                    itr = cache.entrySet().iterator();
-                                    for (int i = 0; i < skipCount && itr.hasNext(); i++) {
-                                        itr.next();
-                                    }
-                                } else {
-                                    skipCount++;
-                                }
-                            } else {
-                                break;
-                            }
-                        }
-                    }
-                    LOG.info(
-                        " cache purge job completed: cleaned [{}] files and currentSizeInBytes = [{}]",
-                        (initialSize - cache.size()), cache.currentSizeInBytes);
-                }
-            } catch (Exception e) {
-                LOG.error("error in purge jobs:", e);
-            } finally {
-                setPurgeMode(false);
+        private Long removeEntry(final String fileName) {
+            Entry entry = protectedSegment.remove(fileName);
+            if (entry != null) {
+                protectedSizeInBytes -= entry.length;
+            } else {
+                entry = probation.remove(fileName);
             }
+            if (entry == null) {
+                return null;
+            }
+            currentSizeInBytes -= entry.length;
+            return entry.length;
         }
     }
-    
+
     /**
-     * This class implements {@link Runnable} interface to build LRU cache
-     * asynchronously.
+     * This class implements {@link Runnable} interface to build the cache
+     * asynchronously, from the {@link #METADATA_FILE} if available and by
+     * scanning the cache directory otherwise.
      */
     private class CacheBuildJob implements Runnable {
 
-        
+
         public void run() {
             long startTime = System.currentTimeMillis();
+            if (loadMetadata()) {
+                LOG.info("Time to load cache of [{}] files took [{}] sec",
+                    cache.size(), ((System.currentTimeMillis() - startTime) / 1000));
+                return;
+            }
             ArrayList<File> allFiles = new ArrayList<File>();
             Iterator<File> it = FileUtils.iterateFiles(directory, null, true);
             while (it.hasNext()) {
@@ -613,6 +861,8 @@ public class LocalCache {
             long t1 = System.currentTimeMillis();
             LOG.debug("Time taken to recursive [{}] took [{}] sec",
                 allFiles.size(), ((t1 - startTime) / 1000));
+            // add least recently used files first
+            sortByLastModified(allFiles);
 
             String dataStorePath = directory.getAbsolutePath();
             // convert to java path format
@@ -621,7 +871,7 @@ public class LocalCache {
 
             String tmpPath = tmp.getAbsolutePath();
             tmpPath = tmpPath.replace("\\", "/");
-            LOG.debug("tmp path [{}]", tmpPath); 
+            LOG.debug("tmp path [{}]", tmpPath);
             long time = System.currentTimeMillis();
             int count = 0;
             for (File f : allFiles) {
@@ -643,7 +893,11 @@ public class LocalCache {
                     if (name.startsWith("/") || name.startsWith("\\")) {
                         name = name.substring(1);
                     }
-                    store(name, f);
+                    if (METADATA_FILE.equals(name)) {
+                        continue;
+                    }
+                    cache.load(name, f.length(), 1, false);
+                    tryPurge(null);
                     long now = System.currentTimeMillis();
                     if (now > time + 10000) {
                         LOG.info("Processed {" + (count) + "}/{" + allFiles.size() + "}");
@@ -660,6 +914,19 @@ public class LocalCache {
             LOG.info("Time to build cache of  [{}] files took [{}] sec",
                 allFiles.size(), ((t3 - startTime) / 1000));
         }
+
+        private void sortByLastModified(List<File> files) {
+            final Map<File, Long> lastModified = new LinkedHashMap<File, Long>();
+            for (File f : files) {
+                lastModified.put(f, f.lastModified());
+            }
+            Collections.sort(files, new Comparator<File>() {
+                public int compare(File f1, File f2) {
+                    long t1 = lastModified.get(f1);
+                    long t2 = lastModified.get(f2);
+                    return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+                }
+            });
+        }
     }
 }
-
@@ -95,6 +95,10 @@ import org.slf4j.LoggerFactory;
  * day). This means the delayed delete from the primary data store will be
  * processed after one day.</li>
  * </ul>
+ * <p>
+ * Records can also be moved between the data stores independent of their
+ * age, see {@link #moveToArchive(DataIdentifier)} and
+ * {@link #copyToPrimary(DataIdentifier)}.
  */
 public class MultiDataStore implements DataStore {
 
@@ -481,6 +485,89 @@ public class MultiDataStore implements DataStore {
         this.delayedDeleteSleep = delayedDeleteSleep;
     }
 
+    /**
+     * Moves a data record from the primary data store to the archive data
+     * store, independent of its age.
+     *
+     * @param identifier data identifier
+     * @return true if the record was moved, false if it is not stored in the
+     *         primary data store
+     * @throws DataStoreException if the record could not be moved
+     */
+    public boolean moveToArchive(DataIdentifier identifier) throws DataStoreException {
+        DataRecord dataRecord = primaryDataStore.getRecordIfStored(identifier);
+        if (dataRecord == null) {
+            return false;
+        }
+        moveDataTaskLock.lock();
+        try {
+            return moveDataRecord(identifier, dataRecord);
+        } finally {
+            moveDataTaskLock.unlock();
+        }
+    }
+
+    /**
+     * Copies a data record from the archive data store to the primary data
+     * store, so that it is read from the primary data store again. The
+     * record is moved back to the archive data store by the MoveDataTask
+     * once it is older than maxAge.
+     *
+     * @param identifier data identifier
+     * @return true if the record was copied, false if it is already stored
+     *         in the primary data store or not stored at all
+     * @throws DataStoreException if the record could not be copied
+     */
+    public boolean copyToPrimary(DataIdentifier identifier) throws DataStoreException {
+        if (primaryDataStore.getRecordIfStored(identifier) != null) {
+            return false;
+        }
+        DataRecord dataRecord = archiveDataStore.getRecordIfStored(identifier);
+        if (dataRecord == null) {
+            return false;
+        }
+        InputStream in = dataRecord.getStream();
+        try {
+            primaryDataStore.addRecord(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return true;
+    }
+
+    /**
+     * Moves a data record from the primary data store to the archive data
+     * store. If delayedDelete is enabled, the record is deleted from the
+     * primary data store later.
+     *
+     * @param identifier data identifier
+     * @param dataRecord the record of the primary data store
+     * @return true if the record was moved
+     * @throws DataStoreException if the record could not be moved
+     */
+    private boolean moveDataRecord(DataIdentifier identifier, DataRecord dataRecord)
+            throws DataStoreException {
+        InputStream in = dataRecord.getStream();
+        try {
+            if (delayedDelete) {
+                // first write it to the file and then add it to
+                // the archive data store ...
+                if (!writeDelayedDataIdentifier(identifier)) {
+                    return false;
+                }
+                archiveDataStore.addRecord(in);
+            } else {
+                // first add it and then delete it .. not really
+                // atomic ...
+                archiveDataStore.addRecord(in);
+                ((MultiDataStoreAware) primaryDataStore).deleteRecord(identifier);
+            }
+            return true;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
     /**
      * Writes the given DataIdentifier to the delayedDeletedFile.
      * 
@@ -587,18 +674,7 @@ public class MultiDataStore implements DataStore {
                     if ((dataRecord.getLastModified() + maxAgeMilli) < now) {
                         try {
                             moveDataTaskLock.lock();
-                            if (delayedDelete) {
-                                // first write it to the file and then add it to
-                                // the archive data store ...
-                                if (writeDelayedDataIdentifier(identifier)) {
-                                    archiveDataStore.addRecord(dataRecord.getStream());
-                                    moved++;
-                                }
-                            } else {
-                                // first add it and then delete it .. not really
-                                // atomic ...
-                                archiveDataStore.addRecord(dataRecord.getStream());
-                                ((MultiDataStoreAware) primaryDataStore).deleteRecord(identifier);
+                            if (moveDataRecord(identifier, dataRecord)) {
                                 moved++;
                             }
                             if (moved % 100 == 0) {
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.InputStream;
+
+/**
+ * A {@link Backend} that transfers records in parts. Large files passed to
+ * {@link #write(DataIdentifier, java.io.File)} are split into parts that the
+ * backend uploads concurrently, and any part of a record can be read, so
+ * that {@link CachingDataStore} can download large records in concurrent
+ * ranges.
+ */
+public interface MultipartBackend extends Backend {
+
+    /**
+     * Return inputstream of a part of the record identified by identifier.
+     * 
+     * @param identifier
+     *            identifier of record.
+     * @param offset
+     *            position of the first byte of the part.
+     * @param length
+     *            number of bytes of the part.
+     * @return inputstream of the part of the record.
+     * @throws DataStoreException
+     *             if record not found or any error.
+     */
+    InputStream read(DataIdentifier identifier, long offset, long length)
+            throws DataStoreException;
+}
@@ -102,7 +102,7 @@ import javax.sql.DataSource;
  * &lt;param name="tablePrefix" value="ds.">
  */
 public class DbDataStore extends AbstractDataStore
-        implements DatabaseAware, MultiDataStoreAware {
+        implements DatabaseAware, MultiDataStoreAware, GarbageCollectionAware {
 
     /**
      * The default value for the minimum object size.
@@ -110,8 +110,9 @@ public class DbDataStore extends AbstractDataStore
     public static final int DEFAULT_MIN_RECORD_LENGTH = 100;
 
     /**
-     * Write to a temporary file to get the length (slow, but always works).
-     * This is the default setting.
+     * Write to a temporary file to get the length and the digest (slow, but
+     * always works). The row is then inserted with its final identifier, or
+     * not at all if it already exists. This is the default setting.
      */
     public static final String STORE_TEMP_FILE = "tempFile";
 
@@ -216,6 +217,13 @@ public class DbDataStore extends AbstractDataStore
     protected String insertTempSQL =
         "INSERT INTO ${tablePrefix}${table} VALUES(?, 0, ?, NULL)";
 
+    /**
+     * This is the property 'insert'
+     * in the [databaseType].properties file, initialized with the default value.
+     */
+    protected String insertSQL =
+        "INSERT INTO ${tablePrefix}${table} VALUES(?, ?, ?, ?)";
+
     /**
      * This is the property 'updateData'
      * in the [databaseType].properties file, initialized with the default value.
@@ -252,6 +260,13 @@ public class DbDataStore extends AbstractDataStore
     protected String deleteOlderSQL =
         "DELETE FROM ${tablePrefix}${table} WHERE LAST_MODIFIED<?";
 
+    /**
+     * This is the property 'deleteIfOlder'
+     * in the [databaseType].properties file, initialized with the default value.
+     */
+    protected String deleteIfOlderSQL =
+        "DELETE FROM ${tablePrefix}${table} WHERE ID=? AND LAST_MODIFIED<?";
+
     /**
      * This is the property 'selectMeta'
      * in the [databaseType].properties file, initialized with the default value.
@@ -310,6 +325,9 @@ public class DbDataStore extends AbstractDataStore
     }
 
     public DataRecord addRecord(InputStream stream) throws DataStoreException {
+        if (STORE_TEMP_FILE.equals(storeStream)) {
+            return addRecordUsingTempFile(stream);
+        }
         InputStream fileInput = null;
         String tempId = null;
         ResultSet rs = null;
@@ -349,10 +367,6 @@ public class DbDataStore extends AbstractDataStore
                 wrapper = new StreamWrapper(in, -1);
             } else if (STORE_SIZE_MAX.equals(storeStream)) {
                 wrapper = new StreamWrapper(in, Integer.MAX_VALUE);
-            } else if (STORE_TEMP_FILE.equals(storeStream)) {
-                File temp = moveToTempFile(in);
-                long length = temp.length();
-                wrapper = new StreamWrapper(new ResettableTempFileInputStream(temp), length);
             } else {
                 throw new DataStoreException("Unsupported stream store algorithm: " + storeStream);
             }
@@ -428,6 +442,57 @@ public class DbDataStore extends AbstractDataStore
         }
     }
 
+    /**
+     * Adds a record by copying the stream to a temporary file first. The
+     * digest is computed while copying, so that the row is inserted with its
+     * final identifier in a single statement, without a temporary row and
+     * without updating the key afterwards. If a row with the same identifier
+     * already exists, the data is not written to the database at all.
+     *
+     * @param stream the input stream
+     * @return the data record
+     * @throws DataStoreException if the record could not be added
+     */
+    private DataRecord addRecordUsingTempFile(InputStream stream) throws DataStoreException {
+        File temp = null;
+        try {
+            MessageDigest digest = getDigest();
+            temp = moveToTempFile(new DigestInputStream(stream, digest));
+            long length = temp.length();
+            DataIdentifier identifier =
+                    new DataIdentifier(encodeHexString(digest.digest()));
+            usesIdentifier(identifier);
+            long lastModified = touchExisting(length, identifier, null);
+            if (lastModified < 0) {
+                lastModified = System.currentTimeMillis();
+                StreamWrapper wrapper = new StreamWrapper(
+                        new ResettableTempFileInputStream(temp), length);
+                temp = null;
+                try {
+                    // INSERT INTO DATASTORE VALUES(?, ?, ?, ?)
+                    conHelper.exec(insertSQL,
+                            identifier.toString(), length, lastModified, wrapper);
+                } catch (SQLException e) {
+                    // duplicate key - somebody else concurrently added the
+                    // same record (which is very unlikely)
+                    lastModified = touchExisting(length, identifier, null);
+                    if (lastModified < 0) {
+                        throw e;
+                    }
+                }
+                // the garbage collection could have started while inserting
+                lastModified = touch(identifier, lastModified);
+            }
+            return new DbDataRecord(this, identifier, length, lastModified);
+        } catch (Exception e) {
+            throw convert("Can not insert new record", e);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
     /**
      * Check if a row with this ID already exists.
      *
@@ -435,6 +500,25 @@ public class DbDataStore extends AbstractDataStore
      * @throw DataStoreException if a row exists, but the length is different
      */
     private boolean checkExisting(String tempId, long length, DataIdentifier identifier) throws DataStoreException, SQLException {
+        if (touchExisting(length, identifier, tempId) < 0) {
+            return false;
+        }
+        // row already exists
+        conHelper.exec(deleteSQL, tempId);
+        return true;
+    }
+
+    /**
+     * Check if a row with this ID already exists, and update its modified
+     * date if required.
+     *
+     * @param length the length of the new record
+     * @param identifier the identifier of the new record
+     * @param tempId the temporary identifier of the new record, or null
+     * @return the modified date of the row, or -1 if the row does not exist
+     * @throw DataStoreException if a row exists, but the length is different
+     */
+    private long touchExisting(long length, DataIdentifier identifier, String tempId) throws DataStoreException, SQLException {
         String id = identifier.toString();
         // SELECT LENGTH, LAST_MODIFIED FROM DATASTORE WHERE ID=?
         ResultSet rs = null;
@@ -453,15 +537,12 @@ public class DbDataStore extends AbstractDataStore
                 }
                 DbUtility.close(rs);
                 rs = null;
-                touch(identifier, lastModified);
-                // row already exists
-                conHelper.exec(deleteSQL, tempId);
-                return true;
+                return touch(identifier, lastModified);
             }
         } finally {
             DbUtility.close(rs);
         }
-        return false;
+        return -1;
     }
 
     /**
@@ -496,6 +577,23 @@ public class DbDataStore extends AbstractDataStore
         }
     }
 
+    public synchronized boolean deleteRecordIfOlderThan(DataIdentifier identifier, long min)
+            throws DataStoreException {
+        if (isInUse(identifier)) {
+            return false;
+        }
+        try {
+            // DELETE FROM DATASTORE WHERE ID=? AND LAST_MODIFIED<?
+            return conHelper.update(deleteIfOlderSQL, identifier.toString(), min) > 0;
+        } catch (Exception e) {
+            throw convert("Can not delete record", e);
+        }
+    }
+
+    public void deleteUnusedData(long min) {
+        // records are stored as a whole, nothing else to delete
+    }
+
     public synchronized int deleteAllOlderThan(long min) throws DataStoreException {
         try {
             ArrayList<String> touch = new ArrayList<String>();
@@ -712,11 +810,13 @@ public class DbDataStore extends AbstractDataStore
         tableSQL = getProperty(prop, "table", tableSQL);
         createTableSQL = getProperty(prop, "createTable", createTableSQL);
         insertTempSQL = getProperty(prop, "insertTemp", insertTempSQL);
+        insertSQL = getProperty(prop, "insert", insertSQL);
         updateDataSQL = getProperty(prop, "updateData", updateDataSQL);
         updateLastModifiedSQL = getProperty(prop, "updateLastModified", updateLastModifiedSQL);
         updateSQL = getProperty(prop, "update", updateSQL);
         deleteSQL = getProperty(prop, "delete", deleteSQL);
         deleteOlderSQL = getProperty(prop, "deleteOlder", deleteOlderSQL);
+        deleteIfOlderSQL = getProperty(prop, "deleteIfOlder", deleteIfOlderSQL);
         selectMetaSQL = getProperty(prop, "selectMeta", selectMetaSQL);
         selectAllSQL = getProperty(prop, "selectAll", selectAllSQL);
         selectDataSQL = getProperty(prop, "selectData", selectDataSQL);
@@ -915,6 +1015,15 @@ public class DbDataStore extends AbstractDataStore
         inUse.clear();
     }
 
+    /**
+     * Returns whether a record has been used since the in-use set was
+     * last cleared, or is being added.
+     */
+    public boolean isInUse(DataIdentifier identifier) {
+        return inUse.containsKey(identifier)
+                || temporaryInUse.contains(identifier.toString());
+    }
+
     protected synchronized MessageDigest getDigest() throws DataStoreException {
         try {
             return MessageDigest.getInstance(DIGEST);
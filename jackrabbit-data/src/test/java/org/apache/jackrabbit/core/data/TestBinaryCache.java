@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.api.stats.RepositoryStatistics;
+import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
+
+/**
+ * Test the {@link BinaryCache}.
+ */
+public class TestBinaryCache extends TestCase {
+
+    private File dir;
+
+    private FileDataStore fds;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = new File("target/binarycache-" + new Random().nextInt(99999));
+        fds = new FileDataStore();
+        fds.setPath(dir.getPath());
+        fds.setBinaryCacheSize(10000);
+        fds.setBinaryCacheMaxEntrySize(4000);
+        fds.setBinaryCacheMaxMemoryEntrySize(1000);
+        fds.init(dir.getPath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        fds.close();
+        FileUtils.deleteQuietly(dir);
+    }
+
+    public void testCache() throws Exception {
+        BinaryCache cache = fds.getBinaryCache();
+        assertNotNull(cache);
+        RepositoryStatisticsImpl stats = new RepositoryStatisticsImpl();
+        cache.setRepositoryStatistics(stats);
+
+        byte[] small = randomBytes(500);
+        byte[] medium = randomBytes(3000);
+        byte[] large = randomBytes(5000);
+        DataIdentifier smallId = add(small);
+        DataIdentifier mediumId = add(medium);
+        DataIdentifier largeId = add(large);
+
+        assertNull(cache.getStreamIfCached(smallId));
+        assertContent(small, cache.load(smallId, fds.getRecord(smallId)));
+        assertContent(medium, cache.load(mediumId, fds.getRecord(mediumId)));
+        assertContent(large, cache.load(largeId, fds.getRecord(largeId)));
+        assertEquals(3500, cache.getUsed());
+
+        // served from the heap and from a direct buffer
+        assertContent(small, cache.getStreamIfCached(smallId));
+        assertContent(medium, cache.getStreamIfCached(mediumId));
+        assertContent(medium, cache.getStreamIfCached(mediumId));
+        // too large to be cached
+        assertNull(cache.getStreamIfCached(largeId));
+
+        assertEquals(5, stats.getCounter(
+                RepositoryStatistics.Type.BINARY_CACHE_ACCESS_COUNTER).get());
+        assertEquals(3, stats.getCounter(
+                RepositoryStatistics.Type.BINARY_CACHE_MISS_COUNTER).get());
+        assertEquals(3500, stats.getCounter(
+                RepositoryStatistics.Type.BINARY_CACHE_SIZE_COUNTER).get());
+
+        // the least recently used entries are evicted
+        for (int i = 0; i < 3; i++) {
+            byte[] data = randomBytes(3000);
+            DataIdentifier id = add(data);
+            cache.load(id, fds.getRecord(id));
+            cache.getStreamIfCached(mediumId);
+        }
+        assertTrue(cache.getUsed() <= 10000);
+        assertNull(cache.getStreamIfCached(smallId));
+        assertContent(medium, cache.getStreamIfCached(mediumId));
+    }
+
+    public void testEntryLargerThanCache() throws Exception {
+        // the maximum entry size exceeds the size of the cache
+        BinaryCache cache = new BinaryCache(2000, 4000, 1000);
+        byte[] small = randomBytes(500);
+        byte[] large = randomBytes(3000);
+        DataIdentifier smallId = add(small);
+        DataIdentifier largeId = add(large);
+
+        assertContent(small, cache.load(smallId, fds.getRecord(smallId)));
+        assertContent(large, cache.load(largeId, fds.getRecord(largeId)));
+        assertEquals(500, cache.getUsed());
+        assertNull(cache.getStreamIfCached(largeId));
+        assertContent(small, cache.getStreamIfCached(smallId));
+    }
+
+    private DataIdentifier add(byte[] data) throws Exception {
+        return fds.addRecord(new ByteArrayInputStream(data)).getIdentifier();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random().nextBytes(data);
+        return data;
+    }
+
+    private static void assertContent(byte[] expected, InputStream in)
+            throws Exception {
+        try {
+            assertTrue(Arrays.equals(expected, IOUtils.toByteArray(in)));
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Test {@link CachingFDS} with streaming cache fill and downloads in parts.
+ */
+public class TestCachingFDSStreaming extends TestCachingFDS {
+
+    @Override
+    protected DataStore createDataStore() throws RepositoryException {
+        CachingFDS cacheFDS = new CachingFDS();
+        fsPath = dataStoreDir + "/cachingFds";
+        Properties props = new Properties();
+        props.setProperty(FSBackend.FS_BACKEND_PATH, fsPath);
+        cacheFDS.setProperties(props);
+        cacheFDS.setSecret("12345");
+        cacheFDS.setStreamingCacheFill(true);
+        cacheFDS.setDownloadPartSize(4096);
+        cacheFDS.setDownloadThreads(3);
+        cacheFDS.init(dataStoreDir);
+        return cacheFDS;
+    }
+
+    /**
+     * Test that a record that is not in the local cache is read while it
+     * is downloaded in parts, and then stored in the local cache.
+     */
+    public void testStreamingCacheFill() throws Exception {
+        CachingFDS cacheFDS = (CachingFDS) createDataStore();
+        byte[] data = new byte[100000];
+        randomGen.nextBytes(data);
+        DataRecord rec = cacheFDS.addRecord(new ByteArrayInputStream(data));
+        DataIdentifier identifier = rec.getIdentifier();
+        MultipartBackend backend = (MultipartBackend) cacheFDS.getBackend();
+        // wait for the asynchronous upload
+        for (int i = 0; i < 100 && !(backend.exists(identifier)
+                && backend.getLength(identifier) == data.length); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(data.length, backend.getLength(identifier));
+
+        byte[] part = IOUtils.toByteArray(backend.read(identifier, 5000, 100));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 5000, 5100), part));
+
+        String name = identifier.toString();
+        File cached = new File(dataStoreDir + "/repository/datastore/"
+            + name.substring(0, 2) + "/" + name.substring(2, 4) + "/"
+            + name.substring(4, 6) + "/" + name);
+        assertTrue(cached.delete());
+
+        InputStream in = cacheFDS.getRecord(identifier).getStream();
+        try {
+            assertEquals(60000, in.skip(60000));
+            byte[] tail = IOUtils.toByteArray(in);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(data, 60000, data.length), tail));
+        } finally {
+            in.close();
+        }
+        assertRecord(data, cacheFDS.getRecord(identifier));
+        for (int i = 0; i < 100 && !cached.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(cached.exists());
+        assertEquals(data.length, cached.length());
+        cacheFDS.close();
+    }
+}
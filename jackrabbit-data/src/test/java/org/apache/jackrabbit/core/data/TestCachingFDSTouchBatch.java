@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.util.Properties;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * Test {@link CachingFDS} with batched touches.
+ */
+public class TestCachingFDSTouchBatch extends TestCachingFDS {
+
+    @Override
+    protected DataStore createDataStore() throws RepositoryException {
+        CachingFDS cacheFDS = new CachingFDS();
+        fsPath = dataStoreDir + "/cachingFds";
+        Properties props = new Properties();
+        props.setProperty(FSBackend.FS_BACKEND_PATH, fsPath);
+        cacheFDS.setProperties(props);
+        cacheFDS.setSecret("12345");
+        // long enough that only deleteAllOlderThan and close flush
+        cacheFDS.setTouchBatchInterval(60 * 1000);
+        cacheFDS.setTouchBatchSize(2);
+        cacheFDS.init(dataStoreDir);
+        return cacheFDS;
+    }
+
+    /**
+     * Test that records read while the garbage collector is running are
+     * touched in the backend before records are deleted.
+     */
+    public void testBatchedTouch() throws Exception {
+        CachingFDS cacheFDS = (CachingFDS) createDataStore();
+        Backend backend = cacheFDS.getBackend();
+        DataRecord[] recs = new DataRecord[3];
+        for (int i = 0; i < recs.length; i++) {
+            byte[] data = new byte[dataLength];
+            randomGen.nextBytes(data);
+            recs[i] = cacheFDS.addRecord(new ByteArrayInputStream(data));
+        }
+        // wait for the asynchronous uploads
+        sleep(6000);
+        long updateTime = System.currentTimeMillis();
+        cacheFDS.updateModifiedDateOnAccess(updateTime);
+        sleep(1000);
+
+        for (int i = 0; i < 2; i++) {
+            DataIdentifier identifier = recs[i].getIdentifier();
+            // reading twice is batched once
+            cacheFDS.getRecord(identifier);
+            cacheFDS.getRecord(identifier);
+            assertTrue(backend.getLastModified(identifier) < updateTime);
+            assertTrue(cacheFDS.getLastModified(identifier) > updateTime);
+            assertFalse(cacheFDS.confirmDelete(identifier));
+        }
+
+        cacheFDS.clearInUse();
+        assertEquals(1, cacheFDS.deleteAllOlderThan(updateTime));
+        assertNull(cacheFDS.getRecordIfStored(recs[2].getIdentifier()));
+        for (int i = 0; i < 2; i++) {
+            DataIdentifier identifier = recs[i].getIdentifier();
+            assertTrue(backend.getLastModified(identifier) > updateTime);
+            assertTrue(cacheFDS.confirmDelete(identifier));
+        }
+        cacheFDS.close();
+    }
+}
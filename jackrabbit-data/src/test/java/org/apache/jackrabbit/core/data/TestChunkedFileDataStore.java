@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Test cases to test {@link FileDataStore} with content-defined chunking.
+ */
+public class TestChunkedFileDataStore extends TestFileDataStore {
+
+    @Override
+    protected DataStore createDataStore() throws RepositoryException {
+        FileDataStore fds = new FileDataStore();
+        fsPath = dataStoreDir + "/repository/datastore";
+        fds.setPath(fsPath);
+        fds.setChunkSize(4096);
+        fds.init(dataStoreDir);
+        return fds;
+    }
+
+    /**
+     * Test that binaries that differ in a small part share the chunks of
+     * the unchanged parts, and that skipping reads the right data.
+     */
+    public void testSharedChunks() throws Exception {
+        FileDataStore fds = (FileDataStore) createDataStore();
+        byte[] data = new byte[256 * 1024];
+        new Random(1).nextBytes(data);
+        DataRecord rec1 = fds.addRecord(new ByteArrayInputStream(data));
+        assertTrue(rec1 instanceof ChunkedDataRecord);
+        Set<File> chunks1 = new HashSet<File>(Arrays.asList(
+                ((ChunkedDataRecord) rec1).readChunks()));
+
+        byte[] data2 = data.clone();
+        data2[data.length / 2]++;
+        DataRecord rec2 = fds.addRecord(new ByteArrayInputStream(data2));
+        assertFalse(rec1.getIdentifier().equals(rec2.getIdentifier()));
+        assertEquals(data2.length, rec2.getLength());
+        File[] chunks2 = ((ChunkedDataRecord) rec2).readChunks();
+        int shared = 0;
+        for (File chunk : chunks2) {
+            if (chunks1.contains(chunk)) {
+                shared++;
+            }
+        }
+        assertTrue(shared >= chunks2.length - 2);
+
+        File chunkDir = new File(fsPath, "chunks");
+        assertTrue(FileUtils.listFiles(chunkDir, null, true).size()
+                <= chunks1.size() + 2);
+
+        // adding the same binary again returns the same record
+        DataRecord rec3 = fds.addRecord(new ByteArrayInputStream(data2));
+        assertEquals(rec2.getIdentifier(), rec3.getIdentifier());
+        assertRecord(data2, fds.getRecord(rec2.getIdentifier()));
+
+        InputStream in = rec2.getStream();
+        try {
+            int offset = data2.length / 2 - 10;
+            assertEquals(offset, in.skip(offset));
+            byte[] part = new byte[20];
+            IOUtils.readFully(in, part);
+            byte[] expected = new byte[20];
+            System.arraycopy(data2, offset, expected, 0, 20);
+            assertTrue(Arrays.equals(expected, part));
+        } finally {
+            in.close();
+        }
+
+        // small binaries are stored as a single file
+        DataRecord small = fds.addRecord(new ByteArrayInputStream(new byte[100]));
+        assertTrue(small instanceof FileDataRecord);
+        fds.close();
+    }
+
+    /**
+     * Test that the chunks of deleted binaries are garbage collected, while
+     * the chunks of accessed binaries are kept.
+     */
+    public void testDeleteUnusedChunks() throws Exception {
+        FileDataStore fds = (FileDataStore) createDataStore();
+        byte[] data = new byte[64 * 1024];
+        randomGen.nextBytes(data);
+        DataRecord rec1 = fds.addRecord(new ByteArrayInputStream(data));
+        randomGen.nextBytes(data);
+        DataRecord rec2 = fds.addRecord(new ByteArrayInputStream(data));
+        sleep(2000);
+
+        fds.clearInUse();
+        fds.updateModifiedDateOnAccess(System.currentTimeMillis());
+        fds.getRecord(rec2.getIdentifier());
+        assertEquals(1, fds.deleteAllOlderThan(System.currentTimeMillis() - 1));
+
+        assertNull(fds.getRecordIfStored(rec1.getIdentifier()));
+        for (File chunk : ((ChunkedDataRecord) rec2).readChunks()) {
+            assertTrue(chunk.exists());
+        }
+        assertEquals(((ChunkedDataRecord) rec2).readChunks().length,
+                FileUtils.listFiles(new File(fsPath, "chunks"), null, true).size());
+        assertRecord(data, fds.getRecord(rec2.getIdentifier()));
+        fds.close();
+    }
+
+    /**
+     * Test that the chunks of a binary that is in use are kept, even though
+     * neither the manifest nor the chunks were touched.
+     */
+    public void testKeepChunksInUse() throws Exception {
+        FileDataStore fds = (FileDataStore) createDataStore();
+        byte[] data = new byte[64 * 1024];
+        randomGen.nextBytes(data);
+        DataRecord rec = fds.addRecord(new ByteArrayInputStream(data));
+        sleep(2000);
+
+        assertEquals(0, fds.deleteAllOlderThan(System.currentTimeMillis() - 1));
+        for (File chunk : ((ChunkedDataRecord) rec).readChunks()) {
+            assertTrue(chunk.exists());
+        }
+        assertRecord(data, fds.getRecord(rec.getIdentifier()));
+        fds.close();
+    }
+}
@@ -355,6 +355,81 @@ public class TestLocalCache extends TestCase {
         }
     }
 
+    /**
+     * Test that a large, rarely used file is evicted before small files
+     * that are accessed frequently.
+     */
+    public void testEvictLargeRarelyUsedFile() throws Exception {
+        AsyncUploadCache pendingFiles = new AsyncUploadCache();
+        pendingFiles.init(tempDirPath, cacheDirPath, 100);
+        pendingFiles.reset();
+        LocalCache cache = new LocalCache(cacheDirPath, tempDirPath, 1000,
+            0.95, 0.70, pendingFiles);
+        Random random = new Random(12345);
+        Map<String, byte[]> byteMap = new HashMap<String, byte[]>();
+        for (int i = 0; i < 10; i++) {
+            byte[] data = new byte[40];
+            random.nextBytes(data);
+            byteMap.put("s" + i, data);
+            cache.store("s" + i, new ByteArrayInputStream(data));
+            IOUtils.closeQuietly(cache.getIfStored("s" + i));
+        }
+        byte[] data = new byte[450];
+        random.nextBytes(data);
+        cache.store("big", new ByteArrayInputStream(data));
+        for (int i = 10; i < 13; i++) {
+            data = new byte[40];
+            random.nextBytes(data);
+            byteMap.put("s" + i, data);
+            // storing s12 exceeds the trigger size
+            cache.store("s" + i, new ByteArrayInputStream(data));
+        }
+
+        assertNull("big should be null", cache.getIfStored("big"));
+        for (int i = 0; i < 13; i++) {
+            assertEquals(new ByteArrayInputStream(byteMap.get("s" + i)),
+                cache.getIfStored("s" + i));
+        }
+        assertTrue(cache.cache.currentSizeInBytes <= 700);
+        cache.close();
+    }
+
+    /**
+     * Test that the cache entries are restored from the metadata file
+     * written on close.
+     */
+    public void testPersistedMetadata() throws Exception {
+        AsyncUploadCache pendingFiles = new AsyncUploadCache();
+        pendingFiles.init(tempDirPath, cacheDirPath, 100);
+        pendingFiles.reset();
+        LocalCache cache = new LocalCache(cacheDirPath, tempDirPath, 10000,
+            0.95, 0.70, pendingFiles);
+        Random random = new Random(12345);
+        for (int i = 0; i < 10; i++) {
+            byte[] data = new byte[100 + i];
+            random.nextBytes(data);
+            cache.store("a" + i, new ByteArrayInputStream(data));
+        }
+        IOUtils.closeQuietly(cache.getIfStored("a3"));
+        cache.close();
+        File metadata = new File(cacheDirPath, LocalCache.METADATA_FILE);
+        assertTrue(metadata.exists());
+
+        cache = new LocalCache(cacheDirPath, tempDirPath, 10000, 0.95, 0.70,
+            pendingFiles);
+        for (int i = 0; i < 50 && metadata.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse("metadata file should be consumed", metadata.exists());
+        assertEquals(10, cache.cache.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Long.valueOf(100 + i), cache.getFileLength("a" + i));
+        }
+        assertTrue(cache.cache.protectedSegment.containsKey("a3"));
+        assertFalse(cache.cache.protectedSegment.containsKey("a4"));
+        cache.close();
+    }
+
     private class StoreWorker implements Runnable {
         Map<String, byte[]> byteMap;
 
@@ -79,6 +79,12 @@ public class ListenerTracker {
 
     private final TimeSeriesRecorder eventProducerTime = new TimeSeriesRecorder(true);
 
+    private final AtomicLong queuedEvents = new AtomicLong();
+
+    private final AtomicLong queueLag = new AtomicLong();
+
+    private final AtomicLong eventsDropped = new AtomicLong();
+
     final AtomicBoolean userInfoAccessedWithoutExternalsCheck =
             new AtomicBoolean();
 
@@ -141,6 +147,27 @@ public class ListenerTracker {
         queueLength.recordValue(length);
     }
 
+    /**
+     * Applications that queue events per listener should call this to report
+     * the current number of queued events and the age (in milliseconds) of
+     * the oldest of them.
+     * @param events number of queued events
+     * @param lagMillis age of the oldest queued event, or 0 if none is queued
+     */
+    public void recordQueueLag(long events, long lagMillis) {
+        queuedEvents.set(events);
+        queueLag.set(lagMillis);
+    }
+
+    /**
+     * Applications should call this to report events that were not delivered
+     * to the listener because its queue overflowed.
+     * @param count number of dropped events
+     */
+    public void recordEventsDropped(long count) {
+        eventsDropped.addAndGet(count);
+    }
+
     /**
      * Records the number of measured values over the past second and resets
      * the counter. This method should be scheduled to be called once per
@@ -311,6 +338,18 @@ public class ListenerTracker {
             public CompositeData getEventProducerTime() {
                 return asCompositeData(eventProducerTime, "eventProducerTime");
             }
+            @Override
+            public long getQueuedEvents() {
+                return queuedEvents.get();
+            }
+            @Override
+            public long getQueueLagMillis() {
+                return queueLag.get();
+            }
+            @Override
+            public long getEventsDropped() {
+                return eventsDropped.get();
+            }
         };
     }
 
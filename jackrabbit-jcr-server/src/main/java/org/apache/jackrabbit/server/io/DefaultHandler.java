@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.server.io;
 
 import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.api.ChannelBinary;
 import org.apache.jackrabbit.commons.NamespaceHelper;
 import org.apache.jackrabbit.util.ISO9075;
 import org.apache.jackrabbit.util.Text;
@@ -32,6 +33,7 @@ import org.apache.tika.metadata.Metadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jcr.Binary;
 import javax.jcr.Item;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -43,6 +45,7 @@ import javax.jcr.Session;
 import javax.jcr.nodetype.PropertyDefinition;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
@@ -427,7 +430,10 @@ public class DefaultHandler implements IOHandler, PropertyHandler, CopyMoveHandl
 
     /**
      * Checks if the given content node contains a jcr:data property
-     * and spools its value to the output stream of the export context.<br>
+     * and spools its value to the output stream of the export context.
+     * If the binary is stored in a local file and the context is an
+     * {@link ExportContextImpl}, the file channel is passed to the context
+     * instead, which sends the content without copying it.<br>
      * Please note, that subclasses that define a different structure of the
      * content node should create their own
      * {@link  #exportData(ExportContext, boolean, Node) exportData} method.
@@ -440,6 +446,20 @@ public class DefaultHandler implements IOHandler, PropertyHandler, CopyMoveHandl
     protected void exportData(ExportContext context, boolean isCollection, Node contentNode) throws IOException, RepositoryException {
         if (contentNode.hasProperty(JcrConstants.JCR_DATA)) {
             Property p = contentNode.getProperty(JcrConstants.JCR_DATA);
+            if (context instanceof ExportContextImpl) {
+                Binary binary = p.getBinary();
+                try {
+                    if (binary instanceof ChannelBinary) {
+                        FileChannel channel = ((ChannelBinary) binary).getChannel();
+                        if (channel != null) {
+                            ((ExportContextImpl) context).setChannel(channel);
+                            return;
+                        }
+                    }
+                } finally {
+                    binary.dispose();
+                }
+            }
             IOUtil.spool(p.getStream(), context.getOutputStream());
         } // else: stream undefined -> content length was not set
     }
@@ -18,7 +18,9 @@ package org.apache.jackrabbit.server.io;
 
 import org.apache.jackrabbit.webdav.DavConstants;
 import org.apache.jackrabbit.webdav.DavResource;
+import org.apache.jackrabbit.webdav.io.ByteRange;
 import org.apache.jackrabbit.webdav.io.OutputContext;
+import org.apache.jackrabbit.webdav.io.OutputContextImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +30,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -39,6 +42,10 @@ import java.util.Map;
  * file is created, which is deleted as soon as {@link #informCompleted(boolean)}
  * is called on this context. Note however, that the properties and the stream
  * are written to the  <code>OutputContext</code> but upon successful completion.
+ * Instead of writing to the stream, an export handler may also provide the
+ * content as a file channel, which is then sent without a temporary copy.
+ * If the wrapped context is an {@link OutputContextImpl} with a requested
+ * {@link ByteRange}, only the bytes of the range are sent.
  *
  * @see #informCompleted(boolean)
  */
@@ -51,6 +58,7 @@ public class ExportContextImpl extends AbstractExportContext {
 
     private File outFile;
     private OutputStream outStream;
+    private FileChannel channel;
 
     public ExportContextImpl(Item exportRoot, OutputContext outputCtx)
             throws IOException {
@@ -79,6 +87,7 @@ public class ExportContextImpl extends AbstractExportContext {
                 if (outStream != null) {
                     outStream.close();
                 }
+                closeChannel();
                 outStream = new FileOutputStream(outFile);
                 return outStream;
             } catch (IOException e) {
@@ -88,6 +97,19 @@ public class ExportContextImpl extends AbstractExportContext {
         return null;
     }
 
+    /**
+     * Sets a channel of a file whose content is exported instead of the data
+     * written to the output stream. The channel is closed by
+     * {@link #informCompleted(boolean)}.
+     *
+     * @param channel the file channel with the content
+     */
+    public void setChannel(FileChannel channel) {
+        checkCompleted();
+        closeChannel();
+        this.channel = channel;
+    }
+
     /**
      * @see ExportContext#setContentLanguage(String)
      */
@@ -180,23 +202,67 @@ public class ExportContextImpl extends AbstractExportContext {
                     }
                 }
 
-                if (outputCtx.hasStream() && outFile != null) {
+                if (outputCtx.hasStream() && (channel != null || outFile != null)) {
                     OutputStream out = outputCtx.getOutputStream();
                     try {
-                        // make sure the content-length is set
-                        if (!hasContentLength) {
-                            outputCtx.setContentLength(outFile.length());
+                        FileChannel in = channel;
+                        if (in == null) {
+                            in = new FileInputStream(outFile).getChannel();
+                        }
+                        try {
+                            spool(in, out, hasContentLength);
+                        } finally {
+                            in.close();
                         }
-                        FileInputStream in = new FileInputStream(outFile);
-                        IOUtil.spool(in, out);
                     } catch (IOException e) {
                         log.error(e.toString());
                     }
                 }
             }
         }
+        closeChannel();
         if (outFile != null) {
             outFile.delete();
         }
     }
+
+    /**
+     * Writes the content of the channel, or the requested range of it, to
+     * the output stream.
+     */
+    private void spool(FileChannel in, OutputStream out, boolean hasContentLength)
+            throws IOException {
+        long length = in.size();
+        long position = 0;
+        long count = length;
+        // make sure the content-length is set
+        if (!hasContentLength) {
+            outputCtx.setContentLength(length);
+        }
+        if (outputCtx instanceof OutputContextImpl) {
+            OutputContextImpl ctx = (OutputContextImpl) outputCtx;
+            ctx.setProperty(ByteRange.HEADER_ACCEPT_RANGES, ByteRange.UNIT_BYTES);
+            ByteRange range = ctx.getRange();
+            if (range != null) {
+                if (ctx.setPartialContent(length)) {
+                    position = range.getStart(length);
+                    count = range.getEnd(length) - position + 1;
+                } else {
+                    count = 0;
+                }
+            }
+        }
+        IOUtil.spool(in, position, count, out);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            channel = null;
+        }
+    }
 }
@@ -27,6 +27,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Date;
 
 /**
@@ -94,6 +97,32 @@ public final class IOUtil {
         }
     }
 
+    /**
+     * Spools a part of a file channel to the given output stream, using
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)} so
+     * that the bytes are not copied through the heap where the platform
+     * allows it. Neither the channel nor the stream are closed.
+     *
+     * @param in the file channel
+     * @param position the position of the first byte to spool
+     * @param count the number of bytes to spool
+     * @param out the output stream
+     * @throws IOException
+     */
+    public static void spool(FileChannel in, long position, long count, OutputStream out)
+            throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        while (count > 0) {
+            long n = in.transferTo(position, count, target);
+            if (n <= 0) {
+                // end of file
+                break;
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
     /**
      * Build a valid content type string from the given mimeType and encoding:
      * <pre>
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.server.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.api.ChannelBinary;
+import org.apache.jackrabbit.test.AbstractJCRTest;
+import org.apache.jackrabbit.webdav.DavConstants;
+import org.apache.jackrabbit.webdav.io.ByteRange;
+import org.apache.jackrabbit.webdav.io.OutputContextImpl;
+
+/**
+ * Tests that the {@link DefaultHandler} exports a binary stored in the data
+ * store through the file channel of {@link ExportContextImpl}, for the
+ * complete content and for a byte range.
+ */
+public class ExportContextImplTest extends AbstractJCRTest {
+
+    private byte[] data;
+
+    private Node file;
+
+    private ResponseRecorder response;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // large enough to be stored in the data store and not inlined
+        data = new byte[64 * 1024];
+        new Random(1).nextBytes(data);
+
+        file = testRootNode.addNode("file", JcrConstants.NT_FILE);
+        Node content = file.addNode(JcrConstants.JCR_CONTENT, JcrConstants.NT_RESOURCE);
+        content.setProperty(JcrConstants.JCR_MIMETYPE, "application/octet-stream");
+        content.setProperty(JcrConstants.JCR_LASTMODIFIED, Calendar.getInstance());
+        Binary binary = superuser.getValueFactory().createBinary(
+                new ByteArrayInputStream(data));
+        content.setProperty(JcrConstants.JCR_DATA, binary);
+        superuser.save();
+
+        response = new ResponseRecorder();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file = null;
+        data = null;
+        response = null;
+        super.tearDown();
+    }
+
+    public void testExportChannel() throws Exception {
+        Binary binary = file.getNode(JcrConstants.JCR_CONTENT)
+                .getProperty(JcrConstants.JCR_DATA).getBinary();
+        try {
+            assertTrue(binary instanceof ChannelBinary);
+            FileChannel channel = ((ChannelBinary) binary).getChannel();
+            assertNotNull("Binary must be stored in a data store file", channel);
+            channel.close();
+        } finally {
+            binary.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export(new OutputContextImpl(response.proxy(), out));
+
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+        assertEquals(String.valueOf(data.length),
+                response.headers.get(DavConstants.HEADER_CONTENT_LENGTH));
+        assertEquals(0, response.status);
+        assertEquals(ByteRange.UNIT_BYTES, response.headers.get(ByteRange.HEADER_ACCEPT_RANGES));
+    }
+
+    public void testExportRange() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputContextImpl outputCtx = new OutputContextImpl(response.proxy(), out);
+        outputCtx.setRange(ByteRange.parse("bytes=1000-1999"));
+        export(outputCtx);
+
+        byte[] expected = new byte[1000];
+        System.arraycopy(data, 1000, expected, 0, expected.length);
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.status);
+        assertEquals(String.valueOf(expected.length),
+                response.headers.get(DavConstants.HEADER_CONTENT_LENGTH));
+        assertEquals("bytes 1000-1999/" + data.length,
+                response.headers.get(ByteRange.HEADER_CONTENT_RANGE));
+    }
+
+    private void export(OutputContextImpl outputCtx) throws Exception {
+        ExportContextImpl context = new ExportContextImpl(file, outputCtx);
+        boolean success = new DefaultHandler().exportContent(context, false);
+        assertTrue(success);
+        context.informCompleted(success);
+    }
+
+    /**
+     * Records the status, content length and headers set on a response.
+     */
+    private static class ResponseRecorder implements InvocationHandler {
+
+        int status;
+
+        final Map<String, String> headers = new HashMap<String, String>();
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[] {HttpServletResponse.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("setStatus")) {
+                status = (Integer) args[0];
+            } else if (name.equals("setContentLength")) {
+                headers.put(DavConstants.HEADER_CONTENT_LENGTH, String.valueOf(args[0]));
+            } else if (name.equals("setHeader") || name.equals("addHeader")) {
+                headers.put((String) args[0], String.valueOf(args[1]));
+            }
+            return null;
+        }
+    }
+}
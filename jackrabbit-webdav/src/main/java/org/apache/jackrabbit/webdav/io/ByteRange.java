@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.io;
+
+/**
+ * <code>ByteRange</code> represents a single byte range of a HTTP
+ * <code>Range</code> request header as defined in RFC 7233, for example
+ * <code>bytes=500-999</code>, <code>bytes=500-</code> or the suffix range
+ * <code>bytes=-500</code>. Requests for multiple ranges are not supported
+ * and are answered with the complete content.
+ */
+public final class ByteRange {
+
+    /**
+     * The Range request header.
+     */
+    public static final String HEADER_RANGE = "Range";
+
+    /**
+     * The If-Range request header.
+     */
+    public static final String HEADER_IF_RANGE = "If-Range";
+
+    /**
+     * The Content-Range response header.
+     */
+    public static final String HEADER_CONTENT_RANGE = "Content-Range";
+
+    /**
+     * The Accept-Ranges response header.
+     */
+    public static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+
+    /**
+     * The only supported range unit.
+     */
+    public static final String UNIT_BYTES = "bytes";
+
+    /**
+     * First byte position, or -1 for a suffix range.
+     */
+    private final long first;
+
+    /**
+     * Last byte position, or -1 if the range extends to the end. For a
+     * suffix range, the suffix length.
+     */
+    private final long last;
+
+    private ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parses the value of a Range header.
+     *
+     * @param header the header value, may be <code>null</code>
+     * @return the range, or <code>null</code> if the header is missing,
+     * invalid, or requests more than one range
+     */
+    public static ByteRange parse(String header) {
+        if (header == null) {
+            return null;
+        }
+        header = header.trim();
+        if (!header.startsWith(UNIT_BYTES + "=")) {
+            return null;
+        }
+        String spec = header.substring(UNIT_BYTES.length() + 1).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+        try {
+            String start = spec.substring(0, dash).trim();
+            String end = spec.substring(dash + 1).trim();
+            if (start.length() == 0) {
+                long suffix = Long.parseLong(end);
+                return suffix > 0 ? new ByteRange(-1, suffix) : null;
+            }
+            long first = Long.parseLong(start);
+            long last = end.length() == 0 ? -1 : Long.parseLong(end);
+            if (first < 0 || (last >= 0 && last < first)) {
+                return null;
+            }
+            return new ByteRange(first, last);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether this range contains at least one byte of a content
+     * with the given length.
+     *
+     * @param length the content length
+     * @return <code>true</code> if the range is satisfiable
+     */
+    public boolean isSatisfiable(long length) {
+        return first < 0 ? length > 0 : first < length;
+    }
+
+    /**
+     * Returns the position of the first byte of this range.
+     *
+     * @param length the content length
+     * @return the first byte position
+     */
+    public long getStart(long length) {
+        return first < 0 ? Math.max(0, length - last) : first;
+    }
+
+    /**
+     * Returns the position of the last byte of this range.
+     *
+     * @param length the content length
+     * @return the last byte position (inclusive)
+     */
+    public long getEnd(long length) {
+        return first < 0 || last < 0 ? length - 1 : Math.min(last, length - 1);
+    }
+
+    /**
+     * Returns the value of the Content-Range response header for this range.
+     *
+     * @param length the content length
+     * @return the header value
+     */
+    public String getContentRange(long length) {
+        if (!isSatisfiable(length)) {
+            return UNIT_BYTES + " */" + length;
+        }
+        return UNIT_BYTES + " " + getStart(length) + "-" + getEnd(length) + "/" + length;
+    }
+
+    @Override
+    public String toString() {
+        return UNIT_BYTES + "=" + (first < 0 ? "" : first) + "-" + (last < 0 ? "" : last);
+    }
+}
@@ -33,6 +33,11 @@ public class OutputContextImpl implements OutputContext {
     private final HttpServletResponse response;
     private final OutputStream out;
 
+    /**
+     * The requested byte range, or <code>null</code> for the complete content.
+     */
+    private ByteRange range;
+
     public OutputContextImpl(HttpServletResponse response, OutputStream out) {
         if (response == null) {
             throw new IllegalArgumentException("Response must not be null.");
@@ -89,4 +94,56 @@ public class OutputContextImpl implements OutputContext {
             response.setHeader(propertyName, propertyValue);
         }
     }
+
+    /**
+     * Sets the byte range requested by the client. Exporters that support
+     * ranges only send the bytes of the range, after calling
+     * {@link #setPartialContent(long)}.
+     *
+     * @param range the requested range, or <code>null</code>
+     */
+    public void setRange(ByteRange range) {
+        this.range = range;
+    }
+
+    /**
+     * Returns the byte range requested by the client.
+     *
+     * @return the requested range, or <code>null</code> if the complete
+     * content is requested
+     */
+    public ByteRange getRange() {
+        return range;
+    }
+
+    /**
+     * Sets the status and headers for a response to the requested range of
+     * a content with the given length: 206 (Partial Content) with the
+     * Content-Range and the length of the range, or 416 (Range Not
+     * Satisfiable) if the range is outside the content.
+     *
+     * @param length the length of the complete content
+     * @return <code>true</code> if the bytes of the range are to be sent,
+     * <code>false</code> if no content is to be sent
+     * @throws IllegalStateException if no range was requested
+     */
+    public boolean setPartialContent(long length) {
+        if (range == null) {
+            throw new IllegalStateException("No range requested.");
+        }
+        response.setHeader(ByteRange.HEADER_CONTENT_RANGE, range.getContentRange(length));
+        if (!range.isSatisfiable(length)) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setContentLength(0);
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        long rangeLength = range.getEnd(length) - range.getStart(length) + 1;
+        if (rangeLength <= Integer.MAX_VALUE) {
+            response.setContentLength((int) rangeLength);
+        } else {
+            response.setHeader(DavConstants.HEADER_CONTENT_LENGTH, Long.toString(rangeLength));
+        }
+        return true;
+    }
 }
\ No newline at end of file
@@ -37,6 +37,7 @@ import org.apache.jackrabbit.webdav.bind.UnbindInfo;
 import org.apache.jackrabbit.webdav.bind.BindableResource;
 import org.apache.jackrabbit.webdav.bind.BindInfo;
 import org.apache.jackrabbit.webdav.header.CodedUrlHeader;
+import org.apache.jackrabbit.webdav.io.ByteRange;
 import org.apache.jackrabbit.webdav.io.InputContext;
 import org.apache.jackrabbit.webdav.io.InputContextImpl;
 import org.apache.jackrabbit.webdav.io.OutputContext;
@@ -532,7 +533,14 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
 
         // spool resource properties and eventually resource content.
         OutputStream out = (sendContent) ? response.getOutputStream() : null;
-        resource.spool(getOutputContext(response, out));
+        OutputContext outputContext = getOutputContext(response, out);
+        if (sendContent && outputContext instanceof OutputContextImpl
+                && request.getHeader(ByteRange.HEADER_IF_RANGE) == null) {
+            // conditional range requests are answered with the complete content
+            ByteRange range = ByteRange.parse(request.getHeader(ByteRange.HEADER_RANGE));
+            ((OutputContextImpl) outputContext).setRange(range);
+        }
+        resource.spool(outputContext);
         response.flushBuffer();
     }
 
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.io;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>ByteRangeTest</code>...
+ */
+public class ByteRangeTest extends TestCase {
+
+    public void testParse() {
+        assertNull(ByteRange.parse(null));
+        assertNull(ByteRange.parse("items=0-1"));
+        assertNull(ByteRange.parse("bytes=0-1,5-6"));
+        assertNull(ByteRange.parse("bytes=5-1"));
+        assertNull(ByteRange.parse("bytes=-0"));
+        assertNull(ByteRange.parse("bytes=a-b"));
+        assertEquals("bytes=0-99", ByteRange.parse("bytes=0-99").toString());
+        assertEquals("bytes=100-", ByteRange.parse(" bytes=100- ").toString());
+        assertEquals("bytes=-50", ByteRange.parse("bytes=-50").toString());
+    }
+
+    public void testResolve() {
+        ByteRange range = ByteRange.parse("bytes=10-19");
+        assertTrue(range.isSatisfiable(15));
+        assertEquals(10, range.getStart(15));
+        assertEquals(14, range.getEnd(15));
+        assertEquals("bytes 10-14/15", range.getContentRange(15));
+        assertFalse(range.isSatisfiable(10));
+        assertEquals("bytes */10", range.getContentRange(10));
+
+        range = ByteRange.parse("bytes=-50");
+        assertEquals(50, range.getStart(100));
+        assertEquals(99, range.getEnd(100));
+        assertEquals(0, range.getStart(20));
+        assertFalse(range.isSatisfiable(0));
+
+        range = ByteRange.parse("bytes=90-");
+        assertEquals(90, range.getStart(100));
+        assertEquals(99, range.getEnd(100));
+    }
+}